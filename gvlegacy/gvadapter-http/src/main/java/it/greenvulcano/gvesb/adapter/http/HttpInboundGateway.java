@@ -57,6 +57,11 @@ public class HttpInboundGateway extends HttpServlet {
 
     private HttpServletMappingManager mappingManager = null;
 
+    /**
+     * Request body size kept in memory before spilling to a temporary file.
+     */
+    private int requestSpillThreshold = MultiReadHttpServletRequest.DEFAULT_SPILL_THRESHOLD;
+
     /**
      * Initialization method.
      * 
@@ -76,6 +81,11 @@ public class HttpInboundGateway extends HttpServlet {
             super.init(config);
             logWriter.debug("HttpInboundGateway - BEGIN init");
 
+            String spillThreshold = config.getInitParameter("request-spill-threshold");
+            if (spillThreshold != null) {
+                requestSpillThreshold = Integer.parseInt(spillThreshold.trim());
+            }
+
             mappingManager = new HttpServletMappingManager();
 
             logWriter.debug("HttpInboundGateway - END init");
@@ -223,6 +233,7 @@ public class HttpInboundGateway extends HttpServlet {
 
         Exception exception = null;
         HttpServletMapping smapping = null;
+        MultiReadHttpServletRequest multiReadReq = null;
 
         startTime = System.currentTimeMillis();
 
@@ -233,7 +244,8 @@ public class HttpInboundGateway extends HttpServlet {
         String gvAction = mapping;
 
         try {
-            req = new MultiReadHttpServletRequest(req);
+            multiReadReq = new MultiReadHttpServletRequest(req, requestSpillThreshold);
+            req = multiReadReq;
             resp = new MultiReadHttpServletResponse(resp);
 
             NMDC.put("HTTP_METHOD", method);
@@ -284,6 +296,10 @@ public class HttpInboundGateway extends HttpServlet {
                 // Remove the caller from the security context
                 GVIdentityHelper.pop();
 
+                if (multiReadReq != null) {
+                    multiReadReq.release();
+                }
+
                 NMDC.pop();
             }
         }
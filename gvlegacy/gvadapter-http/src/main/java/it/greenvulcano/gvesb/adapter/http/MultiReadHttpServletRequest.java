@@ -21,6 +21,8 @@ package it.greenvulcano.gvesb.adapter.http;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -31,8 +33,18 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 
 /**
+ * Request wrapper whose body can be read more than once.
+ * <p>
+ * The body is not read up front: the first call to {@link #getInputStream()}
+ * streams it from the container while copying it to a buffer, that is kept in
+ * memory up to the spill threshold and then moved to a temporary file. Next
+ * calls replay the buffered body: if the first reader is still in the middle
+ * of the body, the rest is buffered and the first reader goes on from the
+ * buffer. {@link #release()} deletes the temporary file, if any; the body
+ * can't be read anymore after it.
  *
  * @version 3.4.0 27/mar/2014
  * @author GreenVulcano Developer Team
@@ -40,23 +52,35 @@ import org.apache.commons.io.IOUtils;
  */
 public class MultiReadHttpServletRequest extends HttpServletRequestWrapper
 {
-    private byte[] body;
+    public static final int DEFAULT_SPILL_THRESHOLD = 1024 * 1024;
+
+    private final int spillThreshold;
+    private ServletInputStream source;
+    private DeferredFileOutputStream body;
+    private boolean complete = false;
+    private boolean released = false;
 
     public MultiReadHttpServletRequest(HttpServletRequest request) throws IOException {
+        this(request, DEFAULT_SPILL_THRESHOLD);
+    }
+
+    public MultiReadHttpServletRequest(HttpServletRequest request, int spillThreshold) throws IOException {
         super(request);
-        //String method = request.getMethod();
-        //if (method.equals("POST") || method.equals("PUT")) {
-            //if (request.getContentType().indexOf("application/x-www-form-urlencoded") != -1) {
-                // Read the request body and save it as a byte array
-                InputStream is = super.getInputStream();
-                body = IOUtils.toByteArray(is);
-            //}
-        //}
+        this.spillThreshold = spillThreshold;
     }
 
     @Override
     public ServletInputStream getInputStream() throws IOException {
-        return new ServletInputStreamImpl(new ByteArrayInputStream(body));
+        if (released) {
+            throw new IllegalStateException("The request body has been released");
+        }
+        if (body == null) {
+            source = super.getInputStream();
+            body = new DeferredFileOutputStream(spillThreshold, "gvhttp-", ".body", null);
+            return new ServletInputStreamImpl(new FirstReadInputStream());
+        }
+        completeBody();
+        return new ServletInputStreamImpl(openBody());
     }
 
     @Override
@@ -66,16 +90,125 @@ public class MultiReadHttpServletRequest extends HttpServletRequestWrapper
         return new BufferedReader(new InputStreamReader(getInputStream(), enc));
     }
 
+    /**
+     * @return the number of body bytes read so far
+     */
+    public long getBodySize() {
+        return (body != null) ? body.getByteCount() : 0;
+    }
+
+    /**
+     * Releases the buffered body, deleting the spill file.
+     */
+    public void release() {
+        released = true;
+        if (body != null) {
+            IOUtils.closeQuietly(body);
+            if (!body.isInMemory()) {
+                File file = body.getFile();
+                if ((file != null) && file.exists() && !file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+            body = null;
+        }
+    }
+
+    /**
+     * Reads from the container the body part not yet consumed by the first
+     * reader.
+     */
+    private void completeBody() throws IOException {
+        if (!complete) {
+            IOUtils.copy(source, body);
+            body.close();
+            complete = true;
+        }
+    }
+
+    private InputStream openBody() throws IOException {
+        return body.isInMemory() ? new ByteArrayInputStream(body.getData()) : new FileInputStream(body.getFile());
+    }
+
+    /**
+     * Reads the body from the container copying it to the buffer; once the
+     * body is complete, because fully read or buffered for another reader,
+     * goes on reading from the buffer.
+     */
+    private class FirstReadInputStream extends InputStream {
+
+        private long position = 0;
+        private InputStream replay = null;
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return (n == -1) ? -1 : (b[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (released) {
+                throw new IOException("The request body has been released");
+            }
+            if (replay == null) {
+                if (!complete) {
+                    int n = source.read(b, off, len);
+                    if (n > 0) {
+                        body.write(b, off, n);
+                        position += n;
+                        return n;
+                    }
+                    if (n == 0) {
+                        return 0;
+                    }
+                    completeBody();
+                }
+                replay = openBody();
+                IOUtils.skipFully(replay, position);
+            }
+            return replay.read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (replay != null) {
+                replay.close();
+            }
+        }
+    }
+
     private class ServletInputStreamImpl extends ServletInputStream {
 
         private InputStream is;
+        private boolean finished = false;
 
         public ServletInputStreamImpl(InputStream is) {
             this.is = is;
         }
 
         public int read() throws IOException {
-            return is.read();
+            int b = is.read();
+            finished = (b == -1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = is.read(b, off, len);
+            finished = (n == -1);
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return is.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            is.close();
         }
 
         public boolean markSupported() {
@@ -92,20 +225,18 @@ public class MultiReadHttpServletRequest extends HttpServletRequestWrapper
 
 		@Override
 		public boolean isFinished() {
-			// TODO Auto-generated method stub
-			return false;
+			return finished;
 		}
 
 		@Override
 		public boolean isReady() {
-			// TODO Auto-generated method stub
-			return false;
+			// the body is read in blocking mode
+			return true;
 		}
 
 		@Override
 		public void setReadListener(ReadListener readListener) {
-			// TODO Auto-generated method stub
-			
+			throw new IllegalStateException("Non-blocking read not supported");
 		}
     }
 }
@@ -29,25 +29,42 @@ import it.greenvulcano.gvesb.adapter.http.utils.DumpUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.Proxy.Type;
 import java.net.URL;
-import java.net.URLConnection;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.w3c.dom.Node;
 
 /**
+ * Forwards the requests to a remote HTTP endpoint.
+ * <p>
+ * Every request opens its own <code>HttpURLConnection</code>; the bodies are
+ * streamed in both directions and the upstream streams are fully consumed and
+ * closed (never disconnected), so that the JDK keep-alive cache can reuse the
+ * underlying sockets. The number of concurrent upstream requests is bounded
+ * by the <code>max-connections</code> attribute of the endpoint.
+ * <p>
+ * The requests are forwarded to the endpoint <code>context-path</code>; with
+ * <code>forward-path="true"</code> the request path info and query string are
+ * appended to it.
  *
  * @version 4.1.0 05/aug/2020
  * @author GreenVulcano Developer Team
@@ -58,18 +75,40 @@ public class ForwardHttpServletMapping implements HttpServletMapping {
     private static final Logger logger = org.slf4j.LoggerFactory.getLogger(ForwardHttpServletMapping.class);
     public static final int DEFAULT_CONN_TIMEOUT = 10000;
     public static final int DEFAULT_SO_TIMEOUT = 30000;
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+    public static final int DEFAULT_ACQUIRE_TIMEOUT = 10000;
+    public static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Hop-by-hop headers, not forwarded in either direction.
+     */
+    private static final Set<String> HOP_BY_HOP_HEADERS = new HashSet<>(Arrays.asList("connection", "keep-alive", "proxy-authenticate",
+            "proxy-authorization", "te", "trailer", "transfer-encoding", "upgrade", "content-length"));
 
     private String action;
     private boolean dump = false;
-    private URLConnection connection;
+    private URL url;
+    private Proxy proxy;
+    private String proxyAuthorization;
     private String host;
     private String port;
     private boolean secure = false;
 
     private String contextPath;
+    private boolean forwardPath = false;
 
     private int connTimeout = DEFAULT_CONN_TIMEOUT;
     private int soTimeout = DEFAULT_SO_TIMEOUT;
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private int acquireTimeout = DEFAULT_ACQUIRE_TIMEOUT;
+    private Semaphore connectionPermits;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong totalTime = new AtomicLong();
+    private final AtomicLong maxTime = new AtomicLong();
+    private final AtomicInteger activeCount = new AtomicInteger();
 
     /**
      * 
@@ -96,33 +135,39 @@ public class ForwardHttpServletMapping implements HttpServletMapping {
             host = XMLConfig.get(endpointNode, "@host");
             port = XMLConfig.get(endpointNode, "@port", "80");
             contextPath = XMLConfig.get(endpointNode, "@context-path", "");
+            forwardPath = XMLConfig.getBoolean(endpointNode, "@forward-path", false);
             secure = XMLConfig.getBoolean(endpointNode, "@secure", false);
             connTimeout = XMLConfig.getInteger(endpointNode, "@conn-timeout", DEFAULT_CONN_TIMEOUT);
             soTimeout = XMLConfig.getInteger(endpointNode, "@so-timeout", DEFAULT_SO_TIMEOUT);
+            maxConnections = XMLConfig.getInteger(endpointNode, "@max-connections", DEFAULT_MAX_CONNECTIONS);
+            acquireTimeout = XMLConfig.getInteger(endpointNode, "@acquire-timeout", DEFAULT_ACQUIRE_TIMEOUT);
+            if (maxConnections <= 0) {
+                throw new IllegalArgumentException("Invalid max-connections value: " + maxConnections);
+            }
+            connectionPermits = new Semaphore(maxConnections, true);
 
-            URL url = new URL(secure ? "https" : "http", host, Integer.valueOf(port), contextPath);
+            url = new URL(secure ? "https" : "http", host, Integer.valueOf(port), contextPath);
 
             Node proxyConfigNode = XMLConfig.getNode(endpointNode, "Proxy");
             if (proxyConfigNode != null) {
                 String proxyHost = XMLConfig.get(proxyConfigNode, "@host");
                 int proxyPort = XMLConfig.getInteger(proxyConfigNode, "@port", 80);
 
-                Proxy proxy = new Proxy(Type.HTTP, new InetSocketAddress(proxyHost, proxyPort));
-                connection = url.openConnection(proxy);
+                proxy = new Proxy(Type.HTTP, new InetSocketAddress(proxyHost, proxyPort));
 
                 String proxyUser = XMLConfig.get(proxyConfigNode, "@user", "");
                 String proxyPassword = XMLConfig.getDecrypted(proxyConfigNode, "@password", "");
 
                 if (proxyUser.trim().length() > 0) {
-                    String proxyAuthorization = proxyUser + ":" + proxyPassword;
-                    connection.setRequestProperty("Proxy-Authorization", Base64.getEncoder().encodeToString(proxyAuthorization.getBytes()));
+                    String proxyCredentials = proxyUser + ":" + proxyPassword;
+                    proxyAuthorization = Base64.getEncoder().encodeToString(proxyCredentials.getBytes());
                 }
 
             } else {
-                connection = url.openConnection();
+                proxy = null;
             }
 
-            connection.setConnectTimeout(connTimeout);
+            logger.debug("Initialized forward to " + url + " - max-connections: " + maxConnections);
 
         } catch (Exception exc) {
             throw new AdapterHttpInitializationException("GVHTTP_CONFIGURATION_ERROR", new String[][] { { "message", exc.getMessage() } }, exc);
@@ -141,15 +186,19 @@ public class ForwardHttpServletMapping implements HttpServletMapping {
 
         logger.debug("BEGIN forward: " + req.getRequestURI());
 
-        final HttpURLConnection httpConnection = (HttpURLConnection) connection;
-        ;
+        long startTime = System.currentTimeMillis();
+        boolean acquired = false;
+        boolean failed = true;
+        HttpURLConnection httpConnection = null;
+        InputStream responseStream = null;
 
         try {
-
-            httpConnection.setRequestMethod(methodName);
-            httpConnection.setReadTimeout(soTimeout);
-            httpConnection.setDoInput(true);
-            httpConnection.setDoOutput(true);
+            acquired = connectionPermits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS);
+            if (!acquired) {
+                rejectedCount.incrementAndGet();
+                throw new IOException("Timeout waiting for a connection to " + url + " (max-connections: " + maxConnections + ")");
+            }
+            activeCount.incrementAndGet();
 
             if (dump) {
                 StringBuffer sb = new StringBuffer();
@@ -157,43 +206,42 @@ public class ForwardHttpServletMapping implements HttpServletMapping {
                 logger.info(sb.toString());
             }
 
-            String mapping = req.getPathInfo();
-            if (mapping == null) {
-                mapping = "/";
-            }
-            String destPath = contextPath + mapping;
-            String queryString = req.getQueryString();
-            if (queryString != null) {
-                destPath += "?" + queryString;
-            }
-            if (!destPath.startsWith("/")) {
-                destPath = "/" + destPath;
-            }
-            logger.info("Resulting QueryString: " + destPath);
+            URL destination = forwardPath ? new URL(url, getForwardPath(req)) : url;
+            logger.debug("Forwarding to: " + destination);
 
-            Collections.list(req.getHeaderNames()).forEach(headerName -> {
-                httpConnection.setRequestProperty(headerName, Collections.list(req.getHeaders(headerName)).stream().collect(Collectors.joining(";")));
+            httpConnection = openConnection(destination);
+            httpConnection.setRequestMethod(methodName);
+            httpConnection.setDoInput(true);
+
+            final HttpURLConnection requestConnection = httpConnection;
+            Collections.list(req.getHeaderNames()).stream().filter(headerName -> !HOP_BY_HOP_HEADERS.contains(headerName.toLowerCase())).forEach(headerName -> {
+                requestConnection.setRequestProperty(headerName, Collections.list(req.getHeaders(headerName)).stream().collect(Collectors.joining(";")));
             });
 
             if (methodName.equalsIgnoreCase("POST") || methodName.equalsIgnoreCase("PUT")) {
                 httpConnection.setDoOutput(true);
-                IOUtils.copy(req.getInputStream(), httpConnection.getOutputStream());
-
+                long contentLength = req.getContentLengthLong();
+                if (contentLength >= 0) {
+                    httpConnection.setFixedLengthStreamingMode(contentLength);
+                } else {
+                    httpConnection.setChunkedStreamingMode(BUFFER_SIZE);
+                }
+                try (OutputStream requestStream = httpConnection.getOutputStream()) {
+                    copy(req.getInputStream(), requestStream);
+                }
             }
 
             httpConnection.connect();
 
-            InputStream responseStream = null;
-
-            try {
-                resp.setStatus(httpConnection.getResponseCode(), httpConnection.getResponseMessage());
-                responseStream = httpConnection.getInputStream();
-            } catch (IOException connectionFail) {
-                responseStream = httpConnection.getErrorStream();
-            }
+            int responseCode = httpConnection.getResponseCode();
+            resp.setStatus(responseCode, httpConnection.getResponseMessage());
+            responseStream = (responseCode >= HttpURLConnection.HTTP_BAD_REQUEST) ? httpConnection.getErrorStream() : httpConnection.getInputStream();
 
             Map<String, List<String>> responseHeaders = httpConnection.getHeaderFields();
             for (String header : responseHeaders.keySet()) {
+                if ((header == null) || HOP_BY_HOP_HEADERS.contains(header.toLowerCase())) {
+                    continue;
+                }
                 try {
                     logger.debug("Adding header: {}", header);
                     List<String> headerValue = responseHeaders.get(header);
@@ -207,8 +255,9 @@ public class ForwardHttpServletMapping implements HttpServletMapping {
             }
 
             if (responseStream != null) {
-                byte[] responseData = IOUtils.toByteArray(responseStream);
-                resp.getOutputStream().write(responseData);
+                OutputStream out = resp.getOutputStream();
+                copy(responseStream, out);
+                out.flush();
             }
 
             if (dump) {
@@ -217,21 +266,166 @@ public class ForwardHttpServletMapping implements HttpServletMapping {
                 logger.info(sb.toString());
             }
 
+            failed = false;
             logger.debug("END forward: " + req.getRequestURI());
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            logger.error("ERROR on forwarding: " + req.getRequestURI(), exc);
+            throw new InboundHttpResponseException("GV_CALL_SERVICE_ERROR", new String[][] { { "message", "Interrupted waiting for a connection" } }, exc);
         } catch (Exception exc) {
             logger.error("ERROR on forwarding: " + req.getRequestURI(), exc);
             throw new InboundHttpResponseException("GV_CALL_SERVICE_ERROR", new String[][] { { "message", exc.getMessage() } }, exc);
         } finally {
-            try {
-                if (httpConnection != null) {
-                    httpConnection.disconnect();
+            release(httpConnection, responseStream, failed);
+            if (acquired) {
+                activeCount.decrementAndGet();
+                connectionPermits.release();
+            }
+            updateStatistics(System.currentTimeMillis() - startTime, failed);
+        }
+    }
+
+    /**
+     * @return the context-path followed by the request path info and query
+     *         string
+     */
+    private String getForwardPath(HttpServletRequest req) {
+
+        String mapping = req.getPathInfo();
+        if (mapping == null) {
+            mapping = "/";
+        }
+        String destPath = contextPath + mapping;
+        String queryString = req.getQueryString();
+        if (queryString != null) {
+            destPath += "?" + queryString;
+        }
+        if (!destPath.startsWith("/")) {
+            destPath = "/" + destPath;
+        }
+        return destPath;
+    }
+
+    private HttpURLConnection openConnection(URL destination) throws IOException {
+
+        HttpURLConnection httpConnection = (HttpURLConnection) ((proxy != null) ? destination.openConnection(proxy) : destination.openConnection());
+        if (proxyAuthorization != null) {
+            httpConnection.setRequestProperty("Proxy-Authorization", proxyAuthorization);
+        }
+        httpConnection.setConnectTimeout(connTimeout);
+        httpConnection.setReadTimeout(soTimeout);
+        httpConnection.setUseCaches(false);
+        httpConnection.setInstanceFollowRedirects(false);
+        return httpConnection;
+    }
+
+    /**
+     * Gives the connection back to the JDK keep-alive cache: the response
+     * must be fully read and the stream closed. A connection is disconnected
+     * only if the exchange failed, so a broken socket is never reused.
+     */
+    private void release(HttpURLConnection httpConnection, InputStream responseStream, boolean failed) {
+
+        if (httpConnection == null) {
+            return;
+        }
+        try {
+            if (failed) {
+                httpConnection.disconnect();
+                return;
+            }
+            if (responseStream != null) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while (responseStream.read(buffer) != -1) {
+                    // drain
                 }
-            } catch (Exception exc) {
-                logger.warn("Error while releasing connection", exc);
+                responseStream.close();
             }
+        } catch (Exception exc) {
+            logger.warn("Error while releasing connection", exc);
+            httpConnection.disconnect();
         }
     }
 
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+    }
+
+    private void updateStatistics(long time, boolean failed) {
+
+        requestCount.incrementAndGet();
+        if (failed) {
+            errorCount.incrementAndGet();
+        }
+        totalTime.addAndGet(time);
+        long max = maxTime.get();
+        while ((time > max) && !maxTime.compareAndSet(max, time)) {
+            max = maxTime.get();
+        }
+    }
+
+    /**
+     * @return the number of forwarded requests
+     */
+    public long getRequestCount() {
+
+        return requestCount.get();
+    }
+
+    /**
+     * @return the number of failed requests
+     */
+    public long getErrorCount() {
+
+        return errorCount.get();
+    }
+
+    /**
+     * @return the number of requests rejected waiting for a connection
+     */
+    public long getRejectedCount() {
+
+        return rejectedCount.get();
+    }
+
+    /**
+     * @return the number of requests currently forwarded
+     */
+    public int getActiveCount() {
+
+        return activeCount.get();
+    }
+
+    /**
+     * @return the average request time, in milliseconds
+     */
+    public long getAverageTime() {
+
+        long count = requestCount.get();
+        return (count == 0) ? 0 : totalTime.get() / count;
+    }
+
+    /**
+     * @return the maximum request time, in milliseconds
+     */
+    public long getMaxTime() {
+
+        return maxTime.get();
+    }
+
+    /**
+     * @return the maximum number of concurrent upstream connections
+     */
+    public int getMaxConnections() {
+
+        return maxConnections;
+    }
+
     @Override
     public boolean isDumpInOut() {
 
@@ -246,7 +440,8 @@ public class ForwardHttpServletMapping implements HttpServletMapping {
     @Override
     public void destroy() {
 
-        // do nothing
+        logger.debug("Forward " + action + " to " + url + " - requests: " + requestCount.get() + " - errors: " + errorCount.get() + " - rejected: "
+                + rejectedCount.get() + " - avg time: " + getAverageTime() + " - max time: " + maxTime.get());
     }
 
     /*
@@ -52,11 +52,13 @@ import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
@@ -88,9 +90,10 @@ public class RESTHttpServletMapping implements HttpServletMapping {
     private HttpServletTransactionManager transactionManager = null;
     private String action = null;
     private boolean dump = false;
+    private boolean streamRequestBody = false;
     private String responseContentType = null;
     private String responseCharacterEncoding = null;
-    private List<PatternResolver> operationMappings = new ArrayList<PatternResolver>();
+    private RouteIndex routeIndex = new RouteIndex();
 
     static private class PatternResolver {
 
@@ -102,6 +105,7 @@ public class RESTHttpServletMapping implements HttpServletMapping {
         private boolean extractHdr;
         private List<String> propNames = new ArrayList<String>();
         private List<Pattern> patterns = new ArrayList<Pattern>();
+        private int order;
 
         public PatternResolver() {
 
@@ -162,41 +166,19 @@ public class RESTHttpServletMapping implements HttpServletMapping {
             }
         }
 
-        public String match(HttpServletRequest request, String methodName, String path, GVBuffer data) throws AdapterHttpExecutionException {
+        /**
+         * Sets on the buffer the service, system and path properties of the
+         * already matched path segments.
+         */
+        public String bind(String[] parts, GVBuffer data) throws AdapterHttpExecutionException {
 
             try {
-                logger.debug("Checking [" + method + "#" + pattern + "] on [" + methodName + "#" + path + "]");
-                if (!method.equalsIgnoreCase(methodName)) {
-                    logger.debug("Pattern [" + method + "#" + pattern + "] NOT matched");
-                    return null;
-                }
-                List<String> values = new ArrayList<String>();
-                String locPath = path;
-                if (locPath.startsWith("/")) {
-                    locPath = locPath.substring(1);
+                data.setService(service);
+                data.setSystem(system);
+                for (int i = 0; i < propNames.size(); i++) {
+                    data.setProperty(propNames.get(i), parts[i]);
                 }
-                String[] parts = locPath.split("/");
-                if (parts.length == patterns.size()) {
-                    for (int i = 0; i < parts.length; i++) {
-                        Matcher m = patterns.get(i).matcher(parts[i]);
-                        if (m.matches()) {
-                            values.add(parts[i]);
-                        } else {
-                            logger.debug("Pattern [" + method + "#" + pattern + "] NOT matched");
-                            return null;
-                        }
-                    }
-
-                    data.setService(service);
-                    data.setSystem(system);
-                    for (int i = 0; i < propNames.size(); i++) {
-                        data.setProperty(propNames.get(i), values.get(i));
-                    }
-                    logger.debug("Pattern [" + method + "#" + pattern + "] matched");
-                    return operation;
-                }
-                logger.debug("Pattern [" + method + "#" + pattern + "] NOT matched");
-                return null;
+                return operation;
             } catch (Exception exc) {
                 throw new AdapterHttpExecutionException("RESTHttpServletMapping - Error evaluating Pattern[" + method + "#" + pattern + "]", exc);
             }
@@ -215,6 +197,106 @@ public class RESTHttpServletMapping implements HttpServletMapping {
         }
     }
 
+    /**
+     * Splits a request path in segments, as done by the configured patterns.
+     */
+    static String[] splitPath(String path) {
+
+        String locPath = path;
+        if (locPath.startsWith("/")) {
+            locPath = locPath.substring(1);
+        }
+        return locPath.split("/");
+    }
+
+    /**
+     * Routing index built at init() from the configured patterns.
+     * <p>
+     * The patterns are grouped by HTTP method and number of segments; each
+     * group is a trie whose edges are either literal segments (a regex without
+     * metacharacters, looked up by hash) or regex segments (evaluated only
+     * when reached). The whole trie is visited, pruning the subtrees that
+     * cannot contain a pattern declared before the best match found so far,
+     * so the result is the same first-match-wins of a linear scan.
+     */
+    static private class RouteIndex {
+
+        private static final Pattern LITERAL = Pattern.compile("[A-Za-z0-9_\\-]+");
+
+        static private class Node {
+
+            private final Map<String, Node> literals = new HashMap<String, Node>();
+            private final Map<String, Node> regexps = new LinkedHashMap<String, Node>();
+            private Pattern regex;
+            private PatternResolver route;
+            private int minOrder = Integer.MAX_VALUE;
+        }
+
+        private final Map<String, Map<Integer, Node>> roots = new HashMap<String, Map<Integer, Node>>();
+
+        void add(PatternResolver pr) {
+
+            Node node = roots.computeIfAbsent(pr.method.toUpperCase(Locale.ROOT), m -> new HashMap<Integer, Node>())
+                             .computeIfAbsent(pr.patterns.size(), n -> new Node());
+            node.minOrder = Math.min(node.minOrder, pr.order);
+            for (Pattern p : pr.patterns) {
+                String regex = p.pattern();
+                if (LITERAL.matcher(regex).matches()) {
+                    node = node.literals.computeIfAbsent(regex, r -> new Node());
+                } else {
+                    node = node.regexps.computeIfAbsent(regex, r -> {
+                        Node n = new Node();
+                        n.regex = p;
+                        return n;
+                    });
+                }
+                node.minOrder = Math.min(node.minOrder, pr.order);
+            }
+            if (node.route == null) {
+                node.route = pr;
+            }
+        }
+
+        PatternResolver lookup(String methodName, String[] parts) {
+
+            Map<Integer, Node> byLength = roots.get(methodName.toUpperCase(Locale.ROOT));
+            if (byLength == null) {
+                return null;
+            }
+            Node root = byLength.get(parts.length);
+            if (root == null) {
+                return null;
+            }
+            return lookup(root, parts, 0, null);
+        }
+
+        private PatternResolver lookup(Node node, String[] parts, int depth, PatternResolver best) {
+
+            if ((best != null) && (node.minOrder >= best.order)) {
+                return best;
+            }
+            if (depth == parts.length) {
+                return node.route;
+            }
+            String part = parts[depth];
+            Node literal = node.literals.get(part);
+            if (literal != null) {
+                best = lookup(literal, parts, depth + 1, best);
+            }
+            for (Node regexp : node.regexps.values()) {
+                if (((best == null) || (regexp.minOrder < best.order)) && regexp.regex.matcher(part).matches()) {
+                    best = lookup(regexp, parts, depth + 1, best);
+                }
+            }
+            return best;
+        }
+
+        void clear() {
+
+            roots.clear();
+        }
+    }
+
     /**
      * @param transactionManager
      * @param formatterMgr
@@ -229,13 +311,16 @@ public class RESTHttpServletMapping implements HttpServletMapping {
         try {
             action = XMLConfig.get(configurationNode, "@Action");
             dump = XMLConfig.getBoolean(configurationNode, "@dump-in-out", false);
+            streamRequestBody = XMLConfig.getBoolean(configurationNode, "@stream-request-body", false);
             responseContentType = XMLConfig.get(configurationNode, "@RespContentType", AdapterHttpConstants.APPXML_MIMETYPE_NAME);
             responseCharacterEncoding = XMLConfig.get(configurationNode, "@RespCharacterEncoding", "UTF-8");
 
             NodeList opMaps = XMLConfig.getNodeList(configurationNode, "OperationMappings/Mapping");
             for (int i = 0; i < opMaps.getLength(); i++) {
                 Node opM = opMaps.item(i);
-                operationMappings.add(buildPatternResolver(opM));
+                PatternResolver pr = buildPatternResolver(opM);
+                pr.order = i;
+                routeIndex.add(pr);
             }
         }
         /*
@@ -284,14 +369,11 @@ public class RESTHttpServletMapping implements HttpServletMapping {
 
             GVBuffer request = new GVBuffer();
             String operationType = null;
-            PatternResolver pr = null;
-            Iterator<PatternResolver> i = operationMappings.iterator();
-            while (i.hasNext()) {
-                pr = i.next();
-                operationType = pr.match(req, methodName, path, request);
-                if (operationType != null) {                   
-                    break;
-                }
+            String[] parts = splitPath(path);
+            PatternResolver pr = routeIndex.lookup(methodName, parts);
+            if (pr != null) {
+                logger.debug("Pattern [" + pr + "] matched on [" + methodName + "#" + path + "]");
+                operationType = pr.bind(parts, request);
             }
 
             if (operationType == null) {
@@ -411,12 +493,16 @@ public class RESTHttpServletMapping implements HttpServletMapping {
 
             if (methodName.equals("POST") || methodName.equals("PUT")) {
                 if (!ct.startsWith(AdapterHttpConstants.URLENCODED_MIMETYPE_NAME)) {
-                    Object requestContent = IOUtils.toByteArray(req.getInputStream());
-                    if (ct.startsWith(AdapterHttpConstants.APPXML_MIMETYPE_NAME) || ct.startsWith(AdapterHttpConstants.APPJSON_MIMETYPE_NAME) || ct.startsWith("text/")) {
-                        /* GESTIRE ENCODING!!! */
-                        requestContent = new String((byte[]) requestContent);
+                    String charset = Optional.ofNullable(req.getCharacterEncoding()).orElse(StandardCharsets.UTF_8.name());
+                    request.setProperty("HTTP_REQ_CHARSET", charset);
+                    if (streamRequestBody) {
+                        // the body is consumed by the service, spilled to disk if large
+                        request.setObject(req.getInputStream());
+                    } else if (ct.startsWith(AdapterHttpConstants.APPXML_MIMETYPE_NAME) || ct.startsWith(AdapterHttpConstants.APPJSON_MIMETYPE_NAME) || ct.startsWith("text/")) {
+                        request.setObject(IOUtils.toString(req.getInputStream(), charset));
+                    } else {
+                        request.setObject(IOUtils.toByteArray(req.getInputStream()));
                     }
-                    request.setObject(requestContent);
                 } else {
 
                     String requestdata = Optional.ofNullable(IOUtils.toString(req.getInputStream(), StandardCharsets.UTF_8)).orElse("");
@@ -499,7 +585,7 @@ public class RESTHttpServletMapping implements HttpServletMapping {
     public void destroy() {
 
         transactionManager = null;
-        operationMappings.clear();
+        routeIndex.clear();
     }
 
     /**
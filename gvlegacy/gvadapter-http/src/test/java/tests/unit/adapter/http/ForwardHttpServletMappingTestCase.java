@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ *
+ * This file is part of GreenVulcano ESB.
+ *
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package tests.unit.adapter.http;
+
+import it.greenvulcano.gvesb.adapter.http.mapping.ForwardHttpServletMapping;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.IOUtils;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Forwards requests to a local HTTP server, echoing the request body.
+ *
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ *
+ */
+public class ForwardHttpServletMappingTestCase extends TestCase
+{
+    private static final byte[] BODY = new byte[100000];
+
+    static {
+        for (int i = 0; i < BODY.length; i++) {
+            BODY[i] = (byte) i;
+        }
+    }
+
+    private HttpServer          server;
+    private volatile String     receivedUri;
+    private volatile Headers    receivedHeaders;
+    private volatile byte[]     receivedBody;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            receivedUri = exchange.getRequestURI().toString();
+            receivedHeaders = exchange.getRequestHeaders();
+            receivedBody = IOUtils.toByteArray(exchange.getRequestBody());
+            exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+            exchange.sendResponseHeaders(200, receivedBody.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(receivedBody);
+            }
+        });
+        server.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        server.stop(0);
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testFixedLengthUpload() throws Exception
+    {
+        ForwardHttpServletMapping mapping = mapping(false);
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        mapping.handleRequest("POST", request("/a/b", "x=1", BODY, BODY.length), response(response));
+
+        assertEquals("/ctx", receivedUri);
+        assertEquals(String.valueOf(BODY.length), receivedHeaders.getFirst("Content-Length"));
+        assertNull(receivedHeaders.getFirst("Transfer-Encoding"));
+        assertTrue(Arrays.equals(BODY, receivedBody));
+        assertTrue(Arrays.equals(BODY, response.toByteArray()));
+        assertEquals(1, mapping.getRequestCount());
+        assertEquals(0, mapping.getErrorCount());
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testChunkedUpload() throws Exception
+    {
+        ForwardHttpServletMapping mapping = mapping(false);
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        mapping.handleRequest("PUT", request(null, null, BODY, -1), response(response));
+
+        assertEquals("/ctx", receivedUri);
+        assertEquals("chunked", receivedHeaders.getFirst("Transfer-Encoding"));
+        assertTrue(Arrays.equals(BODY, receivedBody));
+        assertTrue(Arrays.equals(BODY, response.toByteArray()));
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testForwardPath() throws Exception
+    {
+        ForwardHttpServletMapping mapping = mapping(true);
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        mapping.handleRequest("POST", request("/a/b", "x=1", BODY, BODY.length), response(response));
+
+        assertEquals("/ctx/a/b?x=1", receivedUri);
+        assertTrue(Arrays.equals(BODY, response.toByteArray()));
+    }
+
+    private ForwardHttpServletMapping mapping(boolean forwardPath) throws Exception
+    {
+        String config = "<mapping Action=\"test\"><endpoint host=\"localhost\" port=\"" + server.getAddress().getPort()
+                + "\" context-path=\"/ctx\" forward-path=\"" + forwardPath + "\"/></mapping>";
+        Node node = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new ByteArrayInputStream(config.getBytes("UTF-8")))).getDocumentElement();
+        ForwardHttpServletMapping mapping = new ForwardHttpServletMapping();
+        mapping.init(null, null, node);
+        return mapping;
+    }
+
+    /**
+     * @return a request with the given body, of unknown length if
+     *         contentLength is -1
+     */
+    private static HttpServletRequest request(String pathInfo, String queryString, byte[] body, long contentLength)
+    {
+        final ByteArrayInputStream is = new ByteArrayInputStream(body);
+        final ServletInputStream in = new ServletInputStream() {
+            @Override
+            public int read() throws IOException
+            {
+                return is.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException
+            {
+                return is.read(b, off, len);
+            }
+
+            @Override
+            public boolean isFinished()
+            {
+                return is.available() == 0;
+            }
+
+            @Override
+            public boolean isReady()
+            {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener)
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getInputStream":
+                            return in;
+                        case "getContentLengthLong":
+                            return contentLength;
+                        case "getPathInfo":
+                            return pathInfo;
+                        case "getQueryString":
+                            return queryString;
+                        case "getRequestURI":
+                            return "/forward" + ((pathInfo != null) ? pathInfo : "");
+                        case "getHeaderNames":
+                            return Collections.enumeration(Arrays.asList("Content-Type"));
+                        case "getHeaders":
+                            return Collections.enumeration(Arrays.asList("application/octet-stream"));
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    /**
+     * @return a response writing the body in the given stream
+     */
+    private static HttpServletResponse response(final ByteArrayOutputStream body)
+    {
+        final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException
+            {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady()
+            {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener)
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+        return (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                    if ("getOutputStream".equals(method.getName())) {
+                        return out;
+                    }
+                    return null;
+                });
+    }
+}
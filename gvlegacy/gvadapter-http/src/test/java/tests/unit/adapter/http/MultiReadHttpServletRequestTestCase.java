@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ *
+ * This file is part of GreenVulcano ESB.
+ *
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package tests.unit.adapter.http;
+
+import it.greenvulcano.gvesb.adapter.http.MultiReadHttpServletRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ *
+ */
+public class MultiReadHttpServletRequestTestCase extends TestCase
+{
+    private static final byte[] BODY = new byte[100];
+
+    static {
+        for (int i = 0; i < BODY.length; i++) {
+            BODY[i] = (byte) i;
+        }
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testReplay() throws Exception
+    {
+        MultiReadHttpServletRequest request = new MultiReadHttpServletRequest(request(BODY));
+        assertTrue(Arrays.equals(BODY, IOUtils.toByteArray(request.getInputStream())));
+        assertTrue(Arrays.equals(BODY, IOUtils.toByteArray(request.getInputStream())));
+        assertEquals(BODY.length, request.getBodySize());
+        request.release();
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testSecondReaderWhileFirstMidBody() throws Exception
+    {
+        checkSecondReaderWhileFirstMidBody(MultiReadHttpServletRequest.DEFAULT_SPILL_THRESHOLD);
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testSecondReaderWhileFirstMidBodySpilled() throws Exception
+    {
+        checkSecondReaderWhileFirstMidBody(16);
+    }
+
+    /**
+     * @throws Exception
+     */
+    public void testReadAfterRelease() throws Exception
+    {
+        MultiReadHttpServletRequest request = new MultiReadHttpServletRequest(request(BODY), 16);
+        InputStream first = request.getInputStream();
+        IOUtils.readFully(first, new byte[10]);
+        request.release();
+
+        try {
+            request.getInputStream();
+            fail("getInputStream() must fail after release()");
+        }
+        catch (IllegalStateException exc) {
+            // expected
+        }
+        try {
+            first.read();
+            fail("read() must fail after release()");
+        }
+        catch (IOException exc) {
+            // expected
+        }
+    }
+
+    private void checkSecondReaderWhileFirstMidBody(int spillThreshold) throws Exception
+    {
+        MultiReadHttpServletRequest request = new MultiReadHttpServletRequest(request(BODY), spillThreshold);
+        InputStream first = request.getInputStream();
+        byte[] head = new byte[10];
+        IOUtils.readFully(first, head);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(BODY, 0, 10), head));
+
+        assertTrue(Arrays.equals(BODY, IOUtils.toByteArray(request.getInputStream())));
+
+        byte[] tail = IOUtils.toByteArray(first);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(BODY, 10, BODY.length), tail));
+        assertEquals(BODY.length, request.getBodySize());
+        request.release();
+    }
+
+    /**
+     * @return a request whose body can be read once, as the container one
+     */
+    private static HttpServletRequest request(byte[] body)
+    {
+        final ServletInputStream in = new ServletInputStream() {
+            private final ByteArrayInputStream is = new ByteArrayInputStream(body);
+
+            @Override
+            public int read() throws IOException
+            {
+                return is.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException
+            {
+                // short reads, as from the network
+                return is.read(b, off, Math.min(len, 7));
+            }
+
+            @Override
+            public boolean isFinished()
+            {
+                return is.available() == 0;
+            }
+
+            @Override
+            public boolean isReady()
+            {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener)
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+                    if ("getInputStream".equals(method.getName())) {
+                        return in;
+                    }
+                    return null;
+                });
+    }
+}
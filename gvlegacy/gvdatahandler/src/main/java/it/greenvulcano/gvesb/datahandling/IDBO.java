@@ -19,6 +19,8 @@
  *******************************************************************************/
 package it.greenvulcano.gvesb.datahandling;
 
+import it.greenvulcano.gvesb.datahandling.dbo.StatementCache;
+
 import java.io.OutputStream;
 import java.sql.Connection;
 import java.util.Map;
@@ -149,6 +151,12 @@ public interface IDBO
      */
     public void setJdbcConnectionName(String connectionName);
 
+    /**
+     * @param statementCache
+     *        the prepared statements cache, or <code>null</code> if disabled
+     */
+    public void setStatementCache(StatementCache statementCache);
+
     /**
      * @return the input data name
      */
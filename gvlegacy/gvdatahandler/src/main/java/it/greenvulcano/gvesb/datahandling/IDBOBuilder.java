@@ -19,6 +19,7 @@
  *******************************************************************************/
 package it.greenvulcano.gvesb.datahandling;
 
+import it.greenvulcano.gvesb.datahandling.dbo.StatementCache;
 import it.greenvulcano.gvesb.gvdte.controller.DTEController;
 
 import java.util.Map;
@@ -69,6 +70,18 @@ public interface IDBOBuilder
     public void XML2DB(String operation, byte[] file, Map<String, Object> params) throws DataHandlerException, 
             InterruptedException;
 
+    /**
+     * @param operation
+     * @param input
+     *        the input data: byte[], String, Node, InputStream, Reader or
+     *        Source; streams are read only once if a single IDBO is
+     *        configured
+     * @param params
+     * @throws DataHandlerException
+     */
+    public void XML2DB(String operation, Object input, Map<String, Object> params) throws DataHandlerException, 
+            InterruptedException;
+
     /**
      * @param operation
      * @param file
@@ -127,4 +140,10 @@ public interface IDBOBuilder
      */
     public void setDteController(DTEController dteController);
 
+    /**
+     * @param statementCache
+     *        the prepared statements cache, or <code>null</code> if disabled
+     */
+    public void setStatementCache(StatementCache statementCache);
+
 }
\ No newline at end of file
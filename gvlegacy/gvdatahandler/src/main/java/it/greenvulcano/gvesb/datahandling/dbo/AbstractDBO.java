@@ -24,7 +24,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.io.StringReader;
 import java.math.RoundingMode;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -34,12 +36,14 @@ import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
 
 import javax.xml.namespace.QName;
 import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.sax.SAXSource;
 
 import org.slf4j.Logger;
@@ -145,6 +149,11 @@ public abstract class AbstractDBO extends DefaultHandler implements IDBO
 
     private String                jdbcConnectionNameInt   = null;
 
+    /**
+     * Prepared statements cache, null if disabled.
+     */
+    protected StatementCache      statementCache          = null;
+
     /**
      *
      */
@@ -550,6 +559,12 @@ public abstract class AbstractDBO extends DefaultHandler implements IDBO
     private XMLReader             xr;
     private boolean               executeQuery;
 
+    /**
+     * Number of rows accumulated before a JDBC batch execution; values lower
+     * than 2 disable the batch mode.
+     */
+    protected int                 batchSize               = 0;
+
     /**
      *
      */
@@ -591,6 +606,11 @@ public abstract class AbstractDBO extends DefaultHandler implements IDBO
             blockConstraintError = XMLConfig.getBoolean(config, "@blockConstraintError", true);
             blockStatementError = XMLConfig.getBoolean(config, "@blockStatementError", true);
             blockSecurityError = XMLConfig.getBoolean(config, "@blockSecurityError", true);
+            batchSize = XMLConfig.getInteger(config, "@batch-size", 0);
+            if (isBatchEnabled()) {
+                logger.debug("[" + dboclass + "] with name [" + name + "] executes statements in batch of " + batchSize
+                        + " rows.");
+            }
 
             NodeList nlv = XMLConfig.getNodeList(config, "DHVariables/DHVariable");
             if (nlv != null) {
@@ -622,6 +642,58 @@ public abstract class AbstractDBO extends DefaultHandler implements IDBO
         }
     }
 
+    /**
+     * Prepares the expanded SQL statement on the internal connection, reusing
+     * a cached statement if the statement cache is enabled.
+     *
+     * @param id
+     * @param expandedSQL
+     * @param generatedKeys
+     *        if true the statement is prepared to return the generated keys
+     * @return the statement informations
+     * @throws SQLException
+     */
+    protected StatementInfo prepareStatement(String id, String expandedSQL, boolean generatedKeys)
+            throws SQLException
+    {
+        StatementInfo info = null;
+        if (statementCache != null) {
+            info = new StatementInfo(id, expandedSQL, statementCache.prepareStatement(internalConn, expandedSQL,
+                    generatedKeys));
+            info.setCache(statementCache);
+        }
+        else if (generatedKeys) {
+            info = new StatementInfo(id, expandedSQL, internalConn.prepareStatement(expandedSQL,
+                    Statement.RETURN_GENERATED_KEYS));
+        }
+        else {
+            info = new StatementInfo(id, expandedSQL, internalConn.prepareStatement(expandedSQL));
+        }
+        return info;
+    }
+
+    /**
+     * Prepares the expanded SQL call on the internal connection, reusing a
+     * cached statement if the statement cache is enabled.
+     *
+     * @param id
+     * @param expandedSQL
+     * @return the statement informations
+     * @throws SQLException
+     */
+    protected StatementInfo prepareCall(String id, String expandedSQL) throws SQLException
+    {
+        StatementInfo info = null;
+        if (statementCache != null) {
+            info = new StatementInfo(id, expandedSQL, statementCache.prepareCall(internalConn, expandedSQL));
+            info.setCache(statementCache);
+        }
+        else {
+            info = new StatementInfo(id, expandedSQL, internalConn.prepareCall(expandedSQL));
+        }
+        return info;
+    }
+
     /**
      * @param id
      * @throws SAXException
@@ -634,15 +706,21 @@ public abstract class AbstractDBO extends DefaultHandler implements IDBO
         if ((sqlStatementInfo == null) || !getCurrentId().equals(id)) {
             try {
                 if (sqlStatementInfo != null) {
+                    executeBatch();
                     sqlStatementInfo.close();
                 }
                 String expandedSQL = PropertiesHandler.expand(statements.get(id), currentProps, currentObject, internalConn);
                 logger.debug("SQL Statement Expanded: " + expandedSQL);
                
-                Statement statement = internalConn.prepareStatement(expandedSQL);
-                sqlStatementInfo = new StatementInfo(id, expandedSQL, statement);
+                sqlStatementInfo = prepareStatement(id, expandedSQL, false);
+                if (isBatchEnabled()) {
+                    sqlStatementInfo.enableBatch();
+                }
                 setCurrentId(id);
             }
+            catch (SAXException exc) {
+                throw exc;
+            }
             catch (SQLException exc) {
                 OracleError oerr = OracleExceptionHandler.handleSQLException(exc);
                 oerr.printLoggerInfo();
@@ -694,6 +772,9 @@ public abstract class AbstractDBO extends DefaultHandler implements IDBO
             if (ignoreInput) {
                 input = null;
             }
+            if (input instanceof DOMSource) {
+                input = ((DOMSource) input).getNode();
+            }
             if (input != null) {
                 if (input instanceof Element) {
                     logger.debug("Input is: Element");
@@ -729,7 +810,7 @@ public abstract class AbstractDBO extends DefaultHandler implements IDBO
                     }
                     else if (input instanceof String) {
                         logger.debug("Input is: String");
-                        xmlSource = new InputSource(new ByteArrayInputStream(((String) input).getBytes()));
+                        xmlSource = new InputSource(new StringReader((String) input));
                     }
                     if (xmlSource == null) {
                         throw new DBOException("Cannot convert " + input.getClass() + " to InputSource");
@@ -743,6 +824,7 @@ public abstract class AbstractDBO extends DefaultHandler implements IDBO
                 getStatement(null);
                 executeStatement();
             }
+            executeBatch();
             logger.debug("End execution of DB data read/update through " + dboclass);
         }
         catch (IOException exc) {
@@ -822,6 +904,7 @@ public abstract class AbstractDBO extends DefaultHandler implements IDBO
 
             getStatement(null);
             executeStatement();
+            executeBatch();
             logger.debug("End execution of DB data read/update through " + dboclass);
         }
         catch (Exception exc) {
@@ -1042,14 +1125,191 @@ public abstract class AbstractDBO extends DefaultHandler implements IDBO
     }
 
     /**
+     * @return if the statements must be executed in JDBC batch mode
+     */
+    protected boolean isBatchEnabled()
+    {
+        return (batchSize > 1) && !executeQuery;
+    }
+
+    /**
+     * Executes the current statement, or adds the current row to the pending
+     * batch if the batch mode is enabled on the statement.
+     *
      * @throws SAXException
      */
     protected void executeStatement() throws SAXException
+    {
+        if ((sqlStatementInfo != null) && sqlStatementInfo.isBatched() && !readGeneratedKey) {
+            addBatch();
+        }
+        else {
+            if ((sqlStatementInfo != null) && sqlStatementInfo.isBatched() && (sqlStatementInfo.getBatch().size() > 0)) {
+                // generated keys can be read only row by row: flush the pending rows first
+                executeBatch();
+                try {
+                    sqlStatementInfo.getBatch().rebindCurrent();
+                }
+                catch (SQLException exc) {
+                    throw new SAXException(new DBOException("SQLException error on row " + rowCounter + ": "
+                            + exc.getMessage(), exc));
+                }
+            }
+            executeSingleStatement(sqlStatementInfo.getStatement(), false);
+        }
+    }
+
+    /**
+     * Adds the current row to the pending batch, executing it when full.
+     *
+     * @throws SAXException
+     */
+    private void addBatch() throws SAXException
+    {
+        try {
+            ThreadUtils.checkInterrupted(getClass().getSimpleName(), name, logger);
+            StatementBatch batch = sqlStatementInfo.getBatch();
+            batch.addRow(rowCounter, currentXSLMessage, statsOnInsert, incrDiscIfUpdKO, currentRowFields);
+            if (resetGeneratedKeyID != null) {
+                generatedKeys.remove(GENERATED_KEY_ID + resetGeneratedKeyID);
+            }
+        }
+        catch (SQLException exc) {
+            OracleError oerr = OracleExceptionHandler.handleSQLException(exc);
+            oerr.printLoggerInfo();
+            throw new SAXException(new DBOException("SQLException error on row " + rowCounter + ": "
+                    + exc.getMessage(), exc));
+        }
+        catch (InterruptedException exc) {
+            logger.error("DBO[" + name + "] interrupted", exc);
+            throw new SAXException("DBO[" + name + "] interrupted", exc);
+        }
+        finally {
+            rowCounter++;
+        }
+        if (sqlStatementInfo.getBatch().size() >= batchSize) {
+            executeBatch();
+        }
+    }
+
+    /**
+     * Executes the rows pending in the batch of the current statement.
+     * The update counts returned by the driver are mapped back to the row
+     * statistics; if the batch fails with a BatchUpdateException the rows not
+     * confirmed by the driver are replayed one by one on the real statement,
+     * so the discard causes and the blocking errors are the same of the row
+     * by row execution. Any other failure doesn't tell which rows were
+     * executed: no row is replayed and all of them are handled as failed.
+     *
+     * @throws SAXException
+     */
+    protected void executeBatch() throws SAXException
+    {
+        if ((sqlStatementInfo == null) || !sqlStatementInfo.isBatched() || (sqlStatementInfo.getBatch().size() == 0)) {
+            return;
+        }
+        StatementBatch batch = sqlStatementInfo.getBatch();
+        List<StatementBatch.BatchRow> rows = batch.drain();
+        int[] results = null;
+        SQLException batchError = null;
+        try {
+            results = batch.getStatement().executeBatch();
+        }
+        catch (BatchUpdateException exc) {
+            logger.warn("Batch execution of " + rows.size() + " rows failed for the IDBO '" + serviceName
+                    + "', replaying the rows not executed: " + exc);
+            results = exc.getUpdateCounts();
+            if (results == null) {
+                batchError = exc;
+            }
+        }
+        catch (SQLException exc) {
+            logger.warn("Batch execution of " + rows.size() + " rows failed for the IDBO '" + serviceName
+                    + "', discarding all rows: " + exc);
+            batchError = exc;
+        }
+        finally {
+            batch.clear();
+        }
+
+        long liveRowCounter = rowCounter;
+        String liveXSLMessage = currentXSLMessage;
+        boolean liveStatsOnInsert = statsOnInsert;
+        boolean liveIncrDiscIfUpdKO = incrDiscIfUpdKO;
+        Vector<Object> liveRowFields = currentRowFields;
+        try {
+            for (int i = 0; i < rows.size(); i++) {
+                StatementBatch.BatchRow row = rows.get(i);
+                rowCounter = row.getRowCounter();
+                currentXSLMessage = row.getXslMessage();
+                statsOnInsert = row.isStatsOnInsert();
+                incrDiscIfUpdKO = row.isIncrDiscIfUpdKO();
+                currentRowFields = row.getRowFields();
+                if (batchError != null) {
+                    handleRowError(batchError);
+                }
+                else if ((i < results.length) && (results[i] != Statement.EXECUTE_FAILED)) {
+                    // SUCCESS_NO_INFO: the row is executed but the driver doesn't report the count
+                    updateStatistics(results[i] == Statement.SUCCESS_NO_INFO ? 1 : results[i]);
+                }
+                else {
+                    boolean rebound = false;
+                    try {
+                        batch.rebind(row);
+                        rebound = true;
+                    }
+                    catch (SQLException exc) {
+                        handleRowError(exc);
+                    }
+                    if (rebound) {
+                        executeSingleStatement(batch.getStatement(), true);
+                    }
+                }
+            }
+        }
+        finally {
+            rowCounter = liveRowCounter;
+            currentXSLMessage = liveXSLMessage;
+            statsOnInsert = liveStatsOnInsert;
+            incrDiscIfUpdKO = liveIncrDiscIfUpdKO;
+            currentRowFields = liveRowFields;
+        }
+    }
+
+    /**
+     * @param actualOk
+     *        the number of records affected by the current row
+     */
+    private void updateStatistics(int actualOk)
+    {
+        // check the chance to force the insert when it's a DBOUpdate.
+        if (isInsert && statsOnInsert) {
+            rowInsOk += actualOk;
+        }
+        else {
+            if (actualOk > 0) {
+                rowUpdOk += actualOk;
+            }
+            else if ((actualOk == 0) && incrDiscIfUpdKO) {
+                rowDisc++;
+                dhr.addDiscardCause(new DiscardCause(rowCounter, NO_RECORD_TO_UPDATE_MSG));
+            }
+        }
+    }
+
+    /**
+     * @param sqlStatement
+     *        the statement to execute
+     * @param replay
+     *        if true a batched row is replayed: batched rows never read the
+     *        generated keys
+     * @throws SAXException
+     */
+    private void executeSingleStatement(Statement sqlStatement, boolean replay) throws SAXException
     {
         try {
             ThreadUtils.checkInterrupted(getClass().getSimpleName(), name, logger);
             int actualOk = 0;
-            Statement sqlStatement = sqlStatementInfo.getStatement();
             if (sqlStatement != null) {
                 if (executeQuery) {
                     ((PreparedStatement) sqlStatement).executeQuery();
@@ -1057,7 +1317,7 @@ public abstract class AbstractDBO extends DefaultHandler implements IDBO
                 }
                 else {
                     actualOk = ((PreparedStatement) sqlStatement).executeUpdate();
-                    if (readGeneratedKey) {
+                    if (readGeneratedKey && !replay) {
                         ResultSet rs = sqlStatement.getGeneratedKeys();
                         if (rs.next()) {
                             /*ResultSetMetaData rsm = rs.getMetaData();
@@ -1079,65 +1339,15 @@ public abstract class AbstractDBO extends DefaultHandler implements IDBO
                             logger.debug("Key generated on row " + rowCounter + ": " + generatedKeys);
                         }*/
                     }
-                    if (resetGeneratedKeyID != null) {
+                    if ((resetGeneratedKeyID != null) && !replay) {
                         generatedKeys.remove(GENERATED_KEY_ID + resetGeneratedKeyID);
                     }
                 }
             }
-            // check the chance to force the insert when it's a DBOUpdate.
-            if (isInsert && statsOnInsert) {
-                rowInsOk += actualOk;
-            }
-            else {
-                if (actualOk > 0) {
-                    rowUpdOk += actualOk;
-                }
-                else if ((actualOk == 0) && incrDiscIfUpdKO) {
-                    rowDisc++;
-                    dhr.addDiscardCause(new DiscardCause(rowCounter, NO_RECORD_TO_UPDATE_MSG));
-                }
-            }
+            updateStatistics(actualOk);
         }
         catch (SQLException exc) {
-            rowDisc++;
-            if (transacted) {
-                resultStatus = STATUS_KO;
-                logger.error("SQL Statement Informations:\n" + sqlStatementInfo);
-                logger.error("Record parameters:\n" + dumpCurrentRowFields());
-                if (onlyXSLErrorMsgInTrans && (currentXSLMessage != null)) {
-                    logger.error("SQLException configured as blocking error for the IDBO '" + serviceName + "' on row "
-                            + rowCounter + ".", exc);
-                    throw new SAXException(new DBOException(currentXSLMessage));
-                }
-                throw new SAXException(new DBOException("SQLException error on row " + rowCounter + ": "
-                        + exc.getMessage(), exc));
-            }
-
-            OracleError oraerr = OracleExceptionHandler.handleSQLException(exc);
-            if (isBlockingError(oraerr.getErrorType())) {
-                resultStatus = STATUS_KO;
-                logger.error("SQL Statement Informations:\n" + sqlStatementInfo);
-                logger.error("Record parameters:\n" + dumpCurrentRowFields());
-                logger.error("SQLException configured as blocking error for the IDBO '" + serviceName + "' on row "
-                        + rowCounter + ".", exc);
-                throw new SAXException(new DBOException("SQLException configured as blocking error class on row "
-                        + rowCounter + ": " + exc.getMessage(), exc));
-            }
-
-            // adding the DiscardCause to the DHR...
-            String msg = "";
-            if (onlyXSLErrorMsg && (currentXSLMessage != null)) {
-                msg += currentXSLMessage;
-            }
-            else {
-                msg += exc + " - XSL Message: " + currentXSLMessage;
-            }
-            dhr.addDiscardCause(new DiscardCause(rowCounter, msg));
-
-            resultMessage.append("SQLException error on row ").append(rowCounter).append(": ").append(exc.getMessage());
-            resultMessage.append("SQL Statement Informations:\n").append(sqlStatementInfo);
-            resultMessage.append("Record parameters:\n").append(dumpCurrentRowFields());
-            resultStatus = STATUS_PARTIAL;
+            handleRowError(exc);
         }
         catch (InterruptedException exc) {
             logger.error("DBO[" + name + "] interrupted", exc);
@@ -1148,6 +1358,57 @@ public abstract class AbstractDBO extends DefaultHandler implements IDBO
         }
     }
 
+    /**
+     * Discards the current row, or stops the execution if the error is
+     * blocking.
+     *
+     * @param exc
+     *        the error of the current row
+     * @throws SAXException
+     */
+    private void handleRowError(SQLException exc) throws SAXException
+    {
+        rowDisc++;
+        if (transacted) {
+            resultStatus = STATUS_KO;
+            logger.error("SQL Statement Informations:\n" + sqlStatementInfo);
+            logger.error("Record parameters:\n" + dumpCurrentRowFields());
+            if (onlyXSLErrorMsgInTrans && (currentXSLMessage != null)) {
+                logger.error("SQLException configured as blocking error for the IDBO '" + serviceName + "' on row "
+                        + rowCounter + ".", exc);
+                throw new SAXException(new DBOException(currentXSLMessage));
+            }
+            throw new SAXException(new DBOException("SQLException error on row " + rowCounter + ": "
+                    + exc.getMessage(), exc));
+        }
+
+        OracleError oraerr = OracleExceptionHandler.handleSQLException(exc);
+        if (isBlockingError(oraerr.getErrorType())) {
+            resultStatus = STATUS_KO;
+            logger.error("SQL Statement Informations:\n" + sqlStatementInfo);
+            logger.error("Record parameters:\n" + dumpCurrentRowFields());
+            logger.error("SQLException configured as blocking error for the IDBO '" + serviceName + "' on row "
+                    + rowCounter + ".", exc);
+            throw new SAXException(new DBOException("SQLException configured as blocking error class on row "
+                    + rowCounter + ": " + exc.getMessage(), exc));
+        }
+
+        // adding the DiscardCause to the DHR...
+        String msg = "";
+        if (onlyXSLErrorMsg && (currentXSLMessage != null)) {
+            msg += currentXSLMessage;
+        }
+        else {
+            msg += exc + " - XSL Message: " + currentXSLMessage;
+        }
+        dhr.addDiscardCause(new DiscardCause(rowCounter, msg));
+
+        resultMessage.append("SQLException error on row ").append(rowCounter).append(": ").append(exc.getMessage());
+        resultMessage.append("SQL Statement Informations:\n").append(sqlStatementInfo);
+        resultMessage.append("Record parameters:\n").append(dumpCurrentRowFields());
+        resultStatus = STATUS_PARTIAL;
+    }
+
     /**
      * @param errorType
      * @return if error is blocking
@@ -1250,6 +1511,15 @@ public abstract class AbstractDBO extends DefaultHandler implements IDBO
         this.jdbcConnectionName = jdbcConnectionName;
     }
 
+    /**
+     * @see it.greenvulcano.gvesb.datahandling.IDBO#setStatementCache(it.greenvulcano.gvesb.datahandling.dbo.StatementCache)
+     */
+    @Override
+    public void setStatementCache(StatementCache statementCache)
+    {
+        this.statementCache = statementCache;
+    }
+
     /**
      * @return the current id
      */
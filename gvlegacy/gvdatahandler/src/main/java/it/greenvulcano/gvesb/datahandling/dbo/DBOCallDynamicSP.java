@@ -32,7 +32,6 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
-import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.text.DecimalFormatSymbols;
@@ -393,6 +392,14 @@ public class DBOCallDynamicSP extends AbstractDBO
             return this.statement;
         }
 
+        /**
+         * @return if the stored procedure has output parameters
+         */
+        public boolean hasOutputParameters()
+        {
+            return !this.spOutputParams.isEmpty();
+        }
+
         public String getRowSetBuilderType() {
             return this.rowSetBuilderType;
         }
@@ -1191,6 +1198,7 @@ public class DBOCallDynamicSP extends AbstractDBO
         if ((this.sqlStatementInfo == null) || !getCurrentId().equals(id)) {
             try {
                 if (this.sqlStatementInfo != null) {
+                    executeBatch();
                     this.sqlStatementInfo.close();
                 }
                 this.spCallDescriptor = this.spCallDescriptors.get(id);
@@ -1201,9 +1209,12 @@ public class DBOCallDynamicSP extends AbstractDBO
                 String expandedSQL = PropertiesHandler.expand(this.spCallDescriptor.getStatement(), getCurrentProps(),
                         getInternalConn(), null);
                 logger.debug("expandedSQL stmt: " + expandedSQL);
-                Statement statement = getInternalConn().prepareCall(expandedSQL);
-                this.sqlStatementInfo = new StatementInfo(id, expandedSQL, statement);
-                this.spCallDescriptor.specifyOutputParameter((CallableStatement) statement);
+                this.sqlStatementInfo = prepareCall(id, expandedSQL);
+                this.spCallDescriptor.specifyOutputParameter((CallableStatement) this.sqlStatementInfo.getStatement());
+                // output parameters can't be read from a batch execution
+                if (isBatchEnabled() && !this.spCallDescriptor.hasOutputParameters()) {
+                    this.sqlStatementInfo.enableBatch();
+                }
                 setCurrentId(id);
             }
             catch (SAXException exc) {
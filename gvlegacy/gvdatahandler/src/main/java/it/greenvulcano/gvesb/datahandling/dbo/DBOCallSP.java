@@ -48,7 +48,6 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.SQLXML;
-import java.sql.Statement;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
@@ -375,6 +374,14 @@ public class DBOCallSP extends AbstractDBO
             return statement;
         }
 
+        /**
+         * @return if the stored procedure has output parameters
+         */
+        public boolean hasOutputParameters()
+        {
+            return !spOutputParams.isEmpty();
+        }
+
         /**
          * Specify the output parameter from stored procedure
          * 
@@ -1068,6 +1075,7 @@ public class DBOCallSP extends AbstractDBO
         if ((sqlStatementInfo == null) || !getCurrentId().equals(id)) {
             try {
                 if (sqlStatementInfo != null) {
+                    executeBatch();
                     sqlStatementInfo.close();
                 }
                 spCallDescriptor = spCallDescriptors.get(id);
@@ -1078,9 +1086,12 @@ public class DBOCallSP extends AbstractDBO
                 String expandedSQL = PropertiesHandler.expand(spCallDescriptor.getStatement(), getCurrentProps(),
                         null, getInternalConn());
                 logger.debug("expandedSQL stmt: " + expandedSQL);
-                Statement statement = getInternalConn().prepareCall(expandedSQL);
-                sqlStatementInfo = new StatementInfo(id, expandedSQL, statement);
-                spCallDescriptor.specifyOutputParameter((CallableStatement) statement);
+                sqlStatementInfo = prepareCall(id, expandedSQL);
+                spCallDescriptor.specifyOutputParameter((CallableStatement) sqlStatementInfo.getStatement());
+                // output parameters can't be read from a batch execution
+                if (isBatchEnabled() && !spCallDescriptor.hasOutputParameters()) {
+                    sqlStatementInfo.enableBatch();
+                }
                 setCurrentId(id);
             }
             catch (SAXException exc) {
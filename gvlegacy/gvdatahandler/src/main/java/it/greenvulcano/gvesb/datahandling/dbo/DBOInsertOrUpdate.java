@@ -218,12 +218,10 @@ public class DBOInsertOrUpdate extends AbstractDBO
                 }
                 String expandedSQL = PropertiesHandler.expand(statements.get(id), getCurrentProps(), null,
                         getInternalConn());
-                Statement statement = getInternalConn().prepareStatement(expandedSQL);
-                sqlStatementInfo = new StatementInfo(id, expandedSQL, statement);
+                sqlStatementInfo = prepareStatement(id, expandedSQL, false);
                 expandedSQL = PropertiesHandler.expand(statements_update.get(id), getCurrentProps(), getInternalConn(),
                         null);
-                statement = getInternalConn().prepareStatement(expandedSQL);
-                sqlStatementInfoUpdate = new StatementInfo(id, expandedSQL, statement);
+                sqlStatementInfoUpdate = prepareStatement(id, expandedSQL, false);
                 setCurrentId(id);
             }
             catch (SQLException exc) {
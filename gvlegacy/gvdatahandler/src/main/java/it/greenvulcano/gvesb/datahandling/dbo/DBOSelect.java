@@ -25,6 +25,7 @@ import it.greenvulcano.gvesb.datahandling.dbo.utils.ExtendedRowSetBuilder;
 import it.greenvulcano.gvesb.datahandling.dbo.utils.ResultSetTransformer;
 import it.greenvulcano.gvesb.datahandling.dbo.utils.RowSetBuilder;
 import it.greenvulcano.gvesb.datahandling.dbo.utils.StandardRowSetBuilder;
+import it.greenvulcano.gvesb.datahandling.dbo.utils.StreamRowSetBuilder;
 import it.greenvulcano.gvesb.datahandling.utils.FieldFormatter;
 import it.greenvulcano.gvesb.datahandling.utils.exchandler.oracle.OracleExceptionHandler;
 import it.greenvulcano.util.metadata.PropertiesHandler;
@@ -96,6 +97,9 @@ public class DBOSelect extends AbstractDBO
             if (rowSetBuilderType.equals("extended")) {
                 rowSetBuilder = new ExtendedRowSetBuilder();
             }
+            else if (rowSetBuilderType.equals("stream")) {
+                rowSetBuilder = new StreamRowSetBuilder();
+            }
             else {
                 rowSetBuilder = new StandardRowSetBuilder();
             }
@@ -230,7 +234,15 @@ public class DBOSelect extends AbstractDBO
             numberFormatter.applyPattern(numberFormat);
 
             parser = XMLUtils.getParserInstance();
-            Document doc = rowSetBuilder.createDocument(parser);
+            // the streaming builder writes the rows directly on dataOut
+            StreamRowSetBuilder streamBuilder = null;
+            Document doc = null;
+            if (rowSetBuilder instanceof StreamRowSetBuilder) {
+                streamBuilder = (StreamRowSetBuilder) rowSetBuilder;
+            }
+            else {
+                doc = rowSetBuilder.createDocument(parser);
+            }
             
             rowSetBuilder.setXMLUtils(parser);
             rowSetBuilder.setDateFormatter(dateFormatter);
@@ -239,6 +251,9 @@ public class DBOSelect extends AbstractDBO
             rowSetBuilder.setDecSeparator(decSeparator);
             rowSetBuilder.setGroupSeparator(groupSeparator);
             rowSetBuilder.setNumberFormat(numberFormat);
+            if (streamBuilder != null) {
+                streamBuilder.startDocument(dataOut);
+            }
             
             for (Entry<String, String> entry : statements.entrySet()) {
                 ThreadUtils.checkInterrupted(getClass().getSimpleName(), getName(), logger);
@@ -273,6 +288,9 @@ public class DBOSelect extends AbstractDBO
                             		logger.debug("Formatting query result in JSON");
                             		dataOut.write(jsondata.toString().getBytes());
                             		
+                            	} else if (streamBuilder != null) {
+                            		rowCounter += streamBuilder.build("" + key, rs, keyField, fieldNameToFormatter,
+                                            fieldIdToFormatter);
                             	} else {
                             		rowCounter += rowSetBuilder.build(doc, "" + key, rs, keyField, fieldNameToFormatter, 
                                             fieldIdToFormatter);
@@ -311,7 +329,9 @@ public class DBOSelect extends AbstractDBO
                     }
                 }
             }
-           
+            if (streamBuilder != null) {
+                streamBuilder.endDocument();
+            }
 
             logger.debug("End execution of DB data read through " + dboclass);
         }
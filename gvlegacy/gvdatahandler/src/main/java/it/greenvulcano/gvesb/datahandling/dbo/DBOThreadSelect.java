@@ -28,6 +28,7 @@ import it.greenvulcano.gvesb.datahandling.utils.FieldFormatter;
 import it.greenvulcano.gvesb.datahandling.utils.exchandler.oracle.OracleExceptionHandler;
 import it.greenvulcano.gvesb.j2ee.db.connections.JDBCConnectionBuilder;
 import it.greenvulcano.util.metadata.PropertiesHandler;
+import it.greenvulcano.util.thread.BaseThreadFactory;
 import it.greenvulcano.util.thread.ThreadUtils;
 import it.greenvulcano.util.xml.XMLUtils;
 
@@ -36,14 +37,27 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.Vector;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.w3c.dom.Document;
@@ -54,6 +68,10 @@ import org.w3c.dom.NodeList;
 /**
  * IDBO Class specialized in selecting data from the DB using multiple Threads.
  * The selected data are formatted as RowSet XML document.
+ * The statements are executed on a bounded thread pool shared by the IDBOs of
+ * the same DBOBuilder (sized by the <code>select-parallelism</code> attribute,
+ * default the number of available processors) and their results are merged
+ * in configuration order.
  *
  * @version 4.1.0 May 21, 2020
  * @author GreenVulcano Developer Team
@@ -61,32 +79,39 @@ import org.w3c.dom.NodeList;
 public class DBOThreadSelect extends AbstractDBO
 {
 
-    private class ThreadSelect implements Runnable
+    /**
+     * Executes a single select statement on its own connection, building
+     * a local RowSet fragment merged later in statement order.
+     */
+    private class SelectTask
     {
-        private String              stmt             = null;
-        private Document            doc              = null;
-        private Object              key              = null;
-        private RowSetBuilder       rowSetBuilder    = null;
-        private Map<String, Object> props            = null;
-
-        private final static int    NEW              = 0;
-        private final static int    RUNNING          = 1;
-        private final static int    TERM             = 2;
-        private final static int    ERROR            = 3;
-
-        private int                 state            = NEW;
-        private Throwable           throwable        = null;
-        private long                rowThreadCounter = 0;
-
-        
-        @Override
-        public void run()
+        private final String              key;
+        private final String              stmt;
+        private final RowSetBuilder       rowSetBuilder;
+        private final Map<String, Object> props;
+
+        private volatile Statement        sqlStatement = null;
+        private volatile boolean          cancelled    = false;
+
+        private Document                  localDoc     = null;
+        private long                      rowThreadCounter = 0;
+        private long                      elapsed      = 0;
+
+        private SelectTask(String key, String stmt, RowSetBuilder rowSetBuilder, Map<String, Object> props)
+        {
+            this.key = key;
+            this.stmt = stmt;
+            this.rowSetBuilder = rowSetBuilder;
+            this.props = props;
+        }
+
+        private SelectTask execute()
         {
             Thread thd = Thread.currentThread();
-            logger.debug("Thread " + thd.getName() + " started.");
-            state = RUNNING;
+            logger.debug("Select [" + key + "] started on thread " + thd.getName() + ".");
+            long start = System.currentTimeMillis();
+            XMLUtils parser = null;
             Connection conn = null;
-            Statement sqlStatement = null;
             StatementInfo sqlStatementInfo = null;
             ResultSet rs = null;
             try {
@@ -100,55 +125,43 @@ public class DBOThreadSelect extends AbstractDBO
                     fieldIdToFormatter = statIdToIdFormatters.get(key);
                 }
 
-                if (stmt != null) {
+                if ((stmt != null) && !cancelled) {
                     conn = getConnection();
                     String expandedSQL = PropertiesHandler.expand(stmt, props, null, conn);
                     sqlStatement = conn.createStatement();
                     logger.debug("Executing select statement: " + expandedSQL + ".");
-                    sqlStatementInfo = new StatementInfo(key.toString(), expandedSQL, sqlStatement);
+                    sqlStatementInfo = new StatementInfo(key, expandedSQL, sqlStatement);
+                    if (cancelled) {
+                        throw new CancellationException("Select [" + key + "] cancelled");
+                    }
                     rs = sqlStatement.executeQuery(expandedSQL);
                     if (rs != null) {
-                        Document localDoc = rowSetBuilder.createDocument(null);
-                        try {
-                            rowThreadCounter += rowSetBuilder.build(localDoc, "" + key, rs, keyField, 
-                                    fieldNameToFormatter, fieldIdToFormatter);
-                        }
-                        finally {
-                            if (rs != null) {
-                                try {
-                                    rs.close();
-                                }
-                                catch (Exception exc) {
-                                    // do nothing
-                                }
-                                rs = null;
-                            }
-                        }
-                        if (!thd.isInterrupted()) {
-                            synchronized (doc) {
-                                Element docRoot = doc.getDocumentElement();
-                                Element localDocRoot = localDoc.getDocumentElement();
-                                NodeList nodes = localDocRoot.getChildNodes();
-                                for (int i = 0; i < nodes.getLength(); i++) {
-                                    Node dataNode = doc.importNode(nodes.item(i), true);
-                                    docRoot.appendChild(dataNode);
-                                }
-                            }
-                        }
+                        // XMLUtils and formatters aren't thread safe
+                        parser = XMLUtils.getParserInstance();
+                        rowSetBuilder.setXMLUtils(parser);
+                        rowSetBuilder.setDateFormatter((SimpleDateFormat) dateFormatter.clone());
+                        rowSetBuilder.setNumberFormatter((DecimalFormat) numberFormatter.clone());
+                        localDoc = rowSetBuilder.createDocument(parser);
+                        rowThreadCounter += rowSetBuilder.build(localDoc, key, rs, keyField,
+                                fieldNameToFormatter, fieldIdToFormatter);
                     }
                 }
+                return this;
             }
             catch (SQLException exc) {
-                logger.error("Error on execution of " + dboclass + " with name [" + getName() + "]", exc);
-                logger.error("SQL Statement Informations:\n" + sqlStatementInfo);
-                OracleExceptionHandler.handleSQLException(exc).printLoggerInfo();
-                state = ERROR;
-                throwable = exc;
+                if (!cancelled) {
+                    logger.error("Error on execution of " + dboclass + " with name [" + getName() + "]", exc);
+                    logger.error("SQL Statement Informations:\n" + sqlStatementInfo);
+                    OracleExceptionHandler.handleSQLException(exc).printLoggerInfo();
+                }
+                throw new CompletionException(exc);
+            }
+            catch (CancellationException exc) {
+                throw exc;
             }
             catch (Throwable exc) {
-                logger.error("Thread " + thd.getName() + " terminated with error.", exc);
-                state = ERROR;
-                throwable = exc;
+                logger.error("Select [" + key + "] terminated with error.", exc);
+                throw new CompletionException(exc);
             }
             finally {
                 if (rs != null) {
@@ -159,15 +172,14 @@ public class DBOThreadSelect extends AbstractDBO
                         // do nothing
                     }
                 }
+                sqlStatement = null;
                 if (sqlStatementInfo != null) {
                     try {
-                    	sqlStatementInfo.close();
+                        sqlStatementInfo.close();
                     }
                     catch (Exception exc) {
                         // do nothing
                     }
-                    sqlStatementInfo = null;
-                    sqlStatement = null;
                 }
                 if (conn != null) {
                     try {
@@ -177,57 +189,157 @@ public class DBOThreadSelect extends AbstractDBO
                         // do nothing
                     }
                 }
-                logger.debug("Thread " + thd.getName() + " terminated.");
-                if (state != ERROR) {
-                    state = TERM;
+                XMLUtils.releaseParserInstance(parser);
+                elapsed = System.currentTimeMillis() - start;
+                statistics.record(key, elapsed);
+                logger.debug("Select [" + key + "] terminated in " + elapsed + " ms, read " + rowThreadCounter
+                        + " rows.");
+            }
+        }
+
+        /**
+         * Cancels the statement, if running.
+         */
+        private void cancel()
+        {
+            cancelled = true;
+            Statement current = sqlStatement;
+            if (current != null) {
+                try {
+                    logger.debug("Cancelling select [" + key + "].");
+                    current.cancel();
                 }
-                synchronized (synchObj) {
-                    synchObj.notify();
+                catch (Exception exc) {
+                    logger.warn("Error cancelling select [" + key + "]: " + exc);
                 }
             }
         }
 
-        private void setKey(Object key)
+        private Connection getConnection() throws Exception
         {
-            this.key = key;
+            return JDBCConnectionBuilder.getConnection(getJdbcConnectionName());
         }
 
-        private void setDocument(Document doc)
+        private void releaseConnection(Connection conn) throws Exception
         {
-            this.doc = doc;
+            JDBCConnectionBuilder.releaseConnection(getJdbcConnectionName(), conn);
         }
+    }
 
-        private void setProps(Map<String, Object> props)
+    /**
+     * Per-statement latency statistics.
+     */
+    public static class SelectStatistics
+    {
+        private final Map<String, long[]> stats = new LinkedHashMap<String, long[]>();
+
+        private synchronized void record(String key, long elapsed)
         {
-            this.props = props;
+            long[] s = stats.get(key);
+            if (s == null) {
+                s = new long[3];
+                stats.put(key, s);
+            }
+            s[0]++;
+            s[1] += elapsed;
+            s[2] = Math.max(s[2], elapsed);
         }
 
-        private void setStatement(String stmt)
+        /**
+         * @param key
+         *        the statement id
+         * @return the number of executions of the statement
+         */
+        public synchronized long getCount(String key)
         {
-            this.stmt = stmt;
+            long[] s = stats.get(key);
+            return (s == null) ? 0 : s[0];
         }
-        
-        private void setRowSetBuilder(RowSetBuilder rowSetBuilder)
+
+        /**
+         * @param key
+         *        the statement id
+         * @return the average execution time of the statement, in ms
+         */
+        public synchronized long getAverageTime(String key)
         {
-            this.rowSetBuilder = rowSetBuilder;
+            long[] s = stats.get(key);
+            return ((s == null) || (s[0] == 0)) ? 0 : s[1] / s[0];
         }
 
-        private Connection getConnection() throws Exception
+        /**
+         * @param key
+         *        the statement id
+         * @return the maximum execution time of the statement, in ms
+         */
+        public synchronized long getMaxTime(String key)
         {
-            return JDBCConnectionBuilder.getConnection(getJdbcConnectionName());
+            long[] s = stats.get(key);
+            return (s == null) ? 0 : s[2];
         }
 
-        private void releaseConnection(Connection conn) throws Exception
+        @Override
+        public synchronized String toString()
         {
-            JDBCConnectionBuilder.releaseConnection(getJdbcConnectionName(), conn);
+            StringBuilder sb = new StringBuilder();
+            for (Entry<String, long[]> entry : stats.entrySet()) {
+                long[] s = entry.getValue();
+                sb.append("statement[").append(entry.getKey()).append("]: count=").append(s[0]).append(" avg=")
+                  .append(s[0] == 0 ? 0 : s[1] / s[0]).append("ms max=").append(s[2]).append("ms\n");
+            }
+            return sb.toString();
         }
+    }
 
-        /**
-         * @return the rowThreadCounter
-         */
-        public long getRowThreadCounter()
+    /**
+     * Bounded executor shared by the DBOThreadSelect instances of the same
+     * DBOBuilder, and shut down when the last of them is destroyed.
+     */
+    private static final class SharedExecutor
+    {
+        private final ThreadPoolExecutor executor;
+        private int                      users = 0;
+
+        private SharedExecutor(ThreadPoolExecutor executor)
         {
-            return rowThreadCounter;
+            this.executor = executor;
+        }
+    }
+
+    private static final Map<String, SharedExecutor> executors = new HashMap<String, SharedExecutor>();
+
+    private static synchronized ExecutorService acquireExecutor(String builderName, int parallelism)
+    {
+        SharedExecutor shared = executors.get(builderName);
+        if (shared == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new BaseThreadFactory("DBOThreadSelect#" + builderName, true));
+            executor.allowCoreThreadTimeOut(true);
+            shared = new SharedExecutor(executor);
+            executors.put(builderName, shared);
+        }
+        else if (shared.executor.getMaximumPoolSize() != parallelism) {
+            // select-parallelism changed on configuration reload
+            logger.debug("Resizing DBOThreadSelect#" + builderName + " executor to " + parallelism + " threads");
+            if (parallelism > shared.executor.getMaximumPoolSize()) {
+                shared.executor.setMaximumPoolSize(parallelism);
+                shared.executor.setCorePoolSize(parallelism);
+            }
+            else {
+                shared.executor.setCorePoolSize(parallelism);
+                shared.executor.setMaximumPoolSize(parallelism);
+            }
+        }
+        shared.users++;
+        return shared.executor;
+    }
+
+    private static synchronized void releaseExecutor(String builderName)
+    {
+        SharedExecutor shared = executors.get(builderName);
+        if ((shared != null) && (--shared.users <= 0)) {
+            executors.remove(builderName);
+            shared.executor.shutdown();
         }
     }
 
@@ -242,7 +354,10 @@ public class DBOThreadSelect extends AbstractDBO
     private static final Logger                      logger                 = org.slf4j.LoggerFactory.getLogger(DBOThreadSelect.class);
 
     private RowSetBuilder                            rowSetBuilder          = null;
-    private final Object                             synchObj               = new Object();
+    private final List<String>                       statementIds           = new ArrayList<String>();
+    private final SelectStatistics                   statistics             = new SelectStatistics();
+    private ExecutorService                          executor               = null;
+    private String                                   executorName           = null;
 
     /**
      *
@@ -273,6 +388,15 @@ public class DBOThreadSelect extends AbstractDBO
             rowSetBuilder.setName(getName());
             rowSetBuilder.setLogger(logger);
 
+            String builderName = XMLConfig.get(config, "../@name", getName());
+            int parallelism = XMLConfig.getInteger(config, "../@select-parallelism",
+                    Runtime.getRuntime().availableProcessors());
+            if (parallelism < 1) {
+                parallelism = 1;
+            }
+            executor = acquireExecutor(builderName, parallelism);
+            executorName = builderName;
+
             NodeList stmts = XMLConfig.getNodeList(config, "statement[@type='select']");
             String id = null;
             String keys = null;
@@ -285,6 +409,7 @@ public class DBOThreadSelect extends AbstractDBO
                     id = Integer.toString(i);
                 }
                 statements.put(id, XMLConfig.getNodeValue(stmt));
+                statementIds.add(id);
                 if (keys != null) {
                     Set<Integer> s = new HashSet<Integer>();
                     StringTokenizer sTok = new StringTokenizer(keys, ",");
@@ -374,7 +499,6 @@ public class DBOThreadSelect extends AbstractDBO
     public void execute(OutputStream dataOut, Connection conn, Map<String, Object> props) throws DBOException,
             InterruptedException {
         XMLUtils parser = null;
-        Throwable throwable = null;
 
         try {
             prepare();
@@ -413,82 +537,54 @@ public class DBOThreadSelect extends AbstractDBO
             rowSetBuilder.setNumberFormat(numberFormat);
             
 
-            Vector<ThreadSelect> thrSelVector = new Vector<ThreadSelect>();
-            Vector<Thread> thrVector = new Vector<Thread>();
-            for (Entry<String, String> entry : statements.entrySet()) {
-                Object key = entry.getKey();
-                String stmt = entry.getValue();
-                ThreadSelect ts = new ThreadSelect();
-                ts.setDocument(doc);
-                ts.setStatement(stmt);
-                ts.setKey(key);
-                ts.setProps(localProps);
-                ts.setRowSetBuilder(rowSetBuilder.getCopy());
-                thrSelVector.add(ts);
-
-                Thread t = new Thread(ts);
-                thrVector.add(t);
-                t.start();
+            List<SelectTask> tasks = new ArrayList<SelectTask>();
+            for (String key : statementIds) {
+                tasks.add(new SelectTask(key, statements.get(key), rowSetBuilder.getCopy(), localProps));
             }
-
-            try {
-                Thread thd = Thread.currentThread();
-                // wait for all threads are terminated
-                boolean finished = false;
-                boolean error = false;
-                while (!finished && !thd.isInterrupted()) {
-                    int s = thrSelVector.size();
-                    int idx = 0;
-                    for (int i = 0; i < s; i++) {
-                        ThreadSelect to = thrSelVector.get(idx);
-                        if (error) {
-                            thrVector.elementAt(i).interrupt();
-                        }
-                        switch (to.state) {
-                            case ThreadSelect.TERM :{
-                                thrSelVector.remove(idx);
-                                rowCounter += to.getRowThreadCounter();
-                            }
-                                break;
-                            case ThreadSelect.ERROR :{
-                                thrSelVector.remove(idx);
-                                rowCounter += to.getRowThreadCounter();
-                                error = true;
-                                throwable = to.throwable;
-                                idx = 0;
-                            }
-                                break;
-                            default :
-                                idx++;
-                        }
-                    }
-                    if (thrSelVector.size() == 0) {
-                        finished = true;
-                    }
-                    else {
-                        try {
-                            synchronized (synchObj) {
-                                synchObj.wait(1000);
-                            }
-                        }
-                        catch (InterruptedException exc) {
-                            logger.error("DBOThreadSelect[" + getName() + "] interrupted", exc);
-                            throw exc;
+            AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+            List<CompletableFuture<SelectTask>> futures = new ArrayList<CompletableFuture<SelectTask>>();
+            for (SelectTask task : tasks) {
+                CompletableFuture<SelectTask> future = CompletableFuture.supplyAsync(task::execute, executor);
+                // on first failure cancel the still running selects
+                future.whenComplete((t, exc) -> {
+                    if (exc != null) {
+                        if (!task.cancelled) {
+                            failure.compareAndSet(null, (exc instanceof CompletionException) && (exc.getCause() != null)
+                                    ? exc.getCause()
+                                    : exc);
                         }
+                        cancelAll(tasks);
                     }
-                }
+                });
+                futures.add(future);
             }
-            finally {
-                thrSelVector.clear();
-                for (Thread thread : thrVector) {
-                    thread.interrupt();
+
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).get();
+            }
+            catch (InterruptedException exc) {
+                logger.error("DBOThreadSelect[" + getName() + "] interrupted", exc);
+                cancelAll(tasks);
+                throw exc;
+            }
+            catch (ExecutionException exc) {
+                Throwable cause = failure.get();
+                throw (cause != null) ? cause : exc.getCause();
+            }
+
+            // merge in statement order on the calling thread
+            Element docRoot = doc.getDocumentElement();
+            for (SelectTask task : tasks) {
+                rowCounter += task.rowThreadCounter;
+                if (task.localDoc != null) {
+                    NodeList nodes = task.localDoc.getDocumentElement().getChildNodes();
+                    for (int i = 0; i < nodes.getLength(); i++) {
+                        docRoot.appendChild(doc.importNode(nodes.item(i), true));
+                    }
                 }
-                thrVector.clear();
             }
+            tasks.clear();
 
-        	if (throwable != null) {
-        	   throw throwable;
-        	}
             byte[] dataDOM = parser.serializeDOMToByteArray(doc);
             dataOut.write(dataDOM);
 
@@ -508,6 +604,21 @@ public class DBOThreadSelect extends AbstractDBO
         }
     }
 
+    /**
+     * @return the per-statement execution statistics
+     */
+    public SelectStatistics getStatistics()
+    {
+        return statistics;
+    }
+
+    private static void cancelAll(List<SelectTask> tasks)
+    {
+        for (SelectTask task : tasks) {
+            task.cancel();
+        }
+    }
+
     /**
      * @see it.greenvulcano.gvesb.datahandling.dbo.AbstractDBO#destroy()
      */
@@ -515,6 +626,11 @@ public class DBOThreadSelect extends AbstractDBO
     public void destroy()
     {
         super.destroy();
+        if (executorName != null) {
+            releaseExecutor(executorName);
+            executorName = null;
+            executor = null;
+        }
     }
 
 }
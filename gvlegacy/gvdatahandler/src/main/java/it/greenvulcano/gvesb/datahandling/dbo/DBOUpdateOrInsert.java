@@ -36,7 +36,6 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.SQLXML;
-import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.text.DecimalFormatSymbols;
@@ -214,13 +213,11 @@ public class DBOUpdateOrInsert extends AbstractDBO
                 }
                 String expandedSQL = PropertiesHandler.expand(statements.get(id), getCurrentProps(), null,
                         getInternalConn());
-                Statement statement = getInternalConn().prepareStatement(expandedSQL);
-                sqlStatementInfo = new StatementInfo(id, expandedSQL, statement);
+                sqlStatementInfo = prepareStatement(id, expandedSQL, false);
                 expandedSQL = PropertiesHandler.expand(statements_update.get(id), getCurrentProps(), getInternalConn(),
                         null);
                 if (expandedSQL != null) {
-                    statement = getInternalConn().prepareStatement(expandedSQL);
-                    sqlStatementInfoUpdate = new StatementInfo(id, expandedSQL, statement);
+                    sqlStatementInfoUpdate = prepareStatement(id, expandedSQL, false);
                 }
                 setCurrentId(id);
             }
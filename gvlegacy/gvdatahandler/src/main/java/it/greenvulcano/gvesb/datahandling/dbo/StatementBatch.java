@@ -0,0 +1,326 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ *
+ * This file is part of GreenVulcano ESB.
+ *
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package it.greenvulcano.gvesb.datahandling.dbo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Accumulates the rows of a <code>PreparedStatement</code> executed in JDBC
+ * batch mode.
+ * The statement handed to the IDBO is a proxy that records every parameter
+ * binding of the current row, so that the rows of a failed batch can be
+ * replayed one by one on the real statement.
+ *
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ *
+ */
+public class StatementBatch
+{
+    /**
+     * Snapshot of a row added to the batch.
+     */
+    public static class BatchRow
+    {
+        private final long           rowCounter;
+        private final String         xslMessage;
+        private final boolean        statsOnInsert;
+        private final boolean        incrDiscIfUpdKO;
+        private final Vector<Object> rowFields;
+        private final List<Binding>  bindings;
+
+        BatchRow(long rowCounter, String xslMessage, boolean statsOnInsert, boolean incrDiscIfUpdKO,
+                Vector<Object> rowFields, List<Binding> bindings)
+        {
+            this.rowCounter = rowCounter;
+            this.xslMessage = xslMessage;
+            this.statsOnInsert = statsOnInsert;
+            this.incrDiscIfUpdKO = incrDiscIfUpdKO;
+            this.rowFields = rowFields;
+            this.bindings = bindings;
+        }
+
+        /**
+         * @return the row number in the input RowSet
+         */
+        public long getRowCounter()
+        {
+            return rowCounter;
+        }
+
+        /**
+         * @return the XSL message bound to the row
+         */
+        public String getXslMessage()
+        {
+            return xslMessage;
+        }
+
+        /**
+         * @return the statistics mode of the row
+         */
+        public boolean isStatsOnInsert()
+        {
+            return statsOnInsert;
+        }
+
+        /**
+         * @return if the row must be discarded when nothing is updated
+         */
+        public boolean isIncrDiscIfUpdKO()
+        {
+            return incrDiscIfUpdKO;
+        }
+
+        /**
+         * @return the row parameter values, reported when error occurs
+         */
+        public Vector<Object> getRowFields()
+        {
+            return rowFields;
+        }
+    }
+
+    /**
+     * A recorded parameter binding. The stream parameters are marked when
+     * recorded and rewound when replayed: the streams not supporting mark
+     * can't be replayed.
+     */
+    private static class Binding
+    {
+        private final Method   method;
+        private final Object[] args;
+        private boolean        replayable = true;
+
+        Binding(Method method, Object[] args)
+        {
+            this.method = method;
+            this.args = args;
+            for (Object arg : args) {
+                try {
+                    if (arg instanceof InputStream) {
+                        if (((InputStream) arg).markSupported()) {
+                            ((InputStream) arg).mark(Integer.MAX_VALUE);
+                        }
+                        else {
+                            replayable = false;
+                        }
+                    }
+                    else if (arg instanceof Reader) {
+                        if (((Reader) arg).markSupported()) {
+                            ((Reader) arg).mark(Integer.MAX_VALUE);
+                        }
+                        else {
+                            replayable = false;
+                        }
+                    }
+                }
+                catch (IOException exc) {
+                    replayable = false;
+                }
+            }
+        }
+
+        void apply(PreparedStatement statement) throws SQLException
+        {
+            if (!replayable) {
+                throw new SQLException("Cannot replay the row: parameter stream not rewindable");
+            }
+            for (Object arg : args) {
+                try {
+                    if (arg instanceof InputStream) {
+                        ((InputStream) arg).reset();
+                    }
+                    else if (arg instanceof Reader) {
+                        ((Reader) arg).reset();
+                    }
+                }
+                catch (IOException exc) {
+                    throw new SQLException("Cannot rewind parameter stream for row replay", exc);
+                }
+            }
+            try {
+                method.invoke(statement, args);
+            }
+            catch (InvocationTargetException exc) {
+                if (exc.getCause() instanceof SQLException) {
+                    throw (SQLException) exc.getCause();
+                }
+                throw new SQLException(exc.getCause());
+            }
+            catch (IllegalAccessException exc) {
+                throw new SQLException(exc);
+            }
+        }
+    }
+
+    private final PreparedStatement statement;
+    private final PreparedStatement recordingStatement;
+    private List<Binding>           currentBindings = new ArrayList<Binding>();
+    private List<BatchRow>          rows            = new ArrayList<BatchRow>();
+
+    /**
+     * @param statement
+     *        the real statement
+     */
+    public StatementBatch(PreparedStatement statement)
+    {
+        this.statement = statement;
+        Class<?> itf = (statement instanceof CallableStatement) ? CallableStatement.class : PreparedStatement.class;
+        recordingStatement = (PreparedStatement) Proxy.newProxyInstance(StatementBatch.class.getClassLoader(),
+                new Class<?>[]{itf}, new RecordingHandler());
+    }
+
+    /**
+     * @return the real statement
+     */
+    public PreparedStatement getStatement()
+    {
+        return statement;
+    }
+
+    /**
+     * @return the statement recording the parameter bindings
+     */
+    public PreparedStatement getRecordingStatement()
+    {
+        return recordingStatement;
+    }
+
+    /**
+     * Adds the current row to the batch.
+     *
+     * @param rowCounter
+     * @param xslMessage
+     * @param statsOnInsert
+     * @param incrDiscIfUpdKO
+     * @param rowFields
+     * @throws SQLException
+     */
+    public void addRow(long rowCounter, String xslMessage, boolean statsOnInsert, boolean incrDiscIfUpdKO,
+            Vector<Object> rowFields) throws SQLException
+    {
+        statement.addBatch();
+        rows.add(new BatchRow(rowCounter, xslMessage, statsOnInsert, incrDiscIfUpdKO, new Vector<Object>(rowFields),
+                currentBindings));
+        currentBindings = new ArrayList<Binding>();
+    }
+
+    /**
+     * @return the number of rows waiting for execution
+     */
+    public int size()
+    {
+        return rows.size();
+    }
+
+    /**
+     * Removes and returns the rows waiting for execution.
+     *
+     * @return the pending rows, in insertion order
+     */
+    public List<BatchRow> drain()
+    {
+        List<BatchRow> pending = rows;
+        rows = new ArrayList<BatchRow>();
+        return pending;
+    }
+
+    /**
+     * Rebinds the parameters of the given row on the real statement.
+     *
+     * @param row
+     * @throws SQLException
+     */
+    public void rebind(BatchRow row) throws SQLException
+    {
+        statement.clearParameters();
+        for (Binding binding : row.bindings) {
+            binding.apply(statement);
+        }
+    }
+
+    /**
+     * Rebinds the parameters of the row not yet added to the batch on the real
+     * statement.
+     *
+     * @throws SQLException
+     */
+    public void rebindCurrent() throws SQLException
+    {
+        statement.clearParameters();
+        for (Binding binding : currentBindings) {
+            binding.apply(statement);
+        }
+    }
+
+    /**
+     * Discards the rows waiting for execution.
+     */
+    public void clear()
+    {
+        rows.clear();
+        try {
+            statement.clearBatch();
+        }
+        catch (Exception exc) {
+            // do nothing
+        }
+    }
+
+    /**
+     * Delegates every call to the real statement, recording the parameter
+     * setters (setXxx(index|name, value[, ...])) of the current row.
+     * The rows are replayed on the real statement, so the executions seen
+     * here are always the ones of the current row.
+     */
+    private class RecordingHandler implements InvocationHandler
+    {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            String name = method.getName();
+            if (name.startsWith("set") && (args != null) && (args.length >= 2)) {
+                currentBindings.add(new Binding(method, args));
+            }
+            else if ("clearParameters".equals(name) || name.startsWith("execute")) {
+                currentBindings.clear();
+            }
+            try {
+                return method.invoke(statement, args);
+            }
+            catch (InvocationTargetException exc) {
+                throw exc.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ *
+ * This file is part of GreenVulcano ESB.
+ *
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package it.greenvulcano.gvesb.datahandling.dbo;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+
+/**
+ * Per-connection LRU cache of the statements prepared by the IDBOs.
+ * The statements are keyed by expanded SQL text and preparation mode and are
+ * reused by the IDBOs of a DBOBuilder execution while the connection it got
+ * from the pool is checked out.
+ * The statements are prepared through, and cached by, the connection handed
+ * out by the pool, so that the pool keeps tracking them; they are closed by
+ * {@link #closeStatements(Connection)} before the connection is given back.
+ * The reuse across checkouts is left to the statement pooling of the pool
+ * (e.g. <code>poolPreparedStatements</code> of Commons DBCP).
+ * A statement is removed from the cache while in use and given back on
+ * <code>StatementInfo.close()</code>; the least recently used statements
+ * exceeding the maximum size are closed.
+ *
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ *
+ */
+public class StatementCache
+{
+    private static final Logger logger        = org.slf4j.LoggerFactory.getLogger(StatementCache.class);
+
+    private static final int    PREPARED      = 0;
+    private static final int    GENERATED_KEY = 1;
+    private static final int    CALLABLE      = 2;
+
+    /**
+     * Cache key: expanded SQL plus preparation mode.
+     */
+    private static class Key
+    {
+        private final String sql;
+        private final int    mode;
+
+        Key(String sql, int mode)
+        {
+            this.sql = sql;
+            this.mode = mode;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (31 * sql.hashCode()) + mode;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return (mode == other.mode) && sql.equals(other.sql);
+        }
+    }
+
+    private final int                                        maxSize;
+    private final Map<Connection, LinkedHashMap<Key, Statement>> cache = new IdentityHashMap<Connection, LinkedHashMap<Key, Statement>>();
+    private final Map<Statement, Key>                        inUse     = new IdentityHashMap<Statement, Key>();
+    private final Map<Statement, Connection>                 owners    = new IdentityHashMap<Statement, Connection>();
+
+    private long                                             hits      = 0;
+    private long                                             misses    = 0;
+    private long                                             evictions = 0;
+
+    /**
+     * @param maxSize
+     *        the maximum number of statements cached per connection
+     */
+    public StatementCache(int maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the maximum number of statements cached per connection
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * @param conn
+     * @param sql
+     * @param generatedKeys
+     *        if true the statement is prepared with
+     *        <code>Statement.RETURN_GENERATED_KEYS</code>
+     * @return a cached or newly prepared statement
+     * @throws SQLException
+     */
+    public PreparedStatement prepareStatement(Connection conn, String sql, boolean generatedKeys)
+            throws SQLException
+    {
+        Key key = new Key(sql, generatedKeys ? GENERATED_KEY : PREPARED);
+        PreparedStatement statement = (PreparedStatement) lookup(conn, key);
+        if (statement == null) {
+            statement = generatedKeys
+                    ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : conn.prepareStatement(sql);
+            checkout(statement, key, conn);
+        }
+        return statement;
+    }
+
+    /**
+     * @param conn
+     * @param sql
+     * @return a cached or newly prepared callable statement
+     * @throws SQLException
+     */
+    public CallableStatement prepareCall(Connection conn, String sql) throws SQLException
+    {
+        Key key = new Key(sql, CALLABLE);
+        CallableStatement statement = (CallableStatement) lookup(conn, key);
+        if (statement == null) {
+            statement = conn.prepareCall(sql);
+            checkout(statement, key, conn);
+        }
+        return statement;
+    }
+
+    /**
+     * Gives back a statement obtained from this cache. Statements not handed
+     * out by the cache, or whose connection is closed, are closed.
+     *
+     * @param statement
+     */
+    public void release(Statement statement)
+    {
+        Key key = null;
+        Connection conn = null;
+        Statement evicted = null;
+        synchronized (this) {
+            key = inUse.remove(statement);
+            conn = owners.get(statement);
+        }
+        try {
+            if ((key == null) || (conn == null) || statement.isClosed() || conn.isClosed()) {
+                forget(statement);
+                close(statement);
+                return;
+            }
+            statement.clearParameters();
+            statement.clearWarnings();
+            synchronized (this) {
+                LinkedHashMap<Key, Statement> stmts = cache.get(conn);
+                if (stmts == null) {
+                    stmts = new LinkedHashMap<Key, Statement>(16, 0.75f, true);
+                    cache.put(conn, stmts);
+                }
+                evicted = stmts.put(key, statement);
+                if (stmts.size() > maxSize) {
+                    Iterator<Statement> i = stmts.values().iterator();
+                    evicted = i.next();
+                    i.remove();
+                    evictions++;
+                }
+            }
+        }
+        catch (SQLException exc) {
+            logger.debug("Error releasing cached statement, closing it", exc);
+            evicted = statement;
+        }
+        if (evicted != null) {
+            forget(evicted);
+            close(evicted);
+        }
+    }
+
+    /**
+     * Closes the statements cached for the given connection, to be called
+     * before the connection is given back to the pool.
+     *
+     * @param conn
+     */
+    public void closeStatements(Connection conn)
+    {
+        if (conn == null) {
+            return;
+        }
+        LinkedHashMap<Key, Statement> stmts = null;
+        synchronized (this) {
+            stmts = cache.remove(conn);
+            if (stmts != null) {
+                for (Statement statement : stmts.values()) {
+                    owners.remove(statement);
+                }
+            }
+        }
+        if (stmts != null) {
+            for (Statement statement : stmts.values()) {
+                close(statement);
+            }
+        }
+    }
+
+    /**
+     * Closes all the cached statements.
+     */
+    public void clear()
+    {
+        synchronized (this) {
+            for (LinkedHashMap<Key, Statement> stmts : cache.values()) {
+                for (Statement statement : stmts.values()) {
+                    owners.remove(statement);
+                    close(statement);
+                }
+            }
+            cache.clear();
+        }
+    }
+
+    /**
+     * @return the number of statements reused
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return the number of statements prepared
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * @return the number of statements closed because the cache was full
+     */
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * @return the number of cached statements
+     */
+    public synchronized int size()
+    {
+        int size = 0;
+        for (LinkedHashMap<Key, Statement> stmts : cache.values()) {
+            size += stmts.size();
+        }
+        return size;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public synchronized String toString()
+    {
+        return "StatementCache [maxSize=" + maxSize + ", hits=" + hits + ", misses=" + misses + ", evictions="
+                + evictions + ", connections=" + cache.size() + "]";
+    }
+
+    private Statement lookup(Connection conn, Key key) throws SQLException
+    {
+        Statement statement = null;
+        synchronized (this) {
+            LinkedHashMap<Key, Statement> stmts = cache.get(conn);
+            if (stmts != null) {
+                statement = stmts.remove(key);
+            }
+        }
+        if ((statement != null) && statement.isClosed()) {
+            forget(statement);
+            statement = null;
+        }
+        synchronized (this) {
+            if (statement != null) {
+                hits++;
+                inUse.put(statement, key);
+            }
+            else {
+                misses++;
+                purgeClosed();
+            }
+        }
+        return statement;
+    }
+
+    private synchronized void checkout(Statement statement, Key key, Connection conn)
+    {
+        inUse.put(statement, key);
+        owners.put(statement, conn);
+    }
+
+    private synchronized void forget(Statement statement)
+    {
+        owners.remove(statement);
+    }
+
+    /**
+     * Drops the statements of the connections closed without calling
+     * {@link #closeStatements(Connection)}.
+     */
+    private void purgeClosed()
+    {
+        Iterator<Entry<Connection, LinkedHashMap<Key, Statement>>> i = cache.entrySet().iterator();
+        while (i.hasNext()) {
+            Entry<Connection, LinkedHashMap<Key, Statement>> entry = i.next();
+            boolean closed = true;
+            try {
+                closed = entry.getKey().isClosed();
+            }
+            catch (SQLException exc) {
+                // do nothing
+            }
+            if (closed) {
+                for (Statement statement : entry.getValue().values()) {
+                    owners.remove(statement);
+                    close(statement);
+                }
+                i.remove();
+            }
+        }
+    }
+
+    private static void close(Statement statement)
+    {
+        try {
+            statement.close();
+        }
+        catch (Exception exc) {
+            // do nothing
+        }
+    }
+}
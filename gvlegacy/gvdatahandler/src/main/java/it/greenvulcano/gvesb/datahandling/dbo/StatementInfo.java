@@ -20,6 +20,7 @@
 
 package it.greenvulcano.gvesb.datahandling.dbo;
 
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Collections;
@@ -40,6 +41,8 @@ public class StatementInfo
     private Statement statement;
     private Map<String, List<Integer>> sqlStatementParams;
     private int       sqlStatementParamCount = 0;
+    private StatementBatch batch         = null;
+    private StatementCache cache         = null;
 
     /**
      * @param id
@@ -93,9 +96,49 @@ public class StatementInfo
      */
     public Statement getStatement()
     {
+        if (batch != null) {
+            return batch.getRecordingStatement();
+        }
         return statement;
     }
 
+    /**
+     * Gives back the statement to the cache on close, instead of closing it.
+     *
+     * @param cache
+     *        the cache the statement was obtained from
+     */
+    public void setCache(StatementCache cache)
+    {
+        this.cache = cache;
+    }
+
+    /**
+     * Enables the JDBC batch execution mode on the statement.
+     */
+    public void enableBatch()
+    {
+        if ((batch == null) && (statement instanceof PreparedStatement)) {
+            batch = new StatementBatch((PreparedStatement) statement);
+        }
+    }
+
+    /**
+     * @return the batch, or <code>null</code> if the batch mode isn't enabled
+     */
+    public StatementBatch getBatch()
+    {
+        return batch;
+    }
+
+    /**
+     * @return if the batch mode is enabled
+     */
+    public boolean isBatched()
+    {
+        return batch != null;
+    }
+
     /**
      * @return the statement's named parameters
      */
@@ -118,8 +161,16 @@ public class StatementInfo
      */
     public void close() throws SQLException
     {
+        if (batch != null) {
+            batch.clear();
+        }
         if (statement != null) {
-            statement.close();
+            if (cache != null) {
+                cache.release(statement);
+            }
+            else {
+                statement.close();
+            }
         }
     }
 
@@ -130,6 +181,6 @@ public class StatementInfo
     public String toString()
     {
         return "StatementInfo [id=" + id + ", sqlStatement=" + sqlStatement + (sqlStatementParams.isEmpty() ? "" : 
-            ", sqlStatementParams=" + sqlStatementParams) + ", statement=" + statement + "]";
+            ", sqlStatementParams=" + sqlStatementParams) + ", statement=" + statement + (batch == null ? "" : ", batched=" + batch.size()) + "]";
     }
 }
@@ -41,10 +41,12 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -73,6 +75,27 @@ public class StandardRowSetBuilder implements RowSetBuilder
     private SimpleDateFormat timeFormatter;
     private DecimalFormat    numberFormatter;
 
+    /**
+     * Attributes and text of the <code>col</code> element of the current row.
+     */
+    static class ColumnValue
+    {
+        final List<String> attributes = new ArrayList<String>();
+        String             text;
+
+        void reset()
+        {
+            attributes.clear();
+            text = null;
+        }
+
+        void setAttribute(String name, String value)
+        {
+            attributes.add(name);
+            attributes.add(value);
+        }
+    }
+
     public Document createDocument(XMLUtils parser) throws NullPointerException {
         if (parser == null) {
             parser = this.parser;
@@ -106,9 +129,10 @@ public class StandardRowSetBuilder implements RowSetBuilder
         String precKey = null;
         String colKey = null;
         Map<String, String> keyAttr = new HashMap<String, String>();
+        ColumnValue colValue = new ColumnValue();
         while (rs.next()) {
             if (rowCounter % 10 == 0) {
-                ThreadUtils.checkInterrupted(getClass().getSimpleName(), name, logger);
+                checkInterrupted();
             }
             row = parser.createElement(doc, AbstractDBO.ROW_NAME);
 
@@ -118,201 +142,12 @@ public class StandardRowSetBuilder implements RowSetBuilder
 
                 //isNull = false;
                 col = parser.createElement(doc, AbstractDBO.COL_NAME);
-                switch (metadata.getColumnType(j)) {
-                    case Types.DATE : {
-                        parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.DATE_TYPE);
-                        java.sql.Date dateVal = rs.getDate(j);
-                        textVal = processDateTime(col, fF, dateVal, AbstractDBO.DEFAULT_DATE_FORMAT);
-                    }
-                        break;
-                    case Types.TIME : {
-                        parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.TIME_TYPE);
-                        java.sql.Time dateVal = rs.getTime(j);
-                        textVal = processDateTime(col, fF, dateVal, AbstractDBO.DEFAULT_TIME_FORMAT);
-                    }
-                        break;
-                    case Types.TIMESTAMP : {
-                        parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.TIMESTAMP_TYPE);
-                        Timestamp dateVal = rs.getTimestamp(j);
-                        textVal = processDateTime(col, fF, dateVal, AbstractDBO.DEFAULT_DATE_FORMAT);
-                    }
-                        break;
-                    case Types.DOUBLE : {
-                        parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.FLOAT_TYPE);
-                        double numVal = rs.getDouble(j);
-                        textVal = processDouble(col, fF, numVal);
-                    }
-                        break;
-                    case Types.FLOAT :
-                    case Types.REAL : {
-                        parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.FLOAT_TYPE);
-                        float numVal = rs.getFloat(j);
-                        textVal = processDouble(col, fF, numVal);
-                    }
-                        break;
-                    case Types.BIGINT : {
-                        parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.BIGINT_TYPE);
-                        long numVal = rs.getLong(j);
-                        parser.setAttribute(col, AbstractDBO.NULL_NAME, "false");
-                        textVal = String.valueOf(numVal);
-                    }
-                        break;
-                    case Types.INTEGER : {
-                        parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.INTEGER_TYPE);
-                        int numVal = rs.getInt(j);
-                        parser.setAttribute(col, AbstractDBO.NULL_NAME, "false");
-                        textVal = String.valueOf(numVal);
-                    }
-                        break;
-                    case Types.SMALLINT :
-                    case Types.TINYINT : {
-                        parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.SMALLINT_TYPE);
-                        short numVal = rs.getShort(j);
-                        parser.setAttribute(col, AbstractDBO.NULL_NAME, "false");
-                        textVal = String.valueOf(numVal);
-                    }
-                        break; 
-                    case Types.NUMERIC :
-                    case Types.DECIMAL : {
-                        BigDecimal bigdecimal = rs.getBigDecimal(j);
-                        boolean isNull = bigdecimal == null;
-                        parser.setAttribute(col, AbstractDBO.NULL_NAME, String.valueOf(isNull));
-                        if (isNull) {
-                            if (metadata.getScale(j) > 0) {
-                                parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.DECIMAL_TYPE);
-                            }
-                            else {
-                                parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.NUMERIC_TYPE);
-                            }
-                            textVal = "";
-                        }
-                        else {
-                            if (fF != null) {
-                                parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.DECIMAL_TYPE);
-                                parser.setAttribute(col, AbstractDBO.FORMAT_NAME, fF.getNumberFormat());
-                                parser.setAttribute(col, AbstractDBO.GRP_SEPARATOR_NAME, fF.getGroupSeparator());
-                                parser.setAttribute(col, AbstractDBO.DEC_SEPARATOR_NAME, fF.getDecSeparator());
-                                textVal = fF.formatNumber(bigdecimal);
-                            }
-                            else if (metadata.getScale(j) > 0) {
-                                parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.DECIMAL_TYPE);
-                                parser.setAttribute(col, AbstractDBO.FORMAT_NAME, numberFormat);
-                                parser.setAttribute(col, AbstractDBO.GRP_SEPARATOR_NAME, groupSeparator);
-                                parser.setAttribute(col, AbstractDBO.DEC_SEPARATOR_NAME, decSeparator);
-                                textVal = numberFormatter.format(bigdecimal);
-                            }
-                            else {
-                                parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.NUMERIC_TYPE);
-                                textVal = bigdecimal.toString();
-                            }
-                        }
-                    }
-                        break;
-                    case Types.BOOLEAN : {
-                        parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.BOOLEAN_TYPE);
-                        boolean bVal = rs.getBoolean(j);
-                        parser.setAttribute(col, AbstractDBO.NULL_NAME, "false");
-                        textVal = String.valueOf(bVal);
-                    }
-                        break;
-                    case Types.SQLXML : {
-                        parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.XML_TYPE);
-                        SQLXML xml = rs.getSQLXML(j);
-                        boolean isNull = xml == null;
-                        parser.setAttribute(col, AbstractDBO.NULL_NAME, String.valueOf(isNull));
-                        if (isNull) {
-                            textVal = ""; 
-                        }
-                        else {
-                            textVal = xml.getString();
-                        }
-                    }
-                        break;
-                    case Types.NCHAR :
-                    case Types.NVARCHAR : {
-                    	parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.NSTRING_TYPE);
-                        textVal = rs.getNString(j);
-                        if (textVal == null) {
-                            textVal = "";
-                        }
-                    }
-                        break;
-                    case Types.CHAR :
-                    case Types.VARCHAR : {
-                        parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.STRING_TYPE);
-                        textVal = rs.getString(j);
-                        boolean isNull = textVal == null;
-                        parser.setAttribute(col, AbstractDBO.NULL_NAME, String.valueOf(isNull));
-                        if (isNull) {
-                            textVal = "";
-                        }
-                    }
-                        break;
-                    case Types.NCLOB : {
-                    	parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.LONG_NSTRING_TYPE);
-                        NClob clob = rs.getNClob(j);
-                        if (clob != null) {
-                            Reader is = clob.getCharacterStream();
-                            StringWriter str = new StringWriter();
-
-                            IOUtils.copy(is, str);
-                            is.close();
-                            textVal = str.toString();
-                        }
-                        else {
-                            textVal = "";
-                        }
-                    }
-                        break;
-                    case Types.CLOB : {
-                    	parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.LONG_STRING_TYPE);
-                        Clob clob = rs.getClob(j);
-                        if (clob != null) {
-                        	Reader is = clob.getCharacterStream();
-                            StringWriter str = new StringWriter();
-
-                            IOUtils.copy(is, str);
-                            is.close();
-                            textVal = str.toString();
-                        }
-                        else {
-                            textVal = "";
-                        }
-                    }
-                        break;
-                    case Types.BLOB : {
-                        parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.BASE64_TYPE);
-                        Blob blob = rs.getBlob(j);
-                        boolean isNull = blob == null;
-                        parser.setAttribute(col, AbstractDBO.NULL_NAME, String.valueOf(isNull));
-                        if (isNull) {
-                            textVal = "";
-                        }
-                        else {
-                            InputStream is = blob.getBinaryStream();
-                            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                            IOUtils.copy(is, baos);
-                            is.close();
-                            try {
-                                byte[] buffer = Arrays.copyOf(baos.toByteArray(), (int) blob.length());
-                                textVal = Base64.getEncoder().encodeToString(buffer);
-                            }
-                            catch (SQLFeatureNotSupportedException exc) {
-                                textVal = Base64.getEncoder().encodeToString(baos.toByteArray());
-                            }
-                        }
-                    }
-                        break;
-                    default : {
-                        parser.setAttribute(col, AbstractDBO.TYPE_NAME, AbstractDBO.DEFAULT_TYPE);
-                        textVal = rs.getString(j);
-                        boolean isNull = textVal == null;
-                        parser.setAttribute(col, AbstractDBO.NULL_NAME, String.valueOf(isNull));
-                        if (isNull) {
-                            textVal = "";
-                        }
-                    }
+                colValue.reset();
+                readColumn(rs, metadata, j, fF, colValue);
+                for (int a = 0; a < colValue.attributes.size(); a += 2) {
+                    parser.setAttribute(col, colValue.attributes.get(a), colValue.attributes.get(a + 1));
                 }
+                textVal = colValue.text;
                 if (textVal != null) {
                     text = doc.createTextNode(textVal);
                     col.appendChild(text);
@@ -362,63 +197,233 @@ public class StandardRowSetBuilder implements RowSetBuilder
     }
 
     /**
-     * @param col
+     * Reads the column <code>j</code> of the current row, setting on
+     * <code>col</code> the attributes and the text of the <code>col</code>
+     * element.
+     *
+     * @param rs
+     * @param metadata
+     * @param j
      * @param fF
-     * @param numVal
-     * @return
-     * @throws NullPointerException
+     * @param col
      * @throws Exception
      */
-    private String processDouble(Element col, FieldFormatter fF, double numVal) throws NullPointerException, Exception {
-        String textVal;
-        parser.setAttribute(col, AbstractDBO.NULL_NAME, "false");
-        if (fF != null) {
-            parser.setAttribute(col, AbstractDBO.FORMAT_NAME, fF.getNumberFormat());
-            parser.setAttribute(col, AbstractDBO.GRP_SEPARATOR_NAME, fF.getGroupSeparator());
-            parser.setAttribute(col, AbstractDBO.DEC_SEPARATOR_NAME, fF.getDecSeparator());
-            textVal = fF.formatNumber(numVal);
+    void readColumn(ResultSet rs, ResultSetMetaData metadata, int j, FieldFormatter fF, ColumnValue col)
+            throws Exception {
+        switch (metadata.getColumnType(j)) {
+            case Types.DATE : {
+                col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.DATE_TYPE);
+                java.sql.Date dateVal = rs.getDate(j);
+                col.text = processDateTime(col, fF, dateVal, AbstractDBO.DEFAULT_DATE_FORMAT);
+            }
+                break;
+            case Types.TIME : {
+                col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.TIME_TYPE);
+                java.sql.Time dateVal = rs.getTime(j);
+                col.text = processDateTime(col, fF, dateVal, AbstractDBO.DEFAULT_TIME_FORMAT);
+            }
+                break;
+            case Types.TIMESTAMP : {
+                col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.TIMESTAMP_TYPE);
+                Timestamp dateVal = rs.getTimestamp(j);
+                col.text = processDateTime(col, fF, dateVal, AbstractDBO.DEFAULT_DATE_FORMAT);
+            }
+                break;
+            case Types.DOUBLE : {
+                col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.FLOAT_TYPE);
+                double numVal = rs.getDouble(j);
+                col.text = processDouble(col, fF, numVal);
+            }
+                break;
+            case Types.FLOAT :
+            case Types.REAL : {
+                col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.FLOAT_TYPE);
+                float numVal = rs.getFloat(j);
+                col.text = processDouble(col, fF, numVal);
+            }
+                break;
+            case Types.BIGINT : {
+                col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.BIGINT_TYPE);
+                long numVal = rs.getLong(j);
+                col.setAttribute(AbstractDBO.NULL_NAME, "false");
+                col.text = String.valueOf(numVal);
+            }
+                break;
+            case Types.INTEGER : {
+                col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.INTEGER_TYPE);
+                int numVal = rs.getInt(j);
+                col.setAttribute(AbstractDBO.NULL_NAME, "false");
+                col.text = String.valueOf(numVal);
+            }
+                break;
+            case Types.SMALLINT :
+            case Types.TINYINT : {
+                col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.SMALLINT_TYPE);
+                short numVal = rs.getShort(j);
+                col.setAttribute(AbstractDBO.NULL_NAME, "false");
+                col.text = String.valueOf(numVal);
+            }
+                break;
+            case Types.NUMERIC :
+            case Types.DECIMAL : {
+                BigDecimal bigdecimal = rs.getBigDecimal(j);
+                boolean isNull = bigdecimal == null;
+                col.setAttribute(AbstractDBO.NULL_NAME, String.valueOf(isNull));
+                if (isNull) {
+                    if (metadata.getScale(j) > 0) {
+                        col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.DECIMAL_TYPE);
+                    }
+                    else {
+                        col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.NUMERIC_TYPE);
+                    }
+                    col.text = "";
+                }
+                else {
+                    if (fF != null) {
+                        col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.DECIMAL_TYPE);
+                        col.setAttribute(AbstractDBO.FORMAT_NAME, fF.getNumberFormat());
+                        col.setAttribute(AbstractDBO.GRP_SEPARATOR_NAME, fF.getGroupSeparator());
+                        col.setAttribute(AbstractDBO.DEC_SEPARATOR_NAME, fF.getDecSeparator());
+                        col.text = fF.formatNumber(bigdecimal);
+                    }
+                    else if (metadata.getScale(j) > 0) {
+                        col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.DECIMAL_TYPE);
+                        col.setAttribute(AbstractDBO.FORMAT_NAME, numberFormat);
+                        col.setAttribute(AbstractDBO.GRP_SEPARATOR_NAME, groupSeparator);
+                        col.setAttribute(AbstractDBO.DEC_SEPARATOR_NAME, decSeparator);
+                        col.text = numberFormatter.format(bigdecimal);
+                    }
+                    else {
+                        col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.NUMERIC_TYPE);
+                        col.text = bigdecimal.toString();
+                    }
+                }
+            }
+                break;
+            case Types.BOOLEAN : {
+                col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.BOOLEAN_TYPE);
+                boolean bVal = rs.getBoolean(j);
+                col.setAttribute(AbstractDBO.NULL_NAME, "false");
+                col.text = String.valueOf(bVal);
+            }
+                break;
+            case Types.SQLXML : {
+                col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.XML_TYPE);
+                SQLXML xml = rs.getSQLXML(j);
+                boolean isNull = xml == null;
+                col.setAttribute(AbstractDBO.NULL_NAME, String.valueOf(isNull));
+                col.text = isNull ? "" : xml.getString();
+            }
+                break;
+            case Types.NCHAR :
+            case Types.NVARCHAR : {
+                col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.NSTRING_TYPE);
+                col.text = rs.getNString(j);
+                if (col.text == null) {
+                    col.text = "";
+                }
+            }
+                break;
+            case Types.CHAR :
+            case Types.VARCHAR : {
+                col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.STRING_TYPE);
+                col.text = rs.getString(j);
+                boolean isNull = col.text == null;
+                col.setAttribute(AbstractDBO.NULL_NAME, String.valueOf(isNull));
+                if (isNull) {
+                    col.text = "";
+                }
+            }
+                break;
+            case Types.NCLOB : {
+                col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.LONG_NSTRING_TYPE);
+                NClob clob = rs.getNClob(j);
+                col.text = (clob != null) ? readText(clob.getCharacterStream()) : "";
+            }
+                break;
+            case Types.CLOB : {
+                col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.LONG_STRING_TYPE);
+                Clob clob = rs.getClob(j);
+                col.text = (clob != null) ? readText(clob.getCharacterStream()) : "";
+            }
+                break;
+            case Types.BLOB : {
+                col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.BASE64_TYPE);
+                Blob blob = rs.getBlob(j);
+                boolean isNull = blob == null;
+                col.setAttribute(AbstractDBO.NULL_NAME, String.valueOf(isNull));
+                if (isNull) {
+                    col.text = "";
+                }
+                else {
+                    InputStream is = blob.getBinaryStream();
+                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    IOUtils.copy(is, baos);
+                    is.close();
+                    try {
+                        byte[] buffer = Arrays.copyOf(baos.toByteArray(), (int) blob.length());
+                        col.text = Base64.getEncoder().encodeToString(buffer);
+                    }
+                    catch (SQLFeatureNotSupportedException exc) {
+                        col.text = Base64.getEncoder().encodeToString(baos.toByteArray());
+                    }
+                }
+            }
+                break;
+            default : {
+                col.setAttribute(AbstractDBO.TYPE_NAME, AbstractDBO.DEFAULT_TYPE);
+                col.text = rs.getString(j);
+                boolean isNull = col.text == null;
+                col.setAttribute(AbstractDBO.NULL_NAME, String.valueOf(isNull));
+                if (isNull) {
+                    col.text = "";
+                }
+            }
+        }
+    }
+
+    private String readText(Reader is) throws Exception {
+        StringWriter str = new StringWriter();
+        try {
+            IOUtils.copy(is, str);
         }
-        else {
-            parser.setAttribute(col, AbstractDBO.FORMAT_NAME, numberFormat);
-            parser.setAttribute(col, AbstractDBO.GRP_SEPARATOR_NAME, groupSeparator);
-            parser.setAttribute(col, AbstractDBO.DEC_SEPARATOR_NAME, decSeparator);
-            textVal = numberFormatter.format(numVal);
+        finally {
+            is.close();
         }
-        return textVal;
+        return str.toString();
     }
 
-    /**
-     * @param col
-     * @param fF
-     * @param dateVal
-     * @return
-     * @throws Exception
-     */
-    private String processDateTime(Element col, FieldFormatter fF, Date dateVal, String format)
+    private String processDouble(ColumnValue col, FieldFormatter fF, double numVal) throws Exception {
+        col.setAttribute(AbstractDBO.NULL_NAME, "false");
+        if (fF != null) {
+            col.setAttribute(AbstractDBO.FORMAT_NAME, fF.getNumberFormat());
+            col.setAttribute(AbstractDBO.GRP_SEPARATOR_NAME, fF.getGroupSeparator());
+            col.setAttribute(AbstractDBO.DEC_SEPARATOR_NAME, fF.getDecSeparator());
+            return fF.formatNumber(numVal);
+        }
+        col.setAttribute(AbstractDBO.FORMAT_NAME, numberFormat);
+        col.setAttribute(AbstractDBO.GRP_SEPARATOR_NAME, groupSeparator);
+        col.setAttribute(AbstractDBO.DEC_SEPARATOR_NAME, decSeparator);
+        return numberFormatter.format(numVal);
+    }
+
+    private String processDateTime(ColumnValue col, FieldFormatter fF, Date dateVal, String format)
             throws Exception {
-        String textVal;
         boolean isNull = dateVal == null;
-        parser.setAttribute(col, AbstractDBO.NULL_NAME, String.valueOf(isNull));
+        col.setAttribute(AbstractDBO.NULL_NAME, String.valueOf(isNull));
         if (isNull) {
-            parser.setAttribute(col, AbstractDBO.FORMAT_NAME, format);
-            textVal = "";
+            col.setAttribute(AbstractDBO.FORMAT_NAME, format);
+            return "";
         }
-        else {
-            if (fF != null) {
-                parser.setAttribute(col, AbstractDBO.FORMAT_NAME, fF.getDateFormat());
-                textVal = fF.formatDate(dateVal);
-            }
-            else {
-                parser.setAttribute(col, AbstractDBO.FORMAT_NAME, format);
-                if (dateVal instanceof Time) {
-                    textVal = timeFormatter.format(dateVal);
-                }
-                else {
-                    textVal = dateFormatter.format(dateVal);
-                }
-            }
+        if (fF != null) {
+            col.setAttribute(AbstractDBO.FORMAT_NAME, fF.getDateFormat());
+            return fF.formatDate(dateVal);
+        }
+        col.setAttribute(AbstractDBO.FORMAT_NAME, format);
+        if (dateVal instanceof Time) {
+            return timeFormatter.format(dateVal);
         }
-        return textVal;
+        return dateFormatter.format(dateVal);
     }
 
     public void cleanup() {
@@ -469,7 +474,7 @@ public class StandardRowSetBuilder implements RowSetBuilder
 
     @Override
     public RowSetBuilder getCopy() {
-        StandardRowSetBuilder copy = new StandardRowSetBuilder();
+        StandardRowSetBuilder copy = newInstance();
         
         copy.name = this.name;
         copy.logger = this.logger;
@@ -478,12 +483,24 @@ public class StandardRowSetBuilder implements RowSetBuilder
         copy.decSeparator = this.decSeparator;
         copy.parser = this.parser;
         copy.dateFormatter = this.dateFormatter;
+        copy.timeFormatter = this.timeFormatter;
         copy.numberFormatter = this.numberFormatter;
 
         return copy;
     }
 
-    private FieldFormatter[] buildFormatterArray(ResultSetMetaData rsm,
+    /**
+     * @return a new, unconfigured, instance used by {@link #getCopy()}
+     */
+    protected StandardRowSetBuilder newInstance() {
+        return new StandardRowSetBuilder();
+    }
+
+    protected void checkInterrupted() throws Exception {
+        ThreadUtils.checkInterrupted(getClass().getSimpleName(), name, logger);
+    }
+
+    protected FieldFormatter[] buildFormatterArray(ResultSetMetaData rsm,
             Map<String, FieldFormatter> fieldNameToFormatter, Map<String, FieldFormatter> fieldIdToFormatter)
             throws Exception {
         FieldFormatter[] fFA = new FieldFormatter[rsm.getColumnCount() + 1];
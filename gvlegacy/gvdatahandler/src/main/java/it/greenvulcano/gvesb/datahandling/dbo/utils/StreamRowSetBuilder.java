@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ *
+ * This file is part of GreenVulcano ESB.
+ *
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package it.greenvulcano.gvesb.datahandling.dbo.utils;
+
+import it.greenvulcano.gvesb.datahandling.dbo.AbstractDBO;
+import it.greenvulcano.gvesb.datahandling.utils.FieldFormatter;
+
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * RowSetBuilder writing the RowSet document directly on an OutputStream, as
+ * the ResultSet is iterated, without building the DOM.
+ * The memory used is bounded by a single row, regardless of the result size.
+ * The produced document is the same of {@link StandardRowSetBuilder}, whose
+ * DOM based build is still available for the IDBO requiring a Document.
+ *
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ *
+ */
+public class StreamRowSetBuilder extends StandardRowSetBuilder
+{
+    private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+    private XMLStreamWriter               writer;
+
+    /**
+     * Starts the RowSet document on the given stream.
+     *
+     * @param out
+     * @throws XMLStreamException
+     */
+    public void startDocument(OutputStream out) throws XMLStreamException
+    {
+        writer = outputFactory.createXMLStreamWriter(out, AbstractDBO.DEFAULT_ENCODING);
+        writer.writeStartDocument(AbstractDBO.DEFAULT_ENCODING, "1.0");
+        writer.writeStartElement(AbstractDBO.ROWSET_NAME);
+    }
+
+    /**
+     * Closes the RowSet document and flushes the stream.
+     *
+     * @throws XMLStreamException
+     */
+    public void endDocument() throws XMLStreamException
+    {
+        if (writer != null) {
+            try {
+                writer.writeEndElement();
+                writer.writeEndDocument();
+                writer.flush();
+            }
+            finally {
+                writer.close();
+                writer = null;
+            }
+        }
+    }
+
+    /**
+     * Writes the ResultSet rows as <code>data</code> elements of the document
+     * started by {@link #startDocument(OutputStream)}.
+     *
+     * @param id
+     * @param rs
+     * @param keyField
+     * @param fieldNameToFormatter
+     * @param fieldIdToFormatter
+     * @return the number of rows written
+     * @throws Exception
+     */
+    public int build(String id, ResultSet rs, Set<Integer> keyField, Map<String, FieldFormatter> fieldNameToFormatter,
+            Map<String, FieldFormatter> fieldIdToFormatter) throws Exception
+    {
+        if (writer == null) {
+            throw new IllegalStateException("Document not started");
+        }
+        if (rs == null) {
+            return 0;
+        }
+        int rowCounter = 0;
+        ResultSetMetaData metadata = rs.getMetaData();
+        int colCount = metadata.getColumnCount();
+        FieldFormatter[] fFormatters = buildFormatterArray(metadata, fieldNameToFormatter, fieldIdToFormatter);
+        ColumnValue[] cols = new ColumnValue[colCount + 1];
+        for (int j = 1; j <= colCount; j++) {
+            cols[j] = new ColumnValue();
+        }
+
+        boolean noKey = ((keyField == null) || keyField.isEmpty());
+        boolean dataOpen = false;
+        String precKey = null;
+        String colKey = null;
+        Map<String, String> keyAttr = new LinkedHashMap<String, String>();
+        while (rs.next()) {
+            if (rowCounter % 10 == 0) {
+                checkInterrupted();
+            }
+            for (int j = 1; j <= colCount; j++) {
+                ColumnValue col = cols[j];
+                col.reset();
+                readColumn(rs, metadata, j, fFormatters[j], col);
+                if (!noKey && keyField.contains(new Integer(j)) && (col.text != null)) {
+                    if (colKey == null) {
+                        colKey = col.text;
+                    }
+                    else {
+                        colKey += "##" + col.text;
+                    }
+                    keyAttr.put("key_" + j, col.text);
+                }
+            }
+            if (noKey) {
+                if (!dataOpen) {
+                    writer.writeStartElement(AbstractDBO.DATA_NAME);
+                    writer.writeAttribute(AbstractDBO.ID_NAME, id);
+                    dataOpen = true;
+                }
+            }
+            else if ((colKey != null) && !colKey.equals(precKey)) {
+                if (dataOpen) {
+                    writer.writeEndElement();
+                }
+                writer.writeStartElement(AbstractDBO.DATA_NAME);
+                writer.writeAttribute(AbstractDBO.ID_NAME, id);
+                for (Entry<String, String> keyAttrEntry : keyAttr.entrySet()) {
+                    writer.writeAttribute(keyAttrEntry.getKey(), keyAttrEntry.getValue());
+                }
+                dataOpen = true;
+                precKey = colKey;
+            }
+            keyAttr.clear();
+            colKey = null;
+
+            writer.writeStartElement(AbstractDBO.ROW_NAME);
+            writer.writeAttribute(AbstractDBO.ID_NAME, id);
+            for (int j = 1; j <= colCount; j++) {
+                if (noKey || !keyField.contains(new Integer(j))) {
+                    ColumnValue col = cols[j];
+                    writer.writeStartElement(AbstractDBO.COL_NAME);
+                    for (int a = 0; a < col.attributes.size(); a += 2) {
+                        writer.writeAttribute(col.attributes.get(a), col.attributes.get(a + 1));
+                    }
+                    if (col.text != null) {
+                        writer.writeCharacters(col.text);
+                    }
+                    writer.writeEndElement();
+                }
+            }
+            writer.writeEndElement();
+            rowCounter++;
+        }
+        if (dataOpen) {
+            writer.writeEndElement();
+        }
+        writer.flush();
+
+        return rowCounter;
+    }
+
+    @Override
+    public void cleanup() {
+        if (writer != null) {
+            try {
+                writer.close();
+            }
+            catch (Exception exc) {
+                // do nothing
+            }
+            writer = null;
+        }
+        super.cleanup();
+    }
+
+    @Override
+    protected StandardRowSetBuilder newInstance() {
+        return new StreamRowSetBuilder();
+    }
+}
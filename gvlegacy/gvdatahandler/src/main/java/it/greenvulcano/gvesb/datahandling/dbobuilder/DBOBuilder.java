@@ -25,6 +25,7 @@ import it.greenvulcano.gvesb.datahandling.DHResult;
 import it.greenvulcano.gvesb.datahandling.DataHandlerException;
 import it.greenvulcano.gvesb.datahandling.IDBO;
 import it.greenvulcano.gvesb.datahandling.IDBOBuilder;
+import it.greenvulcano.gvesb.datahandling.dbo.StatementCache;
 import it.greenvulcano.gvesb.datahandling.utils.AbstractRetriever;
 import it.greenvulcano.gvesb.datahandling.utils.DiscardCause;
 import it.greenvulcano.gvesb.datahandling.utils.exchandler.oracle.OracleExceptionHandler;
@@ -39,6 +40,9 @@ import it.greenvulcano.util.xml.XMLUtils;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringWriter;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -48,6 +52,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Vector;
 
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
+
 import org.slf4j.Logger;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -119,8 +126,26 @@ public class DBOBuilder implements IDBOBuilder
 
     private static final Logger       logger             = org.slf4j.LoggerFactory.getLogger(DBOBuilder.class);
 
+    /**
+     * Output buffer of an IDBO stage, read back in place by the following
+     * stages instead of being copied with toByteArray().
+     */
+    private static class StageBuffer extends ByteArrayOutputStream
+    {
+        StageBuffer()
+        {
+            super(8192);
+        }
+
+        InputStream toInputStream()
+        {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+
     private final Map<String, Object> dataCache          = new HashMap<String, Object>();
     private List<MergeInfo>           mergeList          = new Vector<MergeInfo>();
+    private StatementCache            statementCache     = null;
     
     private int                       makeDump           = DUMP_TEXT;
 
@@ -230,17 +255,27 @@ public class DBOBuilder implements IDBOBuilder
     @Override
     public void XML2DB(String operation, byte[] file, Map<String, Object> params) throws DataHandlerException,
             InterruptedException {
+        XML2DB(operation, (Object) file, params);
+    }
+
+    /**
+     * @see it.greenvulcano.gvesb.datahandling.IDBOBuilder#XML2DB(java.lang.String,
+     *      java.lang.Object, java.util.Map)
+     */
+    @Override
+    public void XML2DB(String operation, Object input, Map<String, Object> params) throws DataHandlerException,
+            InterruptedException {
         long start = System.currentTimeMillis();
         Map<String, Object> localParams = buildProps(params);
         NMDC.push();
         NMDC.put("DH_SERVICE", serviceName);
         logger.debug("Start executing XML2DB [" + operation + "]\n\tParams    : " + localParams.toString());
-        if (logger.isDebugEnabled() && (file != null) && (makeDump != DUMP_NONE)) {
+        if (logger.isDebugEnabled() && (input instanceof byte[]) && (makeDump != DUMP_NONE)) {
             if (makeDump == DUMP_HEX) {
-                logger.debug("Input data: [\n" + new Dump(file, -1) + "\n].");
+                logger.debug("Input data: [\n" + new Dump((byte[]) input, -1) + "\n].");
             }
             else {
-                logger.debug("Input data: [\n" + new String(file) + "\n].");
+                logger.debug("Input data: [\n" + new String((byte[]) input) + "\n].");
             }
         }
         internalIdx = 0;
@@ -264,6 +299,8 @@ public class DBOBuilder implements IDBOBuilder
             // Static utility classes initialization
             AbstractRetriever.setAllConnection(conn, configurationNode);
 
+            // every IDBO reads the input
+            Object file = (dboList.size() > 1) ? toReplayable(input) : input;
             while (hasNext()) {
                 ThreadUtils.checkInterrupted(getClass().getSimpleName(), serviceName, logger);
 
@@ -273,7 +310,7 @@ public class DBOBuilder implements IDBOBuilder
                     NMDC.put("DH_DBO", idbo.getName());
                     Object xmlFile = transform(idbo, file, localParams);
                     if (xmlFile != null) {
-                        if (logger.isDebugEnabled() && (makeDump != DUMP_NONE)) {
+                        if (logger.isDebugEnabled() && (makeDump != DUMP_NONE) && !(xmlFile instanceof InputStream)) {
                             if (xmlFile instanceof byte[]) {
                                 if (makeDump == DUMP_HEX) {
                                     logger.debug("Transformation output: [\n" + new Dump((byte[]) xmlFile, -1) + "\n].");
@@ -297,7 +334,7 @@ public class DBOBuilder implements IDBOBuilder
                         }
                     }
                     logger.debug("Start executing of IDBO [" + idbo.toString() + "].");
-                    idbo.execute(xmlFile, conn, localParams, null);
+                    idbo.execute(toInput(xmlFile), conn, localParams, null);
                     logger.debug("End executing of IDBO [" + idbo.toString() + "]. Execution time: "
                             + getPartialTime(start));
                 }
@@ -343,6 +380,9 @@ public class DBOBuilder implements IDBOBuilder
         }
         finally {
             cleanup();
+            if (statementCache != null) {
+                statementCache.closeStatements(conn);
+            }
             try {
                 JDBCConnectionBuilder.releaseConnection(intConnName, conn);
             }
@@ -543,6 +583,9 @@ public class DBOBuilder implements IDBOBuilder
         }
         finally {
             cleanup();
+            if (statementCache != null) {
+                statementCache.closeStatements(conn);
+            }
             try {
                 JDBCConnectionBuilder.releaseConnection(intConnName, conn);
             }
@@ -702,6 +745,9 @@ public class DBOBuilder implements IDBOBuilder
         }
         finally {
             cleanup();
+            if (statementCache != null) {
+                statementCache.closeStatements(conn);
+            }
             try {
                 JDBCConnectionBuilder.releaseConnection(intConnName, conn);
             }
@@ -748,7 +794,7 @@ public class DBOBuilder implements IDBOBuilder
         }
         internalIdx = 0;
         Connection conn = null;
-        ByteArrayOutputStream out = null;
+        StageBuffer out = null;
         String intConnName = null;
         try {
             logger.debug("Searching for a new available connection named [" + jdbcConnectionName + "].");
@@ -767,10 +813,12 @@ public class DBOBuilder implements IDBOBuilder
             // Static utility classes initialization
             AbstractRetriever.setAllConnection(conn, configurationNode);
 
+            // the input may be read by more than one IDBO
+            Object input = (dboList.size() > 1) ? toReplayable(object) : object;
             IDBO idbo = firstDBO();
             {
                 DHResult dhrL = new DHResult(idbo.getExecutionResult());
-                dhrL.setData(object);
+                dhrL.setData(input);
                 dataCache.put(idbo.getInputDataName(), dhrL);
             }
             while (hasNext()) {
@@ -783,7 +831,7 @@ public class DBOBuilder implements IDBOBuilder
                         DHResult dhrL = (DHResult) dataCache.get(idbo.getInputDataName());
                         if (dhrL == null) {
                             dhrL = idbo.getExecutionResult();
-                            dhrL.setData(object);
+                            dhrL.setData(input);
                         }
                         Object xmlFile = transform(idbo, dhrL.getData(), localParams);
                         dhrL = idbo.getExecutionResult();
@@ -814,26 +862,25 @@ public class DBOBuilder implements IDBOBuilder
                             }
                         }
                         logger.debug("Start executing IDBO [" + idbo.toString() + "] in forced XML2DB mode.");
-                        idbo.execute(xmlFile, conn, localParams, object);
+                        idbo.execute(toInput(xmlFile), conn, localParams, object);
                         logger.debug("End executing IDBO [" + idbo.toString()
                                 + "] in forced XML2DB mode. Execution time: " + getPartialTime(start));
                     }
                     else if (idbo.getForcedMode().equals(IDBO.MODE_DB2XML)) {
-                        out = new ByteArrayOutputStream();
+                        out = new StageBuffer();
                         logger.debug("Start executing IDBO [" + idbo.toString() + "] in forced DB2XML mode.");
                         idbo.execute(out, conn, localParams);
                         logger.debug("End executing IDBO [" + idbo.toString()
                                 + "] in forced DB2XML mode. Execution time: " + getPartialTime(start));
-                        byte[] output = out.toByteArray();
-                        if (logger.isDebugEnabled() && (output != null) && (makeDump != DUMP_NONE)) {
+                        if (logger.isDebugEnabled() && (makeDump != DUMP_NONE)) {
                             if (makeDump == DUMP_HEX) {
-                                logger.debug("Received data from DB: [\n" + new Dump(output, -1) + "\n].");
+                                logger.debug("Received data from DB: [\n" + new Dump(out.toByteArray(), -1) + "\n].");
                             }
                             else {
-                                logger.debug("Received data from DB: [\n" + new String(output) + "\n].");
+                                logger.debug("Received data from DB: [\n" + out.toString() + "\n].");
                             }
                         }
-                        Object xmlFile = transform(idbo, output, localParams);
+                        Object xmlFile = transform(idbo, out, localParams);
                         DHResult dhrL = idbo.getExecutionResult();
                         dhrL.setData(xmlFile);
                         dataCache.put(idbo.getOutputDataName(), dhrL);
@@ -842,7 +889,7 @@ public class DBOBuilder implements IDBOBuilder
                         DHResult dhrL = (DHResult) dataCache.get(idbo.getInputDataName());
                         if (dhrL == null) {
                             dhrL = idbo.getExecutionResult();
-                            dhrL.setData(object);
+                            dhrL.setData(input);
                         }
                         Object xmlFile = transform(idbo, dhrL.getData(), localParams);
                         dhrL = idbo.getExecutionResult();
@@ -872,29 +919,20 @@ public class DBOBuilder implements IDBOBuilder
                                 }
                             }
                         }
-                        out = new ByteArrayOutputStream();
+                        out = new StageBuffer();
 
                         logger.debug("Start executing IDBO [" + idbo.toString() + "] in normal mode.");
-                        idbo.execute(xmlFile, out, conn, localParams);
+                        idbo.execute(toInput(xmlFile), out, conn, localParams);
                         logger.debug("End executing IDBO [" + idbo.toString() + "] in normal mode. Execution time: "
                                 + getPartialTime(start));
 
-                        byte[] output = out.toByteArray();
-                        xmlFile = output;
                         dhrL = idbo.getExecutionResult();
-                        dhrL.setData(xmlFile);
+                        dhrL.setData(out);
                         dataCache.put(idbo.getOutputDataName(), dhrL);
                     }
                 }
                 finally {
-                    if (out != null) {
-                        try {
-                            out.close();
-                        }
-                        catch (IOException exc) {
-                            // Nothing to do
-                        }
-                    }
+                    out = null;
                     NMDC.pop();
                 }
             }
@@ -906,6 +944,8 @@ public class DBOBuilder implements IDBOBuilder
             if (!dboOutputMap.get(outputDataName).isReturnData()) {
                 dhr.setData(null);
             }
+            // the stage buffers are copied only when returned
+            dhr.setData(toData(dhr.getData()));
             Object xmlFile = dhr.getData();
 
             // Manage statistics (if the @output-stats attribute is set)
@@ -959,10 +999,10 @@ public class DBOBuilder implements IDBOBuilder
                 try {
                     parser = XMLUtils.getParserInstance();
                     MergeInfo mergeDest = mergeList.get(0);
-                    Document dest = (Document) parser.parseObject(((DHResult)dataCache.get(mergeDest.source)).getData(), false, true);
+                    Document dest = (Document) parser.parseObject(toData(((DHResult)dataCache.get(mergeDest.source)).getData()), false, true);
                     for (int i = 1; i < mergeList.size(); i++) {
                         MergeInfo mergeInfo = mergeList.get(i);
-                        Object srcO = ((DHResult) dataCache.get(mergeInfo.source)).getData();
+                        Object srcO = toData(((DHResult) dataCache.get(mergeInfo.source)).getData());
                         if (srcO != null) {
                             Document src = (Document) parser.parseObject(srcO, false, true);
                             NodeList sources = parser.selectNodeList(src, mergeInfo.xpathSrc);
@@ -1041,6 +1081,9 @@ public class DBOBuilder implements IDBOBuilder
         }
         finally {
             cleanup();
+            if (statementCache != null) {
+                statementCache.closeStatements(conn);
+            }
             try {
                 JDBCConnectionBuilder.releaseConnection(intConnName, conn);
             }
@@ -1122,13 +1165,25 @@ public class DBOBuilder implements IDBOBuilder
         this.dteController = dteController;
     }
 
+    /**
+     * @see it.greenvulcano.gvesb.datahandling.IDBOBuilder#setStatementCache(it.greenvulcano.gvesb.datahandling.dbo.StatementCache)
+     */
+    @Override
+    public void setStatementCache(StatementCache statementCache)
+    {
+        this.statementCache = statementCache;
+        for (IDBO idbo : dboList) {
+            idbo.setStatementCache(statementCache);
+        }
+    }
+
     private Object transform(IDBO idbo, Object input, Map<String, Object> params) throws Exception
     {
         Object output = input;
         String transformation = idbo.getTransformation();
         if ((transformation != null) && !transformation.equals("")) {
             logger.debug("Transformation [" + transformation + "] execution using DTE.");
-            output = dteController.transform(transformation, input, params);
+            output = dteController.transform(transformation, toData(input), params);
         }
         else {
             logger.debug("No transformation for this IDBO.");
@@ -1136,6 +1191,74 @@ public class DBOBuilder implements IDBOBuilder
         return output;
     }
 
+    /**
+     * Converts the stage buffers and the one-shot streams to the byte[] or
+     * String expected by DTE, by the merge and by the callers.
+     */
+    private static Object toData(Object data) throws IOException
+    {
+        if (data instanceof StageBuffer) {
+            return ((StageBuffer) data).toByteArray();
+        }
+        Object replayable = toReplayable(data);
+        if (replayable instanceof StageBuffer) {
+            return ((StageBuffer) replayable).toByteArray();
+        }
+        return replayable;
+    }
+
+    /**
+     * @return the data to hand to IDBO.execute(): the stage buffers are read
+     *         in place
+     */
+    private static Object toInput(Object data)
+    {
+        if (data instanceof StageBuffer) {
+            return ((StageBuffer) data).toInputStream();
+        }
+        return data;
+    }
+
+    /**
+     * Buffers the one-shot streams, so that the input can be read by more
+     * than one IDBO.
+     */
+    private static Object toReplayable(Object data) throws IOException
+    {
+        if (data instanceof StreamSource) {
+            StreamSource source = (StreamSource) data;
+            if ((source.getInputStream() == null) && (source.getReader() == null)) {
+                // read from the systemId by every IDBO
+                return source;
+            }
+            data = (source.getInputStream() != null) ? source.getInputStream() : source.getReader();
+        }
+        else if (data instanceof DOMSource) {
+            return ((DOMSource) data).getNode();
+        }
+        if (data instanceof InputStream) {
+            StageBuffer buffer = new StageBuffer();
+            InputStream in = (InputStream) data;
+            byte[] chunk = new byte[8192];
+            int read = 0;
+            while ((read = in.read(chunk)) != -1) {
+                buffer.write(chunk, 0, read);
+            }
+            return buffer;
+        }
+        if (data instanceof Reader) {
+            StringWriter buffer = new StringWriter();
+            Reader in = (Reader) data;
+            char[] chunk = new char[4096];
+            int read = 0;
+            while ((read = in.read(chunk)) != -1) {
+                buffer.write(chunk, 0, read);
+            }
+            return buffer.toString();
+        }
+        return data;
+    }
+
     private IDBO firstDBO()
     {
         return dboList.get(0);
@@ -23,6 +23,7 @@ import it.greenvulcano.configuration.XMLConfig;
 import it.greenvulcano.configuration.XMLConfigException;
 import it.greenvulcano.gvesb.datahandling.DataHandlerException;
 import it.greenvulcano.gvesb.datahandling.IDBOBuilder;
+import it.greenvulcano.gvesb.datahandling.dbo.StatementCache;
 import it.greenvulcano.gvesb.gvdte.controller.DTEController;
 import it.greenvulcano.util.thread.ThreadUtils;
 
@@ -77,6 +78,11 @@ public class DHFactory
 
     private DTEController            dteController      = null;
 
+    /**
+     * Prepared statements cache shared by the DBOBuilders, null if disabled.
+     */
+    private StatementCache           statementCache     = null;
+
     /**
      * Private constructor. Initializes the private IDBO builders cache.
      *
@@ -103,6 +109,13 @@ public class DHFactory
                 if (globalConfig != null) {
                     globalConfigurationNode = XMLConfig.getNode(globalConfig, "//GVDataHandlerConfiguration");
                 }
+                if (globalConfigurationNode != null) {
+                    int cacheSize = XMLConfig.getInteger(globalConfigurationNode, "@statement-cache-size", 0);
+                    if (cacheSize > 0) {
+                        statementCache = new StatementCache(cacheSize);
+                        logger.debug("Prepared statement cache enabled: maxSize=" + cacheSize + ".");
+                    }
+                }
             }
             catch (XMLConfigException exc) {
                 logger.warn("Error reading DH configuration from file: " + DH_CONFIG_FILENAME, exc);
@@ -178,6 +191,7 @@ public class DHFactory
                 builder.init(builderNode);
                 builder.setConfigurationNode(localConfigNode);
                 builder.setDteController(dteController);
+                builder.setStatementCache(statementCache);
                 logger.debug("DBOBuilder initialized: [" + name + "]");
                 dboBuilders.put(name, builder);
             }
@@ -205,6 +219,14 @@ public class DHFactory
         return builder;
     }
 
+    /**
+     * @return the prepared statements cache, or <code>null</code> if disabled
+     */
+    public StatementCache getStatementCache()
+    {
+        return statementCache;
+    }
+
     /**
      * @return the initialized
      */
@@ -228,6 +250,12 @@ public class DHFactory
         }
         dboBuilders.clear();
 
+        if (statementCache != null) {
+            logger.debug("Destroying " + statementCache);
+            statementCache.clear();
+            statementCache = null;
+        }
+
         if (dteController != null) {
             dteController.destroy();
         }
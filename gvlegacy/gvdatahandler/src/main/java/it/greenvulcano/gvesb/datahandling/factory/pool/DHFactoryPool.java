@@ -29,10 +29,21 @@ import it.greenvulcano.gvesb.datahandling.factory.DHFactory;
 import it.greenvulcano.log.NMDC;
 import it.greenvulcano.util.Stats;
 
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
+import it.greenvulcano.jmx.JMXEntryPoint;
+
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.ObjectName;
 
 import org.slf4j.Logger;
 import org.w3c.dom.Document;
@@ -40,6 +51,12 @@ import org.w3c.dom.Node;
 
 /**
  * Object Pool  <code>DHFactory</code>.
+ * The idle instances are kept in per-name sub-pools, keyed by the last
+ * DBOBuilder executed, so that an instance already holding the requested
+ * DBOBuilder is preferred; if none executed it as last, an instance that
+ * executed it before is searched in the other sub-pools. The pool is
+ * non-blocking: the number of instances in use is bounded by a semaphore
+ * and only a caller exceeding the maximum creation waits for a release.
  *
  * @version 3.1.0 Feb 17, 2011
  * @author GreenVulcano Developer Team
@@ -58,17 +75,28 @@ public class DHFactoryPool implements ShutdownEventListener
 
     public static final int          DEFAULT_MAXIMUM_CREATION  = 50;
 
+    /**
+     * Upper bounds, in milliseconds, of the acquire wait histogram buckets.
+     */
+    public static final long[]       ACQUIRE_WAIT_BUCKETS      = {1, 5, 10, 50, 100, 500, 1000, 5000};
+
+    private static final String      NO_SERVICE                = "";
+
    private static final Logger      logger                    = org.slf4j.LoggerFactory.getLogger(DHFactoryPool.class);
 
     private static DHFactoryPool instance = null;
     /**
-     * Pool of GreenVulcano istances.
+     * Pool of GreenVulcano istances, grouped by last executed service.
      */
-    private LinkedList<DHFactory> pool                      = new LinkedList<DHFactory>();
+    private final Map<String, ConcurrentLinkedDeque<DHFactory>> pool = new ConcurrentHashMap<String, ConcurrentLinkedDeque<DHFactory>>();
     /**
      * Set istance pool assigned.
      */
-    private Set<DHFactory>        assignedDH                = new HashSet<DHFactory>();
+    private final Set<DHFactory>  assignedDH                = ConcurrentHashMap.newKeySet();
+    /**
+     * Permits for the instances in use, null = unlimited.
+     */
+    private Semaphore                inUsePermits              = null;
     /**
      *  Initial size  pool.
      */
@@ -92,21 +120,37 @@ public class DHFactoryPool implements ShutdownEventListener
     /**
      * Next shrink time
      */
-    private long                     nextShrinkTime            = System.currentTimeMillis() + shrinkDelayTime;
+    private volatile long            nextShrinkTime            = System.currentTimeMillis() + shrinkDelayTime;
     /**
      * Number of created istances.
      */
-    private int                      created                   = 0;
+    private final AtomicInteger      created                   = new AtomicInteger();
+    /**
+     * Number of pooled istances.
+     */
+    private final AtomicInteger      pooled                    = new AtomicInteger();
     /**
      * If true shutdown in progress.
      */
-    private boolean                  shutdownFlag              = false;
+    private volatile boolean         shutdownFlag              = false;
+    /**
+     * If true the pool has been destroyed.
+     */
+    private volatile boolean         destroyed                 = false;
+
+    private final AtomicLong         poolMiss                  = new AtomicLong();
+    private final AtomicLong         serviceMiss               = new AtomicLong();
+    private final AtomicInteger      maxCreated                = new AtomicInteger();
+    private final Stats              statPoolMiss              = new Stats(1000, 1000, 30);
+    private final Stats              statServiceMiss           = new Stats(1000, 1000, 30);
 
-    private long                     poolMiss                  = 0;
-    private long                     serviceMiss               = 0;
-    private int                      maxCreated                = 0;
-    private Stats                    statPoolMiss              = new Stats(1000, 1000, 30);
-    private Stats                    statServiceMiss           = new Stats(1000, 1000, 30);
+    private final AtomicLong         acquireCount              = new AtomicLong();
+    private final AtomicLong         acquireTimeout            = new AtomicLong();
+    private final AtomicLong         acquireWaitTotal          = new AtomicLong();
+    private final AtomicLong         acquireWaitMax            = new AtomicLong();
+    private final AtomicLongArray    acquireWaitHistogram      = new AtomicLongArray(ACQUIRE_WAIT_BUCKETS.length + 1);
+
+    private ObjectName               jmxObjectName             = null;
 
     /**
      * @param config
@@ -161,11 +205,14 @@ public class DHFactoryPool implements ShutdownEventListener
             throw new DataHandlerException("DHFactoryPool maximumSize(" + maximumSize + ") > maximumCreation(" + maximumCreation
                     + ")");
         }
+        if (maximumCreation != -1) {
+            inUsePermits = new Semaphore(maximumCreation);
+        }
 
         NMDC.push();
         try {
             for (int i = 0; i < initialSize; ++i) {
-                pool.add(createDHFactory());
+                offer(NO_SERVICE, createDHFactory());
             }
         }
         finally {
@@ -176,6 +223,23 @@ public class DHFactoryPool implements ShutdownEventListener
                 + maximumSize + ", maximumCreation=" + maximumCreation + ", defaultTimeout="
                 + defaultTimeout + ", shrinkDelayTime=" + shrinkDelayTime);
         ShutdownEventLauncher.addEventListener(this);
+
+        try {
+            jmxObjectName = JMXEntryPoint.getInstance().registerObject(new DHFactoryPoolInfo(this),
+                    DHFactoryPoolInfo.DESCRIPTOR_NAME);
+        }
+        catch (Exception exc) {
+            logger.warn("Registration failed of MBean " + DHFactoryPoolInfo.DESCRIPTOR_NAME, exc);
+        }
+    }
+
+    /**
+     * @return the name of the registered DHFactoryPoolInfo MBean, or
+     *         <code>null</code> if not registered
+     */
+    public ObjectName getJmxObjectName()
+    {
+        return jmxObjectName;
     }
 
     /**
@@ -247,7 +311,15 @@ public class DHFactoryPool implements ShutdownEventListener
      */
     public int getMaxCreated()
     {
-        return maxCreated;
+        return maxCreated.get();
+    }
+
+    /**
+     * @return Returns the created instance count.
+     */
+    public int getCreatedCount()
+    {
+        return created.get();
     }
 
     /**
@@ -255,7 +327,7 @@ public class DHFactoryPool implements ShutdownEventListener
      */
     public long getPoolMiss()
     {
-        return poolMiss;
+        return poolMiss.get();
     }
 
     /**
@@ -272,7 +344,7 @@ public class DHFactoryPool implements ShutdownEventListener
      */
     public long getServiceMiss()
     {
-        return serviceMiss;
+        return serviceMiss.get();
     }
 
     /**
@@ -289,7 +361,23 @@ public class DHFactoryPool implements ShutdownEventListener
      */
     public int getPooledCount()
     {
-        return pool.size();
+        return pooled.get();
+    }
+
+    /**
+     * @return Returns the pooled instance count, grouped by last executed
+     *         service.
+     */
+    public Map<String, Integer> getPooledCountByService()
+    {
+        Map<String, Integer> counts = new TreeMap<String, Integer>();
+        for (Entry<String, ConcurrentLinkedDeque<DHFactory>> entry : pool.entrySet()) {
+            int size = entry.getValue().size();
+            if (size > 0) {
+                counts.put(entry.getKey(), size);
+            }
+        }
+        return counts;
     }
 
     /**
@@ -305,10 +393,68 @@ public class DHFactoryPool implements ShutdownEventListener
      */
     public void resetCounter()
     {
-        poolMiss = 0;
-        statPoolMiss.reset();
-        serviceMiss = 0;
-        statServiceMiss.reset();
+        poolMiss.set(0);
+        synchronized (statPoolMiss) {
+            statPoolMiss.reset();
+        }
+        serviceMiss.set(0);
+        synchronized (statServiceMiss) {
+            statServiceMiss.reset();
+        }
+        acquireCount.set(0);
+        acquireTimeout.set(0);
+        acquireWaitTotal.set(0);
+        acquireWaitMax.set(0);
+        for (int i = 0; i < acquireWaitHistogram.length(); i++) {
+            acquireWaitHistogram.set(i, 0);
+        }
+    }
+
+    /**
+     * @return Returns the number of successful acquisitions.
+     */
+    public long getAcquireCount()
+    {
+        return acquireCount.get();
+    }
+
+    /**
+     * @return Returns the number of acquisitions failed for timeout.
+     */
+    public long getAcquireTimeout()
+    {
+        return acquireTimeout.get();
+    }
+
+    /**
+     * @return Returns the average acquire wait time, in ms.
+     */
+    public long getAcquireWaitAverage()
+    {
+        long count = acquireCount.get();
+        return (count == 0) ? 0 : acquireWaitTotal.get() / count;
+    }
+
+    /**
+     * @return Returns the maximum acquire wait time, in ms.
+     */
+    public long getAcquireWaitMax()
+    {
+        return acquireWaitMax.get();
+    }
+
+    /**
+     * @return Returns the acquire wait histogram: the i-th element counts the
+     *         acquisitions waiting less than ACQUIRE_WAIT_BUCKETS[i] ms, the
+     *         last one the longer waits.
+     */
+    public long[] getAcquireWaitHistogram()
+    {
+        long[] histogram = new long[acquireWaitHistogram.length()];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = acquireWaitHistogram.get(i);
+        }
+        return histogram;
     }
 
     /**
@@ -339,57 +485,44 @@ public class DHFactoryPool implements ShutdownEventListener
         if (shutdownFlag) {
             throw new DataHandlerException("ShutdownEvent received, pool disabled");
         }
-        long endTime = System.currentTimeMillis() + timeout;
-        String key = name;
-        while (true) {
-            synchronized (this) {
-                if (pool == null) {
-                    return null;
-                }
-
-                if (pool.size() > 0) {
-                    DHFactoryPoolElement dhPoolElement = null;
-                    boolean found = false;
-                    Iterator<DHFactory> i = pool.iterator();
-                    while (i.hasNext() && !found) {
-                        dhPoolElement = (DHFactoryPoolElement) i.next();
-                        found = dhPoolElement.isServiceExecuted(key);
-                    }
-                    if (!found) {
-                        logger.debug("DHFactoryPool - not found instance in pool for key: " + key);
-                        ++serviceMiss;
-                        statServiceMiss.hint();
-                        dhPoolElement = (DHFactoryPoolElement) pool.removeFirst();
-                    }
-                    else {
-                        logger.debug("DHFactoryPool - found instance in pool for key: " + key);
-                        pool.remove(dhPoolElement);
-                    }
-                    logger.debug("DHFactoryPool - extracting instance from pool(" + pool.size() + "/"
-                            + created + "/" + maximumCreation + ")");
-                    assignedDH.add(dhPoolElement);
-                    return dhPoolElement;
-                }
-
-                if ((maximumCreation == -1) || (created < maximumCreation)) {
-                    DHFactory dhf = createDHFactory();
-                    ++poolMiss;
+        if (destroyed) {
+            return null;
+        }
+        String key = (name != null) ? name : NO_SERVICE;
+        long startTime = System.nanoTime();
+        if ((inUsePermits != null) && !inUsePermits.tryAcquire()) {
+            if (!inUsePermits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                acquireTimeout.incrementAndGet();
+                logger.debug("DHFactoryPool - timeout occurred(" + pooled.get() + "/" + created.get() + "/"
+                        + maximumCreation + ")");
+                throw new DataHandlerException("DHFactoryPool Timeout");
+            }
+        }
+        try {
+            DHFactory dhf = poll(key);
+            if (dhf == null) {
+                dhf = createDHFactory();
+                poolMiss.incrementAndGet();
+                synchronized (statPoolMiss) {
                     statPoolMiss.hint();
-                    logger.debug("DHFactoryPool - not found instance in pool for key: " + key);
-                    logger.debug("DHFactoryPool - creating new instance(" + pool.size() + "/" + created
-                            + "/" + maximumCreation + ")");
-                    assignedDH.add(dhf);
-                    return dhf;
-                }
-
-                long waitTime = Math.min(timeout, endTime - System.currentTimeMillis());
-                if (waitTime <= 0) {
-                    logger.debug("DHFactoryPool - timeout occurred(" + pool.size() + "/" + created + "/"
-                            + maximumCreation + ")");
-                    throw new DataHandlerException("DHFactoryPool Timeout");
                 }
-                wait(waitTime);
+                logger.debug("DHFactoryPool - not found instance in pool for key: " + key);
+                logger.debug("DHFactoryPool - creating new instance(" + pooled.get() + "/" + created.get()
+                        + "/" + maximumCreation + ")");
+            }
+            else {
+                logger.debug("DHFactoryPool - extracting instance from pool(" + pooled.get() + "/"
+                        + created.get() + "/" + maximumCreation + ")");
             }
+            assignedDH.add(dhf);
+            recordAcquireWait((System.nanoTime() - startTime) / 1000000);
+            return dhf;
+        }
+        catch (DataHandlerException | RuntimeException exc) {
+            if (inUsePermits != null) {
+                inUsePermits.release();
+            }
+            throw exc;
         }
     }
 
@@ -403,7 +536,7 @@ public class DHFactoryPool implements ShutdownEventListener
             return;
         }
 
-        logger.debug("DHFactoryPool - releasing instance(" + pool.size() + "/" + created + "/"
+        logger.debug("DHFactoryPool - releasing instance(" + pooled.get() + "/" + created.get() + "/"
                 + maximumCreation + ")");
 
         if (shutdownFlag) {
@@ -411,30 +544,30 @@ public class DHFactoryPool implements ShutdownEventListener
             dhf.destroy();
             return;
         }
-        synchronized (this) {
-            try {
-                if (assignedDH.remove(dhf)) {
-                    if ((maximumSize == -1) || ((pool != null) && (pool.size() < maximumSize))) {
-                        pool.addFirst(dhf);
-
-                        long now = System.currentTimeMillis();
-                        if ((shrinkDelayTime == -1) || (now < nextShrinkTime) || (pool.size() <= initialSize)) {
-                            return;
-                        }
-                        logger.debug("DHFactoryPool - shrink time elapsed");
-                        dhf = pool.removeLast();
-                    }
-                    destroyDHFactory(dhf);
-                    logger.debug("DHFactoryPool - destroying instance(" + pool.size() + "/" + created
-                            + "/" + maximumCreation + ")");
+        if (!assignedDH.remove(dhf)) {
+            logger.debug("DHFactoryPool - instance not created by this pool, destroing it");
+            dhf.destroy();
+            return;
+        }
+        try {
+            if (!destroyed && offer(lastService(dhf), dhf)) {
+                long now = System.currentTimeMillis();
+                if ((shrinkDelayTime == -1) || (now < nextShrinkTime) || (pooled.get() <= initialSize)) {
+                    return;
                 }
-                else {
-                    logger.debug("DHFactoryPool - instance not created by this pool, destroing it");
-                    dhf.destroy();
+                logger.debug("DHFactoryPool - shrink time elapsed");
+                dhf = pollLast();
+                if (dhf == null) {
+                    return;
                 }
             }
-            finally {
-                notify();
+            destroyDHFactory(dhf);
+            logger.debug("DHFactoryPool - destroying instance(" + pooled.get() + "/" + created.get()
+                    + "/" + maximumCreation + ")");
+        }
+        finally {
+            if (inUsePermits != null) {
+                inUsePermits.release();
             }
         }
     }
@@ -442,19 +575,31 @@ public class DHFactoryPool implements ShutdownEventListener
     /**
      *
      */
-    public synchronized void destroy()
+    public void destroy()
     {
-        if (pool == null) {
+        if (destroyed) {
             return;
         }
+        destroyed = true;
         logger.debug("DHFactoryPool - Begin destroying instances");
-        while (pool.size() > 0) {
-            DHFactory dhf = pool.removeFirst();
-            destroyDHFactory(dhf);
+        for (ConcurrentLinkedDeque<DHFactory> subPool : pool.values()) {
+            DHFactory dhf = null;
+            while ((dhf = subPool.pollFirst()) != null) {
+                pooled.decrementAndGet();
+                destroyDHFactory(dhf);
+            }
         }
         logger.debug("DHFactoryPool - End destroying instances");
         assignedDH.clear();
-        pool = null;
+        if (jmxObjectName != null) {
+            try {
+                JMXEntryPoint.getInstance().unregisterObject(jmxObjectName);
+            }
+            catch (Exception exc) {
+                logger.warn("Unregistration failed of MBean " + DHFactoryPoolInfo.DESCRIPTOR_NAME, exc);
+            }
+            jmxObjectName = null;
+        }
     }
 
     /**
@@ -477,13 +622,122 @@ public class DHFactoryPool implements ShutdownEventListener
         destroy();
     }
 
+    /**
+     * Extracts an idle instance, preferring one that already executed the
+     * given service.
+     */
+    private DHFactory poll(String key)
+    {
+        DHFactory dhf = null;
+        ConcurrentLinkedDeque<DHFactory> subPool = pool.get(key);
+        if (subPool != null) {
+            dhf = subPool.pollFirst();
+        }
+        if (dhf == null) {
+            dhf = pollExecuted(key);
+        }
+        if (dhf != null) {
+            logger.debug("DHFactoryPool - found instance in pool for key: " + key);
+        }
+        else {
+            for (ConcurrentLinkedDeque<DHFactory> other : pool.values()) {
+                dhf = other.pollFirst();
+                if (dhf != null) {
+                    logger.debug("DHFactoryPool - not found instance in pool for key: " + key);
+                    serviceMiss.incrementAndGet();
+                    synchronized (statServiceMiss) {
+                        statServiceMiss.hint();
+                    }
+                    break;
+                }
+            }
+        }
+        if (dhf != null) {
+            pooled.decrementAndGet();
+        }
+        return dhf;
+    }
+
+    /**
+     * Extracts an idle instance that executed the given service, though not
+     * as last one.
+     */
+    private DHFactory pollExecuted(String key)
+    {
+        for (ConcurrentLinkedDeque<DHFactory> subPool : pool.values()) {
+            for (DHFactory dhf : subPool) {
+                if ((dhf instanceof DHFactoryPoolElement) && ((DHFactoryPoolElement) dhf).isServiceExecuted(key)
+                        && subPool.removeFirstOccurrence(dhf)) {
+                    return dhf;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Extracts the least recently used idle instance.
+     */
+    private DHFactory pollLast()
+    {
+        for (ConcurrentLinkedDeque<DHFactory> subPool : pool.values()) {
+            DHFactory dhf = subPool.pollLast();
+            if (dhf != null) {
+                pooled.decrementAndGet();
+                return dhf;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return false if the pool is full
+     */
+    private boolean offer(String key, DHFactory dhf)
+    {
+        int size = pooled.incrementAndGet();
+        if ((maximumSize != -1) && (size > maximumSize)) {
+            pooled.decrementAndGet();
+            return false;
+        }
+        pool.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<DHFactory>()).addFirst(dhf);
+        return true;
+    }
+
+    private String lastService(DHFactory dhf)
+    {
+        if (dhf instanceof DHFactoryPoolElement) {
+            String service = ((DHFactoryPoolElement) dhf).getLastService();
+            if (service != null) {
+                return service;
+            }
+        }
+        return NO_SERVICE;
+    }
+
+    private void recordAcquireWait(long waitTime)
+    {
+        acquireCount.incrementAndGet();
+        acquireWaitTotal.addAndGet(waitTime);
+        long max = acquireWaitMax.get();
+        while ((waitTime > max) && !acquireWaitMax.compareAndSet(max, waitTime)) {
+            max = acquireWaitMax.get();
+        }
+        int bucket = 0;
+        while ((bucket < ACQUIRE_WAIT_BUCKETS.length) && (waitTime >= ACQUIRE_WAIT_BUCKETS[bucket])) {
+            bucket++;
+        }
+        acquireWaitHistogram.incrementAndGet(bucket);
+    }
+
     private DHFactory createDHFactory() throws DataHandlerException
     {
         DHFactory dhf = new DHFactoryPoolElement();
         nextShrinkTime = System.currentTimeMillis() + shrinkDelayTime;
-        ++created;
-        if (created > maxCreated) {
-            maxCreated = created;
+        int count = created.incrementAndGet();
+        int max = maxCreated.get();
+        while ((count > max) && !maxCreated.compareAndSet(max, count)) {
+            max = maxCreated.get();
         }
         return dhf;
     }
@@ -492,8 +746,6 @@ public class DHFactoryPool implements ShutdownEventListener
     {
         dhf.destroy();
         nextShrinkTime = System.currentTimeMillis() + shrinkDelayTime;
-        if (created > 0) {
-            --created;
-        }
+        created.updateAndGet(c -> (c > 0) ? c - 1 : 0);
     }
 }
@@ -26,8 +26,8 @@ import it.greenvulcano.gvesb.datahandling.DataHandlerException;
 import it.greenvulcano.gvesb.datahandling.IDBOBuilder;
 import it.greenvulcano.gvesb.datahandling.factory.DHFactory;
 
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * DHFactoryPoolElement class.
@@ -38,7 +38,8 @@ import java.util.Set;
  */
 public class DHFactoryPoolElement extends DHFactory implements ConfigurationListener
 {
-    private Set<String> execServices = new HashSet<String>();
+    private Set<String>     execServices = ConcurrentHashMap.newKeySet();
+    private volatile String lastService  = null;
 
     /**
      * @throws GVCoreException
@@ -70,6 +71,14 @@ public class DHFactoryPoolElement extends DHFactory implements ConfigurationList
         return execServices.contains(name);
     }
 
+    /**
+     * @return the last executed service, or <code>null</code>
+     */
+    public String getLastService()
+    {
+        return lastService;
+    }
+
     /**
      * @see it.greenvulcano.gvesb.datahandling.factory.DHFactory#getDBOBuilder(String)
      */
@@ -90,6 +99,7 @@ public class DHFactoryPoolElement extends DHFactory implements ConfigurationList
     {
         if ((event.getCode() == ConfigurationEvent.EVT_FILE_REMOVED) && event.getFile().equals(DHFactory.DH_CONFIG_FILENAME)) {
             execServices.clear();
+            lastService = null;
             destroy();
         }
     }
@@ -97,5 +107,6 @@ public class DHFactoryPoolElement extends DHFactory implements ConfigurationList
     private void registerService(String name)
     {
         execServices.add(name);
+        lastService = name;
     }
 }
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ *
+ * This file is part of GreenVulcano ESB.
+ *
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package it.greenvulcano.gvesb.datahandling.factory.pool;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * DHFactoryPoolInfo class.
+ * JMX view of the <code>DHFactoryPool</code> counters.
+ *
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ *
+ */
+public class DHFactoryPoolInfo
+{
+    /**
+     * the object JMX descriptor.
+     */
+    public static final String           DESCRIPTOR_NAME = "DHFactoryPoolInfo";
+
+    private WeakReference<DHFactoryPool> pool            = null;
+
+    /**
+     * @param pool
+     */
+    public DHFactoryPoolInfo(DHFactoryPool pool)
+    {
+        this.pool = new WeakReference<DHFactoryPool>(pool);
+    }
+
+    /**
+     * @return the initialSize
+     */
+    public int getInitialSize()
+    {
+        return pool.get().getInitialSize();
+    }
+
+    /**
+     * @return the maximumSize
+     */
+    public int getMaximumSize()
+    {
+        return pool.get().getMaximumSize();
+    }
+
+    /**
+     * @return the maximumCreation
+     */
+    public int getMaximumCreation()
+    {
+        return pool.get().getMaximumCreation();
+    }
+
+    /**
+     * @return the defaultTimeout
+     */
+    public long getDefaultTimeout()
+    {
+        return pool.get().getDefaultTimeout();
+    }
+
+    /**
+     * @return Returns the maxCreated.
+     */
+    public int getMaxCreated()
+    {
+        return pool.get().getMaxCreated();
+    }
+
+    /**
+     * @return Returns the created instance count.
+     */
+    public int getCreatedCount()
+    {
+        return pool.get().getCreatedCount();
+    }
+
+    /**
+     * @return Returns the pooled instance count.
+     */
+    public int getPooledCount()
+    {
+        return pool.get().getPooledCount();
+    }
+
+    /**
+     * @return Returns the pooled instance count, grouped by last executed
+     *         service.
+     */
+    public String getPooledCountByService()
+    {
+        return pool.get().getPooledCountByService().toString();
+    }
+
+    /**
+     * @return Returns the used instance count.
+     */
+    public int getInUseCount()
+    {
+        return pool.get().getInUseCount();
+    }
+
+    /**
+     * @return Returns the poolMiss.
+     */
+    public long getPoolMiss()
+    {
+        return pool.get().getPoolMiss();
+    }
+
+    /**
+     * @return PoolMiss ratio value
+     */
+    public float getPoolMissRatio()
+    {
+        return pool.get().getPoolMissRatio();
+    }
+
+    /**
+     * @return Returns the serviceMiss.
+     */
+    public long getServiceMiss()
+    {
+        return pool.get().getServiceMiss();
+    }
+
+    /**
+     * @return ServiceMiss ratio value
+     */
+    public float getServiceMissRatio()
+    {
+        return pool.get().getServiceMissRatio();
+    }
+
+    /**
+     * @return Returns the number of successful acquisitions.
+     */
+    public long getAcquireCount()
+    {
+        return pool.get().getAcquireCount();
+    }
+
+    /**
+     * @return Returns the number of acquisitions failed for timeout.
+     */
+    public long getAcquireTimeout()
+    {
+        return pool.get().getAcquireTimeout();
+    }
+
+    /**
+     * @return Returns the average acquire wait time, in ms.
+     */
+    public long getAcquireWaitAverage()
+    {
+        return pool.get().getAcquireWaitAverage();
+    }
+
+    /**
+     * @return Returns the maximum acquire wait time, in ms.
+     */
+    public long getAcquireWaitMax()
+    {
+        return pool.get().getAcquireWaitMax();
+    }
+
+    /**
+     * @return Returns the acquire wait histogram, as
+     *         <code>&lt;upper bound ms&gt;=count</code> pairs.
+     */
+    public String getAcquireWaitHistogram()
+    {
+        long[] histogram = pool.get().getAcquireWaitHistogram();
+        long[] buckets = DHFactoryPool.ACQUIRE_WAIT_BUCKETS;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < histogram.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append((i < buckets.length) ? "<" + buckets[i] : ">=" + buckets[buckets.length - 1]).append("=").append(
+                    histogram[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reset the pool counters.
+     */
+    public void resetCounter()
+    {
+        pool.get().resetCounter();
+    }
+}
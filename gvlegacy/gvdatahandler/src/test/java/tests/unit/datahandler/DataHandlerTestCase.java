@@ -23,15 +23,32 @@ package tests.unit.datahandler;
 import it.greenvulcano.configuration.XMLConfig;
 import it.greenvulcano.gvesb.datahandling.DHResult;
 import it.greenvulcano.gvesb.datahandling.IDBOBuilder;
+import it.greenvulcano.gvesb.datahandling.dbo.StatementCache;
+import it.greenvulcano.gvesb.datahandling.dbo.StatementInfo;
 import it.greenvulcano.gvesb.datahandling.factory.DHFactory;
+import it.greenvulcano.gvesb.datahandling.factory.pool.DHFactoryPool;
+import it.greenvulcano.gvesb.datahandling.factory.pool.DHFactoryPoolElement;
 import it.greenvulcano.util.metadata.PropertiesHandler;
 import it.greenvulcano.util.txt.TextUtils;
 import it.greenvulcano.util.xml.XMLUtils;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.xml.parsers.DocumentBuilderFactory;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
@@ -94,6 +111,30 @@ public class DataHandlerTestCase {
         assertEquals("123,45", field3);
     }
 
+    @Test
+    public void testDHCallSelectStream() throws Exception {
+
+        String operation = "GVESB::TestSelectStream";
+        IDBOBuilder dboBuilder = dhFactory.getDBOBuilder(operation);
+        DHResult result = dboBuilder.EXECUTE(operation, null, null);
+        assertNotNull(result);
+        assertEquals(0, result.getDiscard());
+        assertEquals(1, result.getTotal());
+        assertEquals(1, result.getRead());
+        Document output = (Document) result.getData();
+        assertNotNull(output);
+        assertEquals("RowSet", output.getDocumentElement().getNodeName());
+        Node data = output.getDocumentElement().getChildNodes().item(0);
+        assertEquals("data", data.getNodeName());
+        Node row = data.getChildNodes().item(0);
+        NodeList cols = row.getChildNodes();
+        assertEquals(4, cols.getLength());
+        assertEquals("1", cols.item(0).getTextContent());
+        assertEquals("testvalue", cols.item(1).getTextContent());
+        assertEquals("2000-01-01 12:30:45", cols.item(2).getTextContent());
+        assertEquals("123,45", cols.item(3).getTextContent());
+    }
+
     @Test
     public void testDHCallSelectMulti() throws Exception {
 
@@ -142,6 +183,190 @@ public class DataHandlerTestCase {
 
     }
 
+    @Test
+    public void testDHCallParallelSelect() throws Exception {
+
+        String operation = "GVESB::TestParallelSelect";
+        IDBOBuilder dboBuilder = dhFactory.getDBOBuilder(operation);
+        DHResult result = dboBuilder.EXECUTE(operation, null, null);
+        assertNotNull(result);
+        assertEquals(0, result.getDiscard());
+        assertEquals(3, result.getTotal());
+        assertEquals(3, result.getRead());
+        Document output = (Document) result.getData();
+        assertNotNull(output);
+        NodeList rows = XMLConfig.getNodeList(output, "/RowSet/data/row");
+        assertEquals(3, rows.getLength());
+        for (int i = 0; i < rows.getLength(); i++) {
+            assertEquals(Integer.toString(i), XMLConfig.get(rows.item(i), "@id"));
+        }
+    }
+
+    @Test
+    public void testDHFactoryPoolInfoRegistration() throws Exception {
+
+        DHFactoryPool pool = DHFactoryPool.instance();
+        ObjectName name = pool.getJmxObjectName();
+        assertNotNull(name);
+        for (MBeanServer server : MBeanServerFactory.findMBeanServer(null)) {
+            if (server.isRegistered(name)) {
+                assertEquals(pool.getMaximumSize(), server.getAttribute(name, "maximumSize"));
+                assertNotNull(server.getAttribute(name, "acquireWaitHistogram"));
+                server.invoke(name, "resetCounter", null, null);
+                assertEquals(0L, server.getAttribute(name, "acquireCount"));
+            }
+        }
+    }
+
+    @Test
+    public void testDHFactoryPoolServiceAffinity() throws Exception {
+
+        DHFactoryPool pool = DHFactoryPool.instance();
+        DHFactory dhf = pool.getDHFactory("GVESB::TestSelect");
+        dhf.getDBOBuilder("GVESB::TestSelect");
+        dhf.getDBOBuilder("GVESB::TestInsert");
+        pool.releaseDHFactory(dhf);
+        pool.resetCounter();
+
+        // executed TestSelect before TestInsert: still preferred for TestSelect
+        DHFactory again = pool.getDHFactory("GVESB::TestSelect");
+        try {
+            assertTrue(((DHFactoryPoolElement) again).isServiceExecuted("GVESB::TestSelect"));
+            assertEquals(0, pool.getServiceMiss());
+        }
+        finally {
+            pool.releaseDHFactory(again);
+        }
+    }
+
+    @Test
+    public void testDHFactoryPoolConcurrentAcquire() throws Exception {
+
+        final DHFactoryPool pool = DHFactoryPool.instance();
+        pool.resetCounter();
+        final String[] operations = {"GVESB::TestSelect", "GVESB::TestInsert", "GVESB::TestThreadSelect"};
+        final int threads = 16;
+        final int loops = 100;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final String operation = operations[i % operations.length];
+            workers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int j = 0; j < loops; j++) {
+                        DHFactory dhf = pool.getDHFactory(operation);
+                        pool.releaseDHFactory(dhf);
+                    }
+                }
+                catch (Throwable exc) {
+                    failure.compareAndSet(null, exc);
+                }
+            });
+            workers[i].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertNull(failure.get());
+        assertEquals(0, pool.getInUseCount());
+        assertEquals(threads * loops, pool.getAcquireCount());
+        assertTrue(pool.getPooledCount() <= pool.getMaximumSize());
+        assertTrue(pool.getMaxCreated() <= pool.getMaximumCreation());
+    }
+
+    @Test
+    public void testStatementCache() throws Exception {
+
+        assertNull(dhFactory.getStatementCache());
+        StatementCache cache = new StatementCache(1);
+        Connection conn = Commons.getConnection();
+        try {
+            String sql = "insert into testtable (id, field1) values (?, ?)";
+            PreparedStatement ps = cache.prepareStatement(conn, sql, false);
+            StatementInfo info = new StatementInfo("0", sql, ps);
+            info.setCache(cache);
+            info.close();
+            assertFalse(ps.isClosed());
+            assertSame(ps, cache.prepareStatement(conn, sql, false));
+            cache.release(ps);
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getMisses());
+
+            PreparedStatement psKeys = cache.prepareStatement(conn, sql, true);
+            assertNotSame(ps, psKeys);
+            cache.release(psKeys);
+            assertEquals(1, cache.getEvictions());
+            assertTrue(ps.isClosed());
+            assertEquals(1, cache.size());
+        }
+        finally {
+            conn.close();
+        }
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testStatementCachePooledConnection() throws Exception {
+
+        StatementCache cache = new StatementCache(4);
+        Connection physical = Commons.getConnection();
+        try {
+            String sql = "insert into testtable (id, field1) values (?, ?)";
+            Connection logical = pooledConnection(physical);
+            PreparedStatement ps = cache.prepareStatement(logical, sql, false);
+            cache.release(ps);
+            // reused while the same logical connection is checked out
+            assertSame(ps, cache.prepareStatement(logical, sql, false));
+            cache.release(ps);
+            cache.closeStatements(logical);
+            logical.close();
+            assertTrue(ps.isClosed());
+            assertEquals(0, cache.size());
+
+            // a new checkout prepares the statement again, through the pool
+            logical = pooledConnection(physical);
+            PreparedStatement ps2 = cache.prepareStatement(logical, sql, false);
+            assertNotSame(ps, ps2);
+            cache.release(ps2);
+            cache.closeStatements(logical);
+            logical.close();
+            assertEquals(1, cache.getHits());
+            assertEquals(2, cache.getMisses());
+        }
+        finally {
+            physical.close();
+        }
+        cache.clear();
+    }
+
+    /**
+     * Simulates the logical connection handed out by a pool: a new wrapper on
+     * every checkout, whose close() gives back the physical connection.
+     */
+    private static Connection pooledConnection(final Connection physical) {
+
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            return null;
+                        case "unwrap":
+                            return physical;
+                        default:
+                            try {
+                                return method.invoke(physical, args);
+                            }
+                            catch (InvocationTargetException exc) {
+                                throw exc.getCause();
+                            }
+                    }
+                });
+    }
+
     @Test
     public void testDHCallSelectMerge() throws Exception {
 
@@ -154,6 +379,25 @@ public class DataHandlerTestCase {
         System.out.println("TestSelectMerge: " + XMLUtils.serializeDOM_S(output));
     }
 
+    @Test
+    public void testDHCallXML2DBStream() throws Exception {
+
+        String operation = "GVESB::TestInsert";
+        IDBOBuilder dboBuilder = dhFactory.getDBOBuilder(operation);
+        String input = XMLUtils.serializeDOM_S(Commons.createInsertMessage());
+        dboBuilder.XML2DB(operation, new ByteArrayInputStream(input.getBytes("UTF-8")), null);
+
+        Connection conn = Commons.getConnection();
+        try {
+            ResultSet rs = conn.createStatement().executeQuery("select count(*) from testtable");
+            assertTrue(rs.next());
+            assertEquals(3, rs.getInt(1));
+        }
+        finally {
+            conn.close();
+        }
+    }
+
     @Test
     public final void testDHCallInsertOrUpdate() throws Exception {
 
@@ -178,6 +422,72 @@ public class DataHandlerTestCase {
         assertEquals("", result.getDiscardCauseListAsString());
     }
 
+    @Test
+    public final void testDHCallInsertBatch() throws Exception {
+
+        String operation = "GVESB::TestInsertBatch";
+        IDBOBuilder dboBuilder = dhFactory.getDBOBuilder(operation);
+        DHResult result = dboBuilder.EXECUTE(operation, Commons.createInsertMessage(), null);
+        assertEquals(0, result.getDiscard());
+        assertEquals(0, result.getUpdate());
+        assertEquals(2, result.getTotal());
+        assertEquals(2, result.getInsert());
+        assertEquals(0, result.getRead());
+        assertEquals("", result.getDiscardCauseListAsString());
+
+        operation = "GVESB::TestSelect";
+        dboBuilder = dhFactory.getDBOBuilder(operation);
+        result = dboBuilder.EXECUTE(operation, null, null);
+        assertEquals(3, result.getRead());
+    }
+
+    @Test
+    public final void testDHCallInsertBatchReplay() throws Exception {
+
+        // the row with id 1 already exists: the batch fails and the rows not
+        // executed are replayed one by one
+        String operation = "GVESB::TestInsertBatchReplay";
+        IDBOBuilder dboBuilder = dhFactory.getDBOBuilder(operation);
+        DHResult result = dboBuilder.EXECUTE(operation, createIdMessage(4, 1, 5), null);
+        assertEquals(1, result.getDiscard());
+        assertEquals(3, result.getTotal());
+        assertEquals(2, result.getInsert());
+        assertTrue(result.getDiscardCauseListAsString().length() > 0);
+
+        Connection conn = Commons.getConnection();
+        try {
+            ResultSet rs = conn.prepareStatement("select field1 from testtable where id in (4, 5) order by id").executeQuery();
+            assertTrue(rs.next());
+            assertEquals("value4", rs.getString(1));
+            assertTrue(rs.next());
+            assertEquals("value5", rs.getString(1));
+            assertFalse(rs.next());
+        }
+        finally {
+            conn.close();
+        }
+    }
+
+    private static Document createIdMessage(int... ids) throws Exception {
+
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element data = doc.createElement("data");
+        doc.appendChild(doc.createElement("RowSet")).appendChild(data);
+        for (int id : ids) {
+            Element row = doc.createElement("row");
+            data.appendChild(row);
+            Element col = doc.createElement("col");
+            col.setAttribute("type", "integer");
+            col.appendChild(doc.createTextNode(String.valueOf(id)));
+            row.appendChild(col);
+            col = doc.createElement("col");
+            col.setAttribute("type", "string");
+            col.appendChild(doc.createTextNode("value" + id));
+            row.appendChild(col);
+        }
+        return doc;
+    }
+
     @Test
     public final void testDHCallMultiInsertOrUpdate() throws Exception {
 
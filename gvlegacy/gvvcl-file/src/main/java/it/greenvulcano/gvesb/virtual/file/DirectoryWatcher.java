@@ -2,18 +2,25 @@ package it.greenvulcano.gvesb.virtual.file;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchEvent.Kind;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
-import java.util.Optional;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,21 +31,48 @@ import it.greenvulcano.gvesb.core.pool.GreenVulcanoPool;
 import it.greenvulcano.gvesb.core.pool.GreenVulcanoPoolException;
 import it.greenvulcano.gvesb.core.pool.GreenVulcanoPoolManager;
 
+/**
+ * Watches a directory, and optionally its whole subtree, forwarding the file
+ * events to a GreenVulcano service.
+ *
+ * The events on the same file within the <code>debounce</code> window are
+ * coalesced and fired once, when the file has been quiet for the whole window;
+ * at most <code>maxPending</code> forwards can be waiting or running at once,
+ * further events are kept, coalesced per file, and retried on the next flush,
+ * so the events-loop thread shared with the other watchers never blocks.
+ */
 public class DirectoryWatcher  {
 	private static final Logger LOG = LoggerFactory.getLogger(DirectoryWatcher.class);
 	private static final ExecutorService executorService = Executors.newWorkStealingPool();
+	private static final Kind<?>[] ALL_KINDS = { StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+			                                     StandardWatchEventKinds.ENTRY_MODIFY };
 
 	private final String name;
 	private final Path directory;
-		
+
 	private final String service, operation;
-	
-	private final WatchService watcher;
-	private final WatchKey watchKey;
-		
+
+	private final Set<Kind<Path>> events;
+	private final Map<WatchKey, Path> watchKeys = new ConcurrentHashMap<>();
+	private WatchService watcher;
+
 	private final boolean processFileContent;
-	 
-	
+	private final boolean recursive;
+	private final long debounce;
+
+	private final Semaphore pendingForwards;
+	private final Map<Path, PendingEvent> pendingEvents = new ConcurrentHashMap<>();
+
+	private static final class PendingEvent {
+		private final Kind<?> kind;
+		private final long time;
+
+		PendingEvent(Kind<?> kind, long time) {
+			this.kind = kind;
+			this.time = time;
+		}
+	}
+
 	public String getName() {
 		return name;
 	}
@@ -46,134 +80,246 @@ public class DirectoryWatcher  {
 	public Path getDirectory() {
 		return directory;
 	}
-	
+
 	public String getService() {
 		return service;
 	}
-	
+
 	public String getOperation() {
 		return operation;
 	}
 
+	public boolean isRecursive() {
+		return recursive;
+	}
+
+	public long getDebounce() {
+		return debounce;
+	}
+
 	public DirectoryWatcher(String name, Path directory, String service, String operation, Set<Kind<Path>> events, boolean processFileContent) throws IOException {
+		this(name, directory, service, operation, events, processFileContent, false, 0, Integer.MAX_VALUE);
+	}
+
+	public DirectoryWatcher(String name, Path directory, String service, String operation, Set<Kind<Path>> events, boolean processFileContent,
+			                boolean recursive, long debounce, int maxPending) throws IOException {
 
 		if (directory != null && Files.exists(directory) && Files.isDirectory(directory)) {
 
 			this.name = name;
 			this.directory = directory;
-
-			this.watcher = FileSystems.getDefault().newWatchService();
-			this.watchKey = directory.register(watcher, events.toArray(new Kind<?>[events.size()]));
+			this.events = events;
 
 			this.service = service;
 			this.operation = operation;
-						
+
 			this.processFileContent = processFileContent;
+			this.recursive = recursive;
+			this.debounce = debounce;
+			this.pendingForwards = new Semaphore(maxPending > 0 ? maxPending : Integer.MAX_VALUE);
 
 		} else {
 			throw new FileNotFoundException();
 		}
 
 	}
-	
-	void processEvents() {
-		
-		Optional.ofNullable(watcher.poll())
-		        .ifPresent(eventKey -> {
-		        	
-		        	eventKey.pollEvents()
-		        	        .stream()
-		        	        .map(this::buildGVBuffer)
-		        	        .filter(Optional::isPresent)
-		        	        .map(Optional::get)		        	        
-		        	        .map(GreenVulcanoExecutor::new)
-		        	        .forEach(executorService::submit);
-		        	
-		        	eventKey.reset();
-		        	
-		        });
-		      
-	}
-	
-	void dismiss() {
-		LOG.debug("DirectoryWatcher["+name+"] stopping on "+directory);
-		if(watchKey.isValid()) {			
-			watchKey.cancel();			
+
+	/**
+	 * Registers the target directory, and its subtree if recursive, on the
+	 * given WatchService
+	 */
+	void register(WatchService watcher) throws IOException {
+		this.watcher = watcher;
+		if (recursive) {
+			registerTree(directory);
+		} else {
+			register(directory);
 		}
-		
+	}
+
+	private void register(Path dir) throws IOException {
+		// the WatchService is shared by the watchers on the same FileSystem and
+		// a directory has a single WatchKey: all the kinds are registered and
+		// filtered by each watcher
+		watchKeys.put(dir.register(watcher, ALL_KINDS), dir);
+	}
+
+	private void registerTree(Path root) throws IOException {
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				register(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	boolean owns(WatchKey key) {
+		return watchKeys.containsKey(key);
+	}
+
+	/**
+	 * Processes the events signaled on one of the keys owned by this watcher
+	 */
+	void processEvents(WatchKey eventKey, List<WatchEvent<?>> keyEvents) {
+		Path dir = watchKeys.get(eventKey);
+		if (dir == null) {
+			return;
+		}
+
+		for (WatchEvent<?> event : keyEvents) {
+			Kind<?> kind = event.kind();
+
+			if (StandardWatchEventKinds.OVERFLOW.equals(kind)) {
+				LOG.error("DirectoryWatcher["+name+"] on "+dir+" got OVERFLOW processing events: "+ event.context());
+				continue;
+			}
+
+			Path file = dir.resolve((Path) event.context());
+
+			if (recursive && StandardWatchEventKinds.ENTRY_CREATE.equals(kind) && Files.isDirectory(file)) {
+				registerCreatedTree(file);
+			}
+
+			if (events.contains(kind)) {
+				enqueue(file, kind);
+			}
+		}
+	}
+
+	void invalidate(WatchKey eventKey) {
+		watchKeys.remove(eventKey);
+	}
+
+	/**
+	 * A directory moved into the tree carries its content: the files already
+	 * there will never be notified
+	 */
+	private void registerCreatedTree(Path dir) {
 		try {
-			watcher.close();
+			registerTree(dir);
+
+			if (events.contains(StandardWatchEventKinds.ENTRY_CREATE)) {
+				try (Stream<Path> files = Files.walk(dir)) {
+					Path[] content = files.filter(f -> !f.equals(dir)).toArray(Path[]::new);
+					for (Path f : content) {
+						enqueue(f, StandardWatchEventKinds.ENTRY_CREATE);
+					}
+				}
+			}
 		} catch (IOException e) {
-			LOG.error("DirectoryWatcher["+name+"] interruped on "+directory, e);
-		} 	
-		
+			LOG.error("DirectoryWatcher["+name+"] fails registering "+dir, e);
+		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private Optional<GVBuffer> buildGVBuffer(WatchEvent<?> event) {
-		WatchEvent.Kind<?> kind = event.kind();
-
-		if (StandardWatchEventKinds.OVERFLOW.equals(kind)) {
-			LOG.error("DirectoryWatcher["+name+"] on "+directory+" got OVERFLOW processing events: "+ event.context());
+	private void enqueue(Path file, Kind<?> kind) {
+		if (debounce <= 0 && !pendingEvents.containsKey(file) && pendingForwards.tryAcquire()) {
+			dispatch(file, kind);
 		} else {
-		
-		
-			WatchEvent<Path> ev = (WatchEvent<Path>)event;
-			Path filename = ev.context();
-	
-			try {
-				GVBuffer gvbuffer = new GVBuffer();
-	
-				gvbuffer.setService(service);
-	
-				gvbuffer.setProperty("DIRECTORY_WATCHER_NAME", getName());
-				gvbuffer.setProperty("DIRECTORY_WATCHER_TARGET", getDirectory().toString());
-				gvbuffer.setProperty("DIRECTORY_WATCHER_FILE", filename.toString());
-				gvbuffer.setProperty("DIRECTORY_WATCHER_EVENT", kind.name());
-				
-				if (processFileContent && !StandardWatchEventKinds.ENTRY_DELETE.equals(kind)) {
-					LOG.debug("DirectoryWatcher ["+name+"] process file content ");
-					gvbuffer.setObject(Files.readAllBytes(getDirectory().resolve(filename)));
-				}		
-	
-				return Optional.of(gvbuffer);
-			} catch (GVException | IOException e) {
-				LOG.error("DirectoryWatcher["+name+"] on "+directory+" fails building GVBuffer", e);
+			pendingEvents.merge(file, new PendingEvent(kind, System.currentTimeMillis()), DirectoryWatcher::coalesce);
+		}
+	}
+
+	private static PendingEvent coalesce(PendingEvent previous, PendingEvent current) {
+		if (StandardWatchEventKinds.ENTRY_CREATE.equals(previous.kind)) {
+			if (StandardWatchEventKinds.ENTRY_DELETE.equals(current.kind)) {
+				// created and deleted within the window: nothing to notify
+				return null;
+			}
+			return new PendingEvent(previous.kind, current.time);
+		}
+		return current;
+	}
+
+	/**
+	 * Fires the pending events quiet for the whole debounce window, as long as
+	 * a forward is available: the others wait for the next flush
+	 */
+	void flush(long now) {
+		for (Map.Entry<Path, PendingEvent> entry : pendingEvents.entrySet()) {
+			PendingEvent pending = entry.getValue();
+			if ((now - pending.time) >= debounce) {
+				if (!pendingForwards.tryAcquire()) {
+					break;
+				}
+				if (pendingEvents.remove(entry.getKey(), pending)) {
+					dispatch(entry.getKey(), pending.kind);
+				} else {
+					pendingForwards.release();
+				}
 			}
+		}
+	}
 
+	/**
+	 * Submits the forward of the event, the caller holds a pending forward
+	 * permit released when the forward completes
+	 */
+	private void dispatch(Path file, Kind<?> kind) {
+		try {
+			executorService.submit(() -> {
+				try {
+					forward(file, kind);
+				} finally {
+					pendingForwards.release();
+				}
+			});
+		} catch (RuntimeException e) {
+			pendingForwards.release();
+			throw e;
 		}
-		return Optional.empty();
 	}
 
-	
-	private class GreenVulcanoExecutor implements Runnable {
+	void dismiss() {
+		LOG.debug("DirectoryWatcher["+name+"] stopping on "+directory);
+		watchKeys.keySet().stream().filter(WatchKey::isValid).forEach(WatchKey::cancel);
+		watchKeys.clear();
+		pendingEvents.clear();
+	}
+
+	private GVBuffer buildGVBuffer(Path file, Kind<?> kind) throws GVException, IOException {
+		GVBuffer gvbuffer = new GVBuffer();
 
-		private final GreenVulcanoPool greenVulcano;
-		private final GVBuffer inputBuffer;
+		gvbuffer.setService(service);
 
-		GreenVulcanoExecutor(GVBuffer inputBuffer) {
-			this.inputBuffer = inputBuffer;
-			this.greenVulcano = GreenVulcanoPoolManager.instance()
-					.getGreenVulcanoPool("DirectoryWatcher")
-					.orElseGet(GreenVulcanoPoolManager::getDefaultGreenVulcanoPool);
+		gvbuffer.setProperty("DIRECTORY_WATCHER_NAME", getName());
+		gvbuffer.setProperty("DIRECTORY_WATCHER_TARGET", getDirectory().toString());
+		gvbuffer.setProperty("DIRECTORY_WATCHER_FILE", getDirectory().relativize(file).toString());
+		gvbuffer.setProperty("DIRECTORY_WATCHER_EVENT", kind.name());
 
+		if (processFileContent && !StandardWatchEventKinds.ENTRY_DELETE.equals(kind)) {
+			LOG.debug("DirectoryWatcher ["+name+"] process file content ");
+			gvbuffer.setObject(Files.readAllBytes(file));
 		}
 
+		return gvbuffer;
+	}
 
-		@Override
-		public void run() {
-			try {
-				LOG.debug("DirectoryWatcher ["+name+"] forwarding event to "+inputBuffer.getService()+"/"+getOperation());
-				greenVulcano.forward(inputBuffer, getOperation());
+	/**
+	 * Forwards the event to the configured service
+	 */
+	void forward(Path file, Kind<?> kind) {
+		GVBuffer inputBuffer = null;
+		try {
+			inputBuffer = buildGVBuffer(file, kind);
+		} catch (GVException | IOException e) {
+			LOG.error("DirectoryWatcher["+name+"] on "+directory+" fails building GVBuffer", e);
+			return;
+		}
 
-			} catch (GVPublicException e) {
-				LOG.error("DirectoryWatcher ["+name+"] on "+directory+" got error in forward ", e);
-			} catch (GreenVulcanoPoolException e) {
-				LOG.error("DirectoryWatcher ["+name+"] on "+directory+" got error getting pool instance", e);
-			}
+		try {
+			GreenVulcanoPool greenVulcano = GreenVulcanoPoolManager.instance()
+					.getGreenVulcanoPool("DirectoryWatcher")
+					.orElseGet(GreenVulcanoPoolManager::getDefaultGreenVulcanoPool);
 
-		}
+			LOG.debug("DirectoryWatcher ["+name+"] forwarding event to "+inputBuffer.getService()+"/"+getOperation());
+			greenVulcano.forward(inputBuffer, getOperation());
 
+		} catch (GVPublicException e) {
+			LOG.error("DirectoryWatcher ["+name+"] on "+directory+" got error in forward ", e);
+		} catch (GreenVulcanoPoolException e) {
+			LOG.error("DirectoryWatcher ["+name+"] on "+directory+" got error getting pool instance", e);
+		}
 	}
 
 	@Override
@@ -218,6 +364,6 @@ public class DirectoryWatcher  {
 			return false;
 		return true;
 	}
-	
+
 
 }
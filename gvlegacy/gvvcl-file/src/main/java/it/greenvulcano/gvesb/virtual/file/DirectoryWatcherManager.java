@@ -1,15 +1,24 @@
 package it.greenvulcano.gvesb.virtual.file;
 
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystem;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
 import java.nio.file.WatchEvent.Kind;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -26,15 +35,24 @@ import it.greenvulcano.configuration.XMLConfig;
 import it.greenvulcano.configuration.XMLConfigException;
 import it.greenvulcano.gvesb.core.config.GreenVulcanoConfig;
 
+/**
+ * Runs the configured DirectoryWatchers: a thread for each watched
+ * FileSystem blocks on its WatchService, dispatching the signaled keys to
+ * their owner, while a scheduled task fires the debounced events and the
+ * ones deferred because of <code>max-pending</code>.
+ */
 public final class DirectoryWatcherManager implements Runnable {
 	private static final Logger LOG = LoggerFactory.getLogger(DirectoryWatcherManager.class);
 	
-	private final static Set<DirectoryWatcher> directoryWatchers = new LinkedHashSet<>();	
+	private final static Set<DirectoryWatcher> directoryWatchers = new CopyOnWriteArraySet<>();	
 	private final static Map<String, Kind<Path>> eventKinds = new  LinkedHashMap<>();
 	
 	private static final AtomicBoolean running;	
+	private static final Map<FileSystem, WatchService> watchServices = new LinkedHashMap<>();
+	private static final List<Thread> watchThreads = new ArrayList<>();
+
 	private static final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
-	private static final long POLLING_RATE = 120; 
+	private static final long FLUSH_RATE = 50;
 	
 	
 	private static ScheduledFuture<?> watcherSchedule = null;
@@ -70,19 +88,32 @@ public final class DirectoryWatcherManager implements Runnable {
 				if (directoryWatchers.isEmpty()) {					
 					LOG.debug("No DirectoryWatcherManager founds");					
 				} else {
-					LOG.debug("Scheduling DirectoryWatcherManager events-loop");
-					watcherSchedule = executorService.scheduleAtFixedRate(new DirectoryWatcherManager(), POLLING_RATE, POLLING_RATE, TimeUnit.MILLISECONDS);
+					startWatchers();
 				}
 			
 			} catch (XMLConfigException e) {
 				LOG.error("Error reading configuration", e);
-			}			
+			} catch (IOException e) {
+				LOG.error("Error starting DirectoryWatcherManager", e);
+			}
 		
 		} else {
 			LOG.debug("DirectoryWatcherManager already running");
 		}
 	}
 	
+	/**
+	 * Starts the given DirectoryWatchers in place of the configured ones
+	 */
+	static void setUp(Collection<DirectoryWatcher> watchers) throws IOException {
+		if (running.compareAndSet(false, true)) {
+			directoryWatchers.addAll(watchers);
+			startWatchers();
+		} else {
+			LOG.debug("DirectoryWatcherManager already running");
+		}
+	}
+
 	static void shutDown() {
 		LOG.debug("Finalizing FileAdapter....");
 		
@@ -90,6 +121,7 @@ public final class DirectoryWatcherManager implements Runnable {
 			
 			try {				
 				Optional.ofNullable(watcherSchedule).ifPresent(s -> s.cancel(false));				
+				watcherSchedule = null;
 				
 			} catch (Exception e) {
 				LOG.error("Error stopping executor service", e);
@@ -98,6 +130,17 @@ public final class DirectoryWatcherManager implements Runnable {
 			
 			directoryWatchers.stream().forEach(DirectoryWatcher::dismiss);			
 			directoryWatchers.clear();
+
+			// closing the WatchServices wakes up the blocked threads
+			for (WatchService watchService : watchServices.values()) {
+				try {
+					watchService.close();
+				} catch (IOException e) {
+					LOG.error("Error closing WatchService", e);
+				}
+			}
+			watchServices.clear();
+			watchThreads.clear();
 			
 			LOG.debug("DirectoryWatcherManager stopped");
 		} else {
@@ -108,15 +151,40 @@ public final class DirectoryWatcherManager implements Runnable {
 		
 	}
 	
+	private static void startWatchers() throws IOException {
+		for (DirectoryWatcher directoryWatcher : directoryWatchers) {
+			FileSystem fileSystem = directoryWatcher.getDirectory().getFileSystem();
+			WatchService watchService = watchServices.get(fileSystem);
+			if (watchService == null) {
+				watchService = fileSystem.newWatchService();
+				watchServices.put(fileSystem, watchService);
+			}
+			directoryWatcher.register(watchService);
+		}
+
+		for (WatchService watchService : watchServices.values()) {
+			Thread thread = new Thread(new WatchLoop(watchService), "DirectoryWatcher#" + watchThreads.size());
+			thread.setDaemon(true);
+			thread.start();
+			watchThreads.add(thread);
+		}
+
+		LOG.debug("Scheduling DirectoryWatcherManager flush");
+		watcherSchedule = executorService.scheduleWithFixedDelay(new DirectoryWatcherManager(), FLUSH_RATE, FLUSH_RATE, TimeUnit.MILLISECONDS);
+	}
+
 	private static void configure(Node directoryWatcherNode) {
 		try {
 			String name = XMLConfig.get(directoryWatcherNode, "@name");
 			String directory = XMLConfig.get(directoryWatcherNode, "@target");
+			boolean recursive = XMLConfig.getBoolean(directoryWatcherNode, "@recursive", false);
+			long debounce = XMLConfig.getLong(directoryWatcherNode, "@debounce", 0);
+			int maxPending = XMLConfig.getInteger(directoryWatcherNode, "@max-pending", 1000);
 			
 			NodeList configurationList =  XMLConfig.getNodeList(directoryWatcherNode,"./forward");
 			for (int i = 0; i<configurationList.getLength(); i++) {
 				
-				Node configNode = configurationList.item(0);
+				Node configNode = configurationList.item(i);
 				String[] events = XMLConfig.get(configNode, "@events").split(",");
 				
 				Set<Kind<Path>> kinds = new LinkedHashSet<>();
@@ -129,7 +197,8 @@ public final class DirectoryWatcherManager implements Runnable {
 				String operation = XMLConfig.get(configNode, "@operation");
 				boolean processContent = Boolean.valueOf(XMLConfig.get(configNode, "@processContent","false"));
 				
-				DirectoryWatcher directoryWatcher = new DirectoryWatcher(name, Paths.get(directory), service, operation, kinds, processContent);
+				DirectoryWatcher directoryWatcher = new DirectoryWatcher(name, Paths.get(directory), service, operation, kinds, processContent,
+						                                                 recursive, debounce, maxPending);
 				directoryWatchers.add(directoryWatcher);
 			}
 			
@@ -144,17 +213,71 @@ public final class DirectoryWatcherManager implements Runnable {
 	private DirectoryWatcherManager() {		
 	}
 
+	/**
+	 * Fires the debounced and the deferred events
+	 */
 	@Override
 	public void run() {
-		for (DirectoryWatcher watcher: directoryWatchers) {
-			if (running.get()) {
-				watcher.processEvents();
-			} else {
-				LOG.debug("Stopping DirectoryWatcherManager events-loop");
-				break;
+		long now = System.currentTimeMillis();
+		try {
+			for (DirectoryWatcher watcher: directoryWatchers) {
+				if (running.get()) {
+					watcher.flush(now);
+				} else {
+					LOG.debug("Stopping DirectoryWatcherManager flush");
+					break;
+				}
 			}
+		} catch (Exception e) {
+			LOG.error("Error flushing DirectoryWatcher events", e);
 		}
 		
 	}
 
+	private static class WatchLoop implements Runnable {
+
+		private final WatchService watchService;
+
+		WatchLoop(WatchService watchService) {
+			this.watchService = watchService;
+		}
+
+		@Override
+		public void run() {
+			LOG.debug("Starting DirectoryWatcherManager events-loop");
+			try {
+				while (running.get()) {
+					WatchKey key = watchService.take();
+					try {
+						List<WatchEvent<?>> events = key.pollEvents();
+						boolean owned = false;
+						for (DirectoryWatcher watcher : directoryWatchers) {
+							if (watcher.owns(key)) {
+								owned = true;
+								try {
+									watcher.processEvents(key, events);
+								} catch (Exception e) {
+									LOG.error("DirectoryWatcher failed processing the events of " + key.watchable(), e);
+								}
+							}
+						}
+						if (!owned) {
+							key.cancel();
+						} else if (!key.reset()) {
+							directoryWatchers.forEach(w -> w.invalidate(key));
+						}
+					} catch (ClosedWatchServiceException e) {
+						throw e;
+					} catch (Exception e) {
+						// keep watching the other directories
+						LOG.error("DirectoryWatcherManager events-loop failed on " + key.watchable(), e);
+					}
+				}
+			} catch (ClosedWatchServiceException | InterruptedException e) {
+				// shutting down
+			}
+			LOG.debug("Stopping DirectoryWatcherManager events-loop");
+		}
+	}
+
 }
@@ -22,6 +22,8 @@ package it.greenvulcano.gvesb.virtual.file.reader;
 import it.greenvulcano.configuration.XMLConfig;
 import it.greenvulcano.configuration.XMLConfigException;
 import it.greenvulcano.gvesb.buffer.GVBuffer;
+import it.greenvulcano.gvesb.core.pool.GreenVulcanoPool;
+import it.greenvulcano.gvesb.core.pool.GreenVulcanoPoolManager;
 import it.greenvulcano.gvesb.virtual.CallException;
 import it.greenvulcano.gvesb.virtual.CallOperation;
 import it.greenvulcano.gvesb.virtual.ConnectionException;
@@ -31,9 +33,14 @@ import it.greenvulcano.gvesb.virtual.OperationKey;
 import it.greenvulcano.util.metadata.PropertiesHandler;
 import it.greenvulcano.util.xml.XMLUtils;
 
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Objects;
 
 import org.slf4j.Logger;
@@ -43,6 +50,21 @@ import org.w3c.dom.Node;
 
 /**
  * Read a file contents as a byte array and put it in GVBuffer.object.
+ * <p>
+ * The <code>read-mode</code> attribute selects how large files are handled:
+ * <ul>
+ * <li><code>bytes</code>: the default, the whole content as a byte array</li>
+ * <li><code>stream</code>: a lazily consumed <code>java.io.InputStream</code>,
+ * which must be closed by the consumer</li>
+ * <li><code>mapped</code>: a read-only <code>java.nio.MappedByteBuffer</code>
+ * view of the file</li>
+ * <li><code>chunks</code>: the file is split in chunks of
+ * <code>chunk-processor/@chunk-lines</code> lines, each one forwarded, as a
+ * String in a copy of the input GVBuffer, to the
+ * <code>chunk-processor/@operation</code> flow; the output GVBuffer holds the
+ * <code>GVFR_CHUNK_COUNT</code> and <code>GVFR_LINE_COUNT</code> properties</li>
+ * </ul>
+ * The <code>stream</code> mode is used to parse the file as XML.
  * 
  * @version 4.0.0 Mar, 2017
  * @author GreenVulcano Developer Team
@@ -92,6 +114,27 @@ public class FileReader implements CallOperation
      */
     private boolean             isNamespaceAware;
 
+    /**
+     * How the file is read: bytes, stream, mapped or chunks.
+     */
+    private String              readMode;
+
+    /**
+     * Number of lines of each chunk, if <code>readMode</code> is chunks.
+     */
+    private int                 chunkLines;
+
+    /**
+     * The charset used to read the chunks.
+     */
+    private Charset             chunkCharset;
+
+    /**
+     * The flow system and operation processing the chunks.
+     */
+    private String              chunkSystem;
+    private String              chunkOperation;
+
 
     /**
      * Invoked from <code>OperationFactory</code> when an <code>Operation</code>
@@ -114,9 +157,24 @@ public class FileReader implements CallOperation
             asXML = XMLConfig.getBoolean(node, "xml-processor/@as-xml", false);           
             isValidating = XMLConfig.getBoolean(node, "xml-processor/@validating", false);
             isNamespaceAware = XMLConfig.getBoolean(node, "xml-processor/@namespace-aware", false);
+            readMode = XMLConfig.get(node, "@read-mode", "bytes");
+            if ("chunks".equals(readMode)) {
+                chunkLines = XMLConfig.getInteger(node, "chunk-processor/@chunk-lines", 1000);
+                chunkCharset = Charset.forName(XMLConfig.get(node, "chunk-processor/@charset", "UTF-8"));
+                chunkSystem = XMLConfig.get(node, "chunk-processor/@system", null);
+                chunkOperation = XMLConfig.get(node, "chunk-processor/@operation");
+                if ((chunkLines <= 0) || (chunkOperation == null)) {
+                    throw new Exception("Invalid chunk-processor configuration");
+                }
+                logger.debug("chunkLines : " + chunkLines);
+            }
+            else if (!"bytes".equals(readMode) && !"stream".equals(readMode) && !"mapped".equals(readMode)) {
+                throw new Exception("Invalid read-mode value [" + readMode + "]");
+            }
 
             logger.debug("srcPath  : " + srcPath);
             logger.debug("filename : " + filename);
+            logger.debug("readMode : " + readMode);
 
             logger.debug("FileReader " + name + " configured");
         }
@@ -157,14 +215,36 @@ public class FileReader implements CallOperation
                 throw new IllegalArgumentException("Source file " + sourceFile.toAbsolutePath() + " is not a normal file");
             }
             
-            byte[] fileContent = Files.readAllBytes(sourceFile);
-            if (asXML) {
+            if ("chunks".equals(readMode)) {
+                logger.debug("Reading source file in chunks: " + sourceFile.toAbsolutePath());
+                processChunks(sourceFile, gvBuffer);
+            }
+            else if (asXML && "stream".equals(readMode)) {
+                logger.debug("Reading source file as XML stream: " + sourceFile.toAbsolutePath());
+                try (InputStream stream = Files.newInputStream(sourceFile)) {
+                    Document dom = XMLUtils.parseDOM_S(stream, isValidating, isNamespaceAware);
+                    gvBuffer.setObject(dom);
+                }
+            }
+            else if (asXML) {
                 logger.debug("Reading source file as XML: " + sourceFile.toAbsolutePath());        
-                Document dom = XMLUtils.parseDOM_S(fileContent, isValidating, isNamespaceAware);
+                Document dom = XMLUtils.parseDOM_S(Files.readAllBytes(sourceFile), isValidating, isNamespaceAware);
                 gvBuffer.setObject(dom);
-            } else {
+            }
+            else if ("stream".equals(readMode)) {
+                logger.debug("Opening source file stream: " + sourceFile.toAbsolutePath());
+                gvBuffer.setObject(Files.newInputStream(sourceFile));
+            }
+            else if ("mapped".equals(readMode)) {
+                logger.debug("Mapping source file: " + sourceFile.toAbsolutePath());
+                // the mapping stays valid after the channel is closed
+                try (FileChannel channel = FileChannel.open(sourceFile, StandardOpenOption.READ)) {
+                    gvBuffer.setObject(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                }
+            }
+            else {
                 logger.debug("Reading source file: " + sourceFile.toAbsolutePath());               
-                gvBuffer.setObject(fileContent);
+                gvBuffer.setObject(Files.readAllBytes(sourceFile));
             }
 
             return gvBuffer;
@@ -177,6 +257,67 @@ public class FileReader implements CallOperation
         }
     }
 
+    /**
+     * Splits the file in chunks of <code>chunkLines</code> lines, holding in
+     * memory a single chunk at a time, and forwards each one to the
+     * configured flow.
+     */
+    private void processChunks(Path sourceFile, GVBuffer gvBuffer) throws Exception
+    {
+        int chunkCount = 0;
+        long lineCount = 0;
+        try (BufferedReader reader = Files.newBufferedReader(sourceFile, chunkCharset)) {
+            StringBuilder chunk = new StringBuilder();
+            int chunkSize = 0;
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                chunk.append(line).append('\n');
+                chunkSize++;
+                lineCount++;
+                if (chunkSize == chunkLines) {
+                    forwardChunk(newChunkBuffer(gvBuffer, chunk, chunkCount++, lineCount - chunkSize));
+                    chunk.setLength(0);
+                    chunkSize = 0;
+                }
+            }
+            if (chunkSize > 0) {
+                forwardChunk(newChunkBuffer(gvBuffer, chunk, chunkCount++, lineCount - chunkSize));
+            }
+        }
+
+        logger.debug("Forwarded " + chunkCount + " chunks, " + lineCount + " lines");
+        gvBuffer.setProperty("GVFR_CHUNK_COUNT", String.valueOf(chunkCount));
+        gvBuffer.setProperty("GVFR_LINE_COUNT", String.valueOf(lineCount));
+    }
+
+    private GVBuffer newChunkBuffer(GVBuffer gvBuffer, StringBuilder chunk, int index, long firstLine)
+            throws Exception
+    {
+        GVBuffer chunkBuffer = new GVBuffer(gvBuffer, false);
+        if (chunkSystem != null) {
+            chunkBuffer.setSystem(chunkSystem);
+        }
+        chunkBuffer.setObject(chunk.toString());
+        chunkBuffer.setProperty("GVFR_CHUNK_INDEX", String.valueOf(index));
+        chunkBuffer.setProperty("GVFR_CHUNK_FIRST_LINE", String.valueOf(firstLine));
+        return chunkBuffer;
+    }
+
+    /**
+     * Forwards a chunk to the configured flow.
+     *
+     * @param chunkBuffer
+     *        the chunk, with its index and first line as properties
+     * @throws Exception
+     */
+    protected void forwardChunk(GVBuffer chunkBuffer) throws Exception
+    {
+        GreenVulcanoPool greenVulcano = GreenVulcanoPoolManager.instance()
+                .getGreenVulcanoPool("FileReader")
+                .orElseGet(GreenVulcanoPoolManager::getDefaultGreenVulcanoPool);
+        greenVulcano.forward(chunkBuffer, chunkOperation);
+    }
+
     /**
      * do nothing
      * 
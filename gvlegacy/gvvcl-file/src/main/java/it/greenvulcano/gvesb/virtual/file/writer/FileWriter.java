@@ -35,6 +35,14 @@ import it.greenvulcano.util.txt.TextUtils;
 import it.greenvulcano.util.xml.XMLUtils;
 
 import java.io.File;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -43,6 +51,15 @@ import org.w3c.dom.Node;
 
 /**
  * Write GVBuffer.object (if contains byte array, String or Node) in a file.
+ * <p>
+ * A <code>java.io.InputStream</code> or a <code>java.nio.ByteBuffer</code>
+ * (as produced by the FileReader stream and mapped modes) is always
+ * transferred through a <code>FileChannel</code>, without holding the whole
+ * content in memory. With <code>stream="true"</code> also the String and Node
+ * content is written through the channel, encoded/serialized on the fly with
+ * the configured <code>charset</code>, instead of being converted to a byte
+ * array first. A byte array is already in memory and is written the same way
+ * whatever the <code>stream</code> value.
  * 
  * @version 4.0.0 Mar, 2017
  * @author GreenVulcano Developer Team
@@ -81,6 +98,16 @@ public class FileWriter implements CallOperation
      */
     private String              appendEOL  = null;
 
+    /**
+     * If true String and Node are streamed to the file.
+     */
+    private boolean             stream     = false;
+
+    /**
+     * The charset used in stream mode.
+     */
+    private Charset             charset    = null;
+
     /**
      * the operation key
      */
@@ -106,10 +133,13 @@ public class FileWriter implements CallOperation
             filename = XMLConfig.get(node, "@fileName");
             append = XMLConfig.getBoolean(node, "@append", false);
             String eol = XMLConfig.get(node, "@appendEOL", null);
+            stream = XMLConfig.getBoolean(node, "@stream", false);
+            charset = Charset.forName(XMLConfig.get(node, "@charset", "UTF-8"));
 
             logger.debug("targetPath : " + targetPath);
             logger.debug("filename   : " + filename);
             logger.debug("append     : " + append);
+            logger.debug("stream     : " + stream);
             if (append && (eol != null)) {
                 logger.debug("appendEOL  : " + eol);
                 appendEOL = TextUtils.getEOL(eol);
@@ -152,7 +182,11 @@ public class FileWriter implements CallOperation
             if (data == null) {
                 throw new InvalidDataException("The GVBuffer content is NULL");
             }
-            if (data instanceof byte[]) {
+            if ((data instanceof InputStream) || (data instanceof ByteBuffer)
+                    || (stream && ((data instanceof String) || (data instanceof Node)))) {
+                writeToChannel(data, targetFile);
+            }
+            else if (data instanceof byte[]) {
                 BinaryUtils.writeBytesToFile((byte[]) data, targetFile, append);
             }
             else if (data instanceof String) {
@@ -180,6 +214,40 @@ public class FileWriter implements CallOperation
     }
 
 
+    /**
+     * Writes the given data through a FileChannel.
+     */
+    private void writeToChannel(Object data, File targetFile) throws Exception
+    {
+        try (FileChannel channel = FileChannel.open(targetFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (data instanceof InputStream) {
+                try (InputStream in = (InputStream) data; ReadableByteChannel source = Channels.newChannel(in)) {
+                    long position = channel.size();
+                    long count = 0;
+                    while ((count = channel.transferFrom(source, position, 1024 * 1024)) > 0) {
+                        position += count;
+                    }
+                }
+            }
+            else if (data instanceof ByteBuffer) {
+                ByteBuffer buffer = ((ByteBuffer) data).duplicate();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            else if (data instanceof String) {
+                Writer writer = Channels.newWriter(channel, charset.newEncoder(), 8192);
+                writer.write((String) data);
+                writer.flush();
+            }
+            else {
+                XMLUtils.serializeDOMToStream_S((Node) data, Channels.newOutputStream(channel), charset.name(), true,
+                        false);
+            }
+        }
+    }
+
     /**
      * do nothing
      * 
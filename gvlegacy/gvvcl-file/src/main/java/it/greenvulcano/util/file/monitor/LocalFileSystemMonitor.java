@@ -29,7 +29,15 @@ import it.greenvulcano.util.metadata.PropertiesHandler;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -46,7 +54,11 @@ import org.w3c.dom.Node;
  * of matching files currently within the target directory with a previous list
  * (created during the last call to the
  * <code>{@link FileSystemMonitor#analyze()}</code> method) which is holded by a
- * <code>{@link FileSystemStatus}</code> instance.
+ * <code>{@link FileSystemStatus}</code> instance.<br>
+ * With <code>scan-mode="walk"</code> the target directory is scanned once per
+ * analysis through <code>Files.walkFileTree()</code>, reading the size and
+ * timestamps from the directory entry attributes and building the current and
+ * modified sets in the same pass.
  * 
  * 
  * @version 3.0.0 Feb 17, 2010
@@ -115,6 +127,12 @@ public class LocalFileSystemMonitor implements FileSystemMonitor
      */
     protected boolean             sortAscending;
 
+    /**
+     * If true the target directory is scanned in a single pass through
+     * <code>Files.walkFileTree()</code>.
+     */
+    protected boolean             walkScan;
+
     /**
      * A <code>java.io.FileFilter</code> object to filter files.
      */
@@ -144,6 +162,7 @@ public class LocalFileSystemMonitor implements FileSystemMonitor
             returnDeleted = XMLConfig.getBoolean(rf, "@deleted", false);
             sortMode = XMLConfig.get(rf, "@sort-mode", "by-name");
             sortAscending = XMLConfig.getBoolean(rf, "@sort-ascending", true);
+            walkScan = "walk".equals(XMLConfig.get(node, "@scan-mode", "list"));
 
             if ((analysisDir == null) || ("".equals(analysisDir))) {
                 throw new MonitorException("Analysis directory is null or empty");
@@ -197,11 +216,19 @@ public class LocalFileSystemMonitor implements FileSystemMonitor
             checkAnalysisDir(currAnalysisDir);
             initMonitorStatus(currAnalysisDir, optProperties);
 
-            fileFilter.setCheckLastModified(false, -1, true);
-            currentAnalysisFileSet = buildFileSet(currAnalysisDir, fileFilter);
+            if (walkScan) {
+                fileFilter.setCheckLastModified(false, -1, true);
+                currentAnalysisFileSet = new HashSet<FileProperties>();
+                modifiedFileSet = new HashSet<FileProperties>();
+                walkFileSet(currAnalysisDir, fileFilter, lastAnalysisTimestamp, currentAnalysisFileSet, modifiedFileSet);
+            }
+            else {
+                fileFilter.setCheckLastModified(false, -1, true);
+                currentAnalysisFileSet = buildFileSet(currAnalysisDir, fileFilter);
 
-            fileFilter.setCheckLastModified(true, lastAnalysisTimestamp, true);
-            modifiedFileSet = buildFileSet(currAnalysisDir, fileFilter);
+                fileFilter.setCheckLastModified(true, lastAnalysisTimestamp, true);
+                modifiedFileSet = buildFileSet(currAnalysisDir, fileFilter);
+            }
 
             AnalysisReport result = generateReport(currAnalysisDir, fileFilter.toString());
 
@@ -312,7 +339,13 @@ public class LocalFileSystemMonitor implements FileSystemMonitor
         else {
             lastAnalysisTimestamp = new Date().getTime();
             fileFilter.setCheckLastModified(false, 0, true);
-            lastAnalysisFileSet = buildFileSet(currAnalysisDir, fileFilter);
+            if (walkScan) {
+                lastAnalysisFileSet = new HashSet<FileProperties>();
+                walkFileSet(currAnalysisDir, fileFilter, Long.MAX_VALUE, lastAnalysisFileSet, null);
+            }
+            else {
+                lastAnalysisFileSet = buildFileSet(currAnalysisDir, fileFilter);
+            }
         }
     }
 
@@ -333,4 +366,48 @@ public class LocalFileSystemMonitor implements FileSystemMonitor
         }
         return matchingFileset;
     }
+
+    /**
+     * Fills, in a single pass, the set of the files within the target directory
+     * that match the <code>FileFilter</code> object passed as argument and,
+     * if not null, the set of the matching files modified after
+     * <code>modifiedSince</code>.
+     */
+    private void walkFileSet(File currAnalysisDir, final FileFilter filter, final long modifiedSince,
+            final Set<FileProperties> matchingFileset, final Set<FileProperties> modifiedFileset)
+            throws MonitorException
+    {
+        try {
+            Files.walkFileTree(currAnalysisDir.toPath(), EnumSet.noneOf(FileVisitOption.class), 1,
+                    new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException
+                        {
+                            File file = path.toFile();
+                            if (filter.accept(file)) {
+                                long lastModified = attrs.lastModifiedTime().toMillis();
+                                FileProperties currFile = new FileProperties(file.getName(), lastModified,
+                                        attrs.size(), attrs.isDirectory(), file.canRead(), file.canWrite(),
+                                        file.canExecute());
+                                matchingFileset.add(currFile);
+                                if ((modifiedFileset != null) && (lastModified > modifiedSince)) {
+                                    modifiedFileset.add(currFile);
+                                }
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path path, IOException exc)
+                        {
+                            // removed while scanning
+                            logger.debug("Skipping file [" + path + "]: " + exc);
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+        }
+        catch (IOException exc) {
+            throw new MonitorException("Error scanning directory [" + currAnalysisDir + "]", exc);
+        }
+    }
 }
@@ -255,12 +255,28 @@ public class FileMonitorStatus implements FileSystemStatus
         saveStatus(statusInfo.getStatusFileSet(), statusInfo.getAnalysisTimestamp(), optProperties);
     }
 
-    private String getFilePath(Map<String, String> optProperties) throws Exception
+    /**
+     * @throws MonitorException
+     *         if not initialized
+     */
+    protected void checkInitialized() throws MonitorException
+    {
+        if (!initialized) {
+            throw new MonitorException(getClass().getSimpleName() + " not initialized");
+        }
+    }
+
+    protected boolean isErrorOnInvalidFile()
+    {
+        return errorOnInvalidFile;
+    }
+
+    protected String getFilePath(Map<String, String> optProperties) throws Exception
     {
         return PropertiesHandler.expand(statusFilePath, MapUtils.convertToHMStringObject(optProperties));
     }
 
-    private String getMonitorInfo(Map<String, String> optProperties) throws Exception
+    protected String getMonitorInfo(Map<String, String> optProperties) throws Exception
     {
         return PropertiesHandler.expand(monitorInfo, MapUtils.convertToHMStringObject(optProperties));
     }
@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ *
+ * This file is part of GreenVulcano ESB.
+ *
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package it.greenvulcano.util.file.monitor.status;
+
+import it.greenvulcano.util.file.FileProperties;
+import it.greenvulcano.util.file.monitor.MonitorException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+
+/**
+ * Hold the <code>FileSystemStatus</code> on an append-only journal in the
+ * local file system: each <code>saveStatus()</code> appends only the
+ * differences from the previous status, and the journal is compacted when the
+ * obsolete records outnumber the live ones.
+ * The file format is:
+ *
+ * <pre>
+ * row   description
+ * 1     monitor info key
+ * 2..N  +file info 'filename::size::lastmodified::isDirectory::canRead::canWrite::canExecute'
+ *       -filename
+ *       Tlast analisys timestamp
+ * </pre>
+ *
+ * The records following the last 'T' row, and a last row not terminated by a
+ * newline, belong to an incomplete save and are ignored when the journal is
+ * loaded.
+ * The status is cached in memory, and the journal is read again only if
+ * changed by another process.
+ *
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ */
+public class IndexedMonitorStatus extends FileMonitorStatus
+{
+    private static final Logger logger        = org.slf4j.LoggerFactory.getLogger(IndexedMonitorStatus.class);
+
+    /**
+     * The journal is compacted when it holds more than COMPACT_RATIO records
+     * for each live entry.
+     */
+    private static final int    COMPACT_RATIO = 2;
+    private static final int    COMPACT_MIN   = 1024;
+
+    private static class Index
+    {
+        private Map<String, FileProperties> entries           = new HashMap<String, FileProperties>();
+        private long                        analysisTimestamp = -1;
+        private long                        journalLength     = -1;
+        private int                         records           = 0;
+        /**
+         * the journal ends with an incomplete save
+         */
+        private boolean                     truncated         = false;
+    }
+
+    private Map<String, Index>  indexes       = new HashMap<String, Index>();
+
+    /**
+     * @see it.greenvulcano.util.file.monitor.status.FileSystemStatus#loadStatus(Map)
+     */
+    @Override
+    public StatusInfo loadStatus(Map<String, String> optProperties) throws MonitorException
+    {
+        checkInitialized();
+        String currStatusFile = "";
+        try {
+            currStatusFile = getFilePath(optProperties);
+
+            File sfPath = new File(currStatusFile);
+            File path = sfPath.getParentFile();
+            if (!path.exists()) {
+                path.mkdirs();
+            }
+            Index index = getIndex(sfPath, getMonitorInfo(optProperties));
+            if ((index == null) || (index.analysisTimestamp < 0)) {
+                return null;
+            }
+            return new StatusInfo(new HashSet<FileProperties>(index.entries.values()), index.analysisTimestamp);
+        }
+        catch (MonitorException exc) {
+            throw exc;
+        }
+        catch (Exception exc) {
+            logger.error("Error reading status for IndexedMonitorStatus [" + currStatusFile + "]", exc);
+            throw new MonitorException("Error reading status for IndexedMonitorStatus [" + currStatusFile + "]", exc);
+        }
+    }
+
+    /**
+     * @see it.greenvulcano.util.file.monitor.status.FileSystemStatus#saveStatus(Set,
+     *      long, Map)
+     */
+    @Override
+    public void saveStatus(Set<FileProperties> fileSet, long analysisTimestamp, Map<String, String> optProperties)
+            throws MonitorException
+    {
+        checkInitialized();
+        String currStatusFile = "";
+        try {
+            currStatusFile = getFilePath(optProperties);
+            String currMonitorInfo = getMonitorInfo(optProperties);
+
+            File sfPath = new File(currStatusFile);
+            Index index = getIndex(sfPath, currMonitorInfo);
+            if (index == null) {
+                // invalid journal: start a new one
+                index = new Index();
+            }
+
+            Map<String, FileProperties> entries = new HashMap<String, FileProperties>(fileSet.size() * 4 / 3 + 1);
+            List<String> changes = new ArrayList<String>();
+            for (FileProperties currFile : fileSet) {
+                entries.put(currFile.getName(), currFile);
+                FileProperties prevFile = index.entries.get(currFile.getName());
+                if ((prevFile == null) || !sameFingerprint(prevFile, currFile)) {
+                    changes.add("+" + currFile.serialize());
+                }
+            }
+            for (String name : index.entries.keySet()) {
+                if (!entries.containsKey(name)) {
+                    changes.add("-" + name);
+                }
+            }
+            changes.add("T" + analysisTimestamp);
+
+            index.entries = entries;
+            index.analysisTimestamp = analysisTimestamp;
+
+            if ((index.journalLength < 0) || index.truncated || mustCompact(index, changes.size())) {
+                compact(sfPath, currMonitorInfo, index);
+            }
+            else {
+                append(sfPath, changes, index);
+            }
+            indexes.put(currStatusFile, index);
+        }
+        catch (Exception exc) {
+            indexes.remove(currStatusFile);
+            logger.error("Error writing status for IndexedMonitorStatus [" + currStatusFile + "]", exc);
+            throw new MonitorException("Error writing status for IndexedMonitorStatus [" + currStatusFile + "]", exc);
+        }
+    }
+
+    private static boolean sameFingerprint(FileProperties prevFile, FileProperties currFile)
+    {
+        return (prevFile.getLastModified() == currFile.getLastModified())
+                && (prevFile.getLength() == currFile.getLength()) && (prevFile.isDirectory() == currFile.isDirectory())
+                && (prevFile.canRead() == currFile.canRead()) && (prevFile.canWrite() == currFile.canWrite())
+                && (prevFile.canExecute() == currFile.canExecute());
+    }
+
+    private static boolean mustCompact(Index index, int newRecords)
+    {
+        int records = index.records + newRecords;
+        return (records > COMPACT_MIN) && (records > (COMPACT_RATIO * (index.entries.size() + 1)));
+    }
+
+    /**
+     * Returns the cached index, reading again the journal if changed.
+     *
+     * @return the index, or null if the journal is invalid
+     */
+    private Index getIndex(File sfPath, String currMonitorInfo) throws Exception
+    {
+        String currStatusFile = sfPath.getPath();
+        Index index = indexes.get(currStatusFile);
+        if (!sfPath.exists()) {
+            index = new Index();
+            indexes.put(currStatusFile, index);
+            return index;
+        }
+        if ((index != null) && (index.journalLength == sfPath.length())) {
+            return index;
+        }
+
+        index = new Index();
+        boolean terminated = true;
+        try (RandomAccessFile raf = new RandomAccessFile(sfPath, "r")) {
+            if (raf.length() > 0) {
+                raf.seek(raf.length() - 1);
+                terminated = (raf.read() == '\n');
+            }
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(sfPath.toPath(), StandardCharsets.UTF_8)) {
+            String monitorInfoLocal = reader.readLine();
+            if ((monitorInfoLocal == null) || !currMonitorInfo.equals(monitorInfoLocal)) {
+                logger.warn("MonitorInfo: " + currMonitorInfo + " - MonitorInfo in file [" + currStatusFile + "]: "
+                        + monitorInfoLocal);
+                if (isErrorOnInvalidFile()) {
+                    throw new MonitorException("Invalid monitor status file [" + currStatusFile
+                            + "]: monitorInfo invalid");
+                }
+                indexes.remove(currStatusFile);
+                return null;
+            }
+
+            List<String> pending = new ArrayList<String>();
+            String line = reader.readLine();
+            while (line != null) {
+                String next = reader.readLine();
+                if ((next == null) && !terminated) {
+                    logger.warn("Ignoring the incomplete record [" + line + "] in [" + currStatusFile + "]");
+                    // appending after the partial record would corrupt the next one
+                    index.truncated = true;
+                }
+                else if (line.length() > 0) {
+                    index.records++;
+                    if (line.charAt(0) == 'T') {
+                        for (String record : pending) {
+                            if (record.charAt(0) == '+') {
+                                FileProperties currFile = FileProperties.parse(record.substring(1).trim());
+                                index.entries.put(currFile.getName(), currFile);
+                            }
+                            else {
+                                index.entries.remove(record.substring(1));
+                            }
+                        }
+                        pending.clear();
+                        index.analysisTimestamp = Long.parseLong(line.substring(1).trim());
+                    }
+                    else {
+                        pending.add(line);
+                    }
+                }
+                line = next;
+            }
+            if (!pending.isEmpty()) {
+                logger.warn("Ignoring " + pending.size() + " records of an incomplete save in [" + currStatusFile + "]");
+                // rewrite the journal on next save
+                index.truncated = true;
+            }
+        }
+        index.journalLength = sfPath.length();
+        indexes.put(currStatusFile, index);
+        return index;
+    }
+
+    private void append(File sfPath, List<String> changes, Index index) throws Exception
+    {
+        try (FileOutputStream out = new FileOutputStream(sfPath, true);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            for (String record : changes) {
+                writer.write(record);
+                writer.write('\n');
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+        index.records += changes.size();
+        index.journalLength = sfPath.length();
+    }
+
+    private void compact(File sfPath, String currMonitorInfo, Index index) throws Exception
+    {
+        File tmpPath = new File(sfPath.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmpPath);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            writer.write(currMonitorInfo);
+            writer.write('\n');
+            for (FileProperties currFile : index.entries.values()) {
+                writer.write('+');
+                writer.write(currFile.serialize());
+                writer.write('\n');
+            }
+            writer.write("T" + index.analysisTimestamp);
+            writer.write('\n');
+            writer.flush();
+            out.getFD().sync();
+        }
+        Files.move(tmpPath.toPath(), sfPath.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        index.records = index.entries.size() + 1;
+        index.truncated = false;
+        index.journalLength = sfPath.length();
+        logger.debug("Compacted monitor status file [" + sfPath + "]: " + index.entries.size() + " entries");
+    }
+}
@@ -19,24 +19,36 @@
  */
 package it.greenvulcano.util.remotefs.sftp;
 
+import it.greenvulcano.configuration.XMLConfig;
 import it.greenvulcano.util.MapUtils;
 import it.greenvulcano.util.file.FileProperties;
 import it.greenvulcano.util.file.RegExFileFilter;
 import it.greenvulcano.util.metadata.PropertiesHandler;
 import it.greenvulcano.util.remotefs.RemoteManagerException;
+import it.greenvulcano.util.thread.BaseThreadFactory;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.Node;
 
 import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.ChannelSftp.LsEntry;
@@ -45,6 +57,10 @@ import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
 
 /**
+ * With <code>transferThreads</code> greater than 1 the pattern based get() and
+ * put() transfer the matching files in parallel, each worker on its own SFTP
+ * channel of the connected session.
+ * 
  * @version 3.0.0 Apr 24, 2010
  * @author GreenVulcano Developer Team
  * 
@@ -55,8 +71,29 @@ public class SFTPManager extends SSHManager
 {
     private static final Logger logger = LoggerFactory.getLogger(SFTPManager.class);
 
+    /**
+     * Runs the parallel transfers workers.
+     */
+    private static final ExecutorService transferExecutor = Executors.newCachedThreadPool(
+            new BaseThreadFactory("SFTPManager#transfer", true));
+
     private ChannelSftp         sftpClient;
 
+    /**
+     * Max number of concurrent transfers of the pattern based get/put.
+     */
+    private int                 transferThreads = 1;
+
+    private SFTPTransferStatistics statistics;
+
+    /**
+     * A single file transfer, executed on a dedicated channel.
+     */
+    private interface Transfer
+    {
+        void execute(ChannelSftp channel, String name) throws Exception;
+    }
+
     /**
      *
      */
@@ -66,6 +103,30 @@ public class SFTPManager extends SSHManager
     }
 
 
+    /**
+     * @see it.greenvulcano.util.remotefs.sftp.SSHManager#init(org.w3c.dom.Node)
+     */
+    @Override
+    public void init(Node configNode) throws RemoteManagerException
+    {
+        super.init(configNode);
+        try {
+            transferThreads = XMLConfig.getInteger(configNode, "@transferThreads", 1);
+        }
+        catch (Exception exc) {
+            throw new RemoteManagerException("Initialization error", exc);
+        }
+        statistics = SFTPTransferStatistics.get(getManagerKey());
+    }
+
+    /**
+     * @return the transfer statistics of the server
+     */
+    public SFTPTransferStatistics getTransferStatistics()
+    {
+        return statistics;
+    }
+
     /**
      * @see it.greenvulcano.util.remotefs.RemoteManager#connect(Map<String,
      *      String>)
@@ -76,8 +137,7 @@ public class SFTPManager extends SSHManager
         if (!isConnected()) {
             super.connect(optProperties);
             try {
-                sftpClient = (ChannelSftp) getSSHClient().openChannel("sftp");
-                sftpClient.connect();
+                sftpClient = openTransferChannel();
             }
             catch (JSchException exc) {
                 throw new RemoteManagerException("Cannot instantiate the SFTP client", exc);
@@ -90,7 +150,7 @@ public class SFTPManager extends SSHManager
     {
         if (isConnected()) {
             if ((sftpClient != null) && sftpClient.isConnected()) {
-                sftpClient.disconnect();
+                closeTransferChannel(sftpClient);
             }
             super.disconnect(optProperties);
         }
@@ -243,7 +303,15 @@ public class SFTPManager extends SSHManager
                 changeWorkingDirectory(remoteDirectory);
             }
 
-            sftpClient.get(remoteFile, localPathname.getCanonicalPath());
+            long start = System.nanoTime();
+            try {
+                sftpClient.get(remoteFile, localPathname.getCanonicalPath());
+            }
+            catch (SftpException exc) {
+                statistics.recordFailure();
+                throw exc;
+            }
+            statistics.recordDownload(localPathname.length(), System.nanoTime() - start);
 
             return true;
         }
@@ -291,11 +359,17 @@ public class SFTPManager extends SSHManager
 
             if (filenames != null) {
             	RegExLsEntryFilter fileFilter = new RegExLsEntryFilter(remoteFilePattern, RegExLsEntryFilter.ALL, -1);
+                final File localTarget = localDirectoryObj.getAbsoluteFile();
+                String remoteSource = sftpClient.pwd();
+                List<String> parallelFiles = new ArrayList<String>();
                 for (LsEntry currFTPFile : filenames) {
                     if (currFTPFile != null) {
                         if (fileFilter.accept(currFTPFile)) {
                             boolean partialResult = true;
-                            if (currFTPFile.getAttrs().isDir()) {
+                            if ((transferThreads > 1) && !currFTPFile.getAttrs().isDir()) {
+                                parallelFiles.add(currFTPFile.getFilename());
+                            }
+                            else if (currFTPFile.getAttrs().isDir()) {
                                 partialResult = getDir(currFTPFile.getFilename(), localDirectoryObj.getAbsolutePath(),
                                         null, optProperties);
                             }
@@ -304,6 +378,8 @@ public class SFTPManager extends SSHManager
                                         localDirectoryObj.getAbsolutePath(), null, optProperties);
                             }
                             if (!partialResult) {
+                                // stop the parallel transfers too
+                                parallelFiles.clear();
                                 break;
                             }
                         }
@@ -312,6 +388,12 @@ public class SFTPManager extends SSHManager
                         logger.debug("Remote file entry NULL");
                     }
                 }
+                transferParallel(remoteSource, parallelFiles, (channel, name) -> {
+                    File localPathname = new File(localTarget, name);
+                    long start = System.nanoTime();
+                    channel.get(name, localPathname.getCanonicalPath());
+                    statistics.recordDownload(localPathname.length(), System.nanoTime() - start);
+                });
             }
 
             return result;
@@ -532,7 +614,15 @@ public class SFTPManager extends SSHManager
                 changeWorkingDirectory(remoteDirectory);
             }
 
-            sftpClient.put(localPathname.getAbsolutePath(), (remoteFile != null ? remoteFile : localFile));
+            long start = System.nanoTime();
+            try {
+                sftpClient.put(localPathname.getAbsolutePath(), (remoteFile != null ? remoteFile : localFile));
+            }
+            catch (SftpException exc) {
+                statistics.recordFailure();
+                throw exc;
+            }
+            statistics.recordUpload(localPathname.length(), System.nanoTime() - start);
             logger.debug("Local file " + localPathname + " uploaded.");
             return true;
         }
@@ -568,10 +658,15 @@ public class SFTPManager extends SSHManager
 
             changeWorkingDirectory(remoteDirectory);
 
+            String remoteTarget = sftpClient.pwd();
             File[] localFiles = localDirectoryObj.listFiles(new RegExFileFilter(localFilePattern, RegExFileFilter.ALL));
+            List<String> parallelFiles = new ArrayList<String>();
             for (File currLocalFile : localFiles) {
                 boolean partialResult = true;
-                if (currLocalFile.isDirectory()) {
+                if ((transferThreads > 1) && !currLocalFile.isDirectory()) {
+                    parallelFiles.add(currLocalFile.getName());
+                }
+                else if (currLocalFile.isDirectory()) {
                     partialResult = putDir(currLocalFile.getAbsolutePath(), null, null, optProperties);
                 }
                 else {
@@ -580,9 +675,18 @@ public class SFTPManager extends SSHManager
                 }
 
                 if (!partialResult) {
+                    // stop the parallel transfers too
+                    parallelFiles.clear();
                     break;
                 }
             }
+            final File localSource = localDirectoryObj.getAbsoluteFile();
+            transferParallel(remoteTarget, parallelFiles, (channel, name) -> {
+                File localPathname = new File(localSource, name);
+                long start = System.nanoTime();
+                channel.put(localPathname.getAbsolutePath(), name);
+                statistics.recordUpload(localPathname.length(), System.nanoTime() - start);
+            });
             return result;
         }
         catch (Exception exc) {
@@ -661,6 +765,102 @@ public class SFTPManager extends SSHManager
         }
     }
 
+    /**
+     * Executes the given transfer for each of the files, with at most
+     * <code>transferThreads</code> workers, each one on its own channel.
+     * 
+     * @param remoteDirectory
+     *        the absolute remote working directory
+     * @param names
+     *        the file names
+     * @param transfer
+     *        the transfer to execute
+     * @throws RemoteManagerException
+     *         if any transfer fails
+     */
+    private void transferParallel(final String remoteDirectory, List<String> names, final Transfer transfer)
+            throws RemoteManagerException
+    {
+        if (names.isEmpty()) {
+            return;
+        }
+        logger.debug("Transferring " + names.size() + " files with " + Math.min(transferThreads, names.size())
+                + " workers...");
+        final Queue<String> pending = new ConcurrentLinkedQueue<String>(names);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        List<Future<Void>> workers = new ArrayList<Future<Void>>();
+        for (int i = 0; i < Math.min(transferThreads, names.size()); i++) {
+            workers.add(transferExecutor.submit(() -> {
+                ChannelSftp channel = openTransferChannel();
+                try {
+                    channel.cd(remoteDirectory);
+                    String name = null;
+                    while (!failed.get() && ((name = pending.poll()) != null)) {
+                        try {
+                            transfer.execute(channel, name);
+                            logger.debug("File " + name + " transferred.");
+                        }
+                        catch (Exception exc) {
+                            statistics.recordFailure();
+                            failed.set(true);
+                            throw new RemoteManagerException("Could not transfer file " + name, exc);
+                        }
+                    }
+                }
+                finally {
+                    closeTransferChannel(channel);
+                }
+                return null;
+            }));
+        }
+
+        RemoteManagerException error = null;
+        for (Future<Void> worker : workers) {
+            try {
+                worker.get();
+            }
+            catch (ExecutionException exc) {
+                if (error == null) {
+                    error = (exc.getCause() instanceof RemoteManagerException)
+                            ? (RemoteManagerException) exc.getCause()
+                            : new RemoteManagerException("Generic error", exc.getCause());
+                }
+            }
+            catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                failed.set(true);
+                error = new RemoteManagerException("Interrupted while transferring files", exc);
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private ChannelSftp openTransferChannel() throws RemoteManagerException, JSchException
+    {
+        if (isSessionPooling()) {
+            return SSHSessionPool.acquireChannel(getSessionPoolKey(), getSSHClient());
+        }
+        ChannelSftp channel = (ChannelSftp) getSSHClient().openChannel("sftp");
+        channel.connect();
+        return channel;
+    }
+
+    private void closeTransferChannel(ChannelSftp channel)
+    {
+        try {
+            if (isSessionPooling()) {
+                SSHSessionPool.releaseChannel(getSessionPoolKey(), getSSHClient(), channel);
+                return;
+            }
+        }
+        catch (RemoteManagerException exc) {
+            // session lost
+        }
+        channel.disconnect();
+    }
+
     /**
      * Changes current working directory on the remote SSH server.
      * 
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2009-2010 GreenVulcano ESB Open Source Project. All rights
+ * reserved.
+ * 
+ * This file is part of GreenVulcano ESB.
+ * 
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * GreenVulcano ESB is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.greenvulcano.util.remotefs.sftp;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transfer counters of the SFTPManager instances connecting to the same
+ * server.
+ *
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ */
+public class SFTPTransferStatistics
+{
+    private static final Map<String, SFTPTransferStatistics> statistics = new ConcurrentHashMap<String, SFTPTransferStatistics>();
+
+    private final String                                     name;
+    private final AtomicLong                                 downloads  = new AtomicLong();
+    private final AtomicLong                                 uploads    = new AtomicLong();
+    private final AtomicLong                                 failures   = new AtomicLong();
+    private final AtomicLong                                 bytes      = new AtomicLong();
+    private final AtomicLong                                 totalTime  = new AtomicLong();
+
+    private SFTPTransferStatistics(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * @param name
+     *        the manager key
+     * @return the statistics of the given manager key
+     */
+    public static SFTPTransferStatistics get(String name)
+    {
+        return statistics.computeIfAbsent(name, SFTPTransferStatistics::new);
+    }
+
+    /**
+     * @return the statistics of all the manager keys
+     */
+    public static Map<String, SFTPTransferStatistics> getAll()
+    {
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    void recordDownload(long size, long nanos)
+    {
+        downloads.incrementAndGet();
+        bytes.addAndGet(size);
+        totalTime.addAndGet(nanos);
+    }
+
+    void recordUpload(long size, long nanos)
+    {
+        uploads.incrementAndGet();
+        bytes.addAndGet(size);
+        totalTime.addAndGet(nanos);
+    }
+
+    void recordFailure()
+    {
+        failures.incrementAndGet();
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public long getDownloads()
+    {
+        return downloads.get();
+    }
+
+    public long getUploads()
+    {
+        return uploads.get();
+    }
+
+    public long getFailures()
+    {
+        return failures.get();
+    }
+
+    public long getBytes()
+    {
+        return bytes.get();
+    }
+
+    /**
+     * @return the average throughput of a single transfer, in bytes/s
+     */
+    public double getThroughput()
+    {
+        long time = totalTime.get();
+        return (time > 0) ? (bytes.get() * 1000000000.0) / time : 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + ": downloads=" + getDownloads() + ", uploads=" + getUploads() + ", failures=" + getFailures()
+                + ", bytes=" + getBytes() + ", throughput=" + (long) getThroughput() + " B/s";
+    }
+}
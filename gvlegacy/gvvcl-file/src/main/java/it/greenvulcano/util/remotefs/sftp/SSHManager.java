@@ -27,6 +27,9 @@ import it.greenvulcano.util.metadata.PropertiesHandlerException;
 import it.greenvulcano.util.remotefs.RemoteManager;
 import it.greenvulcano.util.remotefs.RemoteManagerException;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
@@ -56,6 +59,18 @@ public abstract class SSHManager extends RemoteManager {
 	private String privateKey;
 
 	private String passphrase;
+
+	/**
+	 * If true the connected sessions are shared through the SSHSessionPool.
+	 */
+	private boolean sessionPooling = false;
+
+	/**
+	 * Idle time, in ms, after which a pooled session is closed.
+	 */
+	private long sessionIdleTimeout = 60000;
+
+	private String sessionPoolKey = null;
 	
 
 	/**
@@ -71,6 +86,8 @@ public abstract class SSHManager extends RemoteManager {
 					knownHostFilePath = PropertiesHandler.expand(knownHostFilePath);
 				}
 			}
+			sessionPooling = XMLConfig.getBoolean(configNode, "@sessionPooling", false);
+			sessionIdleTimeout = XMLConfig.getLong(configNode, "@sessionIdleTimeout", 60000);
 			authMethod = XMLConfig.get(configNode, "@authMethod", "password");
 			if (authMethod.equals("password") && ((getPassword() == null) || (getPassword().length() == 0))) {
 				throw new RemoteManagerException("Choosen 'password' authentication method but password not set.");
@@ -105,13 +122,25 @@ public abstract class SSHManager extends RemoteManager {
 	public void connect(Map<String, String> optProperties) throws RemoteManagerException {
 		if (!isConnected) {
 			try {
-				sshClient = getSession(optProperties);
-				sshClient.connect(connectTimeout);
-				sshClient.setTimeout(dataTimeout);
+				if (sessionPooling) {
+					sessionPoolKey = getSessionPoolKey(optProperties);
+					sshClient = SSHSessionPool.acquire(sessionPoolKey, () -> {
+						Session session = getSession(optProperties);
+						session.connect(connectTimeout);
+						session.setTimeout(dataTimeout);
+						return session;
+					}, sessionIdleTimeout);
+				} else {
+					sshClient = getSession(optProperties);
+					sshClient.connect(connectTimeout);
+					sshClient.setTimeout(dataTimeout);
+				}
 				isConnected = sshClient.isConnected();
 				logger.debug("Connected to SFTP server " + sshClient.getHost() + " and logged in as SFTP user "
 						+ sshClient.getUserName());
-			} catch (JSchException exc) {
+			} catch (RemoteManagerException exc) {
+				throw exc;
+			} catch (Exception exc) {
 				throw new RemoteManagerException("Cannot connect to host", exc);
 			}
 		}
@@ -132,7 +161,11 @@ public abstract class SSHManager extends RemoteManager {
 
 				logger.debug("Logging out SFTP user " + localUsername + " from SFTP server " + localHostname + "...");
 
-				sshClient.disconnect();
+				if (sessionPooling) {
+					SSHSessionPool.release(sessionPoolKey, sshClient);
+				} else {
+					sshClient.disconnect();
+				}
 			}
 		} catch (Exception exc) {
 			logger.warn("Disconnection from SFTP server " + localHostname + " failed", exc);
@@ -177,6 +210,45 @@ public abstract class SSHManager extends RemoteManager {
 		}
 	}
 
+	/**
+	 * The pooled sessions are shared only with the same credentials, that are
+	 * part of the key only as a digest.
+	 */
+	private String getSessionPoolKey(Map<String, String> optProperties) throws RemoteManagerException {
+		try {
+			Map<String, Object> localProps = MapUtils.convertToHMStringObject(optProperties);
+			String credentials = authMethod.equals("password") ? PropertiesHandler.expand(password, localProps)
+					                                           : PropertiesHandler.expand(privateKey, localProps);
+			return getManagerKey(optProperties) + "#" + authMethod + "#" + digest(credentials);
+		} catch (RemoteManagerException exc) {
+			throw exc;
+		} catch (Exception exc) {
+			throw new RemoteManagerException("Connection error. " + getManagerKey(optProperties), exc);
+		}
+	}
+
+	private static String digest(String credentials) throws Exception {
+		if (credentials == null) {
+			return "";
+		}
+		MessageDigest md = MessageDigest.getInstance("SHA-256");
+		return Base64.getEncoder().encodeToString(md.digest(credentials.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * @return true if the sessions are pooled
+	 */
+	protected boolean isSessionPooling() {
+		return sessionPooling;
+	}
+
+	/**
+	 * @return the key of the pooled session, if connected
+	 */
+	protected String getSessionPoolKey() {
+		return sessionPoolKey;
+	}
+
 	/**
 	 * @return the isConnected
 	 */
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2009-2010 GreenVulcano ESB Open Source Project. All rights
+ * reserved.
+ * 
+ * This file is part of GreenVulcano ESB.
+ * 
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * GreenVulcano ESB is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.greenvulcano.util.remotefs.sftp;
+
+import it.greenvulcano.util.thread.BaseThreadFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+
+/**
+ * Shares the SSH sessions among the SSHManager instances connecting to the
+ * same host as the same user: a JSch Session multiplexes its channels, so a
+ * single connected session for each key is leased to every user, and closed
+ * when unused for more than its idle timeout.
+ * The idle SFTP channels of each session are pooled too.
+ *
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ */
+public final class SSHSessionPool {
+
+	private static final Logger logger = LoggerFactory.getLogger(SSHSessionPool.class);
+
+	private static final long REAPER_PERIOD = 10000;
+
+	private static final Map<String, PooledSession> sessions = new ConcurrentHashMap<>();
+
+	private static ScheduledExecutorService reaper = null;
+
+	private static final class PooledSession {
+		private Session session;
+		private int leases = 0;
+		private long lastReleased = System.currentTimeMillis();
+		private long idleTimeout;
+		private final ConcurrentLinkedDeque<ChannelSftp> channels = new ConcurrentLinkedDeque<>();
+	}
+
+	private SSHSessionPool() {
+		// do nothing
+	}
+
+	/**
+	 * Leases the connected session for the given key, creating it if needed.
+	 *
+	 * @param key
+	 *            identifies host, port, user and credentials
+	 * @param factory
+	 *            creates and connects a new session
+	 * @param idleTimeout
+	 *            ms after which an unused session is closed
+	 * @return the connected session
+	 * @throws Exception
+	 *             if the session cannot be created
+	 */
+	public static Session acquire(String key, Callable<Session> factory, long idleTimeout) throws Exception {
+		startReaper();
+		PooledSession pooled = sessions.computeIfAbsent(key, k -> new PooledSession());
+		synchronized (pooled) {
+			if ((pooled.session == null) || !pooled.session.isConnected()) {
+				closeChannels(pooled);
+				logger.debug("Creating pooled SSH session " + key);
+				pooled.session = factory.call();
+				// the holders of the replaced session release it by disconnecting
+				pooled.leases = 0;
+			}
+			pooled.leases++;
+			pooled.idleTimeout = idleTimeout;
+			return pooled.session;
+		}
+	}
+
+	/**
+	 * Returns a session leased through <code>acquire()</code>.
+	 *
+	 * @param key
+	 * @param session
+	 */
+	public static void release(String key, Session session) {
+		PooledSession pooled = sessions.get(key);
+		if (pooled == null) {
+			session.disconnect();
+			return;
+		}
+		synchronized (pooled) {
+			if (pooled.session != session) {
+				// replaced after a failure
+				session.disconnect();
+				return;
+			}
+			pooled.leases--;
+			pooled.lastReleased = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Returns a connected SFTP channel of the session leased for the given key.
+	 *
+	 * @param key
+	 * @param session
+	 * @return the channel
+	 * @throws JSchException
+	 *             if the channel cannot be opened
+	 */
+	public static ChannelSftp acquireChannel(String key, Session session) throws JSchException {
+		PooledSession pooled = sessions.get(key);
+		if ((pooled != null) && (pooled.session == session)) {
+			ChannelSftp channel = null;
+			while ((channel = pooled.channels.pollFirst()) != null) {
+				if (channel.isConnected()) {
+					return channel;
+				}
+			}
+		}
+		ChannelSftp channel = (ChannelSftp) session.openChannel("sftp");
+		channel.connect();
+		return channel;
+	}
+
+	/**
+	 * Returns a channel obtained through <code>acquireChannel()</code>, moving
+	 * it back to its home directory.
+	 *
+	 * @param key
+	 * @param session
+	 * @param channel
+	 */
+	public static void releaseChannel(String key, Session session, ChannelSftp channel) {
+		PooledSession pooled = sessions.get(key);
+		if ((pooled != null) && (pooled.session == session) && channel.isConnected() && session.isConnected()) {
+			try {
+				channel.cd(channel.getHome());
+				pooled.channels.offerFirst(channel);
+				return;
+			} catch (Exception exc) {
+				logger.debug("Discarding SFTP channel of " + key, exc);
+			}
+		}
+		channel.disconnect();
+	}
+
+	private static void closeChannels(PooledSession pooled) {
+		ChannelSftp channel = null;
+		while ((channel = pooled.channels.pollFirst()) != null) {
+			channel.disconnect();
+		}
+	}
+
+	private static synchronized void startReaper() {
+		if (reaper == null) {
+			reaper = Executors.newSingleThreadScheduledExecutor(new BaseThreadFactory("SSHSessionPool#reaper", true));
+			reaper.scheduleWithFixedDelay(SSHSessionPool::closeIdleSessions, REAPER_PERIOD, REAPER_PERIOD, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private static void closeIdleSessions() {
+		long now = System.currentTimeMillis();
+		Iterator<Map.Entry<String, PooledSession>> iterator = sessions.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, PooledSession> entry = iterator.next();
+			PooledSession pooled = entry.getValue();
+			synchronized (pooled) {
+				if ((pooled.leases <= 0) && ((now - pooled.lastReleased) > pooled.idleTimeout)) {
+					logger.debug("Closing idle SSH session " + entry.getKey());
+					closeChannels(pooled);
+					if (pooled.session != null) {
+						pooled.session.disconnect();
+						pooled.session = null;
+					}
+					iterator.remove();
+				}
+			}
+		}
+	}
+}
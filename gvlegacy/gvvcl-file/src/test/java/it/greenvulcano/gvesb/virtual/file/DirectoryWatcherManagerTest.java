@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2009-2017 GreenVulcano ESB Open Source Project. All rights
+ * reserved.
+ * 
+ * This file is part of GreenVulcano ESB.
+ * 
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * GreenVulcano ESB is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.greenvulcano.gvesb.virtual.file;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+import junit.framework.TestCase;
+
+/**
+ * 
+ * Test <code>DirectoryWatcherManager</code> events-loop and flush on a
+ * recursive, debounced <code>DirectoryWatcher</code>.
+ * 
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ * 
+ * 
+ */
+public class DirectoryWatcherManagerTest extends TestCase {
+
+	private Path root;
+
+	@Override
+	protected void setUp() throws Exception {
+		root = Files.createTempDirectory("GV_DIR_WATCHER_MANAGER");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		DirectoryWatcherManager.shutDown();
+		FileUtils.deleteQuietly(root.toFile());
+	}
+
+	public void testRecursiveDebounced() throws Exception {
+		Files.createDirectories(root.resolve("a"));
+		RecordingDirectoryWatcher watcher = new RecordingDirectoryWatcher(root, new LinkedHashSet<>(Arrays.asList(
+				StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY)), true, 300, 10);
+		DirectoryWatcherManager.setUp(Collections.singleton(watcher));
+
+		Path file = root.resolve("a/x/y/burst.txt");
+		Files.createDirectories(file.getParent());
+		for (int i = 0; i < 5; i++) {
+			Files.write(file, ("burst" + i).getBytes());
+		}
+
+		List<String> events = watcher.collect(2000);
+		assertEquals(1, Collections.frequency(events, "ENTRY_CREATE a/x"));
+		assertEquals(1, Collections.frequency(events, "ENTRY_CREATE a/x/y"));
+		assertEquals(1, Collections.frequency(events, "ENTRY_CREATE a/x/y/burst.txt"));
+		assertFalse(events.contains("ENTRY_MODIFY a/x/y/burst.txt"));
+
+		// the subtree is watched once registered
+		Files.write(root.resolve("a/x/y/later.txt"), "later".getBytes());
+		assertEquals(Arrays.asList("ENTRY_CREATE a/x/y/later.txt"), watcher.collect(2000));
+	}
+
+	public void testMaxPendingDeferred() throws Exception {
+		RecordingDirectoryWatcher watcher = new RecordingDirectoryWatcher(root, new LinkedHashSet<>(Arrays.asList(
+				StandardWatchEventKinds.ENTRY_CREATE)), false, 0, 1);
+		DirectoryWatcherManager.setUp(Collections.singleton(watcher));
+
+		for (int i = 0; i < 20; i++) {
+			Files.write(root.resolve("file" + i + ".txt"), "content".getBytes());
+		}
+
+		List<String> events = watcher.collect(2000);
+		assertEquals(20, new LinkedHashSet<>(events).size());
+	}
+
+}
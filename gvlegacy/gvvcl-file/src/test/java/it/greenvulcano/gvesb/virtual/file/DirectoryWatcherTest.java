@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2009-2017 GreenVulcano ESB Open Source Project. All rights
+ * reserved.
+ * 
+ * This file is part of GreenVulcano ESB.
+ * 
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * GreenVulcano ESB is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.greenvulcano.gvesb.virtual.file;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent.Kind;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+
+import junit.framework.TestCase;
+
+/**
+ * 
+ * Test <code>DirectoryWatcher</code> registration, debounce and
+ * <code>maxPending</code> handling, driving its WatchService by hand.
+ * 
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ * 
+ * 
+ */
+public class DirectoryWatcherTest extends TestCase {
+
+	private static final long DEBOUNCE = 60000;
+
+	private Path         root;
+	private WatchService watchService;
+
+	@Override
+	protected void setUp() throws Exception {
+		root = Files.createTempDirectory("GV_DIR_WATCHER");
+		watchService = root.getFileSystem().newWatchService();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		watchService.close();
+		FileUtils.deleteQuietly(root.toFile());
+	}
+
+	public void testRecursiveRegistration() throws Exception {
+		Files.createDirectories(root.resolve("a/b"));
+		RecordingDirectoryWatcher watcher = new RecordingDirectoryWatcher(root, kinds(StandardWatchEventKinds.ENTRY_CREATE), true, 0, 10);
+		watcher.register(watchService);
+
+		// already existing subtree
+		Files.write(root.resolve("a/b/deep.txt"), "deep".getBytes());
+		processNextKey(watcher);
+		assertEquals(Arrays.asList("ENTRY_CREATE a/b/deep.txt"), watcher.collect(500));
+
+		// subtree created, or moved, after the registration
+		Files.createDirectories(root.resolve("c/d"));
+		Files.write(root.resolve("c/d/moved.txt"), "moved".getBytes());
+		processNextKey(watcher);
+		assertEquals(new HashSet<>(Arrays.asList("ENTRY_CREATE c", "ENTRY_CREATE c/d", "ENTRY_CREATE c/d/moved.txt")),
+				     new HashSet<>(watcher.collect(500)));
+
+		Files.write(root.resolve("c/d/later.txt"), "later".getBytes());
+		processNextKey(watcher);
+		assertEquals(Arrays.asList("ENTRY_CREATE c/d/later.txt"), watcher.collect(500));
+	}
+
+	public void testNotRecursive() throws Exception {
+		Files.createDirectories(root.resolve("a"));
+		RecordingDirectoryWatcher watcher = new RecordingDirectoryWatcher(root, kinds(StandardWatchEventKinds.ENTRY_CREATE), false, 0, 10);
+		watcher.register(watchService);
+
+		Files.write(root.resolve("a/nested.txt"), "nested".getBytes());
+		Files.write(root.resolve("top.txt"), "top".getBytes());
+		processNextKey(watcher);
+		assertEquals(Arrays.asList("ENTRY_CREATE top.txt"), watcher.collect(500));
+		assertNull(watchService.poll(500, TimeUnit.MILLISECONDS));
+	}
+
+	public void testDebounce() throws Exception {
+		RecordingDirectoryWatcher watcher = new RecordingDirectoryWatcher(root, kinds(StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), false, DEBOUNCE, 10);
+		watcher.register(watchService);
+
+		Path file = root.resolve("burst.txt");
+		for (int i = 0; i < 5; i++) {
+			Files.write(file, ("burst" + i).getBytes());
+		}
+		processNextKey(watcher);
+
+		watcher.flush(System.currentTimeMillis());
+		assertTrue("Fired within the debounce window", watcher.collect(500).isEmpty());
+
+		// created and modified within the window: a single create
+		watcher.flush(System.currentTimeMillis() + DEBOUNCE);
+		assertEquals(Arrays.asList("ENTRY_CREATE burst.txt"), watcher.collect(500));
+
+		// created and deleted within the window: nothing
+		Path temp = root.resolve("temp.txt");
+		Files.write(temp, "temp".getBytes());
+		Files.delete(temp);
+		processNextKey(watcher);
+		watcher.flush(System.currentTimeMillis() + DEBOUNCE);
+		assertTrue(watcher.collect(500).isEmpty());
+	}
+
+	public void testMaxPendingDefersEvents() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		RecordingDirectoryWatcher watcher = new RecordingDirectoryWatcher(root, kinds(StandardWatchEventKinds.ENTRY_CREATE), false, 0, 1) {
+			@Override
+			void forward(Path file, Kind<?> kind) {
+				super.forward(file, kind);
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		watcher.register(watchService);
+
+		Files.write(root.resolve("one.txt"), "one".getBytes());
+		Files.write(root.resolve("two.txt"), "two".getBytes());
+
+		// the events-loop must not wait for the running forward
+		ExecutorService loop = Executors.newSingleThreadExecutor();
+		try {
+			loop.submit(() -> {
+				processNextKey(watcher);
+				return null;
+			}).get(5, TimeUnit.SECONDS);
+		} finally {
+			loop.shutdownNow();
+		}
+
+		String first = watcher.forwarded.poll(5, TimeUnit.SECONDS);
+		assertNotNull(first);
+		watcher.flush(System.currentTimeMillis());
+		assertTrue("Forwarded beyond maxPending", watcher.collect(500).isEmpty());
+
+		release.countDown();
+		String second = null;
+		long deadline = System.currentTimeMillis() + 5000;
+		while (second == null && System.currentTimeMillis() < deadline) {
+			watcher.flush(System.currentTimeMillis());
+			second = watcher.forwarded.poll(100, TimeUnit.MILLISECONDS);
+		}
+		assertEquals(new HashSet<>(Arrays.asList("ENTRY_CREATE one.txt", "ENTRY_CREATE two.txt")),
+				     new HashSet<>(Arrays.asList(first, second)));
+	}
+
+	/**
+	 * Hands the events of the next signaled key to the watcher, as the
+	 * DirectoryWatcherManager events-loop does
+	 */
+	private void processNextKey(DirectoryWatcher watcher) throws Exception {
+		WatchKey key = watchService.poll(5, TimeUnit.SECONDS);
+		assertNotNull("No key signaled", key);
+		assertTrue(watcher.owns(key));
+		// let the events of the same burst gather on the key
+		Thread.sleep(200);
+		watcher.processEvents(key, key.pollEvents());
+		key.reset();
+	}
+
+	@SafeVarargs
+	private static Set<Kind<Path>> kinds(Kind<Path>... kinds) {
+		return new LinkedHashSet<>(Arrays.asList(kinds));
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2009-2017 GreenVulcano ESB Open Source Project. All rights
+ * reserved.
+ * 
+ * This file is part of GreenVulcano ESB.
+ * 
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * GreenVulcano ESB is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.greenvulcano.gvesb.virtual.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent.Kind;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 
+ * <code>DirectoryWatcher</code> recording the forwarded events as
+ * <code>KIND relative/path</code>, in place of calling the service.
+ * 
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ * 
+ * 
+ */
+class RecordingDirectoryWatcher extends DirectoryWatcher {
+
+	final BlockingQueue<String> forwarded = new LinkedBlockingQueue<>();
+
+	RecordingDirectoryWatcher(Path directory, Set<Kind<Path>> events, boolean recursive, long debounce, int maxPending) throws IOException {
+		super("TestWatcher", directory, "TEST_SERVICE", "TEST_OPERATION", events, false, recursive, debounce, maxPending);
+	}
+
+	@Override
+	void forward(Path file, Kind<?> kind) {
+		forwarded.add(kind.name() + " " + getDirectory().relativize(file).toString().replace(File.separatorChar, '/'));
+	}
+
+	/**
+	 * Collects the forwarded events until none arrives for the given quiet time
+	 */
+	List<String> collect(long quiet) throws InterruptedException {
+		List<String> events = new ArrayList<>();
+		String event;
+		while ((event = forwarded.poll(quiet, TimeUnit.MILLISECONDS)) != null) {
+			events.add(event);
+		}
+		return events;
+	}
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2009-2017 GreenVulcano ESB Open Source Project. All rights
+ * reserved.
+ * 
+ * This file is part of GreenVulcano ESB.
+ * 
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * GreenVulcano ESB is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ */
+package tests.unit.vcl.file.monitor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.w3c.dom.Node;
+
+import it.greenvulcano.configuration.XMLConfig;
+import it.greenvulcano.util.file.FileProperties;
+import it.greenvulcano.util.file.monitor.status.IndexedMonitorStatus;
+import it.greenvulcano.util.file.monitor.status.StatusInfo;
+import junit.framework.TestCase;
+
+/**
+ * 
+ * Test <code>IndexedMonitorStatus</code>.
+ * 
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ * 
+ * 
+ */
+
+public class IndexedMonitorStatusTest extends TestCase {
+
+	private static final String MONITOR_INFO = "IndexedMonitorStatusTest";
+	private static final File   STATUS_FILE  = new File(System.getProperty("user.dir") + File.separator + "target"
+            + File.separator + "test-classes" + File.separator + "monitor_status_walk.txt");
+
+	private Node                node         = null;
+	private Map<String, String> props        = new HashMap<String, String>();
+
+	/**
+     * @see junit.framework.TestCase#setUp()
+     */
+
+	@Override
+	public void setUp() throws Exception
+	{
+		XMLConfig.setBaseConfigPath(getClass().getClassLoader().getResource(".").getPath());
+		super.setUp();
+		node = XMLConfig.getNode("GVSystems.xml",
+				"//fsmonitor-call[@name='test_analyze_dir_walk']/LocalFileSystemMonitor/IndexedMonitorStatus");
+		STATUS_FILE.delete();
+	}
+
+	/**
+     * Tests that the appended differences are read back by a new instance
+     * 
+     * @throws Exception
+     *         if any error occurs
+     */
+
+	public void testSaveAndLoad() throws Exception
+	{
+		IndexedMonitorStatus status = newStatus();
+		assertNull(status.loadStatus(props));
+
+		Set<FileProperties> files = new HashSet<FileProperties>();
+		files.add(file("a.txt"));
+		files.add(file("b.txt"));
+		status.saveStatus(files, 1000, props);
+
+		files = new HashSet<FileProperties>();
+		files.add(file("b.txt"));
+		files.add(file("c.txt"));
+		status.saveStatus(files, 2000, props);
+
+		StatusInfo info = newStatus().loadStatus(props);
+		assertEquals(2000, info.getAnalysisTimestamp());
+		assertEquals(names("b.txt", "c.txt"), names(info));
+	}
+
+	/**
+     * Tests that a save interrupted before the timestamp record is ignored
+     * 
+     * @throws Exception
+     *         if any error occurs
+     */
+
+	public void testIncompleteSave() throws Exception
+	{
+		saveBaseline();
+		appendJournal("+" + file("c.txt").serialize() + "\n-a.txt\n");
+
+		IndexedMonitorStatus status = newStatus();
+		StatusInfo info = status.loadStatus(props);
+		assertEquals(1000, info.getAnalysisTimestamp());
+		assertEquals(names("a.txt", "b.txt"), names(info));
+
+		// the next save rewrites the journal
+		status.saveStatus(info.getStatusFileSet(), 3000, props);
+		info = newStatus().loadStatus(props);
+		assertEquals(3000, info.getAnalysisTimestamp());
+		assertEquals(names("a.txt", "b.txt"), names(info));
+	}
+
+	/**
+     * Tests that a timestamp record torn mid-append is ignored
+     * 
+     * @throws Exception
+     *         if any error occurs
+     */
+
+	public void testTornTimestamp() throws Exception
+	{
+		saveBaseline();
+		appendJournal("+" + file("c.txt").serialize() + "\nT20");
+
+		IndexedMonitorStatus status = newStatus();
+		StatusInfo info = status.loadStatus(props);
+		assertEquals(1000, info.getAnalysisTimestamp());
+		assertEquals(names("a.txt", "b.txt"), names(info));
+
+		status.saveStatus(info.getStatusFileSet(), 3000, props);
+		info = newStatus().loadStatus(props);
+		assertEquals(3000, info.getAnalysisTimestamp());
+		assertEquals(names("a.txt", "b.txt"), names(info));
+	}
+
+	/**
+     * @see junit.framework.TestCase#tearDown()
+     */
+
+	@Override
+	public void tearDown() throws Exception
+	{
+		STATUS_FILE.delete();
+		super.tearDown();
+	}
+
+	private IndexedMonitorStatus newStatus() throws Exception
+	{
+		IndexedMonitorStatus status = new IndexedMonitorStatus();
+		status.init(node, MONITOR_INFO);
+		return status;
+	}
+
+	private void saveBaseline() throws Exception
+	{
+		Set<FileProperties> files = new HashSet<FileProperties>();
+		files.add(file("a.txt"));
+		files.add(file("b.txt"));
+		newStatus().saveStatus(files, 1000, props);
+	}
+
+	private void appendJournal(String records) throws Exception
+	{
+		try (FileOutputStream out = new FileOutputStream(STATUS_FILE, true)) {
+			out.write(records.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private static FileProperties file(String name)
+	{
+		return new FileProperties(name, 1000, 10, false, true, true, false);
+	}
+
+	private static Set<String> names(String... names)
+	{
+		Set<String> result = new HashSet<String>();
+		for (String name : names) {
+			result.add(name);
+		}
+		return result;
+	}
+
+	private static Set<String> names(StatusInfo info)
+	{
+		Set<String> result = new HashSet<String>();
+		for (FileProperties currFile : info.getStatusFileSet()) {
+			result.add(currFile.getName());
+		}
+		return result;
+	}
+}
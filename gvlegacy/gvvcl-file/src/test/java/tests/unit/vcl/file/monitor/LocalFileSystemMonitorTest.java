@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2009-2017 GreenVulcano ESB Open Source Project. All rights
+ * reserved.
+ * 
+ * This file is part of GreenVulcano ESB.
+ * 
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * GreenVulcano ESB is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ */
+package tests.unit.vcl.file.monitor;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.w3c.dom.Node;
+
+import it.greenvulcano.configuration.XMLConfig;
+import it.greenvulcano.util.file.monitor.AnalysisReport;
+import it.greenvulcano.util.file.monitor.LocalFileSystemMonitor;
+import junit.framework.TestCase;
+
+/**
+ * 
+ * Test <code>LocalFileSystemMonitor</code> with <code>scan-mode="walk"</code>.
+ * 
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ * 
+ * 
+ */
+
+public class LocalFileSystemMonitorTest extends TestCase {
+
+	private static final String TEST_FILE_DIR  = System.getProperty("java.io.tmpdir") + File.separator
+            + "TestFileMonitor";
+	private static final File   STATUS_FILE    = new File(System.getProperty("user.dir") + File.separator + "target"
+            + File.separator + "test-classes" + File.separator + "monitor_status_walk.txt");
+
+	private Map<String, String> props          = new HashMap<String, String>();
+
+	/**
+     * @see junit.framework.TestCase#setUp()
+     */
+
+	@Override
+	public void setUp() throws Exception
+	{
+		XMLConfig.setBaseConfigPath(getClass().getClassLoader().getResource(".").getPath());
+		super.setUp();
+		FileUtils.deleteDirectory(new File(TEST_FILE_DIR));
+		FileUtils.forceMkdir(new File(TEST_FILE_DIR));
+		STATUS_FILE.delete();
+	}
+
+	/**
+     * Tests the created and deleted files detected by the single pass scan
+     * 
+     * @throws Exception
+     *         if any error occurs
+     */
+
+	public void testWalkScan() throws Exception
+	{
+		Node node = XMLConfig.getNode("GVSystems.xml",
+				"//fsmonitor-call[@name='test_analyze_dir_walk']/LocalFileSystemMonitor");
+		LocalFileSystemMonitor monitor = new LocalFileSystemMonitor();
+		monitor.init(node);
+
+		FileUtils.writeStringToFile(new File(TEST_FILE_DIR, "a.txt"), "a");
+		AnalysisReport report = monitor.analyze(props);
+		assertEquals(1, report.getExistingFilesCount());
+		assertEquals(0, report.getCreatedFilesCount());
+		assertTrue(STATUS_FILE.exists());
+
+		FileUtils.writeStringToFile(new File(TEST_FILE_DIR, "b.txt"), "b");
+		report = monitor.analyze(props);
+		assertEquals(2, report.getExistingFilesCount());
+		assertEquals(1, report.getCreatedFilesCount());
+		assertEquals(0, report.getDeletedFilesCount());
+
+		FileUtils.forceDelete(new File(TEST_FILE_DIR, "a.txt"));
+		report = monitor.analyze(props);
+		assertEquals(1, report.getExistingFilesCount());
+		assertEquals(0, report.getCreatedFilesCount());
+		assertEquals(1, report.getDeletedFilesCount());
+	}
+
+	/**
+     * @see junit.framework.TestCase#tearDown()
+     */
+
+	@Override
+	public void tearDown() throws Exception
+	{
+		FileUtils.deleteDirectory(new File(TEST_FILE_DIR));
+		STATUS_FILE.delete();
+		super.tearDown();
+	}
+}
@@ -22,10 +22,15 @@ package tests.unit.vcl.file.reader;
 import junit.framework.TestCase;
 
 import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.w3c.dom.Document;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.w3c.dom.Node;
 
 import it.greenvulcano.configuration.XMLConfig;
@@ -107,6 +112,85 @@ public class FileReaderTest extends TestCase {
 		
 	}
 	
+	/**
+     * Test <code>FileReader</code> in stream and mapped mode
+     * 
+     * @see it.greenvulcano.gvesb.virtual.file.reader.FileReader
+     * 
+     * @throws Exception
+     *         if any error occurs
+     */
+	
+	@SuppressWarnings("deprecation")
+	public void testReadFileStreamMapped() throws Exception
+	{		
+		String content = "12345678";
+		
+	    FileUtils.write(new File(
+               TEST_FILE_DEST_RESOURCES + File.separator + TEST_FILE_READER), content.subSequence(0, content.length()) );
+	    
+		Node node = XMLConfig.getNode("GVSystems.xml","//filereader-call[@name='test_read_file_stream']");
+		FileReader fr = new FileReader();
+		fr.init(node);
+		GVBuffer gvBuffer = new GVBuffer("TEST", "FILEREADER-CALL");
+		fr.perform(gvBuffer);
+		try (InputStream stream = (InputStream) gvBuffer.getObject()) {
+			assertEquals(content, IOUtils.toString(stream));
+		}
+		
+		node = XMLConfig.getNode("GVSystems.xml","//filereader-call[@name='test_read_file_mapped']");
+		fr = new FileReader();
+		fr.init(node);
+		gvBuffer = new GVBuffer("TEST", "FILEREADER-CALL");
+		fr.perform(gvBuffer);
+		ByteBuffer buffer = (ByteBuffer) gvBuffer.getObject();
+		byte[] data = new byte[buffer.remaining()];
+		buffer.get(data);
+		
+		assertEquals(content, new String(data));
+	}
+	
+	/**
+     * Test <code>FileReader</code> in chunks mode
+     * 
+     * @see it.greenvulcano.gvesb.virtual.file.reader.FileReader
+     * 
+     * @throws Exception
+     *         if any error occurs
+     */
+	
+	@SuppressWarnings("deprecation")
+	public void testReadFileChunks() throws Exception
+	{		
+		String content = "line1\nline2\nline3\nline4\nline5";
+		
+	    FileUtils.write(new File(
+               TEST_FILE_DEST_RESOURCES + File.separator + TEST_FILE_READER), content.subSequence(0, content.length()) );
+	    
+		Node node = XMLConfig.getNode("GVSystems.xml","//filereader-call[@name='test_read_file_chunks']");
+		final List<GVBuffer> chunks = new ArrayList<GVBuffer>();
+		FileReader fr = new FileReader() {
+			@Override
+			protected void forwardChunk(GVBuffer chunkBuffer) throws Exception {
+				chunks.add(chunkBuffer);
+			}
+		};
+		fr.init(node);
+		GVBuffer gvBuffer = new GVBuffer("TEST", "FILEREADER-CALL");
+		fr.perform(gvBuffer);
+		
+		assertEquals("3", gvBuffer.getProperty("GVFR_CHUNK_COUNT"));
+		assertEquals("5", gvBuffer.getProperty("GVFR_LINE_COUNT"));
+		assertEquals(3, chunks.size());
+		assertEquals("line1\nline2\n", chunks.get(0).getObject());
+		assertEquals("line3\nline4\n", chunks.get(1).getObject());
+		assertEquals("line5\n", chunks.get(2).getObject());
+		for (int i = 0; i < chunks.size(); i++) {
+			assertEquals(String.valueOf(i), chunks.get(i).getProperty("GVFR_CHUNK_INDEX"));
+			assertEquals(String.valueOf(i * 2), chunks.get(i).getProperty("GVFR_CHUNK_FIRST_LINE"));
+		}
+	}
+	
 	/**
      * Test <code>FileReader</code> with a xml file.
      * 
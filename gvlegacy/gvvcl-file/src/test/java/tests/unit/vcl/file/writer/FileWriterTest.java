@@ -19,6 +19,7 @@
  */
 package tests.unit.vcl.file.writer;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 
 import org.apache.commons.io.FileUtils;
@@ -37,6 +38,7 @@ import it.greenvulcano.gvesb.virtual.file.writer.FileWriter;
 public class FileWriterTest extends TestCase {
 	
 	private static final String TEST_FILE_WRITER         = "fileWrite_test2.txt";
+	private static final String TEST_FILE_WRITER_STREAM  = "fileWrite_test3.txt";
 	private static final String TEST_FILE_DIR             = "TestFileManager";
 	private static final String TEST_FILE_DEST_RESOURCES  = System.getProperty("java.io.tmpdir") + File.separator
             + TEST_FILE_DIR;
@@ -90,4 +92,30 @@ public class FileWriterTest extends TestCase {
         
 	}
 
+	/**
+     * Test FileWriter in stream mode
+     * 
+     * @see it.greenvulcano.gvesb.virtual.file.writer.FileWriter
+     * 
+     * @throws Exception
+     *         if any error occurs
+     */
+	public void testWriteFileStream() throws Exception
+	{
+		Node node = XMLConfig.getNode("GVSystems.xml","//filewriter-call[@name='test_write_file_stream']");
+		FileWriter fw = new FileWriter();
+		fw.init(node);
+		
+		GVBuffer gvBuffer = new GVBuffer("TEST", "FILEWRITER-CALL");
+		gvBuffer.setObject("12345678");
+		fw.perform(gvBuffer);
+		assertEquals("12345678", FileUtils.readFileToString(new File(
+                TEST_FILE_DEST_RESOURCES + File.separator + TEST_FILE_WRITER_STREAM), "UTF-8"));
+		
+		gvBuffer.setObject(new ByteArrayInputStream("87654321".getBytes("UTF-8")));
+		fw.perform(gvBuffer);
+		assertEquals("87654321", FileUtils.readFileToString(new File(
+                TEST_FILE_DEST_RESOURCES + File.separator + TEST_FILE_WRITER_STREAM), "UTF-8"));
+	}
+
 }
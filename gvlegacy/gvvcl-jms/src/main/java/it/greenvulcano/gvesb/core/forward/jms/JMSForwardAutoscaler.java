@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2009-2012 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ * 
+ * This file is part of GreenVulcano ESB.
+ * 
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.greenvulcano.gvesb.core.forward.jms;
+
+import it.greenvulcano.configuration.XMLConfig;
+import it.greenvulcano.gvesb.j2ee.JNDIHelper;
+import it.greenvulcano.log.NMDC;
+import it.greenvulcano.util.metadata.PropertiesHandler;
+
+import java.util.Date;
+import java.util.Enumeration;
+
+import javax.jms.Connection;
+import javax.jms.Queue;
+import javax.jms.QueueBrowser;
+import javax.jms.Session;
+
+import org.slf4j.Logger;
+import org.w3c.dom.Node;
+
+/**
+ * Adaptive sizing of a <code>JMSForwardListenerPool</code>.
+ * <p>
+ * At each interval the controller samples the fraction of listener receives
+ * that returned a message and, for queues, the queue depth through a
+ * <code>QueueBrowser</code>. The listeners target grows by one after
+ * UP_INTERVALS consecutive busy samples and shrinks by one after
+ * DOWN_INTERVALS consecutive idle samples, between the pool initial and
+ * maximum size; the streaks restart after every decision.
+ *
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ */
+public class JMSForwardAutoscaler implements Runnable
+{
+    private static final Logger    logger         = org.slf4j.LoggerFactory.getLogger(JMSForwardAutoscaler.class);
+
+    /**
+     * Receive hit ratio above which a sample is busy.
+     */
+    public static final double     UP_RATIO       = 0.9;
+    /**
+     * Receive hit ratio below which a sample is idle.
+     */
+    public static final double     DOWN_RATIO     = 0.1;
+    public static final int        UP_INTERVALS   = 2;
+    public static final int        DOWN_INTERVALS = 6;
+    /**
+     * Max messages enumerated when sampling the queue depth.
+     */
+    public static final int        MAX_BROWSE     = 1000;
+
+    private JMSForwardData         data;
+    private JMSForwardListenerPool pool;
+    private JNDIHelper             initialContext = null;
+    private boolean                browse;
+    private int                    upStreak       = 0;
+    private int                    downStreak     = 0;
+
+    public JMSForwardAutoscaler(JMSForwardData data, JMSForwardListenerPool pool)
+    {
+        this.data = data;
+        this.pool = pool;
+        browse = data.isQueue();
+        try {
+            Node fdNode = XMLConfig.getNode(data.getCfgNode(), "ForwardDeployment");
+            initialContext = new JNDIHelper(XMLConfig.getNode(fdNode, "JNDIHelper"));
+        }
+        catch (Exception exc) {
+            logger.warn("Forward [" + data.getName() + "/" + data.getForwardName()
+                    + "] - queue depth sampling disabled", exc);
+            browse = false;
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        if (data.isShutdown() || !data.isActive()) {
+            return;
+        }
+        NMDC.push();
+        try {
+            NMDC.setServer(data.getServerName());
+            NMDC.setSubSystem(JMSForwardData.SUBSYSTEM);
+
+            long hits = data.drainReceiveHits();
+            long misses = data.drainReceiveMisses();
+            double ratio = ((hits + misses) == 0) ? 0 : (double) hits / (hits + misses);
+            long depth = sampleDepth();
+            data.setQueueDepth(depth);
+
+            int active = pool.getPooledCount();
+            int target = data.getTargetSize();
+            boolean busy = (ratio >= UP_RATIO) || (depth > ((long) Math.max(active, 1) * data.getBacklogPerListener()));
+            boolean idle = (ratio <= DOWN_RATIO) && (depth <= 0);
+
+            if (busy) {
+                upStreak++;
+                downStreak = 0;
+            }
+            else if (idle) {
+                downStreak++;
+                upStreak = 0;
+            }
+            else {
+                upStreak = 0;
+                downStreak = 0;
+            }
+
+            String sample = "hit ratio " + String.format("%.2f", ratio) + " (" + hits + "/" + (hits + misses)
+                    + ") - depth " + depth + " - active " + active;
+            if (data.isDebug()) {
+                logger.debug("Forward [" + data.getName() + "/" + data.getForwardName() + "] - autoscale sample: "
+                        + sample);
+            }
+
+            if ((upStreak >= UP_INTERVALS) && (target < data.getMaximumSize())) {
+                decide(true, target, target + 1, sample);
+            }
+            else if ((downStreak >= DOWN_INTERVALS) && (target > data.getInitialSize())) {
+                decide(false, target, target - 1, sample);
+            }
+        }
+        catch (Exception exc) {
+            logger.error("Forward [" + data.getName() + "/" + data.getForwardName() + "] - autoscale error", exc);
+        }
+        finally {
+            NMDC.pop();
+        }
+    }
+
+    private void decide(boolean up, int from, int to, String sample)
+    {
+        upStreak = 0;
+        downStreak = 0;
+        String decision = (up ? "GROW " : "SHRINK ") + from + " -> " + to + ": " + sample + " @ "
+                + new Date();
+        logger.info("Forward [" + data.getName() + "/" + data.getForwardName() + "] - autoscale " + decision);
+        data.recordScaleDecision(up, decision);
+        pool.scaleTo(to);
+    }
+
+    /**
+     * @return the queue depth, up to MAX_BROWSE, or -1 if not available
+     */
+    private long sampleDepth()
+    {
+        if (!browse) {
+            return -1;
+        }
+        Session session = null;
+        try {
+            Connection connection = data.getConnectionHolder().getConnection(initialContext, data.getClientId());
+            session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Queue queue = session.createQueue(data.getDestinationName());
+            String selector = data.getMessageSelector();
+            QueueBrowser browser = "".equals(selector) ? session.createBrowser(queue)
+                    : session.createBrowser(queue, PropertiesHandler.expand(selector));
+            try {
+                long depth = 0;
+                Enumeration<?> messages = browser.getEnumeration();
+                while (messages.hasMoreElements() && (depth < MAX_BROWSE)) {
+                    messages.nextElement();
+                    depth++;
+                }
+                return depth;
+            }
+            finally {
+                browser.close();
+            }
+        }
+        catch (Exception exc) {
+            logger.debug("Forward [" + data.getName() + "/" + data.getForwardName() + "] - cannot sample queue depth: "
+                    + exc);
+            return -1;
+        }
+        finally {
+            if (session != null) {
+                try {
+                    session.close();
+                }
+                catch (Exception exc) {
+                    // do nothing
+                }
+            }
+            try {
+                initialContext.close();
+            }
+            catch (Exception exc) {
+                // do nothing
+            }
+        }
+    }
+}
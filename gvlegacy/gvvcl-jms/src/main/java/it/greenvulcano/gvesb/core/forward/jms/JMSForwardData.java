@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.w3c.dom.Node;
@@ -44,6 +45,9 @@ public class JMSForwardData
 {
     public static final int        DEFAULT_INITIAL_SIZE = 1;
     public static final int        DEFAULT_MAXIMUM_SIZE = 10;
+    public static final int        DEFAULT_BATCH_SIZE   = 1;
+    public static final long       DEFAULT_BATCH_TIME   = 1000;
+    public static final int        DEFAULT_BACKLOG_PER_LISTENER = 50;
     /**
      * The subsystem name.
      */
@@ -118,6 +122,14 @@ public class JMSForwardData
 
     private boolean                transacted           = false;
     private int                    transactionTimeout   = 0;
+    /**
+     * Max messages received in a single transaction.
+     */
+    private int                    batchSize            = DEFAULT_BATCH_SIZE;
+    /**
+     * Max time, in ms, spent collecting the messages of a transaction.
+     */
+    private long                   batchTime            = DEFAULT_BATCH_TIME;
 
     /**
      * If true shutdown in progress.
@@ -140,6 +152,29 @@ public class JMSForwardData
     
     private List<Validator>        validators           = new ArrayList<Validator>();
 
+    private long                   statsStartTime       = System.currentTimeMillis();
+    private AtomicLong             processedCount       = new AtomicLong(0);
+    private AtomicLong             rolledBackCount      = new AtomicLong(0);
+    private AtomicLong             commitCount          = new AtomicLong(0);
+    private AtomicLong             rollbackCount        = new AtomicLong(0);
+    private AtomicLong             totalCommitTime      = new AtomicLong(0);
+    private AtomicLong             maxCommitTime        = new AtomicLong(0);
+
+    /**
+     * If true the listeners count is driven by JMSForwardAutoscaler.
+     */
+    private boolean                autoscale            = false;
+    private long                   autoscaleInterval    = 10000;
+    private int                    backlogPerListener   = DEFAULT_BACKLOG_PER_LISTENER;
+    private AtomicLong             receiveHits          = new AtomicLong(0);
+    private AtomicLong             receiveMisses        = new AtomicLong(0);
+    private AtomicInteger          targetSize           = new AtomicInteger(0);
+    private AtomicInteger          retireRequests       = new AtomicInteger(0);
+    private AtomicLong             scaleUpCount         = new AtomicLong(0);
+    private AtomicLong             scaleDownCount       = new AtomicLong(0);
+    private volatile long          queueDepth           = -1;
+    private volatile String        lastScaleDecision    = "";
+
 
     private String acknowledgementMode;
     
@@ -211,6 +246,18 @@ public class JMSForwardData
             transactionTimeout = XMLConfig.getInteger(fdNode, "@transaction-timeout-sec", 30);
             receiveTimeout = XMLConfig.getInteger(fdNode, "@receive-timeout-sec", 1) * 1000;
             readBlockCount = XMLConfig.getInteger(fdNode, "@read-block-count", 60);
+            batchSize = XMLConfig.getInteger(fdNode, "@batch-size", DEFAULT_BATCH_SIZE);
+            batchTime = XMLConfig.getLong(fdNode, "@batch-time", DEFAULT_BATCH_TIME);
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("batchSize < 1, forwardName=" + forwardName);
+            }
+            autoscale = XMLConfig.getBoolean(fdNode, "@autoscale", false) && (clientId == null);
+            autoscaleInterval = XMLConfig.getLong(fdNode, "@autoscale-interval-sec", 10) * 1000;
+            backlogPerListener = XMLConfig.getInteger(fdNode, "@autoscale-backlog-per-listener", DEFAULT_BACKLOG_PER_LISTENER);
+            if (autoscale && (maximumSize <= 0)) {
+                throw new IllegalArgumentException("autoscale requires maximumSize > 0, forwardName=" + forwardName);
+            }
+            targetSize.set(initialSize);
 
             greenVulcanoPool = GreenVulcanoPoolManager.instance().getGreenVulcanoPool(SUBSYSTEM).orElseGet(GreenVulcanoPoolManager::getDefaultGreenVulcanoPool);
             if (greenVulcanoPool == null) {
@@ -234,6 +281,12 @@ public class JMSForwardData
             sb.append("] - transacted [").append(transacted);
             sb.append("] - transactionTimeout [").append(transactionTimeout);
             sb.append("] - readBlockCount [").append(readBlockCount);
+            sb.append("] - batchSize [").append(batchSize);
+            sb.append("] - batchTime [").append(batchTime);
+            if (autoscale) {
+                sb.append("] - autoscaleInterval [").append(autoscaleInterval);
+                sb.append("] - autoscaleBacklogPerListener [").append(backlogPerListener);
+            }
             sb.append("] - receiveTimeout [").append(receiveTimeout);
             sb.append("] - reconnectInterval [").append(reconnectInterval);
             sb.append("] - using on error sleepTimeout [").append(sleepTimeout);
@@ -517,6 +570,284 @@ public class JMSForwardData
         this.transactionTimeout = transactionTimeout;
     }
 
+    /**
+     * @return the batchSize
+     */
+    public int getBatchSize()
+    {
+        return this.batchSize;
+    }
+
+    /**
+     * Set the batchSize
+     */
+    public void setBatchSize(int batchSize)
+    {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize < 1, forwardName=" + forwardName);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return the batchTime
+     */
+    public long getBatchTime()
+    {
+        return this.batchTime;
+    }
+
+    /**
+     * Set the batchTime
+     */
+    public void setBatchTime(long batchTime)
+    {
+        this.batchTime = batchTime;
+    }
+
+    /**
+     * Records a committed transaction.
+     *
+     * @param messages
+     *        the messages processed in the transaction
+     * @param time
+     *        the commit time, in ms
+     */
+    public void recordCommit(int messages, long time)
+    {
+        processedCount.addAndGet(messages);
+        commitCount.incrementAndGet();
+        totalCommitTime.addAndGet(time);
+        long max = maxCommitTime.get();
+        while ((time > max) && !maxCommitTime.compareAndSet(max, time)) {
+            max = maxCommitTime.get();
+        }
+    }
+
+    /**
+     * Records a rolled back transaction.
+     *
+     * @param messages
+     *        the messages received in the transaction
+     */
+    public void recordRollback(int messages)
+    {
+        rolledBackCount.addAndGet(messages);
+        rollbackCount.incrementAndGet();
+    }
+
+    /**
+     * @return the messages processed in committed transactions
+     */
+    public long getProcessedCount()
+    {
+        return processedCount.get();
+    }
+
+    /**
+     * @return the messages received in rolled back transactions
+     */
+    public long getRolledBackCount()
+    {
+        return rolledBackCount.get();
+    }
+
+    /**
+     * @return the committed transactions
+     */
+    public long getCommitCount()
+    {
+        return commitCount.get();
+    }
+
+    /**
+     * @return the rolled back transactions
+     */
+    public long getRollbackCount()
+    {
+        return rollbackCount.get();
+    }
+
+    /**
+     * @return the average commit time, in ms
+     */
+    public double getAverageCommitTime()
+    {
+        long count = commitCount.get();
+        return (count == 0) ? 0 : (double) totalCommitTime.get() / count;
+    }
+
+    /**
+     * @return the maximum commit time, in ms
+     */
+    public long getMaxCommitTime()
+    {
+        return maxCommitTime.get();
+    }
+
+    /**
+     * @return the processed messages per second, since the statistics reset
+     */
+    public double getThroughput()
+    {
+        long elapsed = System.currentTimeMillis() - statsStartTime;
+        return (elapsed <= 0) ? 0 : (processedCount.get() * 1000.0) / elapsed;
+    }
+
+    public void resetStatistics()
+    {
+        statsStartTime = System.currentTimeMillis();
+        processedCount.set(0);
+        rolledBackCount.set(0);
+        commitCount.set(0);
+        rollbackCount.set(0);
+        totalCommitTime.set(0);
+        maxCommitTime.set(0);
+    }
+
+    /**
+     * @return true if the listeners count is adaptive
+     */
+    public boolean isAutoscale()
+    {
+        return this.autoscale;
+    }
+
+    /**
+     * @return the autoscale sampling interval, in ms
+     */
+    public long getAutoscaleInterval()
+    {
+        return this.autoscaleInterval;
+    }
+
+    /**
+     * @return the queue backlog each listener is expected to handle
+     */
+    public int getBacklogPerListener()
+    {
+        return this.backlogPerListener;
+    }
+
+    /**
+     * Records the outcome of a receive.
+     *
+     * @param hit
+     *        true if a message was received
+     */
+    public void recordReceive(boolean hit)
+    {
+        if (hit) {
+            receiveHits.incrementAndGet();
+        }
+        else {
+            receiveMisses.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the receives that returned a message since the last call
+     */
+    public long drainReceiveHits()
+    {
+        return receiveHits.getAndSet(0);
+    }
+
+    /**
+     * @return the empty receives since the last call
+     */
+    public long drainReceiveMisses()
+    {
+        return receiveMisses.getAndSet(0);
+    }
+
+    /**
+     * @return the listeners count requested by the autoscaler
+     */
+    public int getTargetSize()
+    {
+        return targetSize.get();
+    }
+
+    public void setTargetSize(int size)
+    {
+        targetSize.set(size);
+    }
+
+    /**
+     * Asks the given number of listeners to terminate after the current
+     * transaction, replacing the still pending requests: the count is the
+     * whole excess of the running listeners, those already asked to terminate
+     * included.
+     */
+    public void requestRetire(int count)
+    {
+        retireRequests.set(count);
+    }
+
+    /**
+     * @return true if the calling listener must terminate
+     */
+    public boolean retireListener()
+    {
+        while (true) {
+            int current = retireRequests.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (retireRequests.compareAndSet(current, current - 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void cancelRetire()
+    {
+        retireRequests.set(0);
+    }
+
+    /**
+     * @return the last sampled queue depth, -1 if not available
+     */
+    public long getQueueDepth()
+    {
+        return this.queueDepth;
+    }
+
+    public void setQueueDepth(long queueDepth)
+    {
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * @return the last autoscaler decision
+     */
+    public String getLastScaleDecision()
+    {
+        return this.lastScaleDecision;
+    }
+
+    public void recordScaleDecision(boolean up, String decision)
+    {
+        if (up) {
+            scaleUpCount.incrementAndGet();
+        }
+        else {
+            scaleDownCount.incrementAndGet();
+        }
+        this.lastScaleDecision = decision;
+    }
+
+    public long getScaleUpCount()
+    {
+        return scaleUpCount.get();
+    }
+
+    public long getScaleDownCount()
+    {
+        return scaleDownCount.get();
+    }
+
     /**
      * @return the dumpMessage
      */
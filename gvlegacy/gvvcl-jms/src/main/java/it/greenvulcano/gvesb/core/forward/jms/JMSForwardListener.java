@@ -116,6 +116,14 @@ public class JMSForwardListener implements Runnable
     private boolean             connected       = false;
     private int                 readCount       = 0;
     private int                 notReadCount    = 0;
+    /**
+     * Messages received in the current transaction.
+     */
+    private int                 batchReceived   = 0;
+    /**
+     * Messages to be processed one per transaction, after a batch rollback.
+     */
+    private int                 isolateCount    = 0;
 
 
     public JMSForwardListener()
@@ -222,7 +230,8 @@ public class JMSForwardListener implements Runnable
             logger.debug("Started Forward [" + name + "/" + forwardName + "] instance");
         }
         try {
-            while (isActive() && (((data.getReadBlockCount() < 0) && (notReadCount < MAX_NOT_READ)) || (readCount < data.getReadBlockCount()))) {
+            while (isActive() && (((data.getReadBlockCount() < 0) && (notReadCount < MAX_NOT_READ)) || (readCount < data.getReadBlockCount()))
+                    && !(data.isAutoscale() && data.retireListener())) {
                 try {
                     if (data.isDebug()) {
                         logger.debug("Begin receiving message...");
@@ -256,6 +265,8 @@ public class JMSForwardListener implements Runnable
                             continue;
                         }
                         if (!data.isShutdown()) {
+                            boolean txFailed = false;
+                            batchReceived = 0;
                             try {
                                 beginTX();
                                 try {
@@ -282,23 +293,7 @@ public class JMSForwardListener implements Runnable
                                 }
 
                                 try {
-                                    Message msg = messageConsumer.receive(data.getReceiveTimeout());
-                                    readCount++;
-                                    if ((msg != null) && !data.isShutdown()) {
-                                        notReadCount = 0;
-                                        NMDC.push();
-                                        try {
-                                            data.beginWork();
-                                            processMessage(msg);
-                                        }
-                                        finally {
-                                            NMDC.pop();
-                                            data.endWork();
-                                        }
-                                    }
-                                    else {
-                                        notReadCount++;
-                                    }
+                                    receiveBatch();
                                 }
                                 finally {
                                     try {
@@ -323,6 +318,7 @@ public class JMSForwardListener implements Runnable
                             }
                             catch (Throwable exc) {
                                 logger.error("Error processing Forward [" + name + "/" + forwardName + "]... rolling back", exc);
+                                txFailed = true;
                                 if (!data.isShutdown()) {
                                     rollbackTX();
                                     if (exc instanceof JMSException) {
@@ -332,15 +328,19 @@ public class JMSForwardListener implements Runnable
                                 }
                             }
                             if (!data.isShutdown()) {
-                                if (!getRollbackOnly()) {
+                                if (!txFailed && !getRollbackOnly()) {
+                                    long commitStart = System.currentTimeMillis();
                                     try {
                                         commitTX();
+                                        data.recordCommit(batchReceived, System.currentTimeMillis() - commitStart);
                                     }
                                     catch (Throwable exc) {
                                         rollbackTX();
+                                        txFailed = true;
                                     }
                                 }
                                 else {
+                                    txFailed = true;
                                     try {
                                         rollbackTX();
                                     }
@@ -349,6 +349,7 @@ public class JMSForwardListener implements Runnable
                                                 "Error rolling back transaction for Forward [" + name + "/" + forwardName + "]", exc);
                                     }
                                 }
+                                endBatch(txFailed);
                             }
                         }
                     }
@@ -381,6 +382,71 @@ public class JMSForwardListener implements Runnable
         }
     }
 
+    /**
+     * Receives and processes up to batch-size messages, or until batch-time
+     * ms elapse, in the current transaction. After a batch rollback the
+     * redelivered messages are processed one per transaction, so that a
+     * failing message doesn't prevent the others from being committed.
+     */
+    private void receiveBatch() throws Exception
+    {
+        int batchSize = (isolateCount > 0) ? 1 : data.getBatchSize();
+        if (data.getReadBlockCount() >= 0) {
+            // don't read beyond the block
+            batchSize = Math.max(1, Math.min(batchSize, data.getReadBlockCount() - readCount));
+        }
+        long batchEnd = System.currentTimeMillis() + data.getBatchTime();
+
+        Message msg = messageConsumer.receive(data.getReceiveTimeout());
+        readCount++;
+        data.recordReceive(msg != null);
+        if (msg == null) {
+            notReadCount++;
+        }
+        while ((msg != null) && !data.isShutdown()) {
+            notReadCount = 0;
+            batchReceived++;
+            NMDC.push();
+            try {
+                data.beginWork();
+                processMessage(msg);
+            }
+            finally {
+                NMDC.pop();
+                data.endWork();
+            }
+            if ((batchReceived >= batchSize) || getRollbackOnly()) {
+                break;
+            }
+            long remaining = batchEnd - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            msg = messageConsumer.receive(remaining);
+            readCount++;
+            data.recordReceive(msg != null);
+        }
+    }
+
+    private void endBatch(boolean failed)
+    {
+        if (batchReceived == 0) {
+            return;
+        }
+        if (failed) {
+            data.recordRollback(batchReceived);
+        }
+        if (failed && (batchReceived > 1) && (isolateCount == 0)) {
+            isolateCount = batchReceived;
+            logger.warn("Forward [" + name + "/" + forwardName + "] - rolled back a batch of " + batchReceived
+                    + " messages, processing them one per transaction");
+        }
+        else if (isolateCount > 0) {
+            isolateCount = Math.max(0, isolateCount - batchReceived);
+        }
+        batchReceived = 0;
+    }
+
     /**
      * @throws JMSForwardException 
      * 
@@ -27,6 +27,8 @@ import it.greenvulcano.util.thread.BaseThread;
 import it.greenvulcano.util.thread.BaseThreadFactory;
 
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -53,6 +55,11 @@ public class JMSForwardListenerPool implements RejectedExecutionHandler
      */
     private ThreadPoolExecutor  executor    = null;
 
+    /**
+     * Runs the JMSForwardAutoscaler, if enabled.
+     */
+    private ScheduledExecutorService autoscaler = null;
+
     /**
      * Forward configuration name.
      */
@@ -92,6 +99,13 @@ public class JMSForwardListenerPool implements RejectedExecutionHandler
 
                 // single initial listener
                 executor.execute(createJMSForwardListener());               
+
+                if (data.isAutoscale()) {
+                    autoscaler = Executors.newSingleThreadScheduledExecutor(new BaseThreadFactory("JMSForwardAutoscaler#"
+                            + name + "#" + forwardName, true));
+                    autoscaler.scheduleWithFixedDelay(new JMSForwardAutoscaler(data, this), data.getAutoscaleInterval(),
+                            data.getAutoscaleInterval(), TimeUnit.MILLISECONDS);
+                }
                 
             }
             finally {
@@ -163,7 +177,8 @@ public class JMSForwardListenerPool implements RejectedExecutionHandler
         if (!isShutdown()) {
             synchronized (data) {
                 int working = data.getWorkingCount();
-                if ((working < data.getInitialSize()) || ((working == executor.getActiveCount()) && (working < executor.getMaximumPoolSize()))) {
+                int maxListeners = data.isAutoscale() ? data.getTargetSize() : executor.getMaximumPoolSize();
+                if ((working < data.getInitialSize()) || ((working == executor.getActiveCount()) && (working < maxListeners))) {
                     try {
                         JMSForwardListener jmsFwd = createJMSForwardListener();
                         executor.execute(jmsFwd);
@@ -217,12 +232,50 @@ public class JMSForwardListenerPool implements RejectedExecutionHandler
         }
     }
 
+    /**
+     * Sets the listeners count requested by the autoscaler: missing listeners
+     * are started at once, the exceeding ones are asked to terminate at the end
+     * of their current transaction.
+     *
+     * @param size
+     *        the new listeners count
+     */
+    public void scaleTo(int size)
+    {
+        if (isShutdown()) {
+            return;
+        }
+        synchronized (data) {
+            data.setTargetSize(size);
+            int active = executor.getActiveCount();
+            if (size > active) {
+                data.cancelRetire();
+                for (int i = active; i < size; i++) {
+                    try {
+                        executor.execute(createJMSForwardListener());
+                    }
+                    catch (Exception exc) {
+                        logger.error("Forward [" + name + "/" + forwardName + "] - error creating new instance", exc);
+                        break;
+                    }
+                }
+            }
+            else if (size < active) {
+                data.requestRetire(active - size);
+            }
+        }
+    }
+
     /**
      *
      */
     public void destroy()  {
         logger.debug("Forward [" + name + "/" + forwardName + "] - Begin destroying instances");      
       
+        if (autoscaler != null) {
+            autoscaler.shutdownNow();
+            autoscaler = null;
+        }
         if (data!=null) {
         	data.destroy();        	
         } 
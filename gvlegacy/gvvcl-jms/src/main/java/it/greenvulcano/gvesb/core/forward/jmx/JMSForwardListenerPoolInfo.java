@@ -262,6 +262,147 @@ public class JMSForwardListenerPoolInfo
         data.get().setTransactionTimeout(transactionTimeout);
     }
 
+    /**
+     * @return the batchSize
+     */
+    public int getBatchSize()
+    {
+        return data.get().getBatchSize();
+    }
+
+    /**
+     * Set the batchSize
+     */
+    public void setBatchSize(int batchSize)
+    {
+        data.get().setBatchSize(batchSize);
+    }
+
+    /**
+     * @return the batchTime
+     */
+    public long getBatchTime()
+    {
+        return data.get().getBatchTime();
+    }
+
+    /**
+     * Set the batchTime
+     */
+    public void setBatchTime(long batchTime)
+    {
+        data.get().setBatchTime(batchTime);
+    }
+
+    /**
+     * @return the messages processed in committed transactions
+     */
+    public long getProcessedCount()
+    {
+        return data.get().getProcessedCount();
+    }
+
+    /**
+     * @return the messages received in rolled back transactions
+     */
+    public long getRolledBackCount()
+    {
+        return data.get().getRolledBackCount();
+    }
+
+    /**
+     * @return the committed transactions
+     */
+    public long getCommitCount()
+    {
+        return data.get().getCommitCount();
+    }
+
+    /**
+     * @return the rolled back transactions
+     */
+    public long getRollbackCount()
+    {
+        return data.get().getRollbackCount();
+    }
+
+    /**
+     * @return the average commit time, in ms
+     */
+    public double getAverageCommitTime()
+    {
+        return data.get().getAverageCommitTime();
+    }
+
+    /**
+     * @return the maximum commit time, in ms
+     */
+    public long getMaxCommitTime()
+    {
+        return data.get().getMaxCommitTime();
+    }
+
+    /**
+     * @return the processed messages per second
+     */
+    public double getThroughput()
+    {
+        return data.get().getThroughput();
+    }
+
+    /**
+     * @return true if the listeners count is adaptive
+     */
+    public boolean getAutoscale()
+    {
+        return data.get().isAutoscale();
+    }
+
+    /**
+     * @return the listeners count requested by the autoscaler
+     */
+    public int getTargetSize()
+    {
+        return data.get().getTargetSize();
+    }
+
+    /**
+     * @return the last sampled queue depth
+     */
+    public long getQueueDepth()
+    {
+        return data.get().getQueueDepth();
+    }
+
+    /**
+     * @return the last autoscaler decision
+     */
+    public String getLastScaleDecision()
+    {
+        return data.get().getLastScaleDecision();
+    }
+
+    /**
+     * @return the autoscaler grow decisions
+     */
+    public long getScaleUpCount()
+    {
+        return data.get().getScaleUpCount();
+    }
+
+    /**
+     * @return the autoscaler shrink decisions
+     */
+    public long getScaleDownCount()
+    {
+        return data.get().getScaleDownCount();
+    }
+
+    public void resetStatistics()
+    {
+        data.get().resetStatistics();
+    }
+
     /**
      * @return the dumpMessage
      */
@@ -40,6 +40,15 @@ public class JMSConnectionKey
     private String          connectionFactory;
     private boolean         isUsePooling;
     private boolean         invalidateOnReinsert;
+    /**
+     * max connections in use for this key, -1 = unlimited; not part of the
+     * key identity, the first value used wins.
+     */
+    private int             maxConnections = -1;
+    /**
+     * max time, in ms, to wait for a connection when maxConnections are in use
+     */
+    private long            acquireTimeout = 30000;
 
     /**
      * @param properties
@@ -156,4 +165,38 @@ public class JMSConnectionKey
     {
         return invalidateOnReinsert;
     }
+
+    /**
+     * @return the max connections in use for this key, -1 = unlimited
+     */
+    public int getMaxConnections()
+    {
+        return maxConnections;
+    }
+
+    /**
+     * @param maxConnections
+     *        the max connections in use for this key, -1 = unlimited
+     */
+    public void setMaxConnections(int maxConnections)
+    {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * @return the max time, in ms, to wait for a connection
+     */
+    public long getAcquireTimeout()
+    {
+        return acquireTimeout;
+    }
+
+    /**
+     * @param acquireTimeout
+     *        the max time, in ms, to wait for a connection
+     */
+    public void setAcquireTimeout(long acquireTimeout)
+    {
+        this.acquireTimeout = acquireTimeout;
+    }
 }
\ No newline at end of file
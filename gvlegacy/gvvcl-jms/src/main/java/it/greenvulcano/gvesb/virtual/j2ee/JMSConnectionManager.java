@@ -27,14 +27,18 @@ import it.greenvulcano.gvesb.j2ee.JNDIHelper;
 import it.greenvulcano.gvesb.j2ee.XAHelper;
 import it.greenvulcano.gvesb.j2ee.XAHelperException;
 import it.greenvulcano.gvesb.virtual.OperationKey;
+import it.greenvulcano.util.thread.BaseThreadFactory;
 import it.greenvulcano.util.thread.ThreadMap;
 
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
@@ -58,6 +62,12 @@ import org.slf4j.LoggerFactory;
  * When a connection is released the operation is unassociated from the
  * connection and when the connection has no associated operation, it will be
  * closed.
+ * <p>
+ * The idle connections are kept in a lock-free deque for each connection key;
+ * the connections in use for a key may be bounded through
+ * <code>JMSConnectionKey.getMaxConnections()</code>. A background task commits
+ * the batched messages left pending, probes the idle connections and evicts
+ * the broken, stale or long unused ones.
  *
  * @version 3.0.0 Feb 17, 2010
  * @author GreenVulcano Developer Team
@@ -72,18 +82,53 @@ public final class JMSConnectionManager implements ConfigurationListener
      */
     private static final Logger                              logger             = LoggerFactory.getLogger(JMSConnectionManager.class);
 
+    /**
+     * the commit flusher period, in ms
+     */
+    public static final long                                 COMMIT_FLUSH_PERIOD = 200;
+    /**
+     * the idle connections validation period, in ms
+     */
+    public static final long                                 VALIDATION_PERIOD  = 30000;
+    /**
+     * idle time, in ms, after which a connection is closed, keeping at least
+     * one connection for each key
+     */
+    public static final long                                 MAX_IDLE_TIME      = 300000;
+
+    /**
+     * The pool of a JMSConnectionKey.
+     */
+    private static class KeyPool
+    {
+        private final ConcurrentLinkedDeque<JMSData> idle = new ConcurrentLinkedDeque<JMSData>();
+        /**
+         * bounds the connections in use, null if unlimited
+         */
+        private final Semaphore                      permits;
+        private final long                           acquireTimeout;
+        private final JMSConnectionPoolStatistics    statistics;
+
+        KeyPool(JMSConnectionKey key, boolean queue)
+        {
+            permits = (key.getMaxConnections() > 0) ? new Semaphore(key.getMaxConnections(), true) : null;
+            acquireTimeout = key.getAcquireTimeout();
+            statistics = new JMSConnectionPoolStatistics((queue ? "queue:" : "topic:") + key.getConnectionFactory());
+        }
+    }
+
     /**
      * the currently valid id
      */
-    private String                                           id                 = "";
+    private volatile String                                  id                 = "";
     /**
-     * Map(JMSConnectionKey, LinkedList)
+     * Map(JMSConnectionKey, KeyPool)
      */
-    private Map<JMSConnectionKey, LinkedList<JMSData>>       queueConnections   = null;
+    private Map<JMSConnectionKey, KeyPool>                   queueConnections   = null;
     /**
-     * Map(JMSConnectionKey, LinkedList)
+     * Map(JMSConnectionKey, KeyPool)
      */
-    private Map<JMSConnectionKey, LinkedList<JMSData>>       topicConnections   = null;
+    private Map<JMSConnectionKey, KeyPool>                   topicConnections   = null;
     /**
      * the configuration files used to read data
      */
@@ -100,11 +145,20 @@ public final class JMSConnectionManager implements ConfigurationListener
      * the jms objects in use
      */
     private Map<Transaction, Map<JMSConnectionKey, JMSData>> xaInUseConnections = null;
+    /**
+     * the send statistics, by destination
+     */
+    private Map<String, JMSDestinationStatistics>            destinationStats   = new ConcurrentHashMap<String, JMSDestinationStatistics>();
+    /**
+     * runs the background commit flush and validation
+     */
+    private ScheduledExecutorService                         maintenance        = null;
+    private boolean                                          commitFlusher      = false;
 
     /**
      * singleton instance
      */
-    private static JMSConnectionManager                      _instance          = null;
+    private static volatile JMSConnectionManager             _instance          = null;
 
     /**
      * Constructor
@@ -112,12 +166,12 @@ public final class JMSConnectionManager implements ConfigurationListener
     private JMSConnectionManager()
     {
         id = (new Id()).toString();
-        queueConnections = Collections.synchronizedMap(new HashMap<JMSConnectionKey, LinkedList<JMSData>>());
-        topicConnections = Collections.synchronizedMap(new HashMap<JMSConnectionKey, LinkedList<JMSData>>());
-        xaSynchronizations = Collections.synchronizedSet(new HashSet<JMSDataXASynchronization>());
-        inUseConnections = Collections.synchronizedSet(new HashSet<JMSData>());
-        xaInUseConnections = Collections.synchronizedMap(new HashMap<Transaction, Map<JMSConnectionKey, JMSData>>());
-        filesToCheck = Collections.synchronizedSet(new HashSet<String>());
+        queueConnections = new ConcurrentHashMap<JMSConnectionKey, KeyPool>();
+        topicConnections = new ConcurrentHashMap<JMSConnectionKey, KeyPool>();
+        xaSynchronizations = ConcurrentHashMap.newKeySet();
+        inUseConnections = ConcurrentHashMap.newKeySet();
+        xaInUseConnections = new ConcurrentHashMap<Transaction, Map<JMSConnectionKey, JMSData>>();
+        filesToCheck = ConcurrentHashMap.newKeySet();
     }
 
     /**
@@ -127,11 +181,18 @@ public final class JMSConnectionManager implements ConfigurationListener
      */
     public static JMSConnectionManager instance()
     {
-        if (_instance == null) {
-            _instance = new JMSConnectionManager();
-            XMLConfig.addConfigurationListener(_instance);
+        JMSConnectionManager instance = _instance;
+        if (instance == null) {
+            synchronized (JMSConnectionManager.class) {
+                instance = _instance;
+                if (instance == null) {
+                    instance = new JMSConnectionManager();
+                    XMLConfig.addConfigurationListener(instance);
+                    _instance = instance;
+                }
+            }
         }
-        return _instance;
+        return instance;
     }
 
     /**
@@ -153,67 +214,7 @@ public final class JMSConnectionManager implements ConfigurationListener
     public JMSData getQueueConnection(JNDIHelper initialContext, JMSConnectionKey key, OperationKey opKey,
             XAHelper xaHelper) throws Exception
     {
-        String connectionFactory = key.getConnectionFactory();
-        logger.debug("BEGIN getQueueConnection: connection factory: " + connectionFactory);
-
-        try {
-
-            // Proviamo a cercare una connessione associata alla transazione
-            // corrente
-            //
-            JMSData jmsData = getXAInUseConnection(xaHelper, key);
-            if (jmsData != null) {
-                return jmsData;
-            }
-
-            // Nessuna connessione associata alla transazione corrente:
-            // proviamo a cercare nella ThreadMap
-            //
-            jmsData = (JMSData) ThreadMap.get(key);
-            if (jmsData != null) {
-                return jmsData;
-            }
-
-            // Nessuna connessione di chiave data � stata mai utilizzata.
-            // Estraiamola dal pool
-            //
-            LinkedList<JMSData> qConnectionPool;
-            synchronized (this) {
-                qConnectionPool = queueConnections.get(key);
-                if (qConnectionPool == null) {
-                    qConnectionPool = new LinkedList<JMSData>();
-                    queueConnections.put(key, qConnectionPool);
-                }
-                if (qConnectionPool.size() > 0) {
-                    jmsData = getFromPool(qConnectionPool);
-                }
-            }
-
-            if (jmsData == null) {
-                // Nessuna connessione nel pool: ne creiamo una nuova (diamo
-                // tempo 15 minuti)
-                //
-                jmsData = createQueueConnection(initialContext, key, opKey, xaHelper, connectionFactory);
-
-            }
-
-            assignConnection(jmsData);
-
-            return jmsData;
-        }
-        catch (Exception exc) {
-            logger.error("EXCEPTION on getQueueConnection: connection factory: " + connectionFactory, exc);
-            throw exc;
-        }
-        finally {
-            try {
-                initialContext.close();
-            }
-            catch (Exception exc) {
-                // do nothing
-            }
-            logger.debug("END getQueueConnection: connection factory: " + connectionFactory);
-        }
+        return getConnection(initialContext, key, opKey, xaHelper, true);
     }
 
     /**
@@ -234,9 +235,16 @@ public final class JMSConnectionManager implements ConfigurationListener
      */
     public JMSData getTopicConnection(JNDIHelper initialContext, JMSConnectionKey key, OperationKey opKey,
             XAHelper xaHelper) throws Exception
+    {
+        return getConnection(initialContext, key, opKey, xaHelper, false);
+    }
+
+    private JMSData getConnection(JNDIHelper initialContext, JMSConnectionKey key, OperationKey opKey,
+            XAHelper xaHelper, boolean queue) throws Exception
     {
         String connectionFactory = key.getConnectionFactory();
-        logger.debug("BEGIN getTopicConnection: connection factory: " + connectionFactory);
+        String type = queue ? "Queue" : "Topic";
+        logger.debug("BEGIN get" + type + "Connection: connection factory: " + connectionFactory);
 
         try {
 
@@ -256,34 +264,41 @@ public final class JMSConnectionManager implements ConfigurationListener
                 return jmsData;
             }
 
-            // Nessuna connessione di chiave data � stata mai utilizzata.
+            // Nessuna connessione di chiave data e' stata mai utilizzata.
             // Estraiamola dal pool
             //
-            LinkedList<JMSData> tConnectionPool;
-            synchronized (this) {
-                tConnectionPool = topicConnections.get(key);
-                if (tConnectionPool == null) {
-                    tConnectionPool = new LinkedList<JMSData>();
-                    topicConnections.put(key, tConnectionPool);
-                }
-                if (tConnectionPool.size() > 0) {
-                    jmsData = getFromPool(tConnectionPool);
-                }
+            KeyPool pool = getPool(key, queue);
+            long start = System.nanoTime();
+            if ((pool.permits != null) && !pool.permits.tryAcquire(pool.acquireTimeout, TimeUnit.MILLISECONDS)) {
+                pool.statistics.acquireTimeout();
+                throw new JMSException("Timeout waiting for a " + type + "Connection: connection factory: "
+                        + connectionFactory + " - max connections: " + key.getMaxConnections());
             }
+            try {
+                jmsData = getFromPool(pool);
 
-            if (jmsData == null) {
-                // Nessuna connessione nel pool: ne creiamo una nuova (diamo
-                // tempo 15 minuti)
-                //
-                jmsData = createTopicConnection(initialContext, key, opKey, xaHelper, connectionFactory);
+                if (jmsData == null) {
+                    // Nessuna connessione nel pool: ne creiamo una nuova
+                    //
+                    jmsData = createConnection(initialContext, key, opKey, xaHelper, connectionFactory, queue);
+                    pool.statistics.created();
+                }
+                jmsData.lease();
+            }
+            catch (Exception exc) {
+                if (pool.permits != null) {
+                    pool.permits.release();
+                }
+                throw exc;
             }
+            pool.statistics.acquired(System.nanoTime() - start);
 
             assignConnection(jmsData);
 
             return jmsData;
         }
         catch (Exception exc) {
-            logger.error("EXCEPTION on getTopicConnection: connection factory: " + connectionFactory, exc);
+            logger.error("EXCEPTION on get" + type + "Connection: connection factory: " + connectionFactory, exc);
             throw exc;
         }
         finally {
@@ -293,31 +308,14 @@ public final class JMSConnectionManager implements ConfigurationListener
             catch (Exception exc) {
                 // do nothing
             }
-            logger.debug("END getTopicConnection: connection factory: " + connectionFactory);
+            logger.debug("END get" + type + "Connection: connection factory: " + connectionFactory);
         }
     }
 
-    /**
-     * @param initialContext
-     * @param key
-     * @param opKey
-     * @param xaHelper
-     * @param connectionFactory
-     * @return
-     * @throws NamingException
-     * @throws JMSException
-     */
-    private JMSData createQueueConnection(JNDIHelper initialContext, JMSConnectionKey key, OperationKey opKey,
-            XAHelper xaHelper, String connectionFactory) throws NamingException, JMSException
+    private KeyPool getPool(JMSConnectionKey key, boolean queue)
     {
-        logger.debug("Creating QueueConnection: connection factory: " + connectionFactory);
-        
-        Connection qconnection = ConnectionFactory.class.cast(initialContext.lookup(connectionFactory)).createConnection();
-        qconnection.start();
-                
-        JMSData jmsData = new JMSData(qconnection, key, id, xaHelper, true);
-        filesToCheck.add(opKey.getFile());
-        return jmsData;
+        Map<JMSConnectionKey, KeyPool> pools = queue ? queueConnections : topicConnections;
+        return pools.computeIfAbsent(key, k -> new KeyPool(k, queue));
     }
 
     /**
@@ -326,59 +324,55 @@ public final class JMSConnectionManager implements ConfigurationListener
      * @param opKey
      * @param xaHelper
      * @param connectionFactory
+     * @param queue
      * @return
      * @throws NamingException
      * @throws JMSException
      */
-    private JMSData createTopicConnection(JNDIHelper initialContext, JMSConnectionKey key, OperationKey opKey,
-            XAHelper xaHelper, String connectionFactory) throws NamingException, JMSException
+    private JMSData createConnection(JNDIHelper initialContext, JMSConnectionKey key, OperationKey opKey,
+            XAHelper xaHelper, String connectionFactory, boolean queue) throws NamingException, JMSException
     {
-        logger.debug("Creating TopicConnection: connection factory: " + connectionFactory);
-        /*
-        TopicConnectionFactory tconFactory = (TopicConnectionFactory) initialContext.lookup(connectionFactory);
-        TopicConnection tconnection = null;
+        logger.debug("Creating " + (queue ? "Queue" : "Topic") + "Connection: connection factory: " + connectionFactory);
 
-        if (tconFactory instanceof XATopicConnectionFactory) {
-            tconnection = ((XATopicConnectionFactory) tconFactory).createXATopicConnection();
-        }
-        else {
-            tconnection = tconFactory.createTopicConnection();
-        }*/
-        
-        Connection tconnection = ConnectionFactory.class.cast(initialContext.lookup(connectionFactory)).createConnection();
-        tconnection.start();
-        JMSData jmsData = new JMSData(tconnection, key, id, xaHelper, false);
+        Connection connection = ConnectionFactory.class.cast(initialContext.lookup(connectionFactory)).createConnection();
+        connection.start();
+
+        JMSData jmsData = new JMSData(connection, key, id, xaHelper, queue);
         filesToCheck.add(opKey.getFile());
+        startMaintenance();
         return jmsData;
     }
 
     /**
      * Extract a correct JMSData instance from the pool
      *
-     * @param tConnectionPool
+     * @param pool
      *        the pool to analize
      * @return the found instance, if any
      */
-    private JMSData getFromPool(LinkedList<JMSData> tConnectionPool)
+    private JMSData getFromPool(KeyPool pool)
     {
         while (true) {
-            if (tConnectionPool.size() == 0) {
+            JMSData jmsData = pool.idle.pollFirst();
+            if (jmsData == null) {
                 return null;
             }
-
-            JMSData jmsData = tConnectionPool.removeFirst();
-            if (jmsData != null) {
-                if (id.equals(jmsData.getId())) {
-                    return jmsData;
-                }
-                try {
-                    jmsData.close();
-                }
-                catch (Exception exc) {
-                    logger.debug("Error closing an unused connection", exc);
-                }
+            if (id.equals(jmsData.getId())) {
+                return jmsData;
             }
+            closeConnection(pool, jmsData);
+        }
+    }
+
+    private void closeConnection(KeyPool pool, JMSData jmsData)
+    {
+        try {
+            jmsData.close();
+        }
+        catch (Exception exc) {
+            logger.debug("Error closing an unused connection", exc);
         }
+        pool.statistics.closed();
     }
 
     /**
@@ -387,7 +381,7 @@ public final class JMSConnectionManager implements ConfigurationListener
      * @param jmsData
      *        the instance to release
      */
-    public synchronized void releaseConnection(JMSData jmsData)
+    public void releaseConnection(JMSData jmsData)
     {
         JMSConnectionKey key = jmsData.getKey();
         ThreadMap.remove(key);
@@ -399,7 +393,9 @@ public final class JMSConnectionManager implements ConfigurationListener
         }
         else {
             // non stiamo usando il pool: chiudiamo senza pieta' la connessione
-            jmsData.close();
+            KeyPool pool = getPool(key, jmsData.isQueue());
+            closeConnection(pool, jmsData);
+            releasePermit(pool, jmsData);
         }
     }
 
@@ -409,7 +405,7 @@ public final class JMSConnectionManager implements ConfigurationListener
      * @param xaS
      *        the synchronization object
      */
-    public synchronized void xaReleaseConnection(JMSDataXASynchronization xaS)
+    public void xaReleaseConnection(JMSDataXASynchronization xaS)
     {
         xaSynchronizations.remove(xaS);
         JMSData jmsData = xaS.getJmsData();
@@ -424,6 +420,136 @@ public final class JMSConnectionManager implements ConfigurationListener
         reinsertConnection(jmsData);
     }
 
+    /**
+     * Returns the send statistics of the given destination.
+     *
+     * @param destination
+     *        the destination name
+     * @return the statistics instance
+     */
+    public JMSDestinationStatistics getDestinationStatistics(String destination)
+    {
+        return destinationStats.computeIfAbsent(destination, JMSDestinationStatistics::new);
+    }
+
+    /**
+     * @return the send statistics of all destinations
+     */
+    public Map<String, JMSDestinationStatistics> getDestinationStatistics()
+    {
+        return Collections.unmodifiableMap(destinationStats);
+    }
+
+    /**
+     * @return the statistics of the connection pools, by connection factory
+     */
+    public Map<String, JMSConnectionPoolStatistics> getPoolStatistics()
+    {
+        Map<String, JMSConnectionPoolStatistics> stats = new java.util.TreeMap<String, JMSConnectionPoolStatistics>();
+        for (KeyPool pool : queueConnections.values()) {
+            stats.put(pool.statistics.getName(), pool.statistics);
+        }
+        for (KeyPool pool : topicConnections.values()) {
+            stats.put(pool.statistics.getName(), pool.statistics);
+        }
+        return stats;
+    }
+
+    /**
+     * Enables the background task that commits the batched messages left
+     * pending on the pooled connections.
+     */
+    public synchronized void startCommitFlusher()
+    {
+        if (!commitFlusher) {
+            commitFlusher = true;
+            startMaintenance();
+            maintenance.scheduleWithFixedDelay(this::flushPendingCommits, COMMIT_FLUSH_PERIOD, COMMIT_FLUSH_PERIOD,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void startMaintenance()
+    {
+        if (maintenance == null) {
+            maintenance = Executors.newSingleThreadScheduledExecutor(new BaseThreadFactory("JMSConnectionManager", true));
+            maintenance.scheduleWithFixedDelay(this::validateIdleConnections, VALIDATION_PERIOD, VALIDATION_PERIOD,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * The Sessions aren't thread safe: an idle instance is removed from its
+     * deque while processed, so no operation can get it meanwhile.
+     */
+    private void flushPendingCommits()
+    {
+        try {
+            flushPendingCommits(queueConnections);
+            flushPendingCommits(topicConnections);
+        }
+        catch (Exception exc) {
+            logger.error("Error flushing pending commits", exc);
+        }
+    }
+
+    private void flushPendingCommits(Map<JMSConnectionKey, KeyPool> pools)
+    {
+        for (KeyPool pool : pools.values()) {
+            for (JMSData candidate : pool.idle) {
+                if (candidate.hasPendingCommits() && pool.idle.removeFirstOccurrence(candidate)) {
+                    candidate.commitPending(false);
+                    pool.idle.offerFirst(candidate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Probes the idle connections, closing the broken, stale (configuration
+     * reloaded) or unused for more than MAX_IDLE_TIME ones.
+     */
+    private void validateIdleConnections()
+    {
+        try {
+            validateIdleConnections(queueConnections);
+            validateIdleConnections(topicConnections);
+        }
+        catch (Exception exc) {
+            logger.error("Error validating idle connections", exc);
+        }
+    }
+
+    private void validateIdleConnections(Map<JMSConnectionKey, KeyPool> pools)
+    {
+        long now = System.currentTimeMillis();
+        for (KeyPool pool : pools.values()) {
+            int count = pool.idle.size();
+            for (int i = 0; i < count; i++) {
+                JMSData jmsData = pool.idle.pollLast();
+                if (jmsData == null) {
+                    break;
+                }
+                boolean keep = id.equals(jmsData.getId());
+                if (keep && ((now - jmsData.getLastUsed()) > MAX_IDLE_TIME) && (i < (count - 1))) {
+                    logger.debug("Evicting idle JMSData " + jmsData);
+                    keep = false;
+                }
+                if (keep && !jmsData.probe()) {
+                    pool.statistics.probeFailed();
+                    keep = false;
+                }
+                if (keep) {
+                    pool.idle.offerFirst(jmsData);
+                }
+                else {
+                    pool.statistics.evicted();
+                    closeConnection(pool, jmsData);
+                }
+            }
+        }
+    }
+
     /**
      * @see it.greenvulcano.configuration.ConfigurationListener#configurationChanged(it.greenvulcano.configuration.ConfigurationEvent)
      */
@@ -444,7 +570,7 @@ public final class JMSConnectionManager implements ConfigurationListener
      * @throws Exception
      *         if errors occurs
      */
-    private synchronized void assignConnection(JMSData jmsData) throws Exception
+    private void assignConnection(JMSData jmsData) throws Exception
     {
         if (jmsData.getKey().isUsingVCLPooling()) {
             try {
@@ -483,22 +609,35 @@ public final class JMSConnectionManager implements ConfigurationListener
      */
     private void reinsertConnection(JMSData jmsData)
     {
+        KeyPool pool = getPool(jmsData.getKey(), jmsData.isQueue());
+        inUseConnections.remove(jmsData);
+        if (!jmsData.unlease()) {
+            // already returned
+            return;
+        }
         if (id.equals(jmsData.getId())) {
-            if (jmsData.isQueue()) {
-                logger.debug("Reinsert in QueueConnection pool JMSData " + jmsData);
-                LinkedList<JMSData> qConnectionPool = queueConnections.get(jmsData.getKey());
-                qConnectionPool.addLast(jmsData);
-            }
-            else {
-                logger.debug("Reinsert in TopicConnection pool JMSData " + jmsData);
-                LinkedList<JMSData> tConnectionPool = topicConnections.get(jmsData.getKey());
-                tConnectionPool.addLast(jmsData);
-            }
-            inUseConnections.remove(jmsData);
+            logger.debug("Reinsert in " + (jmsData.isQueue() ? "Queue" : "Topic") + "Connection pool JMSData " + jmsData);
+            pool.idle.offerFirst(jmsData);
         }
         else {
             logger.debug("Closing JMSData " + jmsData);
-            jmsData.close();
+            closeConnection(pool, jmsData);
+        }
+        releasePermit(pool);
+    }
+
+    private void releasePermit(KeyPool pool, JMSData jmsData)
+    {
+        if (jmsData.unlease()) {
+            releasePermit(pool);
+        }
+    }
+
+    private void releasePermit(KeyPool pool)
+    {
+        pool.statistics.released();
+        if (pool.permits != null) {
+            pool.permits.release();
         }
     }
 
@@ -506,15 +645,10 @@ public final class JMSConnectionManager implements ConfigurationListener
     {
         Transaction transaction = jmsData.getXAHelper().getTransaction();
         if (transaction != null) {
-            synchronized (this) {
-                Map<JMSConnectionKey, JMSData> connections = xaInUseConnections.get(transaction);
-                if (connections == null) {
-                    connections = new HashMap<JMSConnectionKey, JMSData>();
-                    xaInUseConnections.put(transaction, connections);
-                }
-                logger.debug("Insert in XAInUseConnections map JMSData " + jmsData);
-                connections.put(jmsData.getKey(), jmsData);
-            }
+            Map<JMSConnectionKey, JMSData> connections = xaInUseConnections.computeIfAbsent(transaction,
+                    t -> new ConcurrentHashMap<JMSConnectionKey, JMSData>());
+            logger.debug("Insert in XAInUseConnections map JMSData " + jmsData);
+            connections.put(jmsData.getKey(), jmsData);
         }
     }
 
@@ -526,13 +660,11 @@ public final class JMSConnectionManager implements ConfigurationListener
             //
             return null;
         }
-        synchronized (this) {
-            Map<JMSConnectionKey, JMSData> connections = xaInUseConnections.get(transaction);
-            if (connections != null) {
-                // Connessione di chiave data associata a questa transazione
-                //
-                return connections.get(key);
-            }
+        Map<JMSConnectionKey, JMSData> connections = xaInUseConnections.get(transaction);
+        if (connections != null) {
+            // Connessione di chiave data associata a questa transazione
+            //
+            return connections.get(key);
         }
 
         // Nessuna connessione di chiave data associata a questa transazione
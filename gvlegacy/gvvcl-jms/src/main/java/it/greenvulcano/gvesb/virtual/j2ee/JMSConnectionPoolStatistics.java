@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ *
+ * This file is part of GreenVulcano ESB.
+ *
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package it.greenvulcano.gvesb.virtual.j2ee;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * Statistics of a JMSConnectionManager pool.
+ *
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ *
+ *
+ *
+ */
+public class JMSConnectionPoolStatistics
+{
+    private final String        name;
+    private final AtomicLong    acquireCount     = new AtomicLong();
+    private final AtomicLong    acquireTimeouts  = new AtomicLong();
+    private final AtomicLong    totalAcquireTime = new AtomicLong();
+    private final AtomicLong    maxAcquireTime   = new AtomicLong();
+    private final AtomicLong    createdCount     = new AtomicLong();
+    private final AtomicLong    closedCount      = new AtomicLong();
+    private final AtomicLong    evictedCount     = new AtomicLong();
+    private final AtomicLong    probeFailures    = new AtomicLong();
+    private final AtomicInteger inUse            = new AtomicInteger();
+
+    /**
+     * @param name
+     *        the pool name
+     */
+    public JMSConnectionPoolStatistics(String name)
+    {
+        this.name = name;
+    }
+
+    void acquired(long nanos)
+    {
+        acquireCount.incrementAndGet();
+        totalAcquireTime.addAndGet(nanos);
+        long max = maxAcquireTime.get();
+        while ((nanos > max) && !maxAcquireTime.compareAndSet(max, nanos)) {
+            max = maxAcquireTime.get();
+        }
+        inUse.incrementAndGet();
+    }
+
+    void released()
+    {
+        inUse.decrementAndGet();
+    }
+
+    void acquireTimeout()
+    {
+        acquireTimeouts.incrementAndGet();
+    }
+
+    void created()
+    {
+        createdCount.incrementAndGet();
+    }
+
+    void closed()
+    {
+        closedCount.incrementAndGet();
+    }
+
+    void evicted()
+    {
+        evictedCount.incrementAndGet();
+    }
+
+    void probeFailed()
+    {
+        probeFailures.incrementAndGet();
+    }
+
+    /**
+     * @return the pool name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the number of acquired connections
+     */
+    public long getAcquireCount()
+    {
+        return acquireCount.get();
+    }
+
+    /**
+     * @return the number of acquire requests timed out
+     */
+    public long getAcquireTimeouts()
+    {
+        return acquireTimeouts.get();
+    }
+
+    /**
+     * @return the average acquire time, in microseconds
+     */
+    public double getAverageAcquireTime()
+    {
+        long count = acquireCount.get();
+        return (count == 0) ? 0 : (totalAcquireTime.get() / 1000.0) / count;
+    }
+
+    /**
+     * @return the maximum acquire time, in microseconds
+     */
+    public long getMaxAcquireTime()
+    {
+        return maxAcquireTime.get() / 1000;
+    }
+
+    /**
+     * @return the number of created connections
+     */
+    public long getCreatedCount()
+    {
+        return createdCount.get();
+    }
+
+    /**
+     * @return the number of closed connections
+     */
+    public long getClosedCount()
+    {
+        return closedCount.get();
+    }
+
+    /**
+     * @return the number of connections evicted by the background validation
+     */
+    public long getEvictedCount()
+    {
+        return evictedCount.get();
+    }
+
+    /**
+     * @return the number of failed health probes
+     */
+    public long getProbeFailures()
+    {
+        return probeFailures.get();
+    }
+
+    /**
+     * @return the number of connections in use
+     */
+    public int getInUse()
+    {
+        return inUse.get();
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return name + " - acquired: " + getAcquireCount() + " - timeouts: " + getAcquireTimeouts() + " - avg acquire: "
+                + String.format("%.1f", getAverageAcquireTime()) + " us - max acquire: " + getMaxAcquireTime()
+                + " us - in use: " + getInUse() + " - created: " + getCreatedCount() + " - closed: "
+                + getClosedCount() + " - evicted: " + getEvictedCount() + " - probe failures: " + getProbeFailures();
+    }
+}
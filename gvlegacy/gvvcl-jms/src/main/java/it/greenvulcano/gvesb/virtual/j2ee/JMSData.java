@@ -21,16 +21,27 @@ package it.greenvulcano.gvesb.virtual.j2ee;
 
 import it.greenvulcano.gvesb.j2ee.XAHelper;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.jms.Connection;
 import javax.jms.ExceptionListener;
 import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
 import javax.jms.QueueConnection;
+import javax.jms.QueueSession;
 import javax.jms.Session;
+import javax.jms.Topic;
 import javax.jms.TopicConnection;
+import javax.jms.TopicSession;
 import javax.jms.XAQueueConnection;
+import javax.jms.XAQueueSession;
 import javax.jms.XATopicConnection;
+import javax.jms.XATopicSession;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +58,11 @@ import org.slf4j.LoggerFactory;
  */
 public class JMSData implements ExceptionListener
 {
+    /**
+     * the max number of MessageProducers cached for each Session
+     */
+    public static final int     MAX_CACHED_PRODUCERS = 32;
+
     /**
      * The Logger instance must be provided by the caller.
      */
@@ -80,6 +96,37 @@ public class JMSData implements ExceptionListener
      * flag indicating if the JMSData object actually handles a QueueConnection.
      */
     private boolean              queue         = false;
+    /**
+     * the cached MessageProducers, by Session and destination name
+     */
+    private Map<Session, Map<String, MessageProducer>> producers = new HashMap<Session, Map<String, MessageProducer>>();
+    /**
+     * the transacted Sessions with sent but not yet committed messages
+     */
+    private Map<Session, PendingCommit> pendingCommits = new HashMap<Session, PendingCommit>();
+    /**
+     * true while the instance is checked out from the JMSConnectionManager pool
+     */
+    private AtomicBoolean        leased        = new AtomicBoolean(false);
+    /**
+     * last time the instance was returned to the pool
+     */
+    private volatile long        lastUsed      = System.currentTimeMillis();
+
+    /**
+     * Messages sent on a transacted Session and not yet committed.
+     */
+    private static class PendingCommit
+    {
+        private int                     count     = 0;
+        private long                    since     = 0;
+        private long                    batchTime = 0;
+        /**
+         * completed when the messages are committed, exceptionally when they
+         * are rolled back or the commit fails
+         */
+        private CompletableFuture<Void> committed = new CompletableFuture<Void>();
+    }
 
     /**
      * @param conn
@@ -121,6 +168,8 @@ public class JMSData implements ExceptionListener
     public void close()
     {
         logger.debug("Closing JMSData " + this);
+        commitPending(true);
+        closeProducers();
         try {
             logger.debug("Closing Connection on JMSData " + this);
             connection.close();
@@ -202,6 +251,285 @@ public class JMSData implements ExceptionListener
         return tSession;
     }
 
+    /**
+     * Returns the MessageProducer for the given destination, creating and
+     * caching it on first use. The least recently used producer is closed
+     * when a Session exceeds MAX_CACHED_PRODUCERS.
+     *
+     * @param session
+     *        a Session created by this instance
+     * @param destination
+     *        the queue or topic name
+     * @return the cached producer
+     * @throws JMSException
+     *         if errors occurs during MessageProducer creation
+     */
+    public MessageProducer getProducer(Session session, String destination) throws JMSException
+    {
+        Map<String, MessageProducer> sessionProducers = producers.get(session);
+        if (sessionProducers == null) {
+            sessionProducers = new LinkedHashMap<String, MessageProducer>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, MessageProducer> eldest)
+                {
+                    if (size() > MAX_CACHED_PRODUCERS) {
+                        closeProducer(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+            producers.put(session, sessionProducers);
+        }
+        MessageProducer producer = sessionProducers.get(destination);
+        if (producer == null) {
+            logger.debug("Creating MessageProducer for destination " + destination + " on JMSData " + this);
+            if (queue) {
+                Queue lQueue = session.createQueue(destination);
+                if (session instanceof XAQueueSession) {
+                    producer = ((XAQueueSession) session).createProducer(lQueue);
+                }
+                else {
+                    producer = ((QueueSession) session).createSender(lQueue);
+                }
+            }
+            else {
+                Topic lTopic = session.createTopic(destination);
+                if (session instanceof XATopicSession) {
+                    producer = ((XATopicSession) session).createProducer(lTopic);
+                }
+                else {
+                    producer = ((TopicSession) session).createPublisher(lTopic);
+                }
+            }
+            sessionProducers.put(destination, producer);
+        }
+        return producer;
+    }
+
+    /**
+     * Closes and removes from cache the MessageProducer for the given
+     * destination, to be called when the producer fails.
+     *
+     * @param session
+     *        a Session created by this instance
+     * @param destination
+     *        the queue or topic name
+     */
+    public void invalidateProducer(Session session, String destination)
+    {
+        Map<String, MessageProducer> sessionProducers = producers.get(session);
+        if (sessionProducers != null) {
+            closeProducer(sessionProducers.remove(destination));
+        }
+    }
+
+    /**
+     * Counts a message sent on a transacted Session and commits the Session
+     * when the pending messages reach <code>batchSize</code> or the oldest is
+     * older than <code>batchTime</code> ms.
+     * <p>
+     * The Session may be shared by several callers, one at a time, before the
+     * batch is committed: each caller must wait for the returned future
+     * before reporting its message as sent.
+     *
+     * @param session
+     *        a transacted Session created by this instance
+     * @param batchSize
+     *        the max number of messages per commit
+     * @param batchTime
+     *        the max time, in ms, a message waits for the commit
+     * @return a future completed when the message is committed, or
+     *         exceptionally if it is rolled back
+     * @throws JMSException
+     *         if the commit fails
+     */
+    public CompletableFuture<Void> commitBatched(Session session, int batchSize, long batchTime) throws JMSException
+    {
+        long now = System.currentTimeMillis();
+        PendingCommit pending = pendingCommits.get(session);
+        if (pending == null) {
+            pending = new PendingCommit();
+            pendingCommits.put(session, pending);
+        }
+        if (pending.count == 0) {
+            pending.since = now;
+        }
+        pending.count++;
+        pending.batchTime = batchTime;
+        CompletableFuture<Void> committed = pending.committed;
+        if ((pending.count >= batchSize) || ((now - pending.since) >= batchTime)) {
+            commit(session);
+        }
+        return committed;
+    }
+
+    /**
+     * Commits the given Session, together with the messages waiting for a
+     * batched commit.
+     *
+     * @param session
+     *        a transacted Session created by this instance
+     * @throws JMSException
+     *         if the commit fails
+     */
+    public void commit(Session session) throws JMSException
+    {
+        PendingCommit pending = pendingCommits.remove(session);
+        try {
+            session.commit();
+        }
+        catch (JMSException exc) {
+            if (pending != null) {
+                pending.committed.completeExceptionally(exc);
+            }
+            throw exc;
+        }
+        if (pending != null) {
+            pending.committed.complete(null);
+        }
+    }
+
+    /**
+     * Rolls back the given Session, discarding also the messages waiting for
+     * a batched commit: the callers waiting for them are notified of the
+     * failure.
+     *
+     * @param session
+     *        a transacted Session created by this instance
+     * @throws JMSException
+     *         if the rollback fails
+     */
+    public void rollback(Session session) throws JMSException
+    {
+        PendingCommit pending = pendingCommits.remove(session);
+        try {
+            session.rollback();
+        }
+        finally {
+            if (pending != null) {
+                logger.warn("Rolled back " + pending.count + " messages waiting for batched commit on JMSData " + this);
+                pending.committed.completeExceptionally(new JMSException("Rolled back " + pending.count
+                        + " messages waiting for batched commit"));
+            }
+        }
+    }
+
+    /**
+     * Commits the Sessions whose pending messages waited more than the
+     * configured batch time.
+     *
+     * @param force
+     *        if true commits all pending messages
+     */
+    public void commitPending(boolean force)
+    {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Session, PendingCommit>> it = pendingCommits.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Session, PendingCommit> entry = it.next();
+            PendingCommit pending = entry.getValue();
+            if (force || ((now - pending.since) >= pending.batchTime)) {
+                it.remove();
+                try {
+                    logger.debug("Committing " + pending.count + " pending messages on JMSData " + this);
+                    entry.getKey().commit();
+                    pending.committed.complete(null);
+                }
+                catch (Exception exc) {
+                    logger.error("Error committing " + pending.count + " pending messages on JMSData " + this, exc);
+                    pending.committed.completeExceptionally(exc);
+                    invalidate();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if some Session has messages waiting for a batched commit
+     */
+    public boolean hasPendingCommits()
+    {
+        return !pendingCommits.isEmpty();
+    }
+
+    private void closeProducers()
+    {
+        for (Map<String, MessageProducer> sessionProducers : producers.values()) {
+            for (MessageProducer producer : sessionProducers.values()) {
+                closeProducer(producer);
+            }
+        }
+        producers.clear();
+    }
+
+    private void closeProducer(MessageProducer producer)
+    {
+        if (producer != null) {
+            try {
+                producer.close();
+            }
+            catch (Exception exc) {
+                // do nothing
+            }
+        }
+    }
+
+    /**
+     * Marks the instance as checked out.
+     *
+     * @return false if already checked out
+     */
+    public boolean lease()
+    {
+        return leased.compareAndSet(false, true);
+    }
+
+    /**
+     * Marks the instance as returned.
+     *
+     * @return false if not checked out
+     */
+    public boolean unlease()
+    {
+        if (leased.compareAndSet(true, false)) {
+            lastUsed = System.currentTimeMillis();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the last time the instance was returned to the pool
+     */
+    public long getLastUsed()
+    {
+        return lastUsed;
+    }
+
+    /**
+     * Checks the connection creating and closing a Session.
+     *
+     * @return true if the connection is usable
+     */
+    public boolean probe()
+    {
+        if ("".equals(id)) {
+            return false;
+        }
+        try {
+            connection.createSession(false, Session.AUTO_ACKNOWLEDGE).close();
+            return true;
+        }
+        catch (Exception exc) {
+            logger.warn("Probe failed on JMSData " + this + " - " + exc);
+            invalidate();
+            return false;
+        }
+    }
+
     /**
      * @return Returns the id.
      */
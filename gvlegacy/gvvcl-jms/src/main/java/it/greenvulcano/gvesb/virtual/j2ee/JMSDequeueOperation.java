@@ -35,8 +35,10 @@ import it.greenvulcano.gvesb.virtual.InitializationException;
 import it.greenvulcano.gvesb.virtual.InvalidDataException;
 import it.greenvulcano.gvesb.virtual.VCLException;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -59,6 +61,18 @@ import org.w3c.dom.Node;
 
 /**
  * This class realizes an dequeue mechanism for a JMS queue or topic.
+ * <p>
+ * If <code>batch-size</code> is greater than 1, a single perform drains up to
+ * <code>batch-size</code> messages: the first receive honours the configured
+ * receive type, the following ones wait at most <code>batch-receive-timeout</code>
+ * ms (receiveNoWait() if 0). The output GVBuffer contains a
+ * <code>java.util.List</code> of the received messages (or of the data provider
+ * results) and the property <code>JMS_BATCH_SIZE</code>; the whole batch is
+ * acknowledged/committed/rolled-back through the single returned Id.
+ * With <code>decorate-gvbuffer</code> the output GVBuffer carries the JMS
+ * headers and properties of the first message of the batch only; the data
+ * provider is applied to each message on the same output GVBuffer, so where
+ * two messages set the same property the last one wins.
  *
  * @version 3.0.0 Feb 17, 2010
  * @author GreenVulcano Developer Team
@@ -67,6 +81,10 @@ import org.w3c.dom.Node;
  */
 public class JMSDequeueOperation extends J2EEOperation implements DequeueOperation
 {
+    /**
+     * Output property holding the number of messages of a batch dequeue.
+     */
+    public static final String   JMS_BATCH_SIZE               = "JMS_BATCH_SIZE";
 
 	private static final Logger logger = LoggerFactory.getLogger(JMSDequeueOperation.class);
 
@@ -126,6 +144,8 @@ public class JMSDequeueOperation extends J2EEOperation implements DequeueOperati
     private int                  acknowledge;
     private boolean              useVCLPooling;
     private boolean              invalidateOnReinsert;
+    private int                  maxPoolConnections = -1;
+    private long                 poolAcquireTimeout = 30000;
     private boolean              keepInputExtraProperties;
 
     /**
@@ -143,6 +163,17 @@ public class JMSDequeueOperation extends J2EEOperation implements DequeueOperati
      */
     private long                 configuredReceiveTimeout     = 0;
 
+    /**
+     * Max number of messages returned by a perform.
+     */
+    private int                  batchSize                    = 1;
+
+    /**
+     * Receive timeout for the messages following the first one of a batch. If
+     * 0 then a receiveNoWait() will be used.
+     */
+    private long                 batchReceiveTimeout          = 0;
+
     private boolean              timeoutIsOverridable         = false;
 
     /**
@@ -226,6 +257,9 @@ public class JMSDequeueOperation extends J2EEOperation implements DequeueOperati
         checkAttribute("invalidate-conn-on-pool-insertion", invConnStr);
         invalidateOnReinsert = invConnStr.equals("true");
         logger.debug("Invalidate Connection on VCL pool insertion: " + invalidateOnReinsert);
+        maxPoolConnections = XMLConfig.getInteger(node, "@max-pool-connections", -1);
+        poolAcquireTimeout = XMLConfig.getLong(node, "@pool-acquire-timeout", 30000);
+        logger.debug("Max pool connections...: " + maxPoolConnections);
 
         String acknowledgeType = XMLConfig.get(node, "@acknowledge-type", "auto-acknowledge");
         checkAttribute("acknowledge-type", acknowledgeType);
@@ -255,6 +289,13 @@ public class JMSDequeueOperation extends J2EEOperation implements DequeueOperati
             configuredReceiveTimeout = XMLConfig.getLong(node, "@receive-timeout", 1000);
             logger.debug("Receive timeout....: " + configuredReceiveTimeout);
         }
+        batchSize = XMLConfig.getInteger(node, "@batch-size", 1);
+        if (batchSize < 1) {
+            batchSize = 1;
+        }
+        batchReceiveTimeout = XMLConfig.getLong(node, "@batch-receive-timeout", 0);
+        logger.debug("Batch size.............: " + batchSize);
+        logger.debug("Batch receive timeout..: " + batchReceiveTimeout);
         String overridable = XMLConfig.get(node, "@receive-timeout-overridable", "false");
         timeoutIsOverridable = overridable.equals("true");
         logger.debug("Receive timeout overr..: " + timeoutIsOverridable);
@@ -322,6 +363,8 @@ public class JMSDequeueOperation extends J2EEOperation implements DequeueOperati
     protected void j2eeConnectionEstablished(Context context) throws Exception
     {
         jmsKey = new JMSConnectionKey(context.getEnvironment(), connectionFactoryName, useVCLPooling, invalidateOnReinsert);
+        jmsKey.setMaxConnections(maxPoolConnections);
+        jmsKey.setAcquireTimeout(poolAcquireTimeout);
         /*
         if (isQueue) {
             queue = (Queue) context.lookup(destinationName);
@@ -376,17 +419,14 @@ public class JMSDequeueOperation extends J2EEOperation implements DequeueOperati
             InvalidDataException, JMSException
     {
         try {
-            Message message = receiveMessage();
+            List<Message> messages = receiveMessages(batchSize);
 
-            if (message == null) {
+            if (messages.isEmpty()) {
                 return null;
             }
 
             GVBuffer outBuffer = null;
             try {
-                if (dumpMessage && logger.isDebugEnabled()) {
-                    logger.debug("Dequeue " + name + " Received message :\n"  + new JMSMessageDump(message, null));
-                }
                 if (keepInputExtraProperties) {
                     outBuffer = new GVBuffer(inputGVBuffer, false);
                 }
@@ -394,24 +434,20 @@ public class JMSDequeueOperation extends J2EEOperation implements DequeueOperati
                     outBuffer = new GVBuffer();
                 }
                 if (decorateGVBuffer) {
-                	JMSMessageDecorator.decorateGVBuffer(message, outBuffer);
+                    // in batch mode only the first message decorates the buffer
+                	JMSMessageDecorator.decorateGVBuffer(messages.get(0), outBuffer);
                 }
 
-                outBuffer.setObject(message);
-                if (refDP != null && refDP.length() > 0) {
-                    DataProviderManager dataProviderManager = DataProviderManager.instance();
-                    IDataProvider dataProvider = dataProviderManager.getDataProvider(refDP);
-                    try {
-                        logger.debug("Working on data provider: " + dataProvider.getClass());
-                        dataProvider.setObject(outBuffer);
-                        Object result = dataProvider.getResult();
-                        if (result != null) {
-                            outBuffer.setObject(result);
-                        }
-                    }
-                    finally {
-                        dataProviderManager.releaseDataProvider(refDP, dataProvider);
+                if (batchSize == 1) {
+                    outBuffer.setObject(processMessage(messages.get(0), outBuffer));
+                }
+                else {
+                    List<Object> batch = new ArrayList<Object>(messages.size());
+                    for (Message message : messages) {
+                        batch.add(processMessage(message, outBuffer));
                     }
+                    outBuffer.setObject(batch);
+                    outBuffer.setProperty(JMS_BATCH_SIZE, String.valueOf(messages.size()));
                 }
             }
             catch (DataProviderException exc) {
@@ -427,7 +463,9 @@ public class JMSDequeueOperation extends J2EEOperation implements DequeueOperati
                         exc);
             }
 
-            messagesToAcknowledge.put(outBuffer.getId().toString(), message);
+            // acknowledging the last consumed message, or committing the
+            // session, acknowledges the whole batch
+            messagesToAcknowledge.put(outBuffer.getId().toString(), messages.get(messages.size() - 1));
 
             return outBuffer;
         }
@@ -439,6 +477,41 @@ public class JMSDequeueOperation extends J2EEOperation implements DequeueOperati
         }
     }
 
+    /**
+     * Dumps the message and applies the configured data provider.
+     *
+     * @param message
+     *        the received message
+     * @param outBuffer
+     *        the output GVBuffer
+     * @return the data provider result, or the message itself
+     * @throws Exception
+     */
+    private Object processMessage(Message message, GVBuffer outBuffer) throws Exception
+    {
+        if (dumpMessage && logger.isDebugEnabled()) {
+            logger.debug("Dequeue " + name + " Received message :\n"  + new JMSMessageDump(message, null));
+        }
+        Object result = message;
+        if (refDP != null && refDP.length() > 0) {
+            DataProviderManager dataProviderManager = DataProviderManager.instance();
+            IDataProvider dataProvider = dataProviderManager.getDataProvider(refDP);
+            try {
+                logger.debug("Working on data provider: " + dataProvider.getClass());
+                outBuffer.setObject(message);
+                dataProvider.setObject(outBuffer);
+                Object dpResult = dataProvider.getResult();
+                if (dpResult != null) {
+                    result = dpResult;
+                }
+            }
+            finally {
+                dataProviderManager.releaseDataProvider(refDP, dataProvider);
+            }
+        }
+        return result;
+    }
+
     /**
      * Called if the perform fails.
      */
@@ -448,7 +521,12 @@ public class JMSDequeueOperation extends J2EEOperation implements DequeueOperati
         try {
             if (transacted) {
                 if (session != null) {
-                    session.rollback();
+                    if (jmsData != null) {
+                        jmsData.rollback(session);
+                    }
+                    else {
+                        session.rollback();
+                    }
                 }
             }
         }
@@ -475,6 +553,25 @@ public class JMSDequeueOperation extends J2EEOperation implements DequeueOperati
      *            type.
      */
     protected Message receiveMessage() throws JMSException, J2EEDequeueException
+    {
+        List<Message> messages = receiveMessages(1);
+        return messages.isEmpty() ? null : messages.get(0);
+    }
+
+    /**
+     * Receive up to <code>maxMessages</code> messages from the destination,
+     * using a single consumer.
+     *
+     * @param maxMessages
+     *        the max number of messages to receive
+     * @return The received messages, empty if no message are available or the
+     *         timeout occurs.
+     * @exception JMSException
+     *            if some internal error on the JMS server occur.
+     * @exception J2EEDequeueException
+     *            if error occurs
+     */
+    protected List<Message> receiveMessages(int maxMessages) throws JMSException, J2EEDequeueException
     {
         try {
             if (isQueue) {
@@ -509,7 +606,7 @@ public class JMSDequeueOperation extends J2EEOperation implements DequeueOperati
         }
 
         MessageConsumer messageConsumer = createMessageConsumer();
-        Message message = null;
+        List<Message> messages = new ArrayList<Message>(Math.min(maxMessages, 256));
 
         boolean mustEnlist = false;
 
@@ -523,6 +620,7 @@ public class JMSDequeueOperation extends J2EEOperation implements DequeueOperati
             catch (Exception exc) {
                 throw new J2EEDequeueException("GVVCL_J2EE_DEQUEUE_ERROR", new String[][]{{"exc", exc.toString()}}, exc);
             }
+            Message message = null;
             if (receiveTimeout == 0) {
                 message = messageConsumer.receive();
             }
@@ -532,6 +630,18 @@ public class JMSDequeueOperation extends J2EEOperation implements DequeueOperati
             else {
                 message = messageConsumer.receiveNoWait();
             }
+            while (message != null) {
+                messages.add(message);
+                if (messages.size() >= maxMessages) {
+                    break;
+                }
+                if (batchReceiveTimeout > 0) {
+                    message = messageConsumer.receive(batchReceiveTimeout);
+                }
+                else {
+                    message = messageConsumer.receiveNoWait();
+                }
+            }
         }
         catch (JMSException exc) {
             if (jmsData != null) {
@@ -552,12 +662,14 @@ public class JMSDequeueOperation extends J2EEOperation implements DequeueOperati
             }
         }
 
-        if (message == null) {
+        if (messages.isEmpty()) {
             logger.debug("Received null JMS message");
-            return null;
+        }
+        else if (maxMessages > 1) {
+            logger.debug("Received " + messages.size() + " JMS messages");
         }
 
-        return message;
+        return messages;
     }
 
     /**
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ *
+ * This file is part of GreenVulcano ESB.
+ *
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package it.greenvulcano.gvesb.virtual.j2ee;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * Send statistics of a JMS destination.
+ *
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ *
+ *
+ *
+ */
+public class JMSDestinationStatistics
+{
+    private final String     destination;
+    private final long       startTime  = System.currentTimeMillis();
+    private final AtomicLong sendCount  = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong totalTime  = new AtomicLong();
+    private final AtomicLong maxTime    = new AtomicLong();
+
+    /**
+     * @param destination
+     *        the destination name
+     */
+    public JMSDestinationStatistics(String destination)
+    {
+        this.destination = destination;
+    }
+
+    /**
+     * Records a send/publish.
+     *
+     * @param time
+     *        the elapsed time, in milliseconds
+     * @param success
+     *        false if the send failed
+     */
+    public void record(long time, boolean success)
+    {
+        if (success) {
+            sendCount.incrementAndGet();
+        }
+        else {
+            errorCount.incrementAndGet();
+        }
+        totalTime.addAndGet(time);
+        long max = maxTime.get();
+        while ((time > max) && !maxTime.compareAndSet(max, time)) {
+            max = maxTime.get();
+        }
+    }
+
+    /**
+     * @return the destination name
+     */
+    public String getDestination()
+    {
+        return destination;
+    }
+
+    /**
+     * @return the number of messages sent
+     */
+    public long getSendCount()
+    {
+        return sendCount.get();
+    }
+
+    /**
+     * @return the number of failed sends
+     */
+    public long getErrorCount()
+    {
+        return errorCount.get();
+    }
+
+    /**
+     * @return the average send time, in milliseconds
+     */
+    public double getAverageTime()
+    {
+        long count = sendCount.get() + errorCount.get();
+        return (count == 0) ? 0 : (double) totalTime.get() / count;
+    }
+
+    /**
+     * @return the maximum send time, in milliseconds
+     */
+    public long getMaxTime()
+    {
+        return maxTime.get();
+    }
+
+    /**
+     * @return the messages sent per second, since the statistics creation
+     */
+    public double getSendRate()
+    {
+        long elapsed = System.currentTimeMillis() - startTime;
+        return (elapsed <= 0) ? 0 : (sendCount.get() * 1000.0) / elapsed;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return destination + " - sent: " + getSendCount() + " - errors: " + getErrorCount() + " - rate: "
+                + String.format("%.2f", getSendRate()) + "/s - avg time: " + String.format("%.2f", getAverageTime())
+                + " ms - max time: " + getMaxTime() + " ms";
+    }
+}
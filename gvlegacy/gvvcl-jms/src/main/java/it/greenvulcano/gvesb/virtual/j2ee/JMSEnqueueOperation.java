@@ -35,19 +35,18 @@ import it.greenvulcano.gvesb.virtual.VCLException;
 import it.greenvulcano.util.metadata.PropertiesHandler;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.jms.DeliveryMode;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageProducer;
-import javax.jms.Queue;
-import javax.jms.QueueSession;
 import javax.jms.Session;
-import javax.jms.Topic;
-import javax.jms.TopicSession;
 import javax.jms.XAQueueSession;
 import javax.jms.XASession;
-import javax.jms.XATopicSession;
 import javax.naming.Context;
 
 import org.slf4j.Logger;
@@ -56,6 +55,14 @@ import org.w3c.dom.Node;
 
 /**
  * This class realizes an enqueue mechanism for a JMS queue or topic.
+ * <p>
+ * With <code>commit-batch-size</code> greater than 1 the messages sent on a
+ * transacted Session are committed in batch: after the send the connection is
+ * returned to the pool, so that other callers can add their messages to the
+ * same transaction, and the perform waits for the batch commit, at most
+ * <code>commit-batch-time</code> plus <code>pool-acquire-timeout</code> ms.
+ * If the batch is rolled back, because a caller sharing it failed, or the
+ * commit fails, the perform of every caller in the batch fails.
  *
  * @version 3.0.0 Feb 17, 2010
  * @author GreenVulcano Developer Team
@@ -81,6 +88,17 @@ public class JMSEnqueueOperation extends J2EEOperation implements EnqueueOperati
     private long                ttl;
     private boolean             useVCLPooling;
     private boolean             invalidateOnReinsert;
+    private int                 maxPoolConnections = -1;
+    private long                poolAcquireTimeout = 30000;
+    /**
+     * Max number of messages per commit, if greater than 1 the transacted
+     * sessions are committed in batch.
+     */
+    private int                 commitBatchSize = 1;
+    /**
+     * Max time, in ms, a message waits for a batched commit.
+     */
+    private long                commitBatchTime = 1000;
     
     private Session session = null;
     
@@ -131,6 +149,9 @@ public class JMSEnqueueOperation extends J2EEOperation implements EnqueueOperati
         checkAttribute("invalidate-conn-on-pool-insertion", invConnStr);
         invalidateOnReinsert = invConnStr.equals("true");
         logger.debug("Invalidate Connection on VCL pool insertion: " + invalidateOnReinsert);
+        maxPoolConnections = XMLConfig.getInteger(node, "@max-pool-connections", -1);
+        poolAcquireTimeout = XMLConfig.getLong(node, "@pool-acquire-timeout", 30000);
+        logger.debug("Max pool connections...: " + maxPoolConnections);
 
         String acknowledgeType = XMLConfig.get(node, "@acknowledge-type", "auto-acknowledge");
         checkAttribute("acknowledge-type", acknowledgeType);
@@ -181,6 +202,14 @@ public class JMSEnqueueOperation extends J2EEOperation implements EnqueueOperati
             throw new InitializationException("GVVCL_J2EE_INIT_ERROR", new String[][]{{"exc", exc.getMessage()}}, exc);
         }
 
+        commitBatchSize = XMLConfig.getInteger(node, "@commit-batch-size", 1);
+        commitBatchTime = XMLConfig.getLong(node, "@commit-batch-time", 1000);
+        if (transacted && (commitBatchSize > 1)) {
+            logger.debug("Commit batch size......: " + commitBatchSize);
+            logger.debug("Commit batch time (ms).: " + commitBatchTime);
+            JMSConnectionManager.instance().startCommitFlusher();
+        }
+
         dumpMessage = XMLConfig.getBoolean(node, "@dump-message", false);
         decorateMessage = XMLConfig.getBoolean(node, "@decorate-message", true);
         logger.debug("Decorate Message.......: " + decorateMessage);
@@ -197,6 +226,8 @@ public class JMSEnqueueOperation extends J2EEOperation implements EnqueueOperati
     @Override
     protected void j2eeConnectionEstablished(Context context) throws Exception {
         jmsKey = new JMSConnectionKey(context.getEnvironment(), connectionFactory, useVCLPooling, invalidateOnReinsert);
+        jmsKey.setMaxConnections(maxPoolConnections);
+        jmsKey.setAcquireTimeout(poolAcquireTimeout);
 	    
     }
 
@@ -247,6 +278,7 @@ public class JMSEnqueueOperation extends J2EEOperation implements EnqueueOperati
     {
         prepareSession();
         Message message = null;
+        CompletableFuture<Void> batchedCommit = null;
         
             try {           	
             	
@@ -293,7 +325,7 @@ public class JMSEnqueueOperation extends J2EEOperation implements EnqueueOperati
                
                 String actualReplyTo = replyTo!=null? PropertiesHandler.expand(replyTo, gvBuffer):null;
                 
-                sendOrPublish(message, actualCorrelationId, destination, actualReplyTo);
+                batchedCommit = sendOrPublish(message, actualCorrelationId, destination, actualReplyTo);
             }
             catch (InvalidDataException exc) {
                 throw exc;
@@ -307,7 +339,9 @@ public class JMSEnqueueOperation extends J2EEOperation implements EnqueueOperati
                         exc);
             }
 
-           
+            if (batchedCommit != null) {
+                awaitBatchedCommit(batchedCommit);
+            }
 
             return gvBuffer;
         
@@ -326,7 +360,12 @@ public class JMSEnqueueOperation extends J2EEOperation implements EnqueueOperati
         try {
             if (transacted) {
                 if (session != null) {
-                    session.rollback();
+                    if (jmsData != null) {
+                        jmsData.rollback(session);
+                    }
+                    else {
+                        session.rollback();
+                    }
                 }
             }
         }
@@ -337,7 +376,11 @@ public class JMSEnqueueOperation extends J2EEOperation implements EnqueueOperati
     }
 
 
-    private void sendOrPublish(Message message, String correlationId, String destination, String replyTo) throws J2EEConnectionException, J2EEEnqueueException,
+    /**
+     * @return the future of the batched commit, or null if the message has
+     *         been committed, or will be, in the caller transaction
+     */
+    private CompletableFuture<Void> sendOrPublish(Message message, String correlationId, String destination, String replyTo) throws J2EEConnectionException, J2EEEnqueueException,
             InvalidDataException, JMSException
     {
             	  	
@@ -345,6 +388,11 @@ public class JMSEnqueueOperation extends J2EEOperation implements EnqueueOperati
     	message.setJMSCorrelationID(correlationId);
         
         MessageProducer messageProducer = null;
+        JMSDestinationStatistics statistics = JMSConnectionManager.instance().getDestinationStatistics(
+                (isQueue ? "queue:" : "topic:") + destination);
+        long startTime = System.currentTimeMillis();
+        boolean success = false;
+        CompletableFuture<Void> batchedCommit = null;
 
         boolean mustEnlist = false;
         try {
@@ -358,47 +406,36 @@ public class JMSEnqueueOperation extends J2EEOperation implements EnqueueOperati
             catch (Exception exc) {
                 throw new J2EEEnqueueException("GVVCL_J2EE_ENQUEUE_ERROR", new String[][]{{"exc", exc.toString()}}, exc);
             }
-            if (isQueue) {
-            	logger.debug("Creating queue for destination "+destination);
-                Queue lQueue = session.createQueue(destination);
-                if (session instanceof XAQueueSession) {
-                    messageProducer = ((XAQueueSession) session).createProducer(lQueue);
-                }
-                else {
-                    messageProducer = ((QueueSession) session).createSender(lQueue);
-                }
-                
-                if (replyTo != null) {
-                	message.setJMSReplyTo(session.createQueue(replyTo));
-                }
+            logger.debug("Using producer for " + (isQueue ? "queue" : "topic") + " destination " + destination);
+            messageProducer = jmsData.getProducer(session, destination);
 
-                messageProducer.send(message, deliveryMode, priority, ttl);
-                if (dumpMessage && logger.isDebugEnabled()) {
-                    logger.debug("Enqueue " + name + " Produced message :\n" + new JMSMessageDump(message, null));
-                }
+            if (replyTo != null) {
+                message.setJMSReplyTo(isQueue ? session.createQueue(replyTo) : session.createTopic(replyTo));
             }
-            else {
-            	logger.debug("Creating topic for destination "+destination);
-                Topic lTopic = session.createTopic(destination);
-                if (session instanceof XATopicSession) {
-                    messageProducer = ((XATopicSession) session).createProducer(lTopic);
-                }
-                else {
-                    messageProducer = ((TopicSession) session).createPublisher(lTopic);
-                }
-                
-                if (replyTo != null) {
-                	message.setJMSReplyTo(session.createTopic(replyTo));
-                }
 
+            try {
                 messageProducer.send(message, deliveryMode, priority, ttl);
             }
+            catch (JMSException exc) {
+                jmsData.invalidateProducer(session, destination);
+                throw exc;
+            }
+            if (isQueue && dumpMessage && logger.isDebugEnabled()) {
+                logger.debug("Enqueue " + name + " Produced message :\n" + new JMSMessageDump(message, null));
+            }
 
             if (transacted && !(session instanceof XAQueueSession)) {
-                session.commit();
+                if ((commitBatchSize > 1) && !(session instanceof XASession)) {
+                    batchedCommit = jmsData.commitBatched(session, commitBatchSize, commitBatchTime);
+                }
+                else {
+                    jmsData.commit(session);
+                }
             }
+            success = true;
         }
         finally {
+            statistics.record(System.currentTimeMillis() - startTime, success);
             try {
                 if (mustEnlist) {
                     xaHelper.delistResource();
@@ -407,11 +444,37 @@ public class JMSEnqueueOperation extends J2EEOperation implements EnqueueOperati
             catch (Exception exc) {
                 throw new J2EEEnqueueException("GVVCL_J2EE_ENQUEUE_ERROR", new String[][]{{"exc", exc.toString()}}, exc);
             }
-            if (messageProducer != null) {
-                messageProducer.close();
-            }
         }
-    }    
+        return batchedCommit;
+    }
+
+    /**
+     * Waits for the batched commit of the message just sent, returning
+     * meanwhile the connection to the pool.
+     */
+    private void awaitBatchedCommit(CompletableFuture<Void> batchedCommit) throws J2EEEnqueueException
+    {
+        if (!batchedCommit.isDone()) {
+            JMSConnectionManager.instance().releaseConnection(jmsData);
+            jmsData = null;
+            session = null;
+        }
+        try {
+            batchedCommit.get(commitBatchTime + poolAcquireTimeout, TimeUnit.MILLISECONDS);
+        }
+        catch (ExecutionException exc) {
+            throw new J2EEEnqueueException("GVVCL_J2EE_ENQUEUE_ERROR", new String[][]{{"exc",
+                    "Batched commit failed: " + exc.getCause()}}, exc.getCause());
+        }
+        catch (TimeoutException exc) {
+            throw new J2EEEnqueueException("GVVCL_J2EE_ENQUEUE_ERROR", new String[][]{{"exc",
+                    "Batched commit not confirmed in " + (commitBatchTime + poolAcquireTimeout) + " ms"}}, exc);
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new J2EEEnqueueException("GVVCL_J2EE_ENQUEUE_ERROR", new String[][]{{"exc", exc.toString()}}, exc);
+        }
+    }
     
     private void prepareSession() throws J2EEEnqueueException
     {
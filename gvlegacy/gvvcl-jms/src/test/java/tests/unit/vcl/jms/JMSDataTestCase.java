@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ *
+ * This file is part of GreenVulcano ESB.
+ *
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package tests.unit.vcl.jms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import it.greenvulcano.gvesb.virtual.j2ee.JMSConnectionKey;
+import it.greenvulcano.gvesb.virtual.j2ee.JMSData;
+
+import java.util.Hashtable;
+import java.util.concurrent.CompletableFuture;
+
+import javax.jms.Connection;
+import javax.jms.MessageConsumer;
+import javax.jms.QueueConnection;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Batched commits of <code>JMSData</code> on an embedded ActiveMQ broker.
+ *
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ *
+ */
+public class JMSDataTestCase
+{
+    private static final String       BROKER_URL = "vm://jmsdatatest?broker.persistent=false&broker.useJmx=false";
+    private static final String       QUEUE      = "TEST.BATCH";
+
+    private ActiveMQConnectionFactory factory;
+    private JMSData                   jmsData;
+    private Connection                consumerConnection;
+    private MessageConsumer           consumer;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        factory = new ActiveMQConnectionFactory(BROKER_URL);
+        QueueConnection connection = factory.createQueueConnection();
+        connection.start();
+        jmsData = new JMSData(connection, new JMSConnectionKey(new Hashtable<String, String>(), "test", true, false),
+                "test", null, true);
+
+        consumerConnection = factory.createConnection();
+        consumerConnection.start();
+        Session consumerSession = consumerConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        consumer = consumerSession.createConsumer(consumerSession.createQueue(QUEUE));
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        jmsData.close();
+        consumerConnection.close();
+    }
+
+    @Test
+    public void testRollbackFailsPendingCallers() throws Exception
+    {
+        Session session = jmsData.getQSession(true, 0);
+
+        send(session, "first");
+        CompletableFuture<Void> first = jmsData.commitBatched(session, 10, 60000);
+        send(session, "second");
+        CompletableFuture<Void> second = jmsData.commitBatched(session, 10, 60000);
+        assertSame(first, second);
+        assertFalse(first.isDone());
+
+        jmsData.rollback(session);
+
+        assertTrue(first.isCompletedExceptionally());
+        assertFalse(jmsData.hasPendingCommits());
+        assertNull(consumer.receive(500));
+    }
+
+    @Test
+    public void testBatchCommit() throws Exception
+    {
+        Session session = jmsData.getQSession(true, 0);
+
+        send(session, "first");
+        CompletableFuture<Void> first = jmsData.commitBatched(session, 2, 60000);
+        assertFalse(first.isDone());
+        assertNull(consumer.receive(200));
+
+        send(session, "second");
+        jmsData.commitBatched(session, 2, 60000);
+        assertTrue(first.isDone());
+        assertFalse(first.isCompletedExceptionally());
+
+        assertReceived("first");
+        assertReceived("second");
+    }
+
+    @Test
+    public void testCommitCompletesPendingCallers() throws Exception
+    {
+        Session session = jmsData.getQSession(true, 0);
+
+        send(session, "batched");
+        CompletableFuture<Void> batched = jmsData.commitBatched(session, 10, 60000);
+        send(session, "single");
+        jmsData.commit(session);
+
+        assertTrue(batched.isDone());
+        assertFalse(batched.isCompletedExceptionally());
+        assertReceived("batched");
+        assertReceived("single");
+    }
+
+    @Test
+    public void testCommitPending() throws Exception
+    {
+        Session session = jmsData.getQSession(true, 0);
+
+        send(session, "pending");
+        CompletableFuture<Void> pending = jmsData.commitBatched(session, 10, 60000);
+        jmsData.commitPending(false);
+        assertFalse(pending.isDone());
+
+        jmsData.commitPending(true);
+        assertTrue(pending.isDone());
+        assertFalse(pending.isCompletedExceptionally());
+        assertReceived("pending");
+    }
+
+    private void send(Session session, String text) throws Exception
+    {
+        jmsData.getProducer(session, QUEUE).send(session.createTextMessage(text));
+    }
+
+    private void assertReceived(String text) throws Exception
+    {
+        TextMessage message = (TextMessage) consumer.receive(2000);
+        assertNotNull("Message '" + text + "' not received", message);
+        assertEquals(text, message.getText());
+    }
+}
@@ -21,6 +21,7 @@
 package it.greenvulcano.gvesb.virtual.commons;
 
 import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Enumeration;
 import java.util.Map;
@@ -30,6 +31,7 @@ import java.util.regex.Pattern;
 
 import javax.activation.DataHandler;
 import javax.mail.Address;
+import javax.mail.FetchProfile;
 import javax.mail.Folder;
 import javax.mail.Header;
 import javax.mail.Message;
@@ -39,14 +41,18 @@ import javax.mail.Multipart;
 import javax.mail.Part;
 import javax.mail.Session;
 import javax.mail.Store;
+import javax.mail.UIDFolder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
 import it.greenvulcano.configuration.XMLConfig;
 import it.greenvulcano.gvesb.buffer.GVBuffer;
+import it.greenvulcano.gvesb.core.pool.GreenVulcanoPool;
+import it.greenvulcano.gvesb.core.pool.GreenVulcanoPoolManager;
 import it.greenvulcano.gvesb.internal.data.GVBufferPropertiesHelper;
 import it.greenvulcano.gvesb.virtual.CallException;
 import it.greenvulcano.gvesb.virtual.ConnectionException;
@@ -55,6 +61,21 @@ import it.greenvulcano.gvesb.virtual.InvalidDataException;
 import it.greenvulcano.util.metadata.PropertiesHandler;
 import it.greenvulcano.util.xml.XMLUtils;
 
+/**
+ * Base class for the operations reading a mailbox.
+ *
+ * The messages are fetched in windows of <code>@fetch-size</code> messages
+ * (all at once if not positive), retrieving in a single round trip the
+ * envelope, flags, UID and size of the whole window.
+ * With <code>@output-mode="forward"</code> each message is dumped in its own
+ * <code>MailMessages</code> document and forwarded, in a copy of the input
+ * GVBuffer, to the <code>message-processor/@operation</code> flow, instead of
+ * collecting all the messages in a single document: the output GVBuffer holds
+ * only the message count.
+ *
+ * @version 4.0.0 - Feb 2017
+ * @author GreenVulcano Developer Team
+ */
 public abstract class BaseReceiveMailOperation extends BaseMailOperation {
 
     private static final Logger logger = LoggerFactory.getLogger(BaseReceiveMailOperation.class);
@@ -76,6 +97,16 @@ public abstract class BaseReceiveMailOperation extends BaseMailOperation {
     protected Pattern emailRxPattern = null;
     protected int maxReadMessages = -1;
 
+    protected int fetchSize = 0;
+    protected boolean forwardMessages = false;
+    protected String forwardSystem = null;
+    protected String forwardOperation = null;
+
+    /**
+     * The session of the last opened Store
+     */
+    protected Session mailSession = null;
+
     /**
      * Preliminary initialization operations
      * 
@@ -99,6 +130,17 @@ public abstract class BaseReceiveMailOperation extends BaseMailOperation {
 
             maxReadMessages = XMLConfig.getInteger(node, "@max-read-messages", 10);
 
+            fetchSize = XMLConfig.getInteger(node, "@fetch-size", 0);
+            forwardMessages = "forward".equals(XMLConfig.get(node, "@output-mode", "document"));
+            if (forwardMessages) {
+                forwardSystem = XMLConfig.get(node, "message-processor/@system", null);
+                forwardOperation = XMLConfig.get(node, "message-processor/@operation");
+                if (forwardOperation == null) {
+                    throw new InitializationException("GV_CONF_ERROR", new String[][] { { "message",
+                            "message-processor/@operation is required with @output-mode=forward" } });
+                }
+            }
+
             String regex = XMLConfig.get(node, "@email-rx-cleaner", "[A-z][A-z0-9_\\-]*([.][A-z0-9_\\-]+)*[@][A-z0-9_\\-]+([.][A-z0-9_\\-]+)*[.][A-z]{2,4}");
             emailRxPattern = Pattern.compile(regex);
 
@@ -106,6 +148,7 @@ public abstract class BaseReceiveMailOperation extends BaseMailOperation {
 
             if (!dynamicServer) {
                 store = session.getStore(getProtocol());
+                mailSession = session;
             }
 
             return session;
@@ -137,11 +180,7 @@ public abstract class BaseReceiveMailOperation extends BaseMailOperation {
         try  {
 
             localStore = getStore(gvBuffer);
-            if (performLogin) {
-                localStore.connect(serverHost, loginUser, loginPassword);
-            } else {
-                localStore.connect();
-            }
+            connect(localStore);
 
             if (validateOnly || Boolean.valueOf(gvBuffer.getProperty("VALIDATE_MAIL_PROPERTIES"))) {
 
@@ -179,6 +218,22 @@ public abstract class BaseReceiveMailOperation extends BaseMailOperation {
         }
     }
 
+    /**
+     * Connects the given Store with the current credentials
+     * 
+     * @param locStore
+     * javax.mail.Store
+     * @throws MessagingException
+     */
+    protected void connect(Store locStore) throws MessagingException {
+
+        if (performLogin) {
+            locStore.connect(serverHost, loginUser, loginPassword);
+        } else {
+            locStore.connect();
+        }
+    }
+
     /**
      * Abstract method for receiving mails
      * 
@@ -246,6 +301,7 @@ public abstract class BaseReceiveMailOperation extends BaseMailOperation {
             }
 
             Store locStore = session.getStore(getProtocol());
+            mailSession = session;
 
             postStore(locStore, data);
 
@@ -259,6 +315,114 @@ public abstract class BaseReceiveMailOperation extends BaseMailOperation {
         }
     }
 
+    /**
+     * The items retrieved for each message in a single round trip
+     * 
+     * @return the FetchProfile
+     */
+    protected FetchProfile getFetchProfile() {
+
+        FetchProfile fp = new FetchProfile();
+        fp.add(FetchProfile.Item.ENVELOPE);
+        fp.add(FetchProfile.Item.FLAGS);
+        fp.add(FetchProfile.Item.SIZE);
+        fp.add(UIDFolder.FetchProfileItem.UID);
+        fp.add("X-Mailer");
+        return fp;
+    }
+
+    /**
+     * Fetches the window of messages starting at the given index
+     * 
+     * @param folder
+     * the open folder
+     * @param msgs
+     * the messages to read
+     * @param start
+     * the index of the first message of the window
+     * @return the index following the last message of the window
+     * @throws MessagingException
+     */
+    protected int fetchWindow(Folder folder, Message[] msgs, int start) throws MessagingException {
+
+        int end = (fetchSize > 0) ? Math.min(start + fetchSize, msgs.length) : msgs.length;
+        if ((start == 0) && (end == msgs.length)) {
+            folder.fetch(msgs, getFetchProfile());
+        } else {
+            folder.fetch(Arrays.copyOfRange(msgs, start, end), getFetchProfile());
+        }
+        logger.debug("Fetched messages [" + start + ", " + end + ") of " + msgs.length);
+        return end;
+    }
+
+    /**
+     * Dumps a message, and its EML if configured, in a new Message element
+     * 
+     * @param m
+     * the message
+     * @param parent
+     * the element to append the message to
+     * @param xml
+     * @return the Message element
+     * @throws Exception
+     */
+    protected Element dumpMessage(Message m, Element parent, XMLUtils xml) throws Exception {
+
+        Element msg = xml.insertElement(parent, "Message");
+        dumpPart(m, msg, xml);
+        if (exportEML) {
+            Element eml = xml.insertElement(msg, "EML");
+            xml.setAttribute(eml, "encoding", "base64");
+
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            m.writeTo(os);
+
+            xml.insertText(eml, Base64.getEncoder().encodeToString(os.toByteArray()));
+            os.flush();
+            os.close();
+        }
+        return msg;
+    }
+
+    /**
+     * Returns the pool forwarding the messages when
+     * <code>@output-mode="forward"</code>
+     * 
+     * @return the GreenVulcanoPool
+     * @throws Exception
+     */
+    protected GreenVulcanoPool getForwardPool() throws Exception {
+
+        return GreenVulcanoPoolManager.instance()
+                .getGreenVulcanoPool("ReceiveMail")
+                .orElseGet(GreenVulcanoPoolManager::getDefaultGreenVulcanoPool);
+    }
+
+    /**
+     * Forwards a MailMessages document, in a copy of the input GVBuffer, to
+     * the configured flow
+     * 
+     * @param greenVulcano
+     * the forward pool
+     * @param data
+     * the input GVBuffer
+     * @param doc
+     * the MailMessages document
+     * @param index
+     * the index of the message in the current read
+     * @throws Exception
+     */
+    protected void forwardMessage(GreenVulcanoPool greenVulcano, GVBuffer data, Document doc, int index) throws Exception {
+
+        GVBuffer msgBuffer = new GVBuffer(data, false);
+        if (forwardSystem != null) {
+            msgBuffer.setSystem(forwardSystem);
+        }
+        msgBuffer.setObject(doc);
+        msgBuffer.setProperty("MAIL_MESSAGE_INDEX", String.valueOf(index));
+        greenVulcano.forward(msgBuffer, forwardOperation);
+    }
+
     /**
      * Generate dump Part of message
      * 
@@ -20,12 +20,17 @@
 
 package it.greenvulcano.gvesb.virtual.imap;
 
-import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.mail.FetchProfile;
 import javax.mail.Flags;
@@ -41,7 +46,6 @@ import javax.mail.search.SearchTerm;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
 import com.sun.mail.imap.IMAPFolder;
@@ -50,13 +54,21 @@ import com.sun.mail.imap.SortTerm;
 
 import it.greenvulcano.configuration.XMLConfig;
 import it.greenvulcano.gvesb.buffer.GVBuffer;
+import it.greenvulcano.gvesb.core.pool.GreenVulcanoPool;
 import it.greenvulcano.gvesb.virtual.InitializationException;
 import it.greenvulcano.gvesb.virtual.commons.BaseReceiveMailOperation;
+import it.greenvulcano.util.thread.BaseThreadFactory;
 import it.greenvulcano.util.xml.XMLUtils;
 
 /**
  * Check for emails on IMAP server.
  *
+ * With <code>@fetch-threads</code> greater than 1 the windows of
+ * <code>@fetch-size</code> messages are read in parallel, each thread on its
+ * own connection to the server; the messages keep the search order in the
+ * output document, while in <code>forward</code> output mode the order of
+ * the forwards between different windows is not guaranteed.
+ *
  * @version 4.0.0 - Feb 2017
  * @author GreenVulcano Developer Team
  *
@@ -69,6 +81,7 @@ public class IMAPCallOperation extends BaseReceiveMailOperation {
     private String sortField = null;
     private boolean sortAscending = false;
     private List<SortTerm> sortingTerms = new ArrayList<SortTerm>();
+    private int fetchThreads = 1;
 
     /**
      * Invoked from <code>OperationFactory</code> when an <code>Operation</code>
@@ -89,6 +102,8 @@ public class IMAPCallOperation extends BaseReceiveMailOperation {
 
             sortAscending = XMLConfig.getBoolean(node, "@sort-ascending", false);
 
+            fetchThreads = XMLConfig.getInteger(node, "@fetch-threads", 1);
+
             if (!sortAscending) {
                 sortingTerms.add(SortTerm.REVERSE);
             }
@@ -200,37 +215,37 @@ public class IMAPCallOperation extends BaseReceiveMailOperation {
                     msgs = folder.search(new FlagTerm(f, false));
                 }
 
-                FetchProfile fp = new FetchProfile();
-                fp.add(FetchProfile.Item.ENVELOPE);
-                fp.add(UIDFolder.FetchProfileItem.UID);
-                fp.add("X-Mailer");
-                folder.fetch(msgs, fp);
+                if ((maxReadMessages != -1) && (msgs.length > maxReadMessages)) {
+                    msgs = Arrays.copyOf(msgs, maxReadMessages);
+                }
 
                 xml = XMLUtils.getParserInstance();
-                Document doc = xml.newDocument("MailMessages");
-                for (int i = 0; i < msgs.length; i++) {
-                    if ((maxReadMessages != -1) && (messageCount == maxReadMessages)) {
-                        break;
-                    }
-                    Element msg = xml.insertElement(doc.getDocumentElement(), "Message");
-                    dumpPart(msgs[i], msg, xml);
-                    if (exportEML) {
-                        Element eml = xml.insertElement(msg, "EML");
-                        xml.setAttribute(eml, "encoding", "base64");
-                        ByteArrayOutputStream os = new ByteArrayOutputStream();
-
-                        msgs[i].writeTo(os);
-
-                        xml.insertText(eml, Base64.getEncoder().encodeToString(os.toByteArray()));
-                        os.flush();
-                        os.close();
-                    }
+                Document doc = forwardMessages ? null : xml.newDocument("MailMessages");
+                GreenVulcanoPool greenVulcano = forwardMessages ? getForwardPool() : null;
+                if ((fetchThreads > 1) && (msgs.length > 1) && (folder instanceof UIDFolder)) {
+                    messageCount = receiveParallel(folder, msgs, data, doc, greenVulcano);
+                    folder.setFlags(msgs, new Flags(Flags.Flag.SEEN), true);
+                    seen.addAll(Arrays.asList(msgs));
+                } else {
+                    int fetched = 0;
+                    for (int i = 0; i < msgs.length; i++) {
+                        if (i == fetched) {
+                            fetched = fetchWindow(folder, msgs, i);
+                        }
+                        if (forwardMessages) {
+                            Document msgDoc = xml.newDocument("MailMessages");
+                            dumpMessage(msgs[i], msgDoc.getDocumentElement(), xml);
+                            forwardMessage(greenVulcano, data, msgDoc, messageCount);
+                        } else {
+                            dumpMessage(msgs[i], doc.getDocumentElement(), xml);
+                        }
 
-                    msgs[i].setFlag(Flags.Flag.SEEN, true);
-                    seen.add(msgs[i]);
-                    messageCount++;
+                        msgs[i].setFlag(Flags.Flag.SEEN, true);
+                        seen.add(msgs[i]);
+                        messageCount++;
+                    }
                 }
-                if (messageCount > 0) {
+                if ((messageCount > 0) && !forwardMessages) {
                     data.setObject(doc);
                 }
 
@@ -247,4 +262,120 @@ public class IMAPCallOperation extends BaseReceiveMailOperation {
 
         return data;
     }
+
+    /**
+     * Reads the messages in windows of <code>fetchSize</code> messages, on
+     * <code>fetchThreads</code> parallel connections to the server.
+     * The windows are dumped in separate documents, then appended in order to
+     * the output document.
+     *
+     * @param folder
+     * the open folder
+     * @param msgs
+     * the messages to read
+     * @param data
+     * the input GVBuffer
+     * @param doc
+     * the output document, null in forward output mode
+     * @param greenVulcano
+     * the forward pool, null in document output mode
+     * @return the number of messages read, the ones removed meanwhile are
+     * skipped
+     * @throws Exception
+     */
+    private int receiveParallel(Folder folder, Message[] msgs, GVBuffer data, Document doc,
+            GreenVulcanoPool greenVulcano) throws Exception {
+
+        FetchProfile fp = new FetchProfile();
+        fp.add(UIDFolder.FetchProfileItem.UID);
+        folder.fetch(msgs, fp);
+
+        UIDFolder uidFolder = (UIDFolder) folder;
+        long[] uids = new long[msgs.length];
+        for (int i = 0; i < msgs.length; i++) {
+            uids[i] = uidFolder.getUID(msgs[i]);
+        }
+
+        int windowSize = (fetchSize > 0) ? fetchSize : (msgs.length + fetchThreads - 1) / fetchThreads;
+        int windows = (msgs.length + windowSize - 1) / windowSize;
+        int threads = Math.min(fetchThreads, windows);
+        Document[] windowDocs = new Document[windows];
+        AtomicInteger nextWindow = new AtomicInteger(0);
+        AtomicInteger read = new AtomicInteger(0);
+
+        logger.debug("Reading " + msgs.length + " messages in " + windows + " windows on " + threads + " connections");
+        Callable<Void> worker = () -> {
+            Store workerStore = mailSession.getStore(getProtocol());
+            XMLUtils workerXml = null;
+            try {
+                connect(workerStore);
+                Folder workerFolder = workerStore.getFolder(mbox);
+                // READ_ONLY: the SEEN flag is set on the main connection
+                workerFolder.open(Folder.READ_ONLY);
+                workerXml = XMLUtils.getParserInstance();
+                int w;
+                while ((w = nextWindow.getAndIncrement()) < windows) {
+                    int start = w * windowSize;
+                    long[] windowUids = Arrays.copyOfRange(uids, start, Math.min(start + windowSize, uids.length));
+                    Message[] windowMsgs = ((UIDFolder) workerFolder).getMessagesByUID(windowUids);
+                    windowMsgs = Arrays.stream(windowMsgs).filter(m -> m != null).toArray(Message[]::new);
+                    read.addAndGet(windowMsgs.length);
+                    workerFolder.fetch(windowMsgs, getFetchProfile());
+
+                    Document windowDoc = workerXml.newDocument("MailMessages");
+                    for (int i = 0; i < windowMsgs.length; i++) {
+                        if (forwardMessages) {
+                            Document msgDoc = workerXml.newDocument("MailMessages");
+                            dumpMessage(windowMsgs[i], msgDoc.getDocumentElement(), workerXml);
+                            forwardMessage(greenVulcano, data, msgDoc, start + i);
+                        } else {
+                            dumpMessage(windowMsgs[i], windowDoc.getDocumentElement(), workerXml);
+                        }
+                    }
+                    windowDocs[w] = windowDoc;
+                }
+                workerFolder.close(false);
+            } finally {
+                XMLUtils.releaseParserInstance(workerXml);
+                try {
+                    workerStore.close();
+                } catch (MessagingException exc) {
+                    logger.error("Error closing mail Store", exc);
+                }
+            }
+            return null;
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new BaseThreadFactory("IMAPCallOperation#" + serverHost + "#" + mbox, true));
+        try {
+            List<Future<Void>> workers = new ArrayList<Future<Void>>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(executor.submit(worker));
+            }
+            for (Future<Void> result : workers) {
+                try {
+                    result.get();
+                } catch (ExecutionException exc) {
+                    if (exc.getCause() instanceof Exception) {
+                        throw (Exception) exc.getCause();
+                    }
+                    throw exc;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (doc != null) {
+            for (Document windowDoc : windowDocs) {
+                Node msg = windowDoc.getDocumentElement().getFirstChild();
+                while (msg != null) {
+                    doc.getDocumentElement().appendChild(doc.importNode(msg, true));
+                    msg = msg.getNextSibling();
+                }
+            }
+        }
+        return read.get();
+    }
 }
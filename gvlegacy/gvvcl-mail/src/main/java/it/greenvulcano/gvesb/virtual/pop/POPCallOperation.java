@@ -20,30 +20,26 @@
 
 package it.greenvulcano.gvesb.virtual.pop;
 
-import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
 
-import javax.mail.FetchProfile;
 import javax.mail.Flags;
 import javax.mail.Folder;
 import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.Store;
-import javax.mail.UIDFolder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
 import com.sun.mail.pop3.POP3Store;
 
 import it.greenvulcano.gvesb.buffer.GVBuffer;
+import it.greenvulcano.gvesb.core.pool.GreenVulcanoPool;
 import it.greenvulcano.gvesb.virtual.InitializationException;
 import it.greenvulcano.gvesb.virtual.commons.BaseReceiveMailOperation;
 import it.greenvulcano.gvesb.virtual.pop.uidcache.UIDCache;
@@ -116,6 +112,7 @@ public class POPCallOperation extends BaseReceiveMailOperation {
     protected GVBuffer receiveMails(Store localStore, GVBuffer data) throws Exception {
 
         XMLUtils xml = null;
+        UIDCache uidCache = null;
         try {
             Folder folder = localStore.getDefaultFolder();
             if (folder == null) {
@@ -142,18 +139,18 @@ public class POPCallOperation extends BaseReceiveMailOperation {
             } else {
                 List<Message> seen = new ArrayList<Message>();
                 Message[] msgs = folder.getMessages();
-                FetchProfile fp = new FetchProfile();
-                fp.add(FetchProfile.Item.ENVELOPE);
-                fp.add(UIDFolder.FetchProfileItem.UID);
-                fp.add("X-Mailer");
-                folder.fetch(msgs, fp);
 
-                UIDCache uidCache = UIDCacheManagerFactory.getInstance().getUIDCache(cacheKey);
+                uidCache = UIDCacheManagerFactory.getInstance().getUIDCache(cacheKey);
 
                 xml = XMLUtils.getParserInstance();
-                Document doc = xml.newDocument("MailMessages");
+                Document doc = forwardMessages ? null : xml.newDocument("MailMessages");
+                GreenVulcanoPool greenVulcano = forwardMessages ? getForwardPool() : null;
+                int fetched = 0;
                 int i = 0;
                 while ((i < msgs.length) && ((maxReadMessages == -1) || (messageCount < maxReadMessages))) {
+                    if (i == fetched) {
+                        fetched = fetchWindow(folder, msgs, i);
+                    }
                     boolean skipMessage = false;
 
                     if (!delete_messages) {
@@ -169,27 +166,21 @@ public class POPCallOperation extends BaseReceiveMailOperation {
                         }
                     }
                     if (!skipMessage) {
-                        Element msg = xml.insertElement(doc.getDocumentElement(), "Message");
-                        dumpPart(msgs[i], msg, xml);
-                        messageCount++;
-                        if (exportEML) {
-                            Element eml = xml.insertElement(msg, "EML");
-                            xml.setAttribute(eml, "encoding", "base64");
-
-                            ByteArrayOutputStream os = new ByteArrayOutputStream();
-                            msgs[i].writeTo(os);
-
-                            xml.insertText(eml, Base64.getEncoder().encodeToString(os.toByteArray()));
-                            os.flush();
-                            os.close();
+                        if (forwardMessages) {
+                            Document msgDoc = xml.newDocument("MailMessages");
+                            dumpMessage(msgs[i], msgDoc.getDocumentElement(), xml);
+                            forwardMessage(greenVulcano, data, msgDoc, messageCount);
+                        } else {
+                            dumpMessage(msgs[i], doc.getDocumentElement(), xml);
                         }
+                        messageCount++;
                     }
 
                     msgs[i].setFlag(Flags.Flag.SEEN, true);
                     seen.add(msgs[i]);
                     i++;
                 }
-                if (messageCount > 0) {
+                if ((messageCount > 0) && !forwardMessages) {
                     data.setObject(doc);
                 }
 
@@ -201,6 +192,10 @@ public class POPCallOperation extends BaseReceiveMailOperation {
             data.setProperty("POP_MESSAGE_COUNT", String.valueOf(messageCount));
             folder.close(expunge);
         } finally {
+            if (uidCache != null) {
+                // the UIDs read in this poll are written all at once
+                uidCache.flush();
+            }
             XMLUtils.releaseParserInstance(xml);
         }
 
@@ -20,8 +20,6 @@
 
 package it.greenvulcano.gvesb.virtual.pop.uidcache;
 
-import java.util.Set;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,24 +33,24 @@ public class FileUIDCache implements UIDCache
 {
     private static final Logger logger  = LoggerFactory.getLogger(FileUIDCache.class);
 
-    private String              key     = null;
-    private Set<String>         cache   = null;
-    private FileUIDCacheManager manager = null;
+    private String                          key     = null;
+    private FileUIDCacheManager.UIDJournal  journal = null;
+    private FileUIDCacheManager             manager = null;
 
 
     /**
      * 
      * @param key
      * 			the key of the UIDCache
-     * @param cache
-     * 			A Set<String> for a cache
+     * @param journal
+     * 			the journal holding the cache
      * @param manager
      * 			Instance of FileUIDCacheManager
      */	
-    public FileUIDCache(String key, Set<String> cache, FileUIDCacheManager manager)
+    FileUIDCache(String key, FileUIDCacheManager.UIDJournal journal, FileUIDCacheManager manager)
     {
         this.key = key;
-        this.cache = cache;
+        this.journal = journal;
         this.manager = manager;
     }
 
@@ -62,7 +60,10 @@ public class FileUIDCache implements UIDCache
     @Override
     public boolean contains(String uid)
     {
-        boolean found = cache.contains(uid);
+        boolean found = false;
+        synchronized (journal) {
+            found = journal.getUIDs().contains(uid);
+        }
         if (found) {
             logger.debug("Found UID [" + uid + "] in Cache [" + key + "]");
         }
@@ -75,15 +76,10 @@ public class FileUIDCache implements UIDCache
     @Override
     public void add(String uid)
     {
-        synchronized (cache) {
+        synchronized (journal) {
             logger.debug("Writing UID [" + uid + "] in Cache [" + key + "]");
-            cache.add(uid);
-            try {
-                manager.updateUIDCacheInt(key);
-            }
-            catch (Exception exc) {
-                // TODO: handle exception
-                logger.error("Error saving Cache [" + key + "] data.", exc);
+            if (journal.getUIDs().add(uid)) {
+                manager.record(journal, "+" + uid);
             }
         }
     }
@@ -93,17 +89,29 @@ public class FileUIDCache implements UIDCache
      */
     public boolean remove(String uid)
     {
-        synchronized (cache) {
+        synchronized (journal) {
             logger.debug("Deleting UID [" + uid + "] in Cache [" + key + "]");
-            boolean res = cache.remove(uid);
+            boolean res = journal.getUIDs().remove(uid);
+            if (res) {
+                manager.record(journal, "-" + uid);
+            }
+            return res;
+        }
+    }
+
+    /**
+     * Appends the pending changes to the cache journal
+     */
+    @Override
+    public void flush()
+    {
+        synchronized (journal) {
             try {
-                manager.updateUIDCacheInt(key);
+                manager.flush(journal);
             }
             catch (Exception exc) {
-                // TODO: handle exception
                 logger.error("Error saving Cache [" + key + "] data.", exc);
             }
-            return res;
         }
     }
 }
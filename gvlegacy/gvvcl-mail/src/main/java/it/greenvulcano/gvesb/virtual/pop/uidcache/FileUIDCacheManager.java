@@ -17,16 +17,24 @@
  * You should have received a copy of the GNU Lesser General Public License
  * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
  *******************************************************************************/
-
 package it.greenvulcano.gvesb.virtual.pop.uidcache;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -37,6 +45,13 @@ import it.greenvulcano.util.metadata.PropertiesHandler;
 /**
  * Keep track of read message's UID in a file.
  * 
+ * Each cache is held on an append-only journal of '+uid' and '-uid' records:
+ * the changes are buffered in memory and appended on <code>flush()</code>,
+ * or when more than <code>gv.pop.uidcache.flush.size</code> are pending, and
+ * the journal is compacted when the obsolete records outnumber the live ones.
+ * A record not terminated by a newline belongs to an interrupted append and
+ * is ignored when the journal is loaded.
+ * 
  * @version 4.0.0 - Feb 2017
  * @author GreenVulcano Developer Team
  */
@@ -46,13 +61,53 @@ public class FileUIDCacheManager implements UIDCacheManager
 
     private static final String          POP_CACHE_FOLDER_NAME    = "gv.pop.uidcache.folder";
     private static final String          POP_CACHE_READ_ALWAYS    = "gv.pop.uidcache.folder.read.always";
+    private static final String          POP_CACHE_FLUSH_SIZE     = "gv.pop.uidcache.flush.size";
+
+    private static final String          JOURNAL_EXT              = ".uidjournal";
+    private static final String          LEGACY_EXT               = ".uidcache";
 
-    private HashMap<String, Set<String>> popCacheMap              = new HashMap<String, Set<String>>();
+    /**
+     * The journal is compacted when it holds more than COMPACT_RATIO records
+     * for each live UID.
+     */
+    private static final int             COMPACT_RATIO            = 2;
+    private static final int             COMPACT_MIN              = 1024;
+
+    private HashMap<String, UIDJournal>  popCacheMap              = new HashMap<String, UIDJournal>();
     private String                       popCacheFolder           = System.getProperty(POP_CACHE_FOLDER_NAME,
                                                                           System.getProperty("java.io.tmpdir")
                                                                                   + File.separator + "GV_POP_CACHE");
     private boolean                      popCacheFolderReadAlways = Boolean.getBoolean(POP_CACHE_READ_ALWAYS);
+    private int                          popCacheFlushSize        = Integer.getInteger(POP_CACHE_FLUSH_SIZE, 1000);
 
+    /**
+     * In memory status of a cache journal.
+     */
+    static class UIDJournal
+    {
+        private final String       key;
+        private final File         file;
+        private final Set<String>  uids    = new HashSet<String>();
+        private final List<String> pending = new ArrayList<String>();
+        private int                records = 0;
+        private boolean            truncated = false;
+
+        UIDJournal(String key, File file)
+        {
+            this.key = key;
+            this.file = file;
+        }
+
+        String getKey()
+        {
+            return key;
+        }
+
+        Set<String> getUIDs()
+        {
+            return uids;
+        }
+    }
 
     /**
      * 
@@ -86,92 +141,175 @@ public class FileUIDCacheManager implements UIDCacheManager
     }
 
     /**
-     * Retrieve UIDCache from a file
+     * Retrieve UIDCache from the journal file, migrating the serialized cache
+     * file written by the previous versions
      * 
      * @param key
      * 			the key of the UIDCache
-     * @return Set<String>
-     * 			returns a Set<String> of UIDCache 
+     * @return the cache journal
      * @throws Exception
      */
-    @SuppressWarnings("unchecked")
-    private Set<String> getUIDCacheInt(String key) throws Exception
+    private UIDJournal getUIDCacheInt(String key) throws Exception
     {
-        Set<String> uidCache = popCacheMap.get(key);
-
-        if ((uidCache == null) || popCacheFolderReadAlways) {
-            uidCache = null;
-            String fileName = popCacheFolder + File.separator + key + ".uidcache";
-            File uidCacheFile = new File(fileName);
-            if (uidCacheFile.canRead()) {
-                ObjectInputStream in = null;
-                try {
-                    logger.debug("Reading POP Cache [" + key + "] from file [" + fileName + "]");
-                    in = new ObjectInputStream(new FileInputStream(uidCacheFile));
-                    uidCache = (HashSet<String>) in.readObject();
-                    popCacheMap.put(key, uidCache);
+        UIDJournal journal = popCacheMap.get(key);
+
+        if ((journal == null) || popCacheFolderReadAlways) {
+            if (journal != null) {
+                synchronized (journal) {
+                    // don't lose the changes not yet flushed
+                    flush(journal);
                 }
-                catch (Exception exc) {
-                    logger.error("Error reading POP cache file [" + fileName + "]", exc);
-                    // must rethrow Exception???
+            }
+            journal = new UIDJournal(key, new File(popCacheFolder, key + JOURNAL_EXT));
+            File legacyFile = new File(popCacheFolder, key + LEGACY_EXT);
+            try {
+                if (journal.file.exists()) {
+                    readJournal(journal);
                 }
-                finally {
-                    if (in != null) {
-                        try {
-                            in.close();
-                        }
-                        catch (Exception exc2) {
-                            // do nothing
-                        }
+                else if (legacyFile.canRead()) {
+                    readLegacy(journal, legacyFile);
+                    compact(journal);
+                    if (!legacyFile.delete()) {
+                        logger.warn("Unable to delete POP cache file [" + legacyFile + "]");
                     }
                 }
             }
-            else {
-                uidCache = new HashSet<String>();
-                popCacheMap.put(key, uidCache);
-                updateUIDCacheInt(key);
+            catch (Exception exc) {
+                logger.error("Error reading POP cache file [" + journal.file + "]", exc);
+                // must rethrow Exception???
+            }
+            popCacheMap.put(key, journal);
+        }
+
+        return journal;
+    }
+
+    private void readJournal(UIDJournal journal) throws Exception
+    {
+        logger.debug("Reading POP Cache [" + journal.key + "] from file [" + journal.file + "]");
+        boolean terminated = true;
+        try (RandomAccessFile raf = new RandomAccessFile(journal.file, "r")) {
+            if (raf.length() > 0) {
+                raf.seek(raf.length() - 1);
+                terminated = (raf.read() == '\n');
+            }
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(journal.file.toPath(), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while (line != null) {
+                String next = reader.readLine();
+                if ((next == null) && !terminated) {
+                    logger.warn("Ignoring the incomplete record [" + line + "] in POP cache file [" + journal.file
+                            + "]");
+                    // appending after the partial record would corrupt the next one
+                    journal.truncated = true;
+                }
+                else if (line.length() > 1) {
+                    journal.records++;
+                    if (line.charAt(0) == '+') {
+                        journal.uids.add(line.substring(1));
+                    }
+                    else if (line.charAt(0) == '-') {
+                        journal.uids.remove(line.substring(1));
+                    }
+                }
+                line = next;
             }
         }
+    }
 
-        return uidCache;
+    @SuppressWarnings("unchecked")
+    private void readLegacy(UIDJournal journal, File legacyFile) throws Exception
+    {
+        logger.debug("Migrating POP Cache [" + journal.key + "] from file [" + legacyFile + "]");
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(legacyFile))) {
+            journal.uids.addAll((Set<String>) in.readObject());
+        }
     }
 
     /**
-     * Update UIDCache data in a file
+     * Records a change of the cache, appending the pending changes to the
+     * journal if more than the configured threshold.
+     * Must be called holding the journal lock.
      * 
-     * @param key
-     * 			the key of the UIDCache
-     * @throws Exception
+     * @param journal
+     * 			the cache journal
+     * @param record
+     * 			the '+uid' or '-uid' record
      */
-    void updateUIDCacheInt(String key) throws Exception
+    void record(UIDJournal journal, String record)
     {
-        Set<String> uidCache = popCacheMap.get(key);
-
-        if (uidCache != null) {
-            String fileName = popCacheFolder + File.separator + key + ".uidcache";
-            File uidCacheFile = new File(fileName);
-            ObjectOutputStream out = null;
+        journal.pending.add(record);
+        if (journal.pending.size() >= popCacheFlushSize) {
             try {
-            	//TODO:
-                logger.debug("Writing POP Cache [" + key + "] on file [" + fileName + "]");
-                out = new ObjectOutputStream(new FileOutputStream(uidCacheFile));
-                out.writeObject(uidCache);
-                out.flush();
+                flush(journal);
             }
             catch (Exception exc) {
-                logger.error("Error writing POP cache file [" + fileName + "]", exc);
-                // must rethrow Exception???
+                logger.error("Error saving Cache [" + journal.key + "] data.", exc);
             }
-            finally {
-                if (out != null) {
-                    try {
-                        out.close();
-                    }
-                    catch (Exception exc2) {
-                        // do nothing
-                    }
-                }
+        }
+    }
+
+    /**
+     * Appends the pending changes to the journal file, compacting it if
+     * needed.
+     * Must be called holding the journal lock.
+     * 
+     * @param journal
+     * 			the cache journal
+     * @throws Exception
+     */
+    void flush(UIDJournal journal) throws Exception
+    {
+        if (journal.pending.isEmpty() && !journal.truncated) {
+            return;
+        }
+        int records = journal.records + journal.pending.size();
+        if (journal.truncated
+                || ((records > COMPACT_MIN) && (records > (COMPACT_RATIO * (journal.uids.size() + 1))))) {
+            compact(journal);
+        }
+        else {
+            append(journal);
+        }
+        journal.pending.clear();
+    }
+
+    private void append(UIDJournal journal) throws Exception
+    {
+        logger.debug("Appending " + journal.pending.size() + " records to POP Cache [" + journal.key + "] on file ["
+                + journal.file + "]");
+        try (FileOutputStream out = new FileOutputStream(journal.file, true);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            for (String record : journal.pending) {
+                writer.write(record);
+                writer.write('\n');
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+        journal.records += journal.pending.size();
+    }
+
+    private void compact(UIDJournal journal) throws Exception
+    {
+        File tmpFile = new File(journal.file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmpFile);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            for (String uid : journal.uids) {
+                writer.write('+');
+                writer.write(uid);
+                writer.write('\n');
             }
+            writer.flush();
+            out.getFD().sync();
         }
+        Files.move(tmpFile.toPath(), journal.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        journal.records = journal.uids.size();
+        journal.truncated = false;
+        logger.debug("Compacted POP Cache [" + journal.key + "] on file [" + journal.file + "]: "
+                + journal.uids.size() + " UIDs");
     }
 }
@@ -93,5 +93,13 @@ public class MemoryUIDCache implements UIDCache
         logger.debug("Deleting UID [" + uid + "] in Cache [" + key + "]");
         return cache.remove(uid);
     }
+
+    /**
+     * Nothing to do, the cache is held in memory only
+     */
+    public void flush()
+    {
+        // do nothing
+    }
     
 }
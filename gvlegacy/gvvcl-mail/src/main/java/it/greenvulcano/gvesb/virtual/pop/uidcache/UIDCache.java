@@ -56,4 +56,9 @@ public interface UIDCache
      * 			return true if an uid is removed from cache
      */
     public boolean remove(String uid);
+
+    /**
+     * Make persistent the changes done on the cache
+     */
+    public void flush();
 }
@@ -127,6 +127,7 @@ public class UIDCacheRemoveOperation implements CallOperation
                     logger.debug("NOT removed message id[" + id + "] from UIDCache[" + jndiName + "]");
                 }
             }
+            uidCache.flush();
             return gvBuffer;
         }
         catch (Exception e) {
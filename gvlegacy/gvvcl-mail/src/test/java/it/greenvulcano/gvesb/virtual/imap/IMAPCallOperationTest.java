@@ -178,6 +178,36 @@ public class IMAPCallOperationTest extends TestCase {
         }
     }
 
+    public final void testReadEmailParallel() throws Exception
+    {
+        Node node = XMLConfig.getNode("GVCore.xml", "//*[@name='ReadEmailsImapParallel']");
+        CallOperation op = new IMAPCallOperation();
+        op.init(node);
+
+        GVBuffer gvBuffer = new GVBuffer(TEST_SYSTEM, TEST_SERVICE);
+
+        for (int i = 1; i <= 5; i++) {
+            GreenMailUtil.sendTextEmail("test1@gv.com", "test@gv.com", TEST_SUBJECT + " " + i, TEST_MESSAGE + " " + i, SMTP);
+        }
+
+        XMLUtils xml = null;
+        try {
+            xml = XMLUtils.getParserInstance();
+            gvBuffer = op.perform(gvBuffer);
+            assertEquals("5", gvBuffer.getProperty("IMAP_MESSAGE_COUNT"));
+            Document doc = (Document) gvBuffer.getObject();
+            System.out.println("Received messages:\n" + xml.serializeDOM(doc, "UTF-8", false, true));
+            for (int i = 1; i <= 5; i++) {
+                Node msg = xml.selectSingleNode(doc, "/MailMessages/Message[" + i + "]");
+                assertEquals(TEST_SUBJECT + " " + i, xml.get(msg, "Subject"));
+                assertTrue(xml.get(msg, ".//PlainMessage").startsWith(TEST_MESSAGE + " " + i));
+            }
+        }
+        finally {
+            XMLUtils.releaseParserInstance(xml);
+        }
+    }
+
     /**
      * @see junit.framework.TestCase#tearDown()
      */
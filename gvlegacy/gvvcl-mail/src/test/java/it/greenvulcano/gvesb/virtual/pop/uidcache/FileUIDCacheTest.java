@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ *
+ * This file is part of GreenVulcano ESB.
+ *
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *  
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package it.greenvulcano.gvesb.virtual.pop.uidcache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class FileUIDCacheTest extends TestCase {
+
+    private static final String TEST_KEY = "TEST_CACHE";
+
+    private File                folder;
+
+    /**
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+        folder = Files.createTempDirectory("GV_POP_CACHE").toFile();
+        System.setProperty("gv.pop.uidcache.folder", folder.getAbsolutePath());
+    }
+
+    private File journalFile() {
+        return new File(folder, TEST_KEY + ".uidjournal");
+    }
+
+    public final void testFlushAndReload() throws Exception
+    {
+        UIDCache cache = new FileUIDCacheManager().getUIDCache(TEST_KEY);
+        cache.add("<uid1@gv.com>");
+        cache.add("<uid2@gv.com>");
+        cache.add("<uid3@gv.com>");
+        assertTrue(cache.remove("<uid2@gv.com>"));
+        assertFalse(journalFile().exists());
+        cache.flush();
+
+        List<String> records = Files.readAllLines(journalFile().toPath(), StandardCharsets.UTF_8);
+        assertEquals(4, records.size());
+
+        cache = new FileUIDCacheManager().getUIDCache(TEST_KEY);
+        assertTrue(cache.contains("<uid1@gv.com>"));
+        assertFalse(cache.contains("<uid2@gv.com>"));
+        assertTrue(cache.contains("<uid3@gv.com>"));
+    }
+
+    public final void testIncompleteRecordIgnored() throws Exception
+    {
+        UIDCache cache = new FileUIDCacheManager().getUIDCache(TEST_KEY);
+        cache.add("<uid1@gv.com>");
+        cache.add("<uid2@gv.com>");
+        cache.flush();
+
+        // crash in the middle of an append
+        Files.write(journalFile().toPath(), "+<uid3@gv".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        cache = new FileUIDCacheManager().getUIDCache(TEST_KEY);
+        assertTrue(cache.contains("<uid1@gv.com>"));
+        assertTrue(cache.contains("<uid2@gv.com>"));
+        assertFalse(cache.contains("<uid3@gv"));
+
+        // the next flush must not append to the partial record
+        cache.add("<uid4@gv.com>");
+        cache.flush();
+
+        cache = new FileUIDCacheManager().getUIDCache(TEST_KEY);
+        assertTrue(cache.contains("<uid1@gv.com>"));
+        assertTrue(cache.contains("<uid2@gv.com>"));
+        assertTrue(cache.contains("<uid4@gv.com>"));
+        assertEquals(3, Files.readAllLines(journalFile().toPath(), StandardCharsets.UTF_8).size());
+    }
+
+    public final void testInterruptedCompaction() throws Exception
+    {
+        UIDCache cache = new FileUIDCacheManager().getUIDCache(TEST_KEY);
+        cache.add("<uid1@gv.com>");
+        cache.flush();
+
+        // crash before the compacted journal replaces the current one
+        File tmpFile = new File(journalFile().getPath() + ".tmp");
+        Files.write(tmpFile.toPath(), "+<uid2@gv.com>\n".getBytes(StandardCharsets.UTF_8));
+
+        cache = new FileUIDCacheManager().getUIDCache(TEST_KEY);
+        assertTrue(cache.contains("<uid1@gv.com>"));
+        assertFalse(cache.contains("<uid2@gv.com>"));
+    }
+
+    public final void testCompaction() throws Exception
+    {
+        UIDCache cache = new FileUIDCacheManager().getUIDCache(TEST_KEY);
+        for (int i = 0; i < 2000; i++) {
+            cache.add("<uid" + i + "@gv.com>");
+            cache.flush();
+            if (i > 0) {
+                cache.remove("<uid" + (i - 1) + "@gv.com>");
+            }
+        }
+        cache.flush();
+
+        assertTrue(Files.readAllLines(journalFile().toPath(), StandardCharsets.UTF_8).size() <= 1025);
+
+        cache = new FileUIDCacheManager().getUIDCache(TEST_KEY);
+        assertTrue(cache.contains("<uid1999@gv.com>"));
+        assertFalse(cache.contains("<uid1998@gv.com>"));
+    }
+
+    public final void testLegacyMigration() throws Exception
+    {
+        Set<String> legacy = new HashSet<String>();
+        legacy.add("<uid1@gv.com>");
+        legacy.add("<uid2@gv.com>");
+        File legacyFile = new File(folder, TEST_KEY + ".uidcache");
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(legacyFile))) {
+            out.writeObject(legacy);
+        }
+
+        UIDCache cache = new FileUIDCacheManager().getUIDCache(TEST_KEY);
+        assertTrue(cache.contains("<uid1@gv.com>"));
+        assertTrue(cache.contains("<uid2@gv.com>"));
+        assertFalse(legacyFile.exists());
+        assertEquals(2, Files.readAllLines(journalFile().toPath(), StandardCharsets.UTF_8).size());
+    }
+
+    /**
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+        System.clearProperty("gv.pop.uidcache.folder");
+        super.tearDown();
+    }
+
+}
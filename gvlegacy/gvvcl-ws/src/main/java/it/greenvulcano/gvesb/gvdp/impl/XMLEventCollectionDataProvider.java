@@ -24,12 +24,14 @@ import it.greenvulcano.expression.ExpressionEvaluatorHelper;
 import it.greenvulcano.gvesb.gvdp.AbstractDataProvider;
 import it.greenvulcano.gvesb.gvdp.DataProviderException;
 import it.greenvulcano.gvesb.gvdp.FieldExpressionKey;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamReader;
 
 import org.apache.axiom.om.OMElement;
@@ -37,6 +39,11 @@ import org.apache.axiom.om.OMElement;
 /**
  * This data provider provides a collection of objects constructed using XML
  * events.
+ * <p>
+ * Only the event types having a configured field are processed. With an
+ * {@link EventSink} passed to {@link #setObject(Object, EventSink)}, the
+ * objects are pushed to the sink as soon as they are added to the output
+ * collection, so the whole collection is never held in memory.
  *
  * @version 3.0.0 Mar 22, 2010
  * @author GreenVulcano Developer Team
@@ -56,7 +63,76 @@ public class XMLEventCollectionDataProvider extends AbstractDataProvider
      */
     protected static final String PARSER_KEY         = "parser";
 
+    /**
+     * The names of the fields processed on each XML event type.
+     */
+    private static final String[] EVENT_NAMES        = new String[XMLStreamConstants.ENTITY_DECLARATION + 1];
+
+    static {
+        EVENT_NAMES[XMLStreamConstants.START_DOCUMENT] = "START_DOCUMENT";
+        EVENT_NAMES[XMLStreamConstants.END_DOCUMENT] = "END_DOCUMENT";
+        EVENT_NAMES[XMLStreamConstants.NAMESPACE] = "NAMESPACE";
+        EVENT_NAMES[XMLStreamConstants.PROCESSING_INSTRUCTION] = "PROCESSING_INSTRUCTION";
+        EVENT_NAMES[XMLStreamConstants.ENTITY_REFERENCE] = "ENTITY_REFERENCE";
+        EVENT_NAMES[XMLStreamConstants.DTD] = "DTD";
+        EVENT_NAMES[XMLStreamConstants.ATTRIBUTE] = "ATTRIBUTE";
+        EVENT_NAMES[XMLStreamConstants.START_ELEMENT] = "START_ELEMENT";
+        EVENT_NAMES[XMLStreamConstants.END_ELEMENT] = "END_ELEMENT";
+        EVENT_NAMES[XMLStreamConstants.CHARACTERS] = "CHARACTERS";
+    }
+
+    /**
+     * Receives the objects built from the XML events, in streaming mode.
+     */
+    public interface EventSink
+    {
+        /**
+         * @param item
+         *        an object added to the output collection
+         * @throws Exception
+         */
+        void push(Object item) throws Exception;
+    }
+
     private List<Object>          internalCollection = null;
+    private EventSink             sink               = null;
+    private EventHandler[]        handlers           = null;
+    private boolean               handlersResolved   = false;
+
+    /**
+     * Processes the given object in streaming mode: the objects added to the
+     * output collection are pushed to the given sink and not retained. The
+     * sink is used by this call only.
+     * <p>
+     * The streaming output collection only supports <code>add()</code>: its
+     * <code>size()</code> is always 0 and <code>get()</code> fails, so the OUT
+     * expressions must not read it.
+     *
+     * @param object
+     * @param sink
+     * @throws Exception
+     */
+    public void setObject(Object object, EventSink sink) throws Exception
+    {
+        this.sink = sink;
+        try {
+            internalCollection = null;
+            setObject(object);
+        }
+        finally {
+            this.sink = null;
+        }
+    }
+
+    /**
+     * @return the number of objects pushed to the sink by the last
+     *         <code>setObject(Object, EventSink)</code>, or -1 if not in
+     *         streaming mode
+     */
+    public long getPushedCount()
+    {
+        return (internalCollection instanceof SinkList) ? ((SinkList) internalCollection).pushed : -1;
+    }
 
     /**
      * @see it.greenvulcano.gvesb.gvdp.AbstractDataProvider#getInternalObject()
@@ -109,7 +185,7 @@ public class XMLEventCollectionDataProvider extends AbstractDataProvider
         }
         addToContext(INPUT_OBJECT_KEY, object);
         if (internalCollection == null) {
-            internalCollection = new ArrayList<Object>();
+            internalCollection = (sink != null) ? new SinkList(sink) : new ArrayList<Object>();
         }
         addToContext(OUTPUT_OBJECT_KEY, internalCollection);
         Map<String, Object> environment = new HashMap<String, Object>();
@@ -120,53 +196,19 @@ public class XMLEventCollectionDataProvider extends AbstractDataProvider
                     sourceSelector, object);
         }
         try {
-            if (sourceObject instanceof OMElement) {
+            EventHandler[] handlers = getHandlers();
+            if ((handlers != null) && (sourceObject instanceof OMElement)) {
                 XMLStreamReader parser = ((OMElement) sourceObject).getXMLStreamReaderWithoutCaching();
                 addToContext(PARSER_KEY, parser);
+                ExpressionEvaluator[] evaluators = new ExpressionEvaluator[handlers.length];
                 while (parser.hasNext()) {
-                    String field = null;
-                    switch (parser.next()) {
-                        case XMLStreamReader.START_DOCUMENT :{
-                            field = "START_DOCUMENT";
-                        }
-                            break;
-                        case XMLStreamReader.END_DOCUMENT :{
-                            field = "END_DOCUMENT";
-                        }
-                            break;
-                        case XMLStreamReader.NAMESPACE :{
-                            field = "NAMESPACE";
-                        }
-                            break;
-                        case XMLStreamReader.PROCESSING_INSTRUCTION :{
-                            field = "PROCESSING_INSTRUCTION";
-                        }
-                            break;
-                        case XMLStreamReader.ENTITY_REFERENCE :{
-                            field = "ENTITY_REFERENCE";
-                        }
-                            break;
-                        case XMLStreamReader.DTD :{
-                            field = "DTD";
-                        }
-                            break;
-                        case XMLStreamReader.ATTRIBUTE :{
-                            field = "ATTRIBUTE";
-                        }
-                            break;
-                        case XMLStreamReader.START_ELEMENT :{
-                            field = "START_ELEMENT";
-                        }
-                            break;
-                        case XMLStreamReader.END_ELEMENT :{
-                            field = "END_ELEMENT";
-                        }
-                            break;
-                        case XMLStreamReader.CHARACTERS :{
-                            field = "CHARACTERS";
+                    int event = parser.next();
+                    if ((event < handlers.length) && (handlers[event] != null)) {
+                        if (evaluators[event] == null) {
+                            evaluators[event] = getExpressionEvaluator(handlers[event].key.getExpressionType());
                         }
+                        processField(sourceObject, handlers[event], evaluators[event]);
                     }
-                    processField(sourceObject, getFieldKey(field));
                 }
             }
         }
@@ -181,29 +223,56 @@ public class XMLEventCollectionDataProvider extends AbstractDataProvider
         }
     }
 
-    private void processField(Object sourceObject, FieldExpressionKey key) throws Exception
+    /**
+     * Resolves, once for this instance, the field configured for each XML
+     * event type.
+     *
+     * @return the handlers indexed by event type, or null if no event has a
+     *         configured field
+     */
+    private EventHandler[] getHandlers() throws Exception
     {
-        if (key != null) {
-            ExpressionEvaluator expressionEvaluator = getExpressionEvaluator(key.getExpressionType());
-            final String expression = key.getExpression();
-            final String fieldId = key.getFieldId();
-            logger.debug("Working on field " + fieldId + " with expression " + expression);
-            switch (key.getDirection()) {
-                case INOUT :{
-                    Object inputValue = expressionEvaluator.getValue(expression, sourceObject);
-                    addToContext("key_" + fieldId, inputValue);
-                    setValue(key, inputValue);
-                }
-                    break;
-                case IN :{
-                    Object inputValue = expressionEvaluator.getValue(expression, sourceObject);
-                    addToContext("key_" + fieldId, inputValue);
-                }
-                    break;
-                case OUT :{
-                    expressionEvaluator.getValue(expression, getResult());
+        if (!handlersResolved) {
+            EventHandler[] table = new EventHandler[EVENT_NAMES.length];
+            boolean found = false;
+            for (int event = 0; event < EVENT_NAMES.length; event++) {
+                if (EVENT_NAMES[event] != null) {
+                    FieldExpressionKey key = getFieldKey(EVENT_NAMES[event]);
+                    if (key != null) {
+                        table[event] = new EventHandler(key);
+                        found = true;
+                    }
                 }
             }
+            handlers = found ? table : null;
+            handlersResolved = true;
+        }
+        return handlers;
+    }
+
+    private void processField(Object sourceObject, EventHandler handler, ExpressionEvaluator expressionEvaluator)
+            throws Exception
+    {
+        FieldExpressionKey key = handler.key;
+        final String expression = key.getExpression();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Working on field " + key.getFieldId() + " with expression " + expression);
+        }
+        switch (key.getDirection()) {
+            case INOUT :{
+                Object inputValue = expressionEvaluator.getValue(expression, sourceObject);
+                addToContext(handler.contextKey, inputValue);
+                setValue(key, inputValue);
+            }
+                break;
+            case IN :{
+                Object inputValue = expressionEvaluator.getValue(expression, sourceObject);
+                addToContext(handler.contextKey, inputValue);
+            }
+                break;
+            case OUT :{
+                expressionEvaluator.getValue(expression, getResult());
+            }
         }
     }
 
@@ -215,7 +284,13 @@ public class XMLEventCollectionDataProvider extends AbstractDataProvider
 	@Override
     public void setValue(FieldExpressionKey fieldExpressionKey, Object value) throws Exception
     {
-        if (value instanceof List<?>) {
+        if ((internalCollection instanceof SinkList) && ((value instanceof List<?>) || (value instanceof Object[]))) {
+            List<?> values = (value instanceof List<?>) ? (List<?>) value : Arrays.asList((Object[]) value);
+            for (Object item : values) {
+                internalCollection.add(item);
+            }
+        }
+        else if (value instanceof List<?>) {
             internalCollection = (List<Object>) value;
         }
         else if (value instanceof Object[]) {
@@ -229,4 +304,58 @@ public class XMLEventCollectionDataProvider extends AbstractDataProvider
                     {"failingClass", value == null ? "NULL" : value.getClass().getName()}});
         }
     }
+
+    private static final class EventHandler
+    {
+        private final FieldExpressionKey key;
+        private final String             contextKey;
+
+        EventHandler(FieldExpressionKey key)
+        {
+            this.key = key;
+            this.contextKey = "key_" + key.getFieldId();
+        }
+    }
+
+    /**
+     * Output collection forwarding the added objects to the sink.
+     */
+    private static final class SinkList extends AbstractList<Object>
+    {
+        private final EventSink sink;
+        private long            pushed = 0;
+
+        SinkList(EventSink sink)
+        {
+            this.sink = sink;
+        }
+
+        @Override
+        public boolean add(Object item)
+        {
+            try {
+                sink.push(item);
+            }
+            catch (RuntimeException exc) {
+                throw exc;
+            }
+            catch (Exception exc) {
+                throw new IllegalStateException("Error pushing object to sink", exc);
+            }
+            pushed++;
+            return true;
+        }
+
+        @Override
+        public Object get(int index)
+        {
+            throw new IndexOutOfBoundsException("Streaming collection: objects are pushed to the sink and not retained");
+        }
+
+        @Override
+        public int size()
+        {
+            return 0;
+        }
+    }
 }
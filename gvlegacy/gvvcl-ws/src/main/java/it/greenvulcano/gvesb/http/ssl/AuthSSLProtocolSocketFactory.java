@@ -70,6 +70,9 @@ import javax.net.SocketFactory;
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509TrustManager;
@@ -208,6 +211,14 @@ import org.slf4j.LoggerFactory;
  * </pre>
  *
  * </p>
+ * <p>
+ * The SSLContext is shared, through {@link SSLContextCache}, by all the
+ * factories using the same keystore and truststore, so the keystores are
+ * parsed once and the TLS sessions are resumed across the factories. The
+ * client session cache holds at most <code>gv.ssl.session.cache-size</code>
+ * (default 1000) sessions, each valid for
+ * <code>gv.ssl.session.timeout</code> (default 3600) seconds.
+ * </p>
  *
  * @author <a href="mailto:oleg -at- ural.ru">Oleg Kalnichevski</a>
  *
@@ -226,12 +237,14 @@ public class AuthSSLProtocolSocketFactory implements ProtocolSocketFactory
 {
 
     /** Log object for this class. */
-    private static final Logger logger       = LoggerFactory.getLogger(AuthSSLProtocolSocketFactory.class);
+    private static final Logger logger             = LoggerFactory.getLogger(AuthSSLProtocolSocketFactory.class);
 
-    private String              keystoreID   = null;
-    private String              keyPassword  = null;
-    private String              truststoreID = null;
-    private SSLContext          sslcontext   = null;
+    private static final int    SESSION_CACHE_SIZE = Integer.getInteger("gv.ssl.session.cache-size", 1000);
+    private static final int    SESSION_TIMEOUT    = Integer.getInteger("gv.ssl.session.timeout", 3600);
+
+    private String              keystoreID         = null;
+    private String              keyPassword        = null;
+    private String              truststoreID       = null;
 
     /**
      * Constructor for AuthSSLProtocolSocketFactory. Either a keystore or
@@ -347,6 +360,11 @@ public class AuthSSLProtocolSocketFactory implements ProtocolSocketFactory
             }
             SSLContext sslctx = SSLContext.getInstance("SSL");
             sslctx.init(keymanagers, trustmanagers, null);
+            SSLSessionContext sessionContext = sslctx.getClientSessionContext();
+            if (sessionContext != null) {
+                sessionContext.setSessionCacheSize(SESSION_CACHE_SIZE);
+                sessionContext.setSessionTimeout(SESSION_TIMEOUT);
+            }
             return sslctx;
         }
         catch (NoSuchAlgorithmException e) {
@@ -367,12 +385,49 @@ public class AuthSSLProtocolSocketFactory implements ProtocolSocketFactory
         }
     }
 
-    private SSLContext getSSLContext()
+    /**
+     * @return the SSLContext shared, through {@link SSLContextCache}, by the
+     *         factories using the same keystores
+     */
+    public SSLContext getSSLContext()
+    {
+        return SSLContextCache.instance().getSSLContext(this.keystoreID, this.truststoreID, this.keyPassword,
+                this::createSSLContext);
+    }
+
+    /**
+     * Performs the handshake on the new socket, recording its duration.
+     *
+     * @param socket
+     * @return the given socket
+     * @throws IOException
+     */
+    private static Socket handshake(final Socket socket) throws IOException
     {
-        if (this.sslcontext == null) {
-            this.sslcontext = createSSLContext();
+        if (!(socket instanceof SSLSocket)) {
+            return socket;
+        }
+        SSLSocket sslSocket = (SSLSocket) socket;
+        SSLContextCache cache = SSLContextCache.instance();
+        long startTime = System.currentTimeMillis();
+        long start = System.nanoTime();
+        try {
+            sslSocket.startHandshake();
         }
-        return this.sslcontext;
+        catch (IOException exc) {
+            cache.recordHandshakeFailure();
+            try {
+                sslSocket.close();
+            }
+            catch (IOException closeExc) {
+                // do nothing
+            }
+            throw exc;
+        }
+        // a resumed session keeps its original creation time
+        boolean resumed = sslSocket.getSession().getCreationTime() < startTime;
+        cache.recordHandshake(System.nanoTime() - start, resumed);
+        return sslSocket;
     }
 
     /**
@@ -413,17 +468,30 @@ public class AuthSSLProtocolSocketFactory implements ProtocolSocketFactory
                 throw new IllegalArgumentException("Parameters may not be null");
             }
             int timeout = params.getConnectionTimeout();
-            SocketFactory socketfactory = getSSLContext().getSocketFactory();
+            SSLSocketFactory socketfactory = getSSLContext().getSocketFactory();
+            Socket socket = null;
             if (timeout == 0) {
-                return socketfactory.createSocket(host, port, localAddress, localPort);
+                socket = socketfactory.createSocket(host, port, localAddress, localPort);
             }
-
-            Socket socket = socketfactory.createSocket();
-            SocketAddress localaddr = new InetSocketAddress(localAddress, localPort);
-            SocketAddress remoteaddr = new InetSocketAddress(host, port);
-            socket.bind(localaddr);
-            socket.connect(remoteaddr, timeout);
-            return socket;
+            else {
+                // connected as plain socket and then layered, so the session
+                // is cached and resumed by host and port
+                Socket plainSocket = SocketFactory.getDefault().createSocket();
+                SocketAddress localaddr = new InetSocketAddress(localAddress, localPort);
+                SocketAddress remoteaddr = new InetSocketAddress(host, port);
+                try {
+                    plainSocket.bind(localaddr);
+                    plainSocket.connect(remoteaddr, timeout);
+                }
+                catch (IOException exc) {
+                    plainSocket.close();
+                    throw exc;
+                }
+                socket = socketfactory.createSocket(plainSocket, host, port, true);
+            }
+            // the handshake is bounded by the read timeout
+            socket.setSoTimeout(params.getSoTimeout());
+            return handshake(socket);
         }
         catch (UnknownHostException exc) {
             logger.error("UnknownHostException connecting to host", exc);
@@ -446,7 +514,7 @@ public class AuthSSLProtocolSocketFactory implements ProtocolSocketFactory
             UnknownHostException
     {
         try {
-            return getSSLContext().getSocketFactory().createSocket(host, port, clientHost, clientPort);
+            return handshake(getSSLContext().getSocketFactory().createSocket(host, port, clientHost, clientPort));
         }
         catch (UnknownHostException exc) {
             logger.error("UnknownHostException connecting to host", exc);
@@ -468,7 +536,7 @@ public class AuthSSLProtocolSocketFactory implements ProtocolSocketFactory
     public Socket createSocket(String host, int port) throws IOException, UnknownHostException
     {
         try {
-            return getSSLContext().getSocketFactory().createSocket(host, port);
+            return handshake(getSSLContext().getSocketFactory().createSocket(host, port));
         }
         catch (UnknownHostException exc) {
             logger.error("UnknownHostException connecting to host", exc);
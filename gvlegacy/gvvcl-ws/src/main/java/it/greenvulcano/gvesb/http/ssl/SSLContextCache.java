@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ *
+ * This file is part of GreenVulcano ESB.
+ *
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package it.greenvulcano.gvesb.http.ssl;
+
+import it.greenvulcano.configuration.ConfigurationEvent;
+import it.greenvulcano.configuration.ConfigurationListener;
+import it.greenvulcano.configuration.XMLConfig;
+import it.greenvulcano.jmx.JMXEntryPoint;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.management.ObjectName;
+import javax.net.ssl.SSLContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide cache of the SSLContext built by
+ * {@link AuthSSLProtocolSocketFactory}, shared by the factories using the
+ * same keystore and truststore: sharing the context also shares its client
+ * TLS session cache, so the connections to the same server resume the
+ * session instead of performing a full handshake.
+ * <p>
+ * The cache is cleared when the keystores configuration is reloaded, and can
+ * be invalidated for a single keystore through {@link #invalidate(String)}.
+ * The cache statistics are exposed through JMX as {@value #DESCRIPTOR_NAME}.
+ *
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ */
+public class SSLContextCache implements ConfigurationListener
+{
+    private static final Logger      logger            = LoggerFactory.getLogger(SSLContextCache.class);
+
+    /**
+     * The MBean descriptor name.
+     */
+    public static final String       DESCRIPTOR_NAME   = "SSLContextCache";
+
+    private static final String      CFG_FILE          = "GVCryptoHelper.xml";
+    private static SSLContextCache   instance          = null;
+
+    private final Map<String, Entry> contexts          = new ConcurrentHashMap<String, Entry>();
+
+    private final AtomicLong         contextsCreated   = new AtomicLong();
+    private final AtomicLong         handshakes        = new AtomicLong();
+    private final AtomicLong         resumedSessions   = new AtomicLong();
+    private final AtomicLong         handshakeFailures = new AtomicLong();
+    private final AtomicLong         handshakeTime     = new AtomicLong();
+
+    private ObjectName               jmxObjectName     = null;
+
+    private static final class Entry
+    {
+        private final String     keystoreID;
+        private final String     truststoreID;
+        private final SSLContext sslContext;
+
+        Entry(String keystoreID, String truststoreID, SSLContext sslContext)
+        {
+            this.keystoreID = keystoreID;
+            this.truststoreID = truststoreID;
+            this.sslContext = sslContext;
+        }
+    }
+
+    private SSLContextCache()
+    {
+        // do nothing
+    }
+
+    public static synchronized SSLContextCache instance()
+    {
+        if (instance == null) {
+            instance = new SSLContextCache();
+            try {
+                XMLConfig.addConfigurationListener(instance, CFG_FILE);
+            }
+            catch (Exception exc) {
+                logger.warn("Cannot listen for " + CFG_FILE + " changes, the SSLContext cache must be invalidated explicitly", exc);
+            }
+            try {
+                instance.jmxObjectName = JMXEntryPoint.getInstance().registerObject(instance, DESCRIPTOR_NAME);
+            }
+            catch (Exception exc) {
+                logger.warn("Registration failed of MBean " + DESCRIPTOR_NAME, exc);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param keystoreID
+     * @param truststoreID
+     * @param keyPassword
+     * @param factory
+     *        builds the context if not cached
+     * @return the SSLContext shared by the callers using the same keystores
+     */
+    public SSLContext getSSLContext(final String keystoreID, final String truststoreID, final String keyPassword,
+            final Supplier<SSLContext> factory)
+    {
+        String key = keystoreID + "|" + truststoreID + "|" + digest(keyPassword);
+        Entry entry = contexts.get(key);
+        if (entry == null) {
+            entry = contexts.computeIfAbsent(key, k -> {
+                logger.debug("Creating SSLContext for keystore " + keystoreID + " and truststore " + truststoreID);
+                contextsCreated.incrementAndGet();
+                return new Entry(keystoreID, truststoreID, factory.get());
+            });
+        }
+        return entry.sslContext;
+    }
+
+    /**
+     * The key password is part of the cache key only as a digest, to not keep
+     * it in clear in the cache.
+     */
+    private static String digest(String keyPassword)
+    {
+        if (keyPassword == null) {
+            return "";
+        }
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(md.digest(keyPassword.getBytes(StandardCharsets.UTF_8)));
+        }
+        catch (Exception exc) {
+            throw new IllegalStateException("Cannot compute the key password digest", exc);
+        }
+    }
+
+    /**
+     * Removes the contexts using the given keystore, as keystore or
+     * truststore: they are rebuilt on the next connection.
+     *
+     * @param keystoreID
+     */
+    public void invalidate(String keystoreID)
+    {
+        logger.debug("Invalidating SSLContext for keystore " + keystoreID);
+        contexts.values().removeIf(
+                entry -> keystoreID.equals(entry.keystoreID) || keystoreID.equals(entry.truststoreID));
+    }
+
+    public void invalidateAll()
+    {
+        logger.debug("Invalidating all SSLContext");
+        contexts.clear();
+    }
+
+    /**
+     * @see it.greenvulcano.configuration.ConfigurationListener#configurationChanged(it.greenvulcano.configuration.ConfigurationEvent)
+     */
+    @Override
+    public void configurationChanged(ConfigurationEvent event)
+    {
+        if ((event.getCode() == ConfigurationEvent.EVT_FILE_REMOVED) && (event.getFile().equals(CFG_FILE))) {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * @param nanos
+     *        the handshake duration
+     * @param resumed
+     *        true if an existing session was resumed
+     */
+    void recordHandshake(long nanos, boolean resumed)
+    {
+        handshakes.incrementAndGet();
+        if (resumed) {
+            resumedSessions.incrementAndGet();
+        }
+        handshakeTime.addAndGet(nanos);
+    }
+
+    void recordHandshakeFailure()
+    {
+        handshakeFailures.incrementAndGet();
+    }
+
+    /**
+     * Resets the handshake statistics.
+     */
+    public void resetCounter()
+    {
+        handshakes.set(0);
+        resumedSessions.set(0);
+        handshakeFailures.set(0);
+        handshakeTime.set(0);
+    }
+
+    /**
+     * @return the name of the registered MBean, or <code>null</code> if not
+     *         registered
+     */
+    public ObjectName getJmxObjectName()
+    {
+        return jmxObjectName;
+    }
+
+    /**
+     * @return the number of SSLContext built, keystores parsing included
+     */
+    public long getContextsCreated()
+    {
+        return contextsCreated.get();
+    }
+
+    public int getContextsCached()
+    {
+        return contexts.size();
+    }
+
+    /**
+     * @return the number of completed handshakes, resumed ones included
+     */
+    public long getHandshakes()
+    {
+        return handshakes.get();
+    }
+
+    public long getResumedSessions()
+    {
+        return resumedSessions.get();
+    }
+
+    public long getHandshakeFailures()
+    {
+        return handshakeFailures.get();
+    }
+
+    /**
+     * @return the average handshake duration in ms
+     */
+    public double getAverageHandshakeTime()
+    {
+        long count = handshakes.get();
+        return (count == 0) ? 0 : (handshakeTime.get() / 1000000.0) / count;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SSLContextCache: contexts=" + getContextsCached() + ", created=" + getContextsCreated()
+                + ", handshakes=" + getHandshakes() + ", resumed=" + getResumedSessions() + ", failures="
+                + getHandshakeFailures() + ", avgHandshakeTime=" + getAverageHandshakeTime() + "ms";
+    }
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ *
+ * This file is part of GreenVulcano ESB.
+ *
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package it.greenvulcano.gvesb.virtual.http;
+
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * JMX view of the HTTPCallOperation connection pools and of the
+ * <code>HTTPCallStatistics</code> of the called servers.
+ *
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ */
+public class HTTPCallInfo
+{
+    /**
+     * the object JMX descriptor.
+     */
+    public static final String DESCRIPTOR_NAME = "HTTPCallInfo";
+
+    /**
+     * @return the number of pooled connections, idle or in use, to any server
+     */
+    public int getConnectionsInPool()
+    {
+        return HTTPCallOperation.getConnectionsInPool();
+    }
+
+    /**
+     * @return the called servers, as host:port
+     */
+    public String[] getServers()
+    {
+        return new TreeSet<String>(HTTPCallStatistics.getAll().keySet()).toArray(new String[0]);
+    }
+
+    /**
+     * @return the calls to any server
+     */
+    public long getCalls()
+    {
+        long calls = 0;
+        for (HTTPCallStatistics statistics : HTTPCallStatistics.getAll().values()) {
+            calls += statistics.getCalls();
+        }
+        return calls;
+    }
+
+    /**
+     * @return the failed calls to any server
+     */
+    public long getFailures()
+    {
+        long failures = 0;
+        for (HTTPCallStatistics statistics : HTTPCallStatistics.getAll().values()) {
+            failures += statistics.getFailures();
+        }
+        return failures;
+    }
+
+    /**
+     * @param server
+     *        the server, as host:port
+     * @return the statistics of the given server, or <code>null</code> if
+     *         never called
+     */
+    public String getServerStatistics(String server)
+    {
+        Map<String, HTTPCallStatistics> statistics = HTTPCallStatistics.getAll();
+        return statistics.containsKey(server) ? statistics.get(server).toString() : null;
+    }
+}
@@ -34,26 +34,38 @@ import it.greenvulcano.gvesb.virtual.ConnectionException;
 import it.greenvulcano.gvesb.virtual.InitializationException;
 import it.greenvulcano.gvesb.virtual.InvalidDataException;
 import it.greenvulcano.gvesb.virtual.OperationKey;
+import it.greenvulcano.jmx.JMXEntryPoint;
 import it.greenvulcano.util.metadata.PropertiesHandler;
 import it.greenvulcano.util.xml.XMLUtils;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.activation.DataHandler;
+import javax.activation.DataSource;
 import javax.mail.MessagingException;
 import javax.mail.Multipart;
 import javax.mail.Part;
 import javax.mail.internet.ContentType;
 import javax.mail.internet.MimeMultipart;
-import javax.mail.util.ByteArrayDataSource;
+import javax.management.ObjectName;
 
 import org.apache.axiom.util.base64.Base64EncodingOutputStream;
 import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.URI;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
 import org.apache.commons.httpclient.methods.DeleteMethod;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.HeadMethod;
@@ -70,6 +82,36 @@ import org.w3c.dom.Node;
 import org.w3c.dom.Text;
 
 /**
+ * Performs an HTTP call.
+ *
+ * The connections are pooled, and kept alive, by connection managers shared
+ * by all the operations with the same <code>endpoint/@conn-timeout</code>
+ * and <code>endpoint/@max-connections-per-host</code>: at most
+ * <code>gv.http.client.max-connections</code> (default 200) connections are
+ * opened by each manager, and at most
+ * <code>endpoint/@max-connections-per-host</code>, or
+ * <code>gv.http.client.max-connections-per-host</code> (default 20), to the
+ * same server. A call waits at most
+ * <code>endpoint/@conn-manager-timeout</code> ms (default 10000) for a free
+ * connection.
+ * <p>
+ * The <code>method/@response-mode</code> attribute sets how the response
+ * body is returned in the GVBuffer:
+ * <ul>
+ * <li><code>bytes</code>: the default, the whole body as a byte array</li>
+ * <li><code>stream</code>: a <code>java.io.InputStream</code> reading the
+ * body from the connection, which is released when the stream is closed: the
+ * consumer must always close it</li>
+ * <li><code>file</code>: the body is copied in a temporary file in
+ * <code>method/@response-dir</code>, whose path is returned</li>
+ * </ul>
+ * The responses declaring a length not greater than
+ * <code>method/@stream-threshold</code> bytes are always read as a byte
+ * array; multipart responses are always parsed as a document.
+ * <p>
+ * The pooled connections and the call statistics of each server are exposed
+ * through JMX as {@value HTTPCallInfo#DESCRIPTOR_NAME}.
+ *
  * @version 3.0.0 Jul 26, 2010
  * @author GreenVulcano Developer Team
  * 
@@ -81,6 +123,10 @@ public class HTTPCallOperation implements CallOperation
         OPTIONS, GET, HEAD, POST, PUT, DELETE
     }
 
+    enum ResponseMode {
+        BYTES, STREAM, FILE
+    }
+
     private static final Logger logger                 = org.slf4j.LoggerFactory.getLogger(HTTPCallOperation.class);
     private static final String RESPONSE_PREFIX        = "GVHTTP_RESPONSE_";
     private static final String RESPONSE_STATUS        = RESPONSE_PREFIX + "STATUS";
@@ -88,6 +134,19 @@ public class HTTPCallOperation implements CallOperation
     private static final String RESPONSE_HEADER_PREFIX = RESPONSE_PREFIX + "HEADER_";
     public static final int     DEFAULT_CONN_TIMEOUT   = 10000;
     public static final int     DEFAULT_SO_TIMEOUT     = 30000;
+    public static final int     DEFAULT_CONN_MANAGER_TIMEOUT = 10000;
+    private static final String RESPONSE_FILE          = RESPONSE_PREFIX + "FILE";
+
+    private static final int    MAX_CONNECTIONS          = Integer.getInteger("gv.http.client.max-connections", 200);
+    private static final int    MAX_CONNECTIONS_PER_HOST = Integer.getInteger("gv.http.client.max-connections-per-host", 20);
+    /**
+     * The pooled connections idle for more than IDLE_TIMEOUT ms are closed.
+     */
+    private static final long   IDLE_TIMEOUT             = 60000;
+
+    private static final Map<String, MultiThreadedHttpConnectionManager> connectionManagers = new ConcurrentHashMap<String, MultiThreadedHttpConnectionManager>();
+    private static IdleConnectionTimeoutThread                            idleConnectionsReaper = null;
+    private static ObjectName                                             jmxObjectName         = null;
 
     private String              methodURI;
     private String              contextPath;
@@ -102,6 +161,9 @@ public class HTTPCallOperation implements CallOperation
     private int                 soTimeout              = DEFAULT_SO_TIMEOUT;
     private HttpProxy           proxy                  = null;
     private HttpAuth            auth                   = null;
+    private ResponseMode        responseMode           = ResponseMode.BYTES;
+    private long                streamThreshold        = 0;
+    private File                responseDir            = null;
 
     private OperationKey        key                    = null;
 
@@ -114,8 +176,6 @@ public class HTTPCallOperation implements CallOperation
     @Override
     public void init(Node config) throws InitializationException
     {
-        httpClient = new HttpClient();
-
         try {
             Node endpointNode = XMLConfig.getNode(config, "endpoint");
             host = XMLConfig.get(endpointNode, "@host");
@@ -124,10 +184,16 @@ public class HTTPCallOperation implements CallOperation
             boolean secure = XMLConfig.getBoolean(endpointNode, "@secure", false);
             connTimeout = XMLConfig.getInteger(endpointNode, "@conn-timeout", DEFAULT_CONN_TIMEOUT);
             soTimeout = XMLConfig.getInteger(endpointNode, "@so-timeout", DEFAULT_SO_TIMEOUT);
-            
-            HttpConnectionManagerParams params = httpClient.getHttpConnectionManager().getParams();
-            params.setConnectionTimeout(connTimeout);
-            params.setSoTimeout(soTimeout);
+            int maxConnectionsPerHost = XMLConfig.getInteger(endpointNode, "@max-connections-per-host",
+                    MAX_CONNECTIONS_PER_HOST);
+            int connManagerTimeout = XMLConfig.getInteger(endpointNode, "@conn-manager-timeout",
+                    DEFAULT_CONN_MANAGER_TIMEOUT);
+
+            // the client holds the host, authentication and proxy state of
+            // this operation, the connections are shared
+            httpClient = new HttpClient(getConnectionManager(connTimeout, maxConnectionsPerHost));
+            httpClient.getParams().setSoTimeout(soTimeout);
+            httpClient.getParams().setConnectionManagerTimeout(connManagerTimeout);
 
             Node protocolNode = XMLConfig.getNode(endpointNode, "CustomProtocol");
             if (protocolNode != null) {
@@ -148,6 +214,10 @@ public class HTTPCallOperation implements CallOperation
             methodURI = XMLConfig.get(methodNode, "@request-uri", "/");
             methodName = HttpMethodName.valueOf(XMLConfig.get(methodNode, "@name"));
             uriEscaped = XMLConfig.getBoolean(methodNode, "@uri-escaped", true);
+
+            responseMode = ResponseMode.valueOf(XMLConfig.get(methodNode, "@response-mode", "bytes").toUpperCase());
+            streamThreshold = XMLConfig.getLong(methodNode, "@stream-threshold", 0);
+            responseDir = new File(XMLConfig.get(methodNode, "@response-dir", System.getProperty("java.io.tmpdir")));
         }
         catch (Exception exc) {
             throw new InitializationException("GV_CONFIGURATION_ERROR", new String[][]{{"message", exc.getMessage()}},
@@ -155,6 +225,70 @@ public class HTTPCallOperation implements CallOperation
         }
     }
 
+    /**
+     * Returns the connection manager shared by the operations with the given
+     * connection timeout and per host limit: the limits are set once, when
+     * the manager is created.
+     *
+     * @param connTimeout
+     * @param maxConnectionsPerHost
+     * @return the shared connection manager
+     */
+    private static synchronized MultiThreadedHttpConnectionManager getConnectionManager(int connTimeout,
+            int maxConnectionsPerHost)
+    {
+        String managerKey = connTimeout + ":" + maxConnectionsPerHost;
+        MultiThreadedHttpConnectionManager connectionManager = connectionManagers.get(managerKey);
+        if (connectionManager == null) {
+            connectionManager = new MultiThreadedHttpConnectionManager();
+            HttpConnectionManagerParams params = connectionManager.getParams();
+            params.setConnectionTimeout(connTimeout);
+            params.setMaxTotalConnections(MAX_CONNECTIONS);
+            params.setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+            params.setStaleCheckingEnabled(true);
+
+            if (idleConnectionsReaper == null) {
+                idleConnectionsReaper = new IdleConnectionTimeoutThread();
+                idleConnectionsReaper.setName("GVHTTP-IdleConnectionsReaper");
+                idleConnectionsReaper.setConnectionTimeout(IDLE_TIMEOUT);
+                idleConnectionsReaper.start();
+            }
+            if (jmxObjectName == null) {
+                try {
+                    jmxObjectName = JMXEntryPoint.getInstance().registerObject(new HTTPCallInfo(),
+                            HTTPCallInfo.DESCRIPTOR_NAME);
+                }
+                catch (Exception exc) {
+                    logger.warn("Registration failed of MBean " + HTTPCallInfo.DESCRIPTOR_NAME, exc);
+                }
+            }
+            idleConnectionsReaper.addConnectionManager(connectionManager);
+            connectionManagers.put(managerKey, connectionManager);
+        }
+        return connectionManager;
+    }
+
+    /**
+     * @return the number of pooled connections, idle or in use, to any server
+     */
+    public static int getConnectionsInPool()
+    {
+        int count = 0;
+        for (MultiThreadedHttpConnectionManager connectionManager : connectionManagers.values()) {
+            count += connectionManager.getConnectionsInPool();
+        }
+        return count;
+    }
+
+    /**
+     * @return the name of the registered HTTPCallInfo MBean, or
+     *         <code>null</code> if not registered
+     */
+    public static synchronized ObjectName getJmxObjectName()
+    {
+        return jmxObjectName;
+    }
+
     /**
      * @see it.greenvulcano.gvesb.virtual.CallOperation#perform(it.greenvulcano.gvesb.buffer.GVBuffer)
      */
@@ -163,6 +297,8 @@ public class HTTPCallOperation implements CallOperation
     {
         logger.debug("BEGIN perform(GVBuffer gvBuffer)");
         HttpMethod method = null;
+        HTTPCallStatistics statistics = null;
+        boolean releaseConnection = true;
         try {
             String currMethodURI = null;
             Map<String, Object> params = GVBufferPropertiesHelper.getPropertiesMapSO(gvBuffer, true);
@@ -175,6 +311,8 @@ public class HTTPCallOperation implements CallOperation
             auth.setAuthentication(httpClient, host, Integer.parseInt(currPort), gvBuffer, params);
             proxy.setProxy(httpClient, gvBuffer, params);
 
+            statistics = HTTPCallStatistics.get(currHost + ":" + currPort);
+
             currMethodURI = PropertiesHandler.expand(contextPath + methodURI, params, gvBuffer);
             logger.debug("MethodURI[escaped:" + uriEscaped + "]=[" + currMethodURI + "]");
             switch (methodName) {
@@ -217,7 +355,9 @@ public class HTTPCallOperation implements CallOperation
                 }
             }
 
+            long start = System.nanoTime();
             int status = httpClient.executeMethod(method);
+            long latency = System.nanoTime() - start;
             gvBuffer.setProperty(RESPONSE_STATUS, String.valueOf(status));
             String statusTxt = method.getStatusText();
             gvBuffer.setProperty(RESPONSE_MESSAGE, (statusTxt != null ? statusTxt : "NULL"));
@@ -240,17 +380,60 @@ public class HTTPCallOperation implements CallOperation
             }
             logger.debug("Response content-type: " + cType);
             ContentType contentType = new ContentType(cType);
-            byte[] responseBody = method.getResponseBody();
-            Object object = responseBody;
+            long contentLength = (method instanceof HttpMethodBase)
+                    ? ((HttpMethodBase) method).getResponseContentLength()
+                    : -1;
+            boolean streamResponse = (responseMode != ResponseMode.BYTES)
+                    && ((contentLength < 0) || (contentLength > streamThreshold));
+
+            Object object = null;
             if (contentType.getPrimaryType().equals("multipart")) {
-                object = handleMultipart(responseBody, cType);
+                InputStream responseStream = method.getResponseBodyAsStream();
+                if (responseStream != null) {
+                    object = handleMultipart(responseStream, cType);
+                }
+            }
+            else if (!streamResponse) {
+                object = method.getResponseBody();
+            }
+            else {
+                InputStream responseStream = method.getResponseBodyAsStream();
+                if (responseStream == null) {
+                    object = null;
+                }
+                else if (responseMode == ResponseMode.FILE) {
+                    File responseFile = File.createTempFile("GVHTTP_", ".tmp", responseDir);
+                    try (InputStream in = responseStream) {
+                        Files.copy(in, responseFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    catch (IOException | RuntimeException exc) {
+                        if (!responseFile.delete()) {
+                            logger.warn("Cannot delete the incomplete response file: " + responseFile);
+                        }
+                        throw exc;
+                    }
+                    logger.debug("Response body written to file: " + responseFile);
+                    gvBuffer.setProperty(RESPONSE_FILE, responseFile.getAbsolutePath());
+                    object = responseFile.getAbsolutePath();
+                }
+                else {
+                    object = new ReleasingInputStream(responseStream, method);
+                    releaseConnection = false;
+                }
             }
             gvBuffer.setObject(object);
+            statistics.recordCall(latency, streamResponse);
         }
         catch (CallException exc) {
+            if (statistics != null) {
+                statistics.recordFailure();
+            }
             throw exc;
         }
         catch (Exception exc) {
+            if (statistics != null) {
+                statistics.recordFailure();
+            }
             logger.error("ERROR perform(GVBuffer gvBuffer)", exc);
             throw new CallException("GV_CALL_SERVICE_ERROR", new String[][]{{"service", gvBuffer.getService()},
                     {"system", gvBuffer.getSystem()}, {"id", gvBuffer.getId().toString()},
@@ -258,7 +441,7 @@ public class HTTPCallOperation implements CallOperation
         }
         finally {
             try {
-                if (method != null) {
+                if ((method != null) && releaseConnection) {
                     method.releaseConnection();
                 }
             }
@@ -271,13 +454,38 @@ public class HTTPCallOperation implements CallOperation
     }
 
     /**
-     * @param responseBody
+     * @param responseStream
+     *        the response body, parsed without an intermediate copy
      * @throws MessagingException
      */
-    private Document handleMultipart(byte[] responseBody, String contentType) throws Exception
+    private Document handleMultipart(final InputStream responseStream, final String contentType) throws Exception
     {
-        ByteArrayDataSource bads = new ByteArrayDataSource(responseBody, contentType);
-        MimeMultipart multipart = new MimeMultipart(bads);
+        DataSource responseSource = new DataSource() {
+            @Override
+            public InputStream getInputStream() throws IOException
+            {
+                return responseStream;
+            }
+
+            @Override
+            public OutputStream getOutputStream() throws IOException
+            {
+                throw new IOException("Read only DataSource");
+            }
+
+            @Override
+            public String getContentType()
+            {
+                return contentType;
+            }
+
+            @Override
+            public String getName()
+            {
+                return "HttpResponse";
+            }
+        };
+        MimeMultipart multipart = new MimeMultipart(responseSource);
         XMLUtils xml = XMLUtils.getParserInstance();
         Document doc = null;
         try {
@@ -386,4 +594,29 @@ public class HTTPCallOperation implements CallOperation
     {
         return key;
     }
+
+    /**
+     * Releases the connection when the response body stream is closed.
+     */
+    private static class ReleasingInputStream extends FilterInputStream
+    {
+        private final HttpMethod method;
+
+        ReleasingInputStream(InputStream in, HttpMethod method)
+        {
+            super(in);
+            this.method = method;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            try {
+                super.close();
+            }
+            finally {
+                method.releaseConnection();
+            }
+        }
+    }
 }
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ *
+ * This file is part of GreenVulcano ESB.
+ *
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package it.greenvulcano.gvesb.virtual.http;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Call counters of the HTTPCallOperation instances connecting to the same
+ * server.
+ *
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ */
+public class HTTPCallStatistics
+{
+    private static final Map<String, HTTPCallStatistics> statistics = new ConcurrentHashMap<String, HTTPCallStatistics>();
+
+    private final String                                 name;
+    private final AtomicLong                             calls      = new AtomicLong();
+    private final AtomicLong                             failures   = new AtomicLong();
+    private final AtomicLong                             streamed   = new AtomicLong();
+    private final AtomicLong                             totalTime  = new AtomicLong();
+    private final AtomicLong                             maxTime    = new AtomicLong();
+
+    private HTTPCallStatistics(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * @param name
+     *        the server, as host:port
+     * @return the statistics of the given server
+     */
+    public static HTTPCallStatistics get(String name)
+    {
+        return statistics.computeIfAbsent(name, HTTPCallStatistics::new);
+    }
+
+    /**
+     * @return the statistics of all the servers
+     */
+    public static Map<String, HTTPCallStatistics> getAll()
+    {
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    void recordCall(long nanos, boolean stream)
+    {
+        calls.incrementAndGet();
+        if (stream) {
+            streamed.incrementAndGet();
+        }
+        totalTime.addAndGet(nanos);
+        long max = maxTime.get();
+        while ((nanos > max) && !maxTime.compareAndSet(max, nanos)) {
+            max = maxTime.get();
+        }
+    }
+
+    void recordFailure()
+    {
+        failures.incrementAndGet();
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public long getCalls()
+    {
+        return calls.get();
+    }
+
+    public long getFailures()
+    {
+        return failures.get();
+    }
+
+    /**
+     * @return the number of responses not read in memory
+     */
+    public long getStreamed()
+    {
+        return streamed.get();
+    }
+
+    /**
+     * @return the average time to the response headers, in milliseconds
+     */
+    public double getAverageLatency()
+    {
+        long count = calls.get();
+        return (count > 0) ? (totalTime.get() / 1000000.0) / count : 0;
+    }
+
+    /**
+     * @return the maximum time to the response headers, in milliseconds
+     */
+    public double getMaxLatency()
+    {
+        return maxTime.get() / 1000000.0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + ": calls=" + getCalls() + ", failures=" + getFailures() + ", streamed=" + getStreamed()
+                + ", avgLatency=" + getAverageLatency() + " ms, maxLatency=" + getMaxLatency() + " ms";
+    }
+}
@@ -32,13 +32,17 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.rmi.RemoteException;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
-import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.soap.MimeHeaders;
 import javax.xml.soap.SOAPConnection;
@@ -60,6 +64,15 @@ import org.slf4j.Logger;
 
 
 /**
+ * Invokes the operations described in a WSDL.
+ *
+ * The invokers are pooled per WSDL: the WSDL is parsed once, and the
+ * resulting service descriptions are shared, read-only, by all the invokers
+ * of the pool; each invoker keeps its <code>ServiceClient</code> between the
+ * invocations, unless modules have been engaged on it.
+ * At most <code>gv.ws.invoker.pool.max</code> (default 20) idle invokers are
+ * kept for each WSDL, the invokers returned beyond that limit are discarded.
+ *
  * @version 3.0.0 Feb 17, 2010
  * @author GreenVulcano Developer Team
  * 
@@ -67,10 +80,26 @@ import org.slf4j.Logger;
  */
 public class DynamicInvoker
 {
-    private final static Logger                        logger              = org.slf4j.LoggerFactory.getLogger(DynamicInvoker.class);
+    private final static Logger                                     logger              = org.slf4j.LoggerFactory.getLogger(DynamicInvoker.class);
+
+    private static final int                                        MAX_IDLE            = Integer.getInteger(
+                                                                                                "gv.ws.invoker.pool.max", 20);
 
-    private static Map<String, Stack<DynamicInvoker>>  invokersCache       = new LinkedHashMap<String, Stack<DynamicInvoker>>();
-    private static Map<String, Vector<DynamicInvoker>> inUseInvokers       = new LinkedHashMap<String, Vector<DynamicInvoker>>();
+    private static ConcurrentMap<String, InvokerPool>               invokersPools       = new ConcurrentHashMap<String, InvokerPool>();
+    private static ConcurrentMap<String, Map<String, ServiceDescription>> descriptionsCache = new ConcurrentHashMap<String, Map<String, ServiceDescription>>();
+
+    /**
+     * The invokers of a WSDL and their usage statistics.
+     */
+    private static class InvokerPool
+    {
+        private final Deque<DynamicInvoker> idle       = new ConcurrentLinkedDeque<DynamicInvoker>();
+        private final Set<DynamicInvoker>   inUse      = Collections.newSetFromMap(new ConcurrentHashMap<DynamicInvoker, Boolean>());
+        private final AtomicInteger         idleCount  = new AtomicInteger(0);
+        private final AtomicLong            hits       = new AtomicLong(0);
+        private final AtomicLong            misses     = new AtomicLong(0);
+        private final AtomicLong            borrowTime = new AtomicLong(0);
+    }
 
     private String                                     wsdlLocation        = null;
     private String                                     _serviceNS;
@@ -86,20 +115,58 @@ public class DynamicInvoker
     private Map<String, ServiceDescription>            serviceDescriptions = null;
 
     private ServiceClient                              client              = null;
+    private boolean                                    modulesEngaged      = false;
+    private InvokerPool                                pool                = null;
 
     /**
      * Class constructor.
      * 
-     * @param wsdlURL
+     * @param wsdlLoc
      *        The WSDL URL
+     * @param serviceDescriptions
+     *        The services described by the WSDL
+     * @param pool
+     *        The pool owning the invoker
+     */
+    private DynamicInvoker(String wsdlLoc, Map<String, ServiceDescription> serviceDescriptions, InvokerPool pool)
+    {
+        this.serviceDescriptions = serviceDescriptions;
+        this.wsdlLocation = wsdlLoc;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the services described by the WSDL, parsing it only once.
+     * 
+     * @param wsdlLocation
+     * @return the read-only service descriptions
      * @throws WSCallException
-     *         if an error occurred
      */
-    private DynamicInvoker(String wsdlLoc) throws WSCallException
+    private static Map<String, ServiceDescription> getServiceDescriptions(String wsdlLocation) throws WSCallException
+    {
+        Map<String, ServiceDescription> descriptions = descriptionsCache.get(wsdlLocation);
+        if (descriptions == null) {
+            ServiceDescrBuilder desc = new ServiceDescrBuilder(wsdlLocation);
+            descriptions = Collections.unmodifiableMap(desc.getServices());
+            Map<String, ServiceDescription> previous = descriptionsCache.putIfAbsent(wsdlLocation, descriptions);
+            if (previous != null) {
+                descriptions = previous;
+            }
+        }
+        return descriptions;
+    }
+
+    private static InvokerPool getPool(String wsdlLocation)
     {
-        ServiceDescrBuilder desc = new ServiceDescrBuilder(wsdlLoc);
-        serviceDescriptions = desc.getServices();
-        wsdlLocation = wsdlLoc;
+        InvokerPool pool = invokersPools.get(wsdlLocation);
+        if (pool == null) {
+            pool = new InvokerPool();
+            InvokerPool previous = invokersPools.putIfAbsent(wsdlLocation, pool);
+            if (previous != null) {
+                pool = previous;
+            }
+        }
+        return pool;
     }
 
     /**
@@ -107,35 +174,30 @@ public class DynamicInvoker
      * @return the cached invoker
      * @throws WSCallException
      */
-    public static synchronized DynamicInvoker getInvoker(String wsdlLocation) throws WSCallException
+    public static DynamicInvoker getInvoker(String wsdlLocation) throws WSCallException
     {
         if (wsdlLocation == null) {
             throw new WSCallException("WSDL_LOCATION_NULL", new String[][]{{"cause",
                     "WSDL Location parameter cannot be null."}});
         }
-        Stack<DynamicInvoker> invokersStack = invokersCache.get(wsdlLocation);
-        if (invokersStack == null) {
-            invokersStack = new Stack<DynamicInvoker>();
-            invokersCache.put(wsdlLocation, invokersStack);
-        }
+        long start = System.nanoTime();
+        InvokerPool pool = getPool(wsdlLocation);
 
         // Get from cache if present
-        DynamicInvoker invoker = null;
-        if (!invokersStack.isEmpty()) {
-            invoker = invokersStack.pop();
+        DynamicInvoker invoker = pool.idle.pollFirst();
+        if (invoker != null) {
+            pool.idleCount.decrementAndGet();
+            pool.hits.incrementAndGet();
         }
         // else create new
-        if (invoker == null) {
-            invoker = new DynamicInvoker(wsdlLocation);
+        else {
+            invoker = new DynamicInvoker(wsdlLocation, getServiceDescriptions(wsdlLocation), pool);
+            pool.misses.incrementAndGet();
         }
 
-        // put in inUse map
-        Vector<DynamicInvoker> inUseVector = inUseInvokers.get(wsdlLocation);
-        if (inUseVector == null) {
-            inUseVector = new Vector<DynamicInvoker>();
-            inUseInvokers.put(wsdlLocation, inUseVector);
-        }
-        inUseVector.add(invoker);
+        // put in inUse set
+        pool.inUse.add(invoker);
+        pool.borrowTime.addAndGet(System.nanoTime() - start);
 
         return invoker;
     }
@@ -143,23 +205,22 @@ public class DynamicInvoker
     /**
      * @param invoker
      */
-    public synchronized static void returnInvoker(DynamicInvoker invoker)
+    public static void returnInvoker(DynamicInvoker invoker)
     {
         if (invoker != null) {
             invoker.cleanup();
-            String wsdlLocation = invoker.getWsdlLocation();
-            Vector<DynamicInvoker> inUseVector = inUseInvokers.get(wsdlLocation);
-            if (inUseVector != null) {
-                // if invoker was used and has not been discarded
-                // must be reinserted in invokers stack to get reused
-                if (inUseVector.remove(invoker)) { // && !invoker.discard
-                    Stack<DynamicInvoker> invokersStack = invokersCache.get(wsdlLocation);
-                    if (invokersStack == null) {
-                        invokersStack = new Stack<DynamicInvoker>();
-                        invokersCache.put(invoker.getWsdlLocation(), invokersStack);
-                    }
-                    invokersStack.push(invoker);
+            InvokerPool pool = invoker.pool;
+            // if invoker was used and has not been discarded by a reload
+            // must be reinserted in invokers stack to get reused
+            boolean reusable = pool.inUse.remove(invoker) && (invokersPools.get(invoker.getWsdlLocation()) == pool);
+            if (reusable && (pool.idleCount.incrementAndGet() <= MAX_IDLE)) {
+                pool.idle.offerFirst(invoker);
+            }
+            else {
+                if (reusable) {
+                    pool.idleCount.decrementAndGet();
                 }
+                invoker.destroy();
             }
         }
     }
@@ -215,13 +276,11 @@ public class DynamicInvoker
     /**
      * @return the loaded WSDLs
      */
-    public synchronized static String[] getLoadedWSDL()
+    public static String[] getLoadedWSDL()
     {
         try {
-            Set<String> keys = invokersCache.keySet();
-            String[] arr = new String[keys.size()];
-            keys.toArray(arr);
-            return arr;
+            Set<String> keys = invokersPools.keySet();
+            return keys.toArray(new String[0]);
         }
         catch (Exception exc) {
             logger.warn("JMX: Error while returning the list of loaded WSDL files", exc);
@@ -232,15 +291,12 @@ public class DynamicInvoker
     /**
      * @return the number of invokers actually in use.
      */
-    public synchronized static Map<String, Integer> getInUseInvokers()
+    public static Map<String, Integer> getInUseInvokers()
     {
         try {
             Map<String, Integer> ret = new HashMap<String, Integer>();
-            Iterator<String> itr = inUseInvokers.keySet().iterator();
-            while (itr.hasNext()) {
-                String key = itr.next();
-                Vector<?> value = inUseInvokers.get(key);
-                ret.put(key, new Integer(value.size()));
+            for (Map.Entry<String, InvokerPool> entry : invokersPools.entrySet()) {
+                ret.put(entry.getKey(), entry.getValue().inUse.size());
             }
             return ret;
         }
@@ -253,15 +309,12 @@ public class DynamicInvoker
     /**
      * @return the number of invokers actually in cache.
      */
-    public synchronized static Map<String, Integer> getInCacheInvokers()
+    public static Map<String, Integer> getInCacheInvokers()
     {
         try {
             HashMap<String, Integer> ret = new HashMap<String, Integer>();
-            Iterator<String> itr = invokersCache.keySet().iterator();
-            while (itr.hasNext()) {
-                String key = itr.next();
-                Vector<?> value = invokersCache.get(key);
-                ret.put(key, new Integer(value.size()));
+            for (Map.Entry<String, InvokerPool> entry : invokersPools.entrySet()) {
+                ret.put(entry.getKey(), entry.getValue().idle.size());
             }
             return ret;
         }
@@ -271,22 +324,74 @@ public class DynamicInvoker
         }
     }
 
+    /**
+     * @return the number of invokers taken from the cache.
+     */
+    public static Map<String, Long> getInvokersHits()
+    {
+        HashMap<String, Long> ret = new HashMap<String, Long>();
+        for (Map.Entry<String, InvokerPool> entry : invokersPools.entrySet()) {
+            ret.put(entry.getKey(), entry.getValue().hits.get());
+        }
+        return ret;
+    }
+
+    /**
+     * @return the number of invokers created because the cache was empty.
+     */
+    public static Map<String, Long> getInvokersMisses()
+    {
+        HashMap<String, Long> ret = new HashMap<String, Long>();
+        for (Map.Entry<String, InvokerPool> entry : invokersPools.entrySet()) {
+            ret.put(entry.getKey(), entry.getValue().misses.get());
+        }
+        return ret;
+    }
+
+    /**
+     * @return the average time, in microseconds, spent to get an invoker,
+     *         including the WSDL parsing on the first miss.
+     */
+    public static Map<String, Long> getInvokersAvgBorrowTime()
+    {
+        HashMap<String, Long> ret = new HashMap<String, Long>();
+        for (Map.Entry<String, InvokerPool> entry : invokersPools.entrySet()) {
+            InvokerPool pool = entry.getValue();
+            long borrows = pool.hits.get() + pool.misses.get();
+            ret.put(entry.getKey(), (borrows > 0) ? (pool.borrowTime.get() / borrows / 1000) : 0);
+        }
+        return ret;
+    }
+
     /**
      * @param wsdl
      */
-    public synchronized static void reload(String wsdl)
+    public static void reload(String wsdl)
     {
-        inUseInvokers.remove(wsdl);
-        invokersCache.remove(wsdl);
+        descriptionsCache.remove(wsdl);
+        InvokerPool pool = invokersPools.remove(wsdl);
+        if (pool != null) {
+            discardIdle(pool);
+        }
     }
 
     /**
      *
      */
-    public synchronized static void reloadAll()
+    public static void reloadAll()
     {
-        inUseInvokers.clear();
-        invokersCache.clear();
+        for (String wsdl : invokersPools.keySet()) {
+            reload(wsdl);
+        }
+        descriptionsCache.clear();
+    }
+
+    private static void discardIdle(InvokerPool pool)
+    {
+        DynamicInvoker invoker = null;
+        while ((invoker = pool.idle.pollFirst()) != null) {
+            invoker.destroy();
+        }
     }
 
     /**
@@ -312,7 +417,9 @@ public class DynamicInvoker
         ServiceDescription svcDesc = getServiceDescription();
         OperationDescription opDesc = getOperationDescription();
 
-        client = new ServiceClient(Axis2ConfigurationContextHelper.getConfigurationContext(), null);
+        if (client == null) {
+            client = new ServiceClient(Axis2ConfigurationContextHelper.getConfigurationContext(), null);
+        }
         OperationClient operationClient = client.createClient(ServiceClient.ANON_OUT_IN_OP);
         Options options = operationClient.getOptions();
 
@@ -533,6 +640,12 @@ public class DynamicInvoker
         try {
             if (client != null) {
                 client.cleanupTransport();
+                if (modulesEngaged) {
+                    // the modules may have changed the client options: not reusable
+                    client.cleanup();
+                    client = null;
+                    modulesEngaged = false;
+                }
             }
         }
         catch (AxisFault exc) {
@@ -540,6 +653,22 @@ public class DynamicInvoker
         }
     }
 
+    /**
+     * Releases the <code>ServiceClient</code> of a discarded invoker.
+     */
+    private void destroy()
+    {
+        try {
+            if (client != null) {
+                client.cleanup();
+                client = null;
+            }
+        }
+        catch (AxisFault exc) {
+            logger.warn("Error cleaning up the ServiceClient", exc);
+        }
+    }
+
     private void preSendOperations(ServiceClient client, Map<String, ModuleHandler> modules) throws AxisFault
     {
         if (modules != null) {
@@ -547,6 +676,7 @@ public class DynamicInvoker
                 String moduleName = mh.getName();
                 logger.debug("preSendOperations - engageModule: " + moduleName);
                 client.engageModule(moduleName);
+                modulesEngaged = true;
                 mh.preSendOperation(client, client.getOptions());
             }
         }
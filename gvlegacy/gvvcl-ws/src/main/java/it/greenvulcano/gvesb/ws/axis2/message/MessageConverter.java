@@ -28,6 +28,7 @@ import java.io.ByteArrayOutputStream;
 import java.util.Iterator;
 
 import javax.activation.DataHandler;
+import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
 import javax.xml.soap.AttachmentPart;
 import javax.xml.soap.MessageFactory;
@@ -39,17 +40,19 @@ import javax.xml.soap.SOAPHeader;
 import javax.xml.soap.SOAPHeaderElement;
 import javax.xml.soap.SOAPMessage;
 import javax.xml.soap.SOAPPart;
-import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamConstants;
 
 import org.apache.axiom.attachments.Attachments;
 import org.apache.axiom.attachments.ConfigurableDataHandler;
+import org.apache.axiom.om.OMAbstractFactory;
 import org.apache.axiom.om.OMAttribute;
+import org.apache.axiom.om.OMContainer;
 import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMFactory;
+import org.apache.axiom.om.OMNamespace;
 import org.apache.axiom.om.OMNode;
 import org.apache.axiom.om.OMText;
 import org.apache.axiom.om.impl.MTOMConstants;
-import org.apache.axiom.om.impl.builder.StAXOMBuilder;
-import org.apache.axiom.om.util.StAXUtils;
 import org.apache.axis2.Constants;
 import org.apache.axis2.client.Options;
 import org.apache.axis2.context.MessageContext;
@@ -57,9 +60,12 @@ import org.apache.axis2.saaj.SOAPMessageImpl;
 import org.apache.axis2.saaj.util.IDGenerator;
 import org.apache.axis2.saaj.util.SAAJUtil;
 import org.slf4j.Logger;
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
+import org.w3c.dom.ProcessingInstruction;
 
 /**
  * @version 3.2.0 Nov 11, 2012
@@ -167,56 +173,12 @@ public class MessageConverter {
                 }
             }
             Node n = XMLUtils.parseObject_S(input, false, true);
-            byte[] data = XMLUtils.serializeDOMToByteArray_S(n, "UTF-8", true, false);
-
-            if (debugEnabled && debug) {
-                Dump dump = new Dump((byte[]) data, -1);
-                logger.debug("Middle step 1:\n" + dump.toString());
-            }
-
-            ByteArrayInputStream bais = new ByteArrayInputStream(data);
-            XMLStreamReader xmlreader = StAXUtils.createXMLStreamReader(bais, "UTF-8");
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-            OMElement elem = null;
-            StAXOMBuilder builder = null;
-            try {
-                builder = new StAXOMBuilder(xmlreader);
-                builder.releaseParserOnClose(true);
-
-                elem = builder.getDocumentElement();
-                elem.build();
-                elem.serializeAndConsume(baos);
-                if (debugEnabled && debug) {
-                    logger.debug("Middle step 2:\n" + new String(baos.toByteArray()));
-                }
-                builder.close();
-            }
-            catch (Exception e) {
-                if (builder != null) {
-                    builder.close();
-                }
+            if (n instanceof Document) {
+                n = ((Document) n).getDocumentElement();
             }
 
-            data = TextUtils.replaceSubstring(new String(baos.toByteArray()), "&;", "").getBytes("UTF-8");
-
-            bais = new ByteArrayInputStream(data);
-            xmlreader = StAXUtils.createXMLStreamReader(bais, "UTF-8");
-
-            try {
-                builder = new StAXOMBuilder(xmlreader);
-                builder.releaseParserOnClose(true);
-
-                elem = builder.getDocumentElement();
-                elem.build();
-                builder.close();
-            }
-            catch (Exception e) {
-                if (builder != null) {
-                    builder.close();
-                }
-            }
+            // single pass conversion, without the intermediate serializations
+            OMElement elem = toOMElement((Element) n, OMAbstractFactory.getOMFactory(), null);
 
             if (debugEnabled && debug) {
                 logger.debug("Output:" + elem);
@@ -230,6 +192,87 @@ public class MessageConverter {
         }
     }
 
+    /**
+     * Builds the OMElement tree equivalent to the given DOM element, in a
+     * single visit of the DOM.
+     *
+     * @param element
+     *        the DOM element to convert
+     * @param factory
+     *        the factory of the OM nodes
+     * @param parent
+     *        the parent of the new OMElement, or null
+     * @return the new OMElement
+     */
+    private static OMElement toOMElement(Element element, OMFactory factory, OMContainer parent) {
+        OMElement omElement = factory.createOMElement(getLocalName(element),
+                toOMNamespace(factory, element.getNamespaceURI(), element.getPrefix()), parent);
+
+        NamedNodeMap attrs = element.getAttributes();
+        for (int i = 0; i < attrs.getLength(); i++) {
+            Attr attr = (Attr) attrs.item(i);
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attr.getNamespaceURI())) {
+                if (XMLConstants.XMLNS_ATTRIBUTE.equals(attr.getNodeName())) {
+                    omElement.declareDefaultNamespace(attr.getValue());
+                }
+                else {
+                    omElement.declareNamespace(attr.getValue(), attr.getLocalName());
+                }
+            }
+            else {
+                omElement.addAttribute(getLocalName(attr), attr.getValue(),
+                        toOMNamespace(factory, attr.getNamespaceURI(), attr.getPrefix()));
+            }
+        }
+
+        appendChildren(element, factory, omElement);
+        return omElement;
+    }
+
+    private static void appendChildren(Node node, OMFactory factory, OMElement omElement) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            switch (child.getNodeType()) {
+                case Node.ELEMENT_NODE :
+                    toOMElement((Element) child, factory, omElement);
+                    break;
+                case Node.TEXT_NODE :
+                    factory.createOMText(omElement, child.getNodeValue());
+                    break;
+                case Node.CDATA_SECTION_NODE :
+                    // the '&;' sequences were removed from the serialized form
+                    // by the previous conversion
+                    factory.createOMText(omElement, TextUtils.replaceSubstring(child.getNodeValue(), "&;", ""),
+                            XMLStreamConstants.CDATA);
+                    break;
+                case Node.COMMENT_NODE :
+                    factory.createOMComment(omElement, TextUtils.replaceSubstring(child.getNodeValue(), "&;", ""));
+                    break;
+                case Node.PROCESSING_INSTRUCTION_NODE :
+                    factory.createOMProcessingInstruction(omElement, ((ProcessingInstruction) child).getTarget(),
+                            ((ProcessingInstruction) child).getData());
+                    break;
+                case Node.ENTITY_REFERENCE_NODE :
+                    appendChildren(child, factory, omElement);
+                    break;
+                default :
+                    break;
+            }
+        }
+    }
+
+    private static OMNamespace toOMNamespace(OMFactory factory, String namespaceURI, String prefix) {
+        if ((namespaceURI == null) || (namespaceURI.length() == 0)) {
+            return null;
+        }
+        return factory.createOMNamespace(namespaceURI, (prefix == null) ? "" : prefix);
+    }
+
+    private static String getLocalName(Node node) {
+        String localName = node.getLocalName();
+        // DOM Level 1 nodes, from a parser not namespace aware
+        return (localName != null) ? localName : node.getNodeName();
+    }
+
 	/**
 	 * Parse a wire representation of a SOAP message (also multipart-related) 
 	 * and return a SAAJ SOAPMessage instance.
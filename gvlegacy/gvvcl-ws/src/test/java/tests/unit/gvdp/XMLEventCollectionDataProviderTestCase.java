@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ *
+ * This file is part of GreenVulcano ESB.
+ *
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package tests.unit.gvdp;
+
+import it.greenvulcano.configuration.XMLConfig;
+import it.greenvulcano.gvesb.gvdp.DataProviderManager;
+import it.greenvulcano.gvesb.gvdp.impl.XMLEventCollectionDataProvider;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import tests.unit.http.HttpCallTestCase;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.util.AXIOMUtil;
+
+/**
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ *
+ */
+public class XMLEventCollectionDataProviderTestCase extends TestCase
+{
+    private static final String TEST_DP  = "testXMLEventCollectionDP";
+    private static final String TEST_XML = "<Radice><nodo1/><nodo2>Nodo numero due</nodo2><nodo3/></Radice>";
+
+    private DataProviderManager dataProvidersManager = null;
+
+    /**
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception
+    {
+        XMLConfig.setBaseConfigPath(HttpCallTestCase.class.getClassLoader().getResource(".").getPath());
+        dataProvidersManager = DataProviderManager.instance();
+    }
+
+    private OMElement getTestElement() throws Exception
+    {
+        return AXIOMUtil.stringToOM(TEST_XML);
+    }
+
+    /**
+     * Tests the collection built from the START_ELEMENT events
+     *
+     * @throws Exception
+     */
+    public final void testCollection() throws Exception
+    {
+        XMLEventCollectionDataProvider dataProvider = (XMLEventCollectionDataProvider) dataProvidersManager.getDataProvider(TEST_DP);
+        try {
+            dataProvider.setObject(getTestElement());
+            assertEquals(Arrays.asList("Radice", "nodo1", "nodo2", "nodo3"), dataProvider.getResult());
+            assertEquals(-1, dataProvider.getPushedCount());
+        }
+        finally {
+            dataProvidersManager.releaseDataProvider(TEST_DP, dataProvider);
+        }
+    }
+
+    /**
+     * Tests the streaming mode, and that the sink is not used by the next
+     * setObject
+     *
+     * @throws Exception
+     */
+    public final void testSink() throws Exception
+    {
+        final List<Object> pushed = new ArrayList<Object>();
+        XMLEventCollectionDataProvider dataProvider = (XMLEventCollectionDataProvider) dataProvidersManager.getDataProvider(TEST_DP);
+        try {
+            dataProvider.setObject(getTestElement(), new XMLEventCollectionDataProvider.EventSink() {
+                @Override
+                public void push(Object item)
+                {
+                    pushed.add(item);
+                }
+            });
+            assertEquals(Arrays.asList("Radice", "nodo1", "nodo2", "nodo3"), pushed);
+            assertEquals(0, ((List<?>) dataProvider.getResult()).size());
+            assertEquals(4, dataProvider.getPushedCount());
+
+            dataProvider.setObject(getTestElement());
+            assertEquals(4, pushed.size());
+            assertEquals(Arrays.asList("Radice", "nodo1", "nodo2", "nodo3"), dataProvider.getResult());
+        }
+        finally {
+            dataProvidersManager.releaseDataProvider(TEST_DP, dataProvider);
+        }
+    }
+}
@@ -19,16 +19,24 @@
  *******************************************************************************/
 package tests.unit.http;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+
 import it.greenvulcano.configuration.XMLConfig;
 import it.greenvulcano.gvesb.buffer.GVBuffer;
 import it.greenvulcano.gvesb.gvdp.DataProviderManager;
 import it.greenvulcano.gvesb.gvhttp.impl.HttpMethodDataProvider;
 import it.greenvulcano.gvesb.log.GVBufferDump;
 import it.greenvulcano.gvesb.virtual.OperationFactory;
+import it.greenvulcano.gvesb.virtual.http.HTTPCallInfo;
 import it.greenvulcano.gvesb.virtual.http.HTTPCallOperation;
+import it.greenvulcano.gvesb.virtual.http.HTTPCallStatistics;
 import it.greenvulcano.gvesb.virtual.ws.WSCallOperation;
 import junit.framework.TestCase;
 
+import org.apache.commons.io.IOUtils;
 import org.w3c.dom.Node;
 
 /**
@@ -86,6 +94,85 @@ public class HttpCallTestCase extends TestCase
         assertNotNull(result.getObject());
     }
 
+    /**
+     * @throws Exception
+     *
+     */
+    public void testGETMethodStream() throws Exception
+    {
+        Node node = XMLConfig.getNode("GVSystems.xml",
+                "/GVSystems/Systems/System[@id-system='GVESB']/Channel[@id-channel='TEST_CHANNEL']/http-call[@name='test_http_get_stream']");
+        HTTPCallOperation httpCall = new HTTPCallOperation();
+        httpCall.init(node);
+        for (int i = 0; i < 10; i++) {
+            GVBuffer gvBuffer = new GVBuffer("TEST", "HTTP-GET-CALL");
+            GVBuffer result = httpCall.perform(gvBuffer);
+            assertEquals(200, Integer.parseInt(result.getProperty("GVHTTP_RESPONSE_STATUS")));
+            assertTrue(result.getObject() instanceof InputStream);
+            try (InputStream in = (InputStream) result.getObject()) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                IOUtils.copy(in, body);
+                assertTrue(body.size() > 0);
+            }
+        }
+        assertTrue(HTTPCallStatistics.get("localhost:9999").getCalls() >= 10);
+        assertTrue(HTTPCallOperation.getConnectionsInPool() > 0);
+        HTTPCallInfo info = new HTTPCallInfo();
+        assertTrue(Arrays.asList(info.getServers()).contains("localhost:9999"));
+        assertTrue(info.getCalls() >= 10);
+        assertNotNull(info.getServerStatistics("localhost:9999"));
+        assertNull(info.getServerStatistics("localhost:1"));
+    }
+
+    /**
+     * @throws Exception
+     *
+     */
+    public void testGETMethod_PoolTimeout() throws Exception
+    {
+        Node node = XMLConfig.getNode("GVSystems.xml",
+                "/GVSystems/Systems/System[@id-system='GVESB']/Channel[@id-channel='TEST_CHANNEL']/http-call[@name='test_http_get_pool_timeout']");
+        HTTPCallOperation httpCall = new HTTPCallOperation();
+        httpCall.init(node);
+        // the unread stream holds the only connection allowed to the server
+        GVBuffer result = httpCall.perform(new GVBuffer("TEST", "HTTP-GET-CALL"));
+        try (InputStream in = (InputStream) result.getObject()) {
+            long start = System.currentTimeMillis();
+            try {
+                httpCall.perform(new GVBuffer("TEST", "HTTP-GET-CALL"));
+                fail();
+            }
+            catch (Exception exc) {
+                long delta = System.currentTimeMillis() - start;
+                assertTrue("Wrong error cause", exc.toString().indexOf("Timeout waiting for connection") != -1);
+                assertTrue("Wrong timeout", delta < 5000);
+            }
+        }
+        // released on close
+        GVBuffer retry = httpCall.perform(new GVBuffer("TEST", "HTTP-GET-CALL"));
+        ((InputStream) retry.getObject()).close();
+    }
+
+    /**
+     * @throws Exception
+     *
+     */
+    public void testGETMethodFile() throws Exception
+    {
+        Node node = XMLConfig.getNode("GVSystems.xml",
+                "/GVSystems/Systems/System[@id-system='GVESB']/Channel[@id-channel='TEST_CHANNEL']/http-call[@name='test_http_get_file']");
+        HTTPCallOperation httpCall = new HTTPCallOperation();
+        httpCall.init(node);
+        GVBuffer gvBuffer = new GVBuffer("TEST", "HTTP-GET-CALL");
+        GVBuffer result = httpCall.perform(gvBuffer);
+        System.out.println(new GVBufferDump(result).toString());
+        assertEquals(200, Integer.parseInt(result.getProperty("GVHTTP_RESPONSE_STATUS")));
+        File responseFile = new File((String) result.getObject());
+        assertEquals(responseFile.getAbsolutePath(), result.getProperty("GVHTTP_RESPONSE_FILE"));
+        assertTrue(responseFile.length() > 0);
+        responseFile.delete();
+    }
+
     /**
      * @throws Exception
      *
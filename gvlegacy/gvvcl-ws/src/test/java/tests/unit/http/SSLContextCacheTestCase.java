@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ *
+ * This file is part of GreenVulcano ESB.
+ *
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package tests.unit.http;
+
+import it.greenvulcano.configuration.XMLConfig;
+import it.greenvulcano.gvesb.http.ssl.AuthSSLProtocolSocketFactory;
+import it.greenvulcano.gvesb.http.ssl.SSLContextCache;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.net.ssl.SSLContext;
+
+import junit.framework.TestCase;
+
+/**
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ *
+ *
+ */
+public class SSLContextCacheTestCase extends TestCase
+{
+    static {
+        XMLConfig.setBaseConfigPath(SSLContextCacheTestCase.class.getClassLoader().getResource(".").getPath());
+    }
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        SSLContextCache.instance().invalidateAll();
+    }
+
+    /**
+     * @throws Exception
+     *
+     */
+    public void testSharedContext() throws Exception
+    {
+        SSLContextCache cache = SSLContextCache.instance();
+        long created = cache.getContextsCreated();
+
+        AuthSSLProtocolSocketFactory factory1 = new AuthSSLProtocolSocketFactory("HTTPS_KeyStore", "HTTPS_TrustStore",
+                "test_client_pwd");
+        AuthSSLProtocolSocketFactory factory2 = new AuthSSLProtocolSocketFactory("HTTPS_KeyStore", "HTTPS_TrustStore",
+                "test_client_pwd");
+        SSLContext context = factory1.getSSLContext();
+        assertNotNull(context);
+        assertSame(context, factory2.getSSLContext());
+        assertEquals(created + 1, cache.getContextsCreated());
+        assertEquals(1, cache.getContextsCached());
+    }
+
+    /**
+     * @throws Exception
+     *
+     */
+    public void testInvalidate() throws Exception
+    {
+        SSLContextCache cache = SSLContextCache.instance();
+
+        AuthSSLProtocolSocketFactory factory1 = new AuthSSLProtocolSocketFactory("HTTPS_KeyStore", "HTTPS_TrustStore",
+                "test_client_pwd");
+        AuthSSLProtocolSocketFactory factory2 = new AuthSSLProtocolSocketFactory("HTTPS_KeyStore", "HTTPS_TrustStore",
+                "test_client_pwd");
+        SSLContext context = factory1.getSSLContext();
+        long created = cache.getContextsCreated();
+
+        cache.invalidate("HTTPS_TrustStore");
+        assertEquals(0, cache.getContextsCached());
+
+        SSLContext rebuilt = factory2.getSSLContext();
+        assertNotSame(context, rebuilt);
+        assertSame(rebuilt, factory1.getSSLContext());
+        assertEquals(created + 1, cache.getContextsCreated());
+    }
+
+    /**
+     * @throws Exception
+     *
+     */
+    public void testMBeanRegistration() throws Exception
+    {
+        SSLContextCache cache = SSLContextCache.instance();
+        ObjectName name = cache.getJmxObjectName();
+        assertNotNull(name);
+        for (MBeanServer server : MBeanServerFactory.findMBeanServer(null)) {
+            if (server.isRegistered(name)) {
+                assertEquals(cache.getContextsCreated(), server.getAttribute(name, "contextsCreated"));
+                server.invoke(name, "invalidateAll", null, null);
+                assertEquals(0, server.getAttribute(name, "contextsCached"));
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ *
+ * This file is part of GreenVulcano ESB.
+ *
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package tests.unit.ws;
+
+import it.greenvulcano.gvesb.ws.axis2.message.MessageConverter;
+
+/**
+ * Times the single pass MessageConverter.toOM_gv() against the previous
+ * serialize and re-parse conversion, on payloads of increasing size.
+ *
+ * It is not a JUnit test, so it is not part of the build: run its main()
+ * from the test classpath, optionally passing the number of rounds.
+ *
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ *
+ */
+public class MessageConverterBenchmark
+{
+    private static final int   WARMUP = 3;
+    private static final int[] SIZES  = {1024, 100 * 1024, 5 * 1024 * 1024};
+
+    public static void main(String[] args) throws Exception
+    {
+        int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+        for (int size : SIZES) {
+            String payload = MessageConverterTestCase.buildPayload(size);
+            for (int i = 0; i < WARMUP; i++) {
+                MessageConverterTestCase.legacyToOM(payload);
+                MessageConverter.toOM_gv(payload, false);
+            }
+
+            long legacyTime = 0;
+            long singlePassTime = 0;
+            for (int i = 0; i < rounds; i++) {
+                long start = System.nanoTime();
+                MessageConverterTestCase.legacyToOM(payload);
+                legacyTime += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                MessageConverter.toOM_gv(payload, false);
+                singlePassTime += System.nanoTime() - start;
+            }
+            System.out.println("toOM_gv " + (size / 1024) + "KB: legacy " + (legacyTime / rounds / 1000)
+                    + " us, single pass " + (singlePassTime / rounds / 1000) + " us");
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2016 GreenVulcano ESB Open Source Project.
+ * All rights reserved.
+ *
+ * This file is part of GreenVulcano ESB.
+ *
+ * GreenVulcano ESB is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GreenVulcano ESB is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GreenVulcano ESB. If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package tests.unit.ws;
+
+import it.greenvulcano.gvesb.ws.axis2.message.MessageConverter;
+import it.greenvulcano.util.xml.XMLUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import junit.framework.TestCase;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.impl.builder.StAXOMBuilder;
+import org.apache.axiom.om.util.StAXUtils;
+import org.w3c.dom.Document;
+
+/**
+ * Checks that the single pass MessageConverter.toOM_gv() builds the same
+ * document of the previous serialize and re-parse conversion.
+ *
+ * @version 4.1.0 Oct 18, 2026
+ * @author GreenVulcano Developer Team
+ *
+ */
+public class MessageConverterTestCase extends TestCase
+{
+    static String buildPayload(int size)
+    {
+        StringBuilder sb = new StringBuilder(size + 512);
+        sb.append("<ns1:Request xmlns:ns1=\"http://www.greenvulcano.it/gvesb\" xmlns:ns2=\"http://www.greenvulcano.it/test\" ns2:id=\"1\">");
+        int i = 0;
+        while (sb.length() < size) {
+            sb.append("<ns1:Item ns2:idx=\"").append(i).append("\" type=\"test\">");
+            sb.append("<ns1:Name>Name &amp; surname ").append(i).append("</ns1:Name>");
+            sb.append("<ns2:Note><![CDATA[<note> ").append(i).append(" ]]></ns2:Note>");
+            sb.append("<!-- item ").append(i).append(" --><Value>").append(i * 31).append("</Value>");
+            sb.append("</ns1:Item>");
+            i++;
+        }
+        sb.append("</ns1:Request>");
+        return sb.toString();
+    }
+
+    /**
+     * The conversion performed before the single pass one
+     */
+    static OMElement legacyToOM(Object input) throws Exception
+    {
+        byte[] data = XMLUtils.serializeDOMToByteArray_S(XMLUtils.parseObject_S(input, false, true), "UTF-8", true,
+                false);
+        for (int pass = 0; pass < 2; pass++) {
+            XMLStreamReader xmlreader = StAXUtils.createXMLStreamReader(new ByteArrayInputStream(data), "UTF-8");
+            StAXOMBuilder builder = new StAXOMBuilder(xmlreader);
+            builder.releaseParserOnClose(true);
+            OMElement elem = builder.getDocumentElement();
+            elem.build();
+            if (pass == 1) {
+                builder.close();
+                return elem;
+            }
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            elem.serializeAndConsume(baos);
+            builder.close();
+            data = baos.toByteArray();
+        }
+        return null;
+    }
+
+    private static void assertEquivalent(OMElement expected, OMElement actual) throws Exception
+    {
+        // CDATA sections and text are compared by content
+        DocumentBuilderFactory documentFactory = DocumentBuilderFactory.newInstance();
+        documentFactory.setNamespaceAware(true);
+        documentFactory.setCoalescing(true);
+        DocumentBuilder docBuilder = documentFactory.newDocumentBuilder();
+        Document expectedDoc = docBuilder.parse(new ByteArrayInputStream(expected.toString().getBytes("UTF-8")));
+        Document actualDoc = docBuilder.parse(new ByteArrayInputStream(actual.toString().getBytes("UTF-8")));
+        assertTrue(expectedDoc.getDocumentElement().isEqualNode(actualDoc.getDocumentElement()));
+    }
+
+    private void checkPayload(int size) throws Exception
+    {
+        String payload = buildPayload(size);
+        assertEquivalent(legacyToOM(payload), MessageConverter.toOM_gv(payload, false));
+    }
+
+    public final void testConversion1KB() throws Exception
+    {
+        checkPayload(1024);
+    }
+
+    public final void testConversion100KB() throws Exception
+    {
+        checkPayload(100 * 1024);
+    }
+
+    public final void testConversionDOMInput() throws Exception
+    {
+        Document doc = XMLUtils.parseDOM_S(new ByteArrayInputStream(buildPayload(1024).getBytes("UTF-8")), false,
+                true);
+        assertEquivalent(legacyToOM(doc), MessageConverter.toOM_gv(doc, false));
+    }
+}